@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.MediumClient;
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.Submission;
+import com.medium.api.model.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole API calls made through a warmed up
+ * {@link MediumClient}, against the in-process {@link MockMedium} over
+ * loopback HTTP. The numbers include the mock server's share of the
+ * work, so they are best compared with each other, rather than taken
+ * as the cost of the client alone.
+ *
+ * Run with {@code -prof gc} to see the allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+
+    private MockMedium api;
+    private MediumClient client;
+    private Submission submission;
+
+    /**
+     * Starts the mock API and a warmed up client.
+     *
+     * @throws IOException
+     *         If the mock API cannot be started
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        api = new MockMedium();
+        client = new MediumClient.Builder()
+            .withEndpoint(api.getEndpoint())
+            .withAccessToken("benchmark")
+            .build();
+        client.warmUp();
+
+        submission = new Submission.Builder()
+            .withTitle("Hard things in software development")
+            .withContent("<p>Cache invalidation</p><p>Naming things</p>")
+            .build();
+    }
+
+    /**
+     * Stops the mock API.
+     *
+     * @throws IOException
+     *         If the mock API cannot be stopped
+     */
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        api.shutdown();
+    }
+
+    /**
+     * Gets the authenticated user.
+     *
+     * @return the user, so that the call is not optimized away
+     */
+    @Benchmark
+    public User getUser() {
+        return client.getUser();
+    }
+
+    /**
+     * Lists the contributors to a publication.
+     *
+     * @return the contributors, so that the call is not optimized away
+     */
+    @Benchmark
+    public List<Contributor> listContributors() {
+        return client.listContributors("b45573563f5a");
+    }
+
+    /**
+     * Creates a post.
+     *
+     * @return the post, so that the call is not optimized away
+     */
+    @Benchmark
+    public Post createPost() {
+        return client.createPost(submission, "5303d74c64f66366f00cb9b2");
+    }
+}
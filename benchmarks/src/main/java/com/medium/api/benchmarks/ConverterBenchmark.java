@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.dependencies.json.JacksonModelConverter;
+import com.medium.api.model.ContentFormat;
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.PublishStatus;
+import com.medium.api.model.Submission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link JacksonModelConverter} on the payloads the API
+ * actually returns, and on submissions of a small and a large post.
+ *
+ * Run with {@code -prof gc} to see the allocation per conversion.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class ConverterBenchmark {
+
+    /**
+     * A paragraph of post content, repeated to make up a large post.
+     */
+    private static final String PARAGRAPH = "<p>There are only two hard"
+        + " things in Computer Science: cache invalidation and naming"
+        + " things. And off-by-one errors, which makes three.</p>";
+
+    private JacksonModelConverter converter;
+    private String post;
+    private String contributors;
+
+    /**
+     * Loads the payloads, and builds a converter which has already
+     * made its serializers.
+     */
+    @Setup
+    public void setup() {
+        converter = new JacksonModelConverter();
+        converter.warmUp(Post.class, Contributor.class, Submission.class);
+
+        post = MockMedium.payload("post.json");
+        contributors = MockMedium.payload("contributor-list.json");
+    }
+
+    /**
+     * Reads a single post.
+     *
+     * @return the post, so that it is not optimized away
+     */
+    @Benchmark
+    public Post asSinglePost() {
+        return converter.asSingle(Post.class, post);
+    }
+
+    /**
+     * Reads a list of contributors.
+     *
+     * @return the contributors, so that they are not optimized away
+     */
+    @Benchmark
+    public List<Contributor> asListOfContributors() {
+        return converter.asListOf(Contributor.class, contributors);
+    }
+
+    /**
+     * Writes a submission of the given size.
+     *
+     * @param state the submission to write
+     *
+     * @return the JSON, so that it is not optimized away
+     */
+    @Benchmark
+    public String asJsonSubmission(final SubmissionState state) {
+        return converter.asJson(state.submission);
+    }
+
+    /**
+     * A submission of a small or a large post, kept apart from the rest
+     * of the benchmark so that only writing it is run at both sizes.
+     */
+    @State(Scope.Thread)
+    public static class SubmissionState {
+
+        @Param({"small", "large"})
+        private String content;
+
+        private Submission submission;
+
+        /**
+         * Builds a submission of about 100 bytes of content for a small
+         * post, or 64 KiB for a large one.
+         */
+        @Setup
+        public void setup() {
+            final int paragraphs = "large".equals(content) ? 512 : 1;
+            final StringBuilder html =
+                new StringBuilder(paragraphs * PARAGRAPH.length());
+            for (int i = 0; i < paragraphs; i++) {
+                html.append(PARAGRAPH);
+            }
+
+            submission = new Submission.Builder()
+                .withTitle("Hard things in software development")
+                .withContentFormat(ContentFormat.HTML)
+                .withContent(html.toString())
+                .withTags(Arrays.asList("development", "design"))
+                .withPublishStatus(PublishStatus.DRAFT)
+                .build();
+        }
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.dependencies.json.JacksonModelConverter;
+import com.medium.api.dependencies.json.StringPool;
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.Publication;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures how much heap the models take when a large result set is
+ * held in memory, as when crawling thousands of publications.
+ *
+ * For each model, a million distinct instances are read from JSON, the
+ * way the client reads them, and kept. Their footprint is reported two
+ * ways: the growth of the heap after a full collection, and the size of
+ * the object graph of a sample of them, broken down by class.
+ *
+ * Options are given as {@code name=value}:
+ *
+ * <ul>
+ *   <li>{@code models}: Post, Publication and/or Contributor (all)</li>
+ *   <li>{@code count}: how many of each to keep (1000000)</li>
+ *   <li>{@code sample}: how many of them to walk the graph of (10000)</li>
+ *   <li>{@code pool}: whether to read them through a {@link StringPool}
+ *       of the default fields (false)</li>
+ * </ul>
+ *
+ * Give the JVM enough heap for the count, e.g. {@code -Xmx2g}.
+ */
+public final class Footprint {
+
+    private static final String[] DEFAULTS = {
+        "models=Post,Publication,Contributor",
+        "count=1000000",
+        "sample=10000",
+        "pool=false",
+    };
+
+    private static final String[] TAGS = {
+        "software", "programming", "java", "design", "startup", "data",
+        "football", "sport", "music", "travel", "politics", "science",
+    };
+
+    private Footprint() {
+        // Not to be instantiated
+    }
+
+    /**
+     * Measures the footprint of each model.
+     *
+     * @param args the options, as {@code name=value}
+     */
+    public static void main(final String[] args) {
+        final Map<String, String> options = LoadTest.parse(DEFAULTS);
+        options.putAll(LoadTest.parse(args));
+
+        final int count = Integer.parseInt(options.get("count"));
+        final int sample = Math.min(
+            count, Integer.parseInt(options.get("sample")));
+
+        final boolean pooled = Boolean.parseBoolean(options.get("pool"));
+
+        for (final String model : options.get("models").split(",")) {
+            final StringPool pool = pooled
+                ? new StringPool.Builder().build()
+                : null;
+            measure(model, count, sample, pool);
+        }
+    }
+
+    /**
+     * Reads and keeps many instances of a model, and reports what they
+     * take.
+     *
+     * @param model the name of the model
+     * @param count how many to keep
+     * @param sample how many to walk the graph of
+     * @param pool the pool to read them through, or null
+     */
+    private static void measure(final String model, final int count,
+            final int sample, final StringPool pool) {
+
+        final JacksonModelConverter converter = null == pool
+            ? new JacksonModelConverter()
+            : new JacksonModelConverter(pool);
+
+        // Settle the converter, so that its caches are not counted
+        read(converter, model, 0);
+
+        final long before = usedHeap();
+        final Object[] instances = new Object[count];
+        for (int i = 0; i < count; i++) {
+            instances[i] = read(converter, model, i);
+        }
+        final long after = usedHeap();
+
+        final ObjectGraph graph =
+            new ObjectGraph(Arrays.copyOf(instances, sample));
+
+        System.out.printf(Locale.ROOT, "%s: %,d kept, %.1f bytes each on"
+            + " the heap; a sample of %,d is %.1f objects and %.1f bytes"
+            + " each%n", model, count,
+            (after - before - align(16 + 4L * count)) / (double) count,
+            sample, graph.getObjects() / (double) sample,
+            graph.getBytes() / (double) sample);
+
+        final List<Map.Entry<Class<?>, long[]>> classes =
+            new ArrayList<Map.Entry<Class<?>, long[]>>(
+                graph.getHistogram().entrySet());
+        Collections.sort(classes, new Comparator<Map.Entry<Class<?>, long[]>>() {
+            @Override
+            public int compare(final Map.Entry<Class<?>, long[]> a,
+                    final Map.Entry<Class<?>, long[]> b) {
+                return Long.compare(b.getValue()[1], a.getValue()[1]);
+            }
+        });
+
+        if (null != pool) {
+            System.out.printf(Locale.ROOT, "  the pool replaced %,d strings,"
+                + " saving an estimated %.1f bytes each%n",
+                pool.getHitCount(), pool.getBytesSaved() / (double) count);
+        }
+
+        for (final Map.Entry<Class<?>, long[]> entry : classes) {
+            System.out.printf(Locale.ROOT, "  %8.2f %8.1f  %s%n",
+                entry.getValue()[0] / (double) sample,
+                entry.getValue()[1] / (double) sample,
+                entry.getKey().getName());
+        }
+
+        // Keep the instances alive until the heap has been measured
+        if (instances[count - 1] == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Reads the i'th distinct instance of a model from JSON.
+     *
+     * @param converter the converter with which to read it
+     * @param model the name of the model
+     * @param i which instance to read
+     *
+     * @return the instance
+     */
+    private static Object read(final JacksonModelConverter converter,
+            final String model, final int i) {
+        if ("Post".equals(model)) {
+            return converter.asSingle(Post.class, post(i));
+        } else if ("Publication".equals(model)) {
+            return converter.asSingle(Publication.class, publication(i));
+        } else if ("Contributor".equals(model)) {
+            return converter.asSingle(Contributor.class, contributor(i));
+        }
+        throw new IllegalArgumentException("Unknown model: " + model);
+    }
+
+    /**
+     * Makes the JSON for a distinct post.
+     *
+     * @param i which post
+     *
+     * @return the JSON
+     */
+    private static String post(final int i) {
+        final String id = String.format("%012x", i);
+        return "{\"data\":{\"id\":\"" + id + "\","
+            + "\"title\":\"Post number " + i + "\","
+            + "\"authorId\":\"5303d74c64f66366f00cb9b2a94f3251bf5\","
+            + "\"tags\":[\"" + TAGS[i % TAGS.length] + "\",\""
+                + TAGS[(i + 5) % TAGS.length] + "\",\""
+                + TAGS[(i + 7) % TAGS.length] + "\"],"
+            + "\"url\":\"https://medium.com/@majelbstoat/post-" + id + "\","
+            + "\"canonicalUrl\":\"http://jamietalbot.com/posts/" + id + "\","
+            + "\"publishStatus\":\"public\","
+            + "\"publishedAt\":" + (1442286338435L + i) + ","
+            + "\"license\":\"all-rights-reserved\","
+            + "\"licenseUrl\":\"https://medium.com/policy/9db0094a1e0f\"}}";
+    }
+
+    /**
+     * Makes the JSON for a distinct publication.
+     *
+     * @param i which publication
+     *
+     * @return the JSON
+     */
+    private static String publication(final int i) {
+        final String id = String.format("%012x", i);
+        return "{\"data\":{\"id\":\"" + id + "\","
+            + "\"name\":\"Publication " + i + "\","
+            + "\"description\":\"What we write about number " + i + "\","
+            + "\"url\":\"https://medium.com/pub-" + id + "\","
+            + "\"imageUrl\":\"https://cdn-images-1.medium.com/" + id
+                + ".png\"}}";
+    }
+
+    /**
+     * Makes the JSON for a distinct contributor.
+     *
+     * @param i which contributor
+     *
+     * @return the JSON
+     */
+    private static String contributor(final int i) {
+        return "{\"data\":{\"publicationId\":\"b45573563f5a\","
+            + "\"userId\":\"" + String.format("%065x", i) + "\","
+            + "\"role\":\"" + (i % 4 == 0 ? "editor" : "writer") + "\"}}";
+    }
+
+    /**
+     * Gets the heap in use once garbage has been collected.
+     *
+     * @return the heap in use, in bytes
+     */
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+
+        // Collect until the heap stops shrinking
+        for (int i = 0; i < 10; i++) {
+            memory.gc();
+            final long now = memory.getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Rounds a size up to eight bytes.
+     *
+     * @param size the size
+     *
+     * @return the aligned size
+     */
+    private static long align(final long size) {
+        return (size + 7) / 8 * 8;
+    }
+}
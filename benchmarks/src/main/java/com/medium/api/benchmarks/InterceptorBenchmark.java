@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.dependencies.http.Exchange;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.InterceptingHttpClient;
+import com.medium.api.dependencies.http.Interceptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of a chain of interceptors which do nothing,
+ * around an HTTP client which does nothing either, so that the chain
+ * is all there is to measure.
+ *
+ * Run with {@code -prof gc} to see the allocation per call: with no
+ * interceptors, the chain is not there at all and allocates nothing;
+ * with any, it allocates one {@link Exchange} per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class InterceptorBenchmark {
+
+    private static final String URL = "http://localhost/v1/me";
+
+    @Param({"0", "1", "4", "16"})
+    private int interceptors;
+
+    private HttpClient client;
+
+    /**
+     * Builds a client with the given number of no-op interceptors.
+     */
+    @Setup
+    public void setup() {
+        final List<Interceptor> chain = new ArrayList<Interceptor>();
+        for (int i = 0; i < interceptors; i++) {
+            chain.add(new NoOpInterceptor());
+        }
+
+        client = InterceptingHttpClient.wrap(new NoOpHttpClient(), chain);
+    }
+
+    /**
+     * Makes a call through the chain.
+     *
+     * @return the response, so that the call is not optimized away
+     */
+    @Benchmark
+    public String get() {
+        return client.get(URL);
+    }
+
+    /**
+     * An HTTP client which responds right away, without any I/O.
+     */
+    private static final class NoOpHttpClient implements HttpClient {
+
+        @Override
+        public String post(final String url, final String body) {
+            return body;
+        }
+
+        @Override
+        public String get(final String url) {
+            return url;
+        }
+
+        @Override
+        public void setBearerToken(final String bearerToken) {
+            // Not needed
+        }
+    }
+
+    /**
+     * An interceptor which does nothing.
+     */
+    private static final class NoOpInterceptor implements Interceptor {
+
+        @Override
+        public void onRequest(final Exchange exchange) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onResponse(final Exchange exchange) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onException(final Exchange exchange,
+                final HttpException exception) {
+            // Nothing to do
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.dependencies.json.JacksonModelConverter;
+import com.medium.api.dependencies.json.LazyModel;
+import com.medium.api.model.Post;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the id and URL of every post in a large list by
+ * binding each post in full, and by reading the posts lazily.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class LazyModelBenchmark {
+
+    @Param({"1000"})
+    private int posts;
+
+    private JacksonModelConverter converter;
+    private String json;
+    private byte[] bytes;
+
+    /**
+     * Builds a list of distinct posts, in an envelope as the API sends
+     * them.
+     */
+    @Setup
+    public void setup() throws Exception {
+        converter = new JacksonModelConverter();
+        converter.warmUp(Post.class);
+
+        final StringBuilder list = new StringBuilder("{\"data\": [");
+        for (int i = 0; i < posts; i++) {
+            final String id = String.format("%012x", i);
+            list.append(i == 0 ? "" : ",")
+                .append("{\"id\": \"").append(id).append("\",")
+                .append("\"title\": \"Post number ").append(i).append("\",")
+                .append("\"authorId\": \"5303d74c64f66366f00cb9b2a94f3251bf5\",")
+                .append("\"tags\": [\"football\", \"sport\", \"Liverpool\"],")
+                .append("\"url\": \"https://medium.com/@majelbstoat/post-")
+                    .append(id).append("\",")
+                .append("\"canonicalUrl\": \"http://jamietalbot.com/posts/")
+                    .append(id).append("\",")
+                .append("\"publishStatus\": \"public\",")
+                .append("\"publishedAt\": ").append(1442286338435L + i)
+                    .append(",")
+                .append("\"license\": \"all-rights-reserved\",")
+                .append("\"licenseUrl\": \"https://medium.com/policy/9db0094a1e0f\"}");
+        }
+        json = list.append("]}").toString();
+        bytes = json.getBytes("UTF-8");
+    }
+
+    /**
+     * Binds every post, then reads its id and URL.
+     *
+     * @param blackhole where the ids and URLs go
+     */
+    @Benchmark
+    public void bindAll(final Blackhole blackhole) {
+        for (final Post post : converter.asListOf(Post.class, json)) {
+            blackhole.consume(post.getId());
+            blackhole.consume(post.getUrl());
+        }
+    }
+
+    /**
+     * Indexes the posts from the response string, then reads only the
+     * id and URL of each.
+     *
+     * @param blackhole where the ids and URLs go
+     */
+    @Benchmark
+    public void lazyIdAndUrl(final Blackhole blackhole) {
+        read(converter.asLazyListOf(Post.class, json), blackhole);
+    }
+
+    /**
+     * Indexes the posts from the response's bytes, then reads only the
+     * id and URL of each.
+     *
+     * @param blackhole where the ids and URLs go
+     */
+    @Benchmark
+    public void lazyIdAndUrlFromBytes(final Blackhole blackhole) {
+        read(converter.asLazyListOf(Post.class, bytes), blackhole);
+    }
+
+    /**
+     * Reads the id and URL of each lazy post.
+     *
+     * @param lazy the posts
+     * @param blackhole where the ids and URLs go
+     */
+    private static void read(
+            final List<LazyModel<Post>> lazy, final Blackhole blackhole) {
+        for (final LazyModel<Post> post : lazy) {
+            blackhole.consume(post.getString("id"));
+            blackhole.consume(post.getString("url"));
+        }
+    }
+}
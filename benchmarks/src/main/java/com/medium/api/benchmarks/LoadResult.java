@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.metrics.HistogramSnapshot;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of applying an {@link OpenLoopLoad}: how many calls were
+ * made, how many failed, and how long they took.
+ */
+public final class LoadResult {
+
+    /**
+     * The number of steps between each halving of the distance to the
+     * 100th percentile, in a percentile distribution.
+     */
+    private static final int TICKS_PER_HALF = 5;
+
+    private final int threads;
+    private final double rate;
+    private final HistogramSnapshot latencies;
+    private final long errors;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a result.
+     *
+     * @param threads the number of threads which made calls
+     * @param rate the number of calls meant to start each second
+     * @param latencies the latencies of all calls, failed or not
+     * @param errors the number of calls which failed
+     * @param elapsedNanos the time from the first arrival until the
+     *                     last call finished
+     */
+    LoadResult(final int threads, final double rate,
+            final HistogramSnapshot latencies, final long errors,
+            final long elapsedNanos) {
+        this.threads = threads;
+        this.rate = rate;
+        this.latencies = latencies;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of threads which made calls.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of calls which were meant to start each second.
+     *
+     * @return the target rate
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Gets the number of calls which finished each second, on average.
+     * When the client keeps up, this is about the target rate.
+     *
+     * @return the rate achieved
+     */
+    public double getThroughput() {
+        if (0 == elapsedNanos) {
+            return 0;
+        }
+        return latencies.getCount() * (double) TimeUnit.SECONDS.toNanos(1)
+            / elapsedNanos;
+    }
+
+    /**
+     * Gets the number of calls which failed.
+     *
+     * @return the number of failures
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the latencies of all calls, measured from when each was
+     * meant to start.
+     *
+     * @return the latencies
+     */
+    public HistogramSnapshot getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Writes the distribution of latencies, in milliseconds, in the
+     * format of HdrHistogram's percentile distribution, so that it can
+     * be plotted with HdrHistogram's tools.
+     *
+     * @param out where to write the distribution
+     *
+     * @throws IOException
+     *         If the distribution cannot be written
+     */
+    public void writePercentiles(final Appendable out) throws IOException {
+        out.append(String.format(Locale.ROOT, "%12s %14s %10s %14s%n%n",
+            "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+
+        final long count = latencies.getCount();
+        if (0 < count) {
+            // Halve the distance to the 100th percentile in steps, until
+            // it is finer than one call
+            for (int half = 0; (1L << half) < count; half++) {
+                final double lower = 1 - 1.0 / (1L << half);
+                final double step = (1 - lower) / 2 / TICKS_PER_HALF;
+                for (int tick = 0; tick < TICKS_PER_HALF; tick++) {
+                    final double percentile = lower + tick * step;
+                    writePercentile(out, percentile);
+                    out.append(String.format(
+                        Locale.ROOT, " %14.2f%n", 1 / (1 - percentile)));
+                }
+            }
+            writePercentile(out, 1);
+            out.append(String.format("%n"));
+        }
+
+        out.append(String.format(Locale.ROOT,
+            "#[Mean    = %12.3f, Max            = %12.3f]%n",
+            millis(latencies.getMean(TimeUnit.NANOSECONDS)),
+            millis(latencies.getMax(TimeUnit.NANOSECONDS))));
+        out.append(String.format(Locale.ROOT,
+            "#[Total count    = %12d, Errors         = %12d]%n",
+            count, errors));
+    }
+
+    /**
+     * Writes the first three columns of a line of the distribution.
+     *
+     * @param out where to write the line
+     * @param percentile the percentile, from 0 to 1
+     *
+     * @throws IOException
+     *         If the line cannot be written
+     */
+    private void writePercentile(final Appendable out, final double percentile)
+            throws IOException {
+        final long nanos = latencies.getValueAtPercentile(
+            percentile * 100, TimeUnit.NANOSECONDS);
+        out.append(String.format(Locale.ROOT, "%12.3f %2.12f %10d",
+            millis(nanos), percentile,
+            latencies.getCountAtOrBelow(nanos, TimeUnit.NANOSECONDS)));
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds.
+     *
+     * @param nanos the duration in nanoseconds
+     *
+     * @return the duration in milliseconds
+     */
+    static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
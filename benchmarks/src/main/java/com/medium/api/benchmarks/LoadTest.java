@@ -0,0 +1,307 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.MediumClient;
+import com.medium.api.chaos.LatencyDistribution;
+import com.medium.api.dependencies.http.OkayHttpClient;
+import com.medium.api.model.Submission;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds how many calls a second one {@link MediumClient} sustains, and
+ * how long they take, by applying an {@link OpenLoopLoad} to it at a
+ * range of rates and numbers of threads. The client calls a
+ * {@link MediumSimulator} in the same process.
+ *
+ * Options are given as {@code name=value}:
+ *
+ * <ul>
+ *   <li>{@code operation}: getUser or createPost (getUser)</li>
+ *   <li>{@code threads}: the numbers of threads to try (1,2,4,8,16)</li>
+ *   <li>{@code rates}: the calls a second to try (100,200,400,800,1600)</li>
+ *   <li>{@code latency}: the server's median latency, in ms (20)</li>
+ *   <li>{@code p99}: the server's 99th percentile latency, in ms; if
+ *       it is above the median, latencies are log-normal, or else they
+ *       are all the median (20)</li>
+ *   <li>{@code errors}: the share of requests the server fails (0)</li>
+ *   <li>{@code duration}: how long to apply each load, in s (10)</li>
+ *   <li>{@code warmup}: how long to warm up each client, in s (5)</li>
+ *   <li>{@code out}: where to write the results (target/load)</li>
+ * </ul>
+ *
+ * A summary of every run is printed, and written as CSV to plot the
+ * throughput and latency curves, along with the percentile distribution
+ * of each run in HdrHistogram's format.
+ */
+public final class LoadTest {
+
+    private static final String[] DEFAULTS = {
+        "operation=getUser",
+        "threads=1,2,4,8,16",
+        "rates=100,200,400,800,1600",
+        "latency=20",
+        "p99=20",
+        "errors=0",
+        "duration=10",
+        "warmup=5",
+        "out=target/load",
+    };
+
+    private static final String HEADER =
+        "threads,rate,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,errors";
+
+    private LoadTest() {
+        // Not to be instantiated
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the options, as {@code name=value}
+     *
+     * @throws Exception
+     *         If the mock API cannot be started, or the results cannot
+     *         be written
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = parse(DEFAULTS);
+        options.putAll(parse(args));
+
+        final String operation = options.get("operation");
+        final int[] threadCounts = ints(options.get("threads"));
+        final int[] rates = ints(options.get("rates"));
+        final long duration = Long.parseLong(options.get("duration"));
+        final long warmup = Long.parseLong(options.get("warmup"));
+        final File out = new File(options.get("out"));
+
+        if (!out.isDirectory() && !out.mkdirs()) {
+            throw new IOException("Cannot create " + out);
+        }
+
+        final long median = Long.parseLong(options.get("latency"));
+        final long p99 = Long.parseLong(options.get("p99"));
+        final MediumSimulator api = new MediumSimulator.Builder()
+            .withLatency(p99 > median
+                ? LatencyDistribution.logNormal(
+                    median, p99, TimeUnit.MILLISECONDS)
+                : LatencyDistribution.fixed(median, TimeUnit.MILLISECONDS))
+            .withErrorRate(Double.parseDouble(options.get("errors")), 503)
+            .withTokenLifetime(1, TimeUnit.DAYS)
+            .build();
+
+        final Writer csv = new OutputStreamWriter(
+            new FileOutputStream(new File(out, operation + ".csv")), "UTF-8");
+        try {
+            csv.write(HEADER + "\n");
+            System.out.println(HEADER);
+
+            for (final int threads : threadCounts) {
+                final Callable<?> call = operation(operation,
+                    client(api, threads), api.getUserId());
+
+                // Let the JIT and the connection pool settle first
+                new OpenLoopLoad(call, threads, rates[0])
+                    .run(warmup, TimeUnit.SECONDS);
+
+                for (final int rate : rates) {
+                    final LoadResult result = new OpenLoopLoad(
+                        call, threads, rate).run(duration, TimeUnit.SECONDS);
+
+                    final String line = summarize(result);
+                    csv.write(line + "\n");
+                    csv.flush();
+                    System.out.println(line);
+
+                    writePercentiles(result, new File(out, String.format(
+                        "%s-%dt-%d.hgrm", operation, threads, rate)));
+                }
+            }
+        } finally {
+            csv.close();
+            api.shutdown();
+        }
+    }
+
+    /**
+     * Builds a warmed up client whose connection pool can hold a
+     * connection for every thread.
+     *
+     * @param api the API to call
+     * @param threads the number of threads which will share the client
+     *
+     * @return the client
+     */
+    private static MediumClient client(
+            final MediumSimulator api, final int threads) {
+        final OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(threads, 5, TimeUnit.MINUTES))
+            .build();
+
+        final MediumClient client = new MediumClient.Builder()
+            .withEndpoint(api.getEndpoint())
+            .withHttpClient(
+                new OkayHttpClient(okHttpClient, api.createAccessToken()))
+            .build();
+        client.warmUp(threads);
+
+        return client;
+    }
+
+    /**
+     * Gets the operation to call.
+     *
+     * @param name the name of the operation
+     * @param client the client with which to call it
+     * @param userId the id of the user the client acts for
+     *
+     * @return the operation
+     */
+    private static Callable<?> operation(final String name,
+            final MediumClient client, final String userId) {
+
+        if ("getUser".equals(name)) {
+            return new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return client.getUser();
+                }
+            };
+        } else if ("createPost".equals(name)) {
+            final Submission submission = new Submission.Builder()
+                .withTitle("Hard things in software development")
+                .withContent("<p>Cache invalidation</p><p>Naming things</p>")
+                .build();
+
+            return new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return client.createPost(submission, userId);
+                }
+            };
+        }
+
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+
+    /**
+     * Summarizes a run as a line of CSV.
+     *
+     * @param result the result of the run
+     *
+     * @return the summary
+     */
+    private static String summarize(final LoadResult result) {
+        return String.format(Locale.ROOT,
+            "%d,%.0f,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%d",
+            result.getThreads(), result.getRate(), result.getThroughput(),
+            percentile(result, 50), percentile(result, 90),
+            percentile(result, 99), percentile(result, 99.9),
+            LoadResult.millis(
+                result.getLatencies().getMax(TimeUnit.NANOSECONDS)),
+            result.getErrors());
+    }
+
+    /**
+     * Gets a percentile of the latencies of a run.
+     *
+     * @param result the result of the run
+     * @param percentile the percentile, from 0 to 100
+     *
+     * @return the latency at the percentile, in milliseconds
+     */
+    private static double percentile(
+            final LoadResult result, final double percentile) {
+        return LoadResult.millis(result.getLatencies()
+            .getValueAtPercentile(percentile, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Writes the percentile distribution of a run to a file.
+     *
+     * @param result the result of the run
+     * @param file the file to write
+     *
+     * @throws IOException
+     *         If the file cannot be written
+     */
+    private static void writePercentiles(
+            final LoadResult result, final File file) throws IOException {
+        final Writer writer = new OutputStreamWriter(
+            new FileOutputStream(file), "UTF-8");
+        try {
+            result.writePercentiles(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Parses options given as {@code name=value}.
+     *
+     * @param args the options
+     *
+     * @return the value of each option, by name
+     */
+    static Map<String, String> parse(final String[] args) {
+        final Map<String, String> options = new HashMap<String, String>();
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException(
+                    "Expected name=value, but got: " + arg);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses a comma-separated list of numbers.
+     *
+     * @param list the list
+     *
+     * @return the numbers
+     */
+    private static int[] ints(final String list) {
+        final List<Integer> values = new ArrayList<Integer>();
+        for (final String value : list.split(",")) {
+            values.add(Integer.valueOf(value.trim()));
+        }
+
+        final int[] ints = new int[values.size()];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = values.get(i);
+        }
+        return ints;
+    }
+}
@@ -0,0 +1,959 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.chaos.LatencyDistribution;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-process simulation of the Medium API, which keeps state between
+ * requests, so that a client can be put under a realistic load without
+ * a network.
+ *
+ * Unlike {@link MockMedium}, which answers every request with the same
+ * payload, the simulator issues access tokens which expire, limits the
+ * rate at which each token may be used, answering 429 with a
+ * Retry-After header once it is exceeded, and keeps the posts and
+ * images created. It can also take a random time to answer, and fail a
+ * share of requests on purpose.
+ *
+ * The simulated user is the one in {@code user.json}, who may see the
+ * publications in {@code publication-list.json}, and is an editor of
+ * the one whose contributors are in {@code contributor-list.json}.
+ */
+public final class MediumSimulator {
+
+    /**
+     * The error code for a missing, unknown or revoked access token.
+     */
+    public static final int TOKEN_INVALID = 6000;
+
+    /**
+     * The error code for an access token which has expired.
+     */
+    public static final int TOKEN_EXPIRED = 6003;
+
+    /**
+     * The error code for a request over the rate limit.
+     */
+    public static final int RATE_LIMITED = 6029;
+
+    private static final String API_PATH = "/v1";
+
+    private static final Pattern ME =
+        Pattern.compile("^/v1/me$");
+    private static final Pattern USER_PUBLICATIONS =
+        Pattern.compile("^/v1/users/([^/]+)/publications$");
+    private static final Pattern CONTRIBUTORS =
+        Pattern.compile("^/v1/publications/([^/]+)/contributors$");
+    private static final Pattern USER_POSTS =
+        Pattern.compile("^/v1/users/([^/]+)/posts$");
+    private static final Pattern PUBLICATION_POSTS =
+        Pattern.compile("^/v1/publications/([^/]+)/posts$");
+    private static final Pattern TOKENS =
+        Pattern.compile("^/v1/tokens$");
+    private static final Pattern IMAGES =
+        Pattern.compile("^/v1/images$");
+
+    private static final String GET = "GET";
+    private static final String POST = "POST";
+    private static final String BEARER = "Bearer ";
+    private static final String LICENSE_URL =
+        "https://medium.com/policy/9db0094a1e0f";
+
+    /**
+     * The mock server's logger, kept so that it stays quiet.
+     */
+    private static final Logger SERVER_LOGGER =
+        Logger.getLogger(MockWebServer.class.getName());
+
+    static {
+        SERVER_LOGGER.setLevel(Level.WARNING);
+    }
+
+    private final MockWebServer server;
+    private final ObjectMapper json = new ObjectMapper();
+    private final Random random;
+
+    private final LatencyDistribution latency;
+    private final long tokenLifetimeMillis;
+    private final int rateLimit;
+    private final long ratePeriodNanos;
+    private final double errorRate;
+    private final int errorStatus;
+
+    private final ObjectNode user;
+    private final Map<String, ObjectNode> publications;
+    private final Map<String, ArrayNode> contributors;
+
+    private final ConcurrentMap<String, Session> sessions =
+        new ConcurrentHashMap<String, Session>();
+    private final ConcurrentMap<String, String> refreshTokens =
+        new ConcurrentHashMap<String, String>();
+    private final Set<String> authorizationCodes =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ConcurrentMap<String, ObjectNode> posts =
+        new ConcurrentHashMap<String, ObjectNode>();
+    private final ConcurrentMap<String, ObjectNode> images =
+        new ConcurrentHashMap<String, ObjectNode>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    /**
+     * Starts a new simulator on a local port.
+     *
+     * @param builder the builder from which the simulation is configured
+     *
+     * @throws IOException
+     *         If the server cannot be started
+     */
+    private MediumSimulator(final Builder builder) throws IOException {
+        this.random = new Random(builder.seed);
+        this.latency = builder.latency;
+        this.tokenLifetimeMillis = builder.tokenLifetimeMillis;
+        this.rateLimit = builder.rateLimit;
+        this.ratePeriodNanos = builder.ratePeriodNanos;
+        this.errorRate = builder.errorRate;
+        this.errorStatus = builder.errorStatus;
+
+        this.user = (ObjectNode) json.readTree(
+            MockMedium.payload("user.json")).get("data");
+
+        this.publications = new LinkedHashMap<String, ObjectNode>();
+        this.contributors = new HashMap<String, ArrayNode>();
+        for (final JsonNode publication : json.readTree(
+                MockMedium.payload("publication-list.json")).get("data")) {
+            final String id = publication.get("id").asText();
+            publications.put(id, (ObjectNode) publication);
+            contributors.put(id, json.createArrayNode());
+        }
+        for (final JsonNode contributor : json.readTree(
+                MockMedium.payload("contributor-list.json")).get("data")) {
+            final String publicationId =
+                contributor.get("publicationId").asText();
+            contributors.get(publicationId).add(contributor);
+            if (!isContributor(getUserId(), publicationId)) {
+                contributors.get(publicationId).add(json.createObjectNode()
+                    .put("publicationId", publicationId)
+                    .put("userId", getUserId())
+                    .put("role", "editor"));
+            }
+        }
+
+        this.server = new MockWebServer();
+        this.server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        this.server.setDispatcher(new SimulatingDispatcher());
+        this.server.start();
+    }
+
+    /**
+     * Gets the base URL of the simulated API, for use as a client
+     * endpoint.
+     *
+     * @return the base URL of the simulated API
+     */
+    public String getEndpoint() {
+        return server.url(API_PATH).toString();
+    }
+
+    /**
+     * Gets the id of the simulated user.
+     *
+     * @return the id of the user
+     */
+    public String getUserId() {
+        return user.get("id").asText();
+    }
+
+    /**
+     * Issues an access token for the simulated user, as if they had
+     * just logged in.
+     *
+     * @return the access token
+     */
+    public String createAccessToken() {
+        return issueToken().get("access_token").asText();
+    }
+
+    /**
+     * Issues an authorization code, which may be exchanged once for an
+     * access token at the tokens endpoint.
+     *
+     * @return the authorization code
+     */
+    public String createAuthorizationCode() {
+        final String code = randomId(16);
+        authorizationCodes.add(code);
+        return code;
+    }
+
+    /**
+     * Revokes an access token, so that any further use of it fails.
+     *
+     * @param accessToken the access token to revoke
+     */
+    public void revoke(final String accessToken) {
+        sessions.remove(accessToken);
+    }
+
+    /**
+     * Gets the number of posts created, for users and publications.
+     *
+     * @return the number of posts
+     */
+    public int getPostCount() {
+        return posts.size();
+    }
+
+    /**
+     * Gets the number of images uploaded.
+     *
+     * @return the number of images
+     */
+    public int getImageCount() {
+        return images.size();
+    }
+
+    /**
+     * Gets the number of requests received.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of requests refused for being over the rate
+     * limit.
+     *
+     * @return the number of requests refused
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    /**
+     * Gets the number of requests failed on purpose.
+     *
+     * @return the number of requests failed
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Stops the simulator.
+     *
+     * @throws IOException
+     *         If the server cannot be stopped
+     */
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param request the request
+     *
+     * @return the response
+     * @throws IOException
+     *         If the body of the request cannot be read
+     */
+    private MockResponse answer(final RecordedRequest request)
+            throws IOException {
+
+        if ("HEAD".equals(request.getMethod())) {
+            return new MockResponse();
+        }
+
+        if (0 < errorRate && random.nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            return error(errorStatus, "Simulated failure.", 0);
+        }
+
+        final String path = pathOf(request);
+        if (TOKENS.matcher(path).matches()) {
+            return POST.equals(request.getMethod())
+                ? grant(request) : notAllowed();
+        }
+
+        // Everything else needs a valid access token
+        final String authorization = request.getHeader("Authorization");
+        final Session session = null == authorization
+            || !authorization.startsWith(BEARER)
+            ? null : sessions.get(authorization.substring(BEARER.length()));
+
+        if (null == session) {
+            return error(401, "Token was invalid.", TOKEN_INVALID);
+        }
+        if (session.expiresAt <= System.currentTimeMillis()) {
+            return error(401, "Token was expired.", TOKEN_EXPIRED);
+        }
+
+        final long waitNanos = session.acquire();
+        if (0 < waitNanos) {
+            rateLimited.incrementAndGet();
+            final long seconds = Math.max(1,
+                (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)
+                    / TimeUnit.SECONDS.toNanos(1));
+            return error(429, "Rate limit exceeded.", RATE_LIMITED)
+                .setHeader("Retry-After", seconds);
+        }
+
+        return route(request, path, session.userId);
+    }
+
+    /**
+     * Answers an authenticated request.
+     *
+     * @param request the request
+     * @param path the path of the request, without its query
+     * @param userId the id of the user making the request
+     *
+     * @return the response
+     * @throws IOException
+     *         If the body of the request cannot be read
+     */
+    private MockResponse route(final RecordedRequest request,
+            final String path, final String userId) throws IOException {
+
+        final String method = request.getMethod();
+        Matcher matcher;
+
+        if (ME.matcher(path).matches()) {
+            return GET.equals(method) ? data(user) : notAllowed();
+        }
+
+        matcher = USER_PUBLICATIONS.matcher(path);
+        if (matcher.matches()) {
+            if (!GET.equals(method)) {
+                return notAllowed();
+            }
+            if (!userId.equals(matcher.group(1))) {
+                return error(403,
+                    "You can only list your own publications.", 0);
+            }
+            final ArrayNode list = json.createArrayNode();
+            list.addAll(publications.values());
+            return data(list);
+        }
+
+        matcher = CONTRIBUTORS.matcher(path);
+        if (matcher.matches()) {
+            if (!GET.equals(method)) {
+                return notAllowed();
+            }
+            final ArrayNode list = contributors.get(matcher.group(1));
+            return null == list
+                ? error(404, "Publication not found.", 0) : data(list);
+        }
+
+        matcher = USER_POSTS.matcher(path);
+        if (matcher.matches()) {
+            if (!POST.equals(method)) {
+                return notAllowed();
+            }
+            if (!userId.equals(matcher.group(1))) {
+                return error(403,
+                    "You can only publish as yourself.", 0);
+            }
+            return createPost(request, userId);
+        }
+
+        matcher = PUBLICATION_POSTS.matcher(path);
+        if (matcher.matches()) {
+            if (!POST.equals(method)) {
+                return notAllowed();
+            }
+            final String publicationId = matcher.group(1);
+            if (!publications.containsKey(publicationId)) {
+                return error(404, "Publication not found.", 0);
+            }
+            if (!isContributor(userId, publicationId)) {
+                return error(403,
+                    "You are not a contributor to this publication.", 0);
+            }
+            return createPost(request, userId);
+        }
+
+        if (IMAGES.matcher(path).matches()) {
+            return POST.equals(method) ? uploadImage(request) : notAllowed();
+        }
+
+        return error(404, "Not found.", 0);
+    }
+
+    /**
+     * Exchanges an authorization code or refresh token for an access
+     * token. Requests may be JSON, as this SDK sends them, or form
+     * encoded, as documented.
+     *
+     * @param request the request
+     *
+     * @return the response
+     * @throws IOException
+     *         If the body of the request cannot be read
+     */
+    private MockResponse grant(final RecordedRequest request)
+            throws IOException {
+        final Map<String, String> fields = fieldsOf(request);
+        final String grantType = field(fields, "grantType", "grant_type");
+
+        if ("authorization_code".equals(grantType)) {
+            final String code = field(fields, "code", "code");
+            if (null == code || !authorizationCodes.remove(code)) {
+                return error(400, "Invalid authorization code.", 0);
+            }
+            return respond(200, issueToken());
+        } else if ("refresh_token".equals(grantType)) {
+            final String refreshToken =
+                field(fields, "refreshToken", "refresh_token");
+            if (null == refreshToken
+                    || !refreshTokens.containsKey(refreshToken)) {
+                return error(400, "Invalid refresh token.", 0);
+            }
+            final ObjectNode token = issueToken();
+            refreshTokens.remove(token.get("refresh_token").asText());
+            token.put("refresh_token", refreshToken);
+            return respond(200, token);
+        }
+
+        return error(400, "Unsupported grant type.", 0);
+    }
+
+    /**
+     * Issues a new access and refresh token for the simulated user.
+     *
+     * @return the token, as the tokens endpoint returns it
+     */
+    private ObjectNode issueToken() {
+        final String accessToken = randomId(32);
+        final String refreshToken = randomId(32);
+        final long expiresAt = System.currentTimeMillis() + tokenLifetimeMillis;
+
+        sessions.put(accessToken, new Session(getUserId(), expiresAt));
+        refreshTokens.put(refreshToken, getUserId());
+
+        final ObjectNode token = json.createObjectNode()
+            .put("token_type", "Bearer")
+            .put("access_token", accessToken)
+            .put("refresh_token", refreshToken)
+            .put("expires_at", expiresAt);
+        token.putArray("scope")
+            .add("basicProfile")
+            .add("listPublications")
+            .add("publishPost");
+        return token;
+    }
+
+    /**
+     * Creates a post from a submission.
+     *
+     * @param request the request, whose body is the submission
+     * @param authorId the id of the author
+     *
+     * @return the response
+     * @throws IOException
+     *         If the body of the request cannot be read
+     */
+    private MockResponse createPost(final RecordedRequest request,
+            final String authorId) throws IOException {
+
+        final JsonNode submission;
+        try {
+            submission = json.readTree(request.getBody().readUtf8());
+        } catch (final IOException malformed) {
+            return error(400, "The request body was not JSON.", 0);
+        }
+
+        final String title = submission.path("title").asText(null);
+        final String content = submission.path("content").asText(null);
+        if (null == title || null == content) {
+            return error(400, "A post needs a title and content.", 0);
+        }
+
+        final String id = randomId(6);
+        final ObjectNode post = json.createObjectNode()
+            .put("id", id)
+            .put("title", title)
+            .put("authorId", authorId);
+        final ArrayNode tags = post.putArray("tags");
+        for (final JsonNode tag : submission.path("tags")) {
+            tags.add(tag.asText());
+        }
+        post.put("url", String.format("https://medium.com/@%s/%s-%s",
+            user.get("username").asText(), slugOf(title), id));
+        if (submission.hasNonNull("canonicalUrl")) {
+            post.put("canonicalUrl", submission.get("canonicalUrl").asText());
+        }
+        post.put("publishStatus",
+            submission.path("publishStatus").asText("public"));
+        post.put("publishedAt", System.currentTimeMillis());
+        post.put("license",
+            submission.path("license").asText("all-rights-reserved"));
+        post.put("licenseUrl", LICENSE_URL);
+
+        posts.put(id, post);
+        return respond(201, envelope(post));
+    }
+
+    /**
+     * Stores an uploaded image.
+     *
+     * @param request the request, whose body is the image
+     *
+     * @return the response
+     */
+    private MockResponse uploadImage(final RecordedRequest request) {
+        final String md5 = md5Of(request.getBody().readByteArray());
+        final ObjectNode image = json.createObjectNode()
+            .put("url", "https://cdn-images-1.medium.com/" + md5 + ".png")
+            .put("md5", md5);
+
+        images.put(md5, image);
+        return respond(201, envelope(image));
+    }
+
+    /**
+     * Checks whether a user contributes to a publication.
+     *
+     * @param userId the id of the user
+     * @param publicationId the id of the publication
+     *
+     * @return true if the user contributes to the publication
+     */
+    private boolean isContributor(
+            final String userId, final String publicationId) {
+        final ArrayNode list = contributors.get(publicationId);
+        if (null == list) {
+            return false;
+        }
+        for (final JsonNode contributor : list) {
+            if (userId.equals(contributor.get("userId").asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Answers with a value in the envelope in which the API returns
+     * data.
+     *
+     * @param value the value
+     *
+     * @return a response with the value as its body
+     */
+    private MockResponse data(final JsonNode value) {
+        return respond(200, envelope(value));
+    }
+
+    /**
+     * Wraps a value in the envelope in which the API returns data.
+     *
+     * @param value the value
+     *
+     * @return the envelope
+     */
+    private ObjectNode envelope(final JsonNode value) {
+        final ObjectNode envelope = json.createObjectNode();
+        envelope.set("data", value);
+        return envelope;
+    }
+
+    /**
+     * Builds a JSON response.
+     *
+     * @param status the HTTP status
+     * @param body the body of the response
+     *
+     * @return the response
+     */
+    private static MockResponse respond(final int status, final JsonNode body) {
+        return new MockResponse()
+            .setResponseCode(status)
+            .setHeader("Content-Type", "application/json; charset=utf-8")
+            .setBody(body.toString());
+    }
+
+    /**
+     * Builds an error response, in the shape of the API's errors.
+     *
+     * @param status the HTTP status
+     * @param message the description of the error
+     * @param code the API's code for the error, or 0 for none
+     *
+     * @return the response
+     */
+    private MockResponse error(
+            final int status, final String message, final int code) {
+        final ObjectNode error = json.createObjectNode()
+            .put("message", message);
+        if (0 != code) {
+            error.put("code", code);
+        }
+        final ObjectNode body = json.createObjectNode();
+        body.putArray("errors").add(error);
+
+        return respond(status, body);
+    }
+
+    /**
+     * Builds the response to a method which the path does not support.
+     *
+     * @return the response
+     */
+    private MockResponse notAllowed() {
+        return error(405, "Method not allowed.", 0);
+    }
+
+    /**
+     * Reads the fields of a form encoded or JSON request.
+     *
+     * @param request the request
+     *
+     * @return the value of each field, by name
+     * @throws IOException
+     *         If the body cannot be read
+     */
+    private Map<String, String> fieldsOf(final RecordedRequest request)
+            throws IOException {
+        final String body = request.getBody().readUtf8();
+        final Map<String, String> fields = new HashMap<String, String>();
+
+        final String contentType = request.getHeader("Content-Type");
+        if (null != contentType && contentType.startsWith("application/json")) {
+            final Iterator<Map.Entry<String, JsonNode>> entries =
+                json.readTree(body).fields();
+            while (entries.hasNext()) {
+                final Map.Entry<String, JsonNode> entry = entries.next();
+                fields.put(entry.getKey(), entry.getValue().asText());
+            }
+            return fields;
+        }
+
+        for (final String pair : body.split("&")) {
+            final int equals = pair.indexOf('=');
+            if (0 < equals) {
+                fields.put(decode(pair.substring(0, equals)),
+                    decode(pair.substring(equals + 1)));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Gets a field by either of its names.
+     *
+     * @param fields the fields
+     * @param name the name of the field in JSON
+     * @param formName the name of the field in a form
+     *
+     * @return the value of the field, or null if it is missing
+     */
+    private static String field(final Map<String, String> fields,
+            final String name, final String formName) {
+        final String value = fields.get(name);
+        return null != value ? value : fields.get(formName);
+    }
+
+    /**
+     * Decodes a form encoded value.
+     *
+     * @param value the encoded value
+     *
+     * @return the value
+     */
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (final UnsupportedEncodingException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+    }
+
+    /**
+     * Gets the path of a request, without its query.
+     *
+     * @param request the request
+     *
+     * @return the path
+     */
+    private static String pathOf(final RecordedRequest request) {
+        final String path = request.getPath();
+        final int query = path.indexOf('?');
+        return query < 0 ? path : path.substring(0, query);
+    }
+
+    /**
+     * Turns a title into the form it takes in the URL of a post.
+     *
+     * @param title the title
+     *
+     * @return the slug
+     */
+    private static String slugOf(final String title) {
+        final String slug = title.toLowerCase(Locale.ROOT)
+            .replaceAll("[^a-z0-9]+", "-")
+            .replaceAll("^-|-$", "");
+        return slug.isEmpty() ? "untitled" : slug;
+    }
+
+    /**
+     * Hashes the content of an image, as the API identifies them.
+     *
+     * @param content the content of the image
+     *
+     * @return the hex MD5 of the content
+     */
+    private static String md5Of(final byte[] content) {
+        try {
+            return hex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (final NoSuchAlgorithmException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+    }
+
+    /**
+     * Makes a random id.
+     *
+     * @param bytes the number of random bytes in the id
+     *
+     * @return the id, in hex
+     */
+    private String randomId(final int bytes) {
+        final byte[] id = new byte[bytes];
+        random.nextBytes(id);
+        return hex(id);
+    }
+
+    /**
+     * Formats bytes in hex.
+     *
+     * @param bytes the bytes
+     *
+     * @return the bytes in hex
+     */
+    private static String hex(final byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (final byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Waits for the latency of each request, then answers it.
+     */
+    private final class SimulatingDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request)
+                throws InterruptedException {
+            requests.incrementAndGet();
+
+            // Each connection has its own thread, so this holds up only
+            // the request being answered
+            TimeUnit.NANOSECONDS.sleep(latency.sampleNanos(random));
+
+            try {
+                return answer(request);
+            } catch (final IOException exception) {
+                return error(400, exception.getMessage(), 0);
+            }
+        }
+    }
+
+    /**
+     * The state of an access token: whose it is, when it expires, and
+     * how much of its rate limit is left, as a token bucket.
+     */
+    private final class Session {
+
+        private final String userId;
+        private final long expiresAt;
+
+        private double permits;
+        private long refilledAt;
+
+        Session(final String userId, final long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.permits = rateLimit;
+            this.refilledAt = System.nanoTime();
+        }
+
+        /**
+         * Takes a permit to make a request, if there is one.
+         *
+         * @return zero if a permit was taken, or else how long until
+         *         there will be one, in nanoseconds
+         */
+        synchronized long acquire() {
+            if (0 == rateLimit) {
+                return 0;
+            }
+
+            final long now = System.nanoTime();
+            final double perNano = rateLimit / (double) ratePeriodNanos;
+            permits = Math.min(rateLimit, permits + (now - refilledAt) * perNano);
+            refilledAt = now;
+
+            if (permits >= 1) {
+                permits -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - permits) / perNano);
+        }
+    }
+
+    /**
+     * Fascilitates the construction of a MediumSimulator.
+     */
+    public static class Builder {
+
+        private LatencyDistribution latency = LatencyDistribution.none();
+        private long tokenLifetimeMillis = TimeUnit.HOURS.toMillis(1);
+        private int rateLimit;
+        private long ratePeriodNanos = TimeUnit.SECONDS.toNanos(1);
+        private double errorRate;
+        private int errorStatus = 503;
+        private long seed = System.nanoTime();
+
+        /**
+         * Sets how long the simulator takes to answer each request.
+         * Requests are answered right away by default.
+         *
+         * @param latency the distribution of latencies
+         *
+         * @return the builder
+         */
+        public Builder withLatency(final LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Sets how long access tokens last once issued. They last an
+         * hour by default.
+         *
+         * @param lifetime the lifetime of a token
+         * @param unit the unit of the lifetime
+         *
+         * @return the builder
+         */
+        public Builder withTokenLifetime(
+                final long lifetime, final TimeUnit unit) {
+            this.tokenLifetimeMillis = unit.toMillis(lifetime);
+            return this;
+        }
+
+        /**
+         * Limits the rate at which each access token may make requests.
+         * Up to the given number of requests may be made at once, after
+         * which they are allowed at an even rate. There is no limit by
+         * default.
+         *
+         * @param requests the number of requests allowed per period, or
+         *                 zero for no limit
+         * @param period the period
+         * @param unit the unit of the period
+         *
+         * @return the builder
+         */
+        public Builder withRateLimit(
+                final int requests, final long period, final TimeUnit unit) {
+            this.rateLimit = requests;
+            this.ratePeriodNanos = unit.toNanos(period);
+            return this;
+        }
+
+        /**
+         * Fails a share of requests on purpose, of any kind. No
+         * requests are failed by default.
+         *
+         * @param rate the share of requests to fail, from 0 to 1
+         * @param status the HTTP status with which to fail them
+         *
+         * @return the builder
+         */
+        public Builder withErrorRate(final double rate, final int status) {
+            this.errorRate = rate;
+            this.errorStatus = status;
+            return this;
+        }
+
+        /**
+         * Seeds the randomness of the simulation, so that latencies,
+         * errors and ids can be repeated.
+         *
+         * @param seed the seed
+         *
+         * @return the builder
+         */
+        public Builder withSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Starts a simulator on a local port.
+         *
+         * @return the simulator
+         * @throws IOException
+         *         If the server cannot be started
+         */
+        public MediumSimulator build() throws IOException {
+            return new MediumSimulator(this);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-process stand-in for the Medium API, which answers every
+ * request with a canned payload so that benchmarks measure the client
+ * rather than the network.
+ */
+public final class MockMedium {
+
+    /**
+     * The path under which the API is served, like the real one.
+     */
+    private static final String API_PATH = "/v1";
+
+    /**
+     * The mock server's logger, kept so that it stays quiet: by default
+     * it logs every request it answers.
+     */
+    private static final Logger SERVER_LOGGER =
+        Logger.getLogger(MockWebServer.class.getName());
+
+    static {
+        SERVER_LOGGER.setLevel(Level.WARNING);
+    }
+
+    /**
+     * The mock server answering requests.
+     */
+    private final MockWebServer server;
+
+    /**
+     * Starts a new mock Medium API on a local port.
+     *
+     * @throws IOException
+     *         If the server cannot be started
+     */
+    public MockMedium() throws IOException {
+        this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts a new mock Medium API on a local port, which takes a while
+     * to answer every request, like a real server would.
+     *
+     * @param latency how long to wait before answering each request
+     * @param unit the unit of the latency
+     *
+     * @throws IOException
+     *         If the server cannot be started
+     */
+    public MockMedium(final long latency, final TimeUnit unit)
+            throws IOException {
+        this.server = new MockWebServer();
+        this.server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        this.server.setDispatcher(
+            new CannedDispatcher(unit.toNanos(latency)));
+        this.server.start();
+    }
+
+    /**
+     * Gets the base URL of the mock API, for use as a client endpoint.
+     *
+     * @return the base URL of the mock API
+     */
+    public String getEndpoint() {
+        return server.url(API_PATH).toString();
+    }
+
+    /**
+     * Stops the mock API.
+     *
+     * @throws IOException
+     *         If the server cannot be stopped
+     */
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Reads a payload from the classpath.
+     *
+     * @param resourceId the name of the resource
+     *
+     * @return the contents of the resource
+     */
+    public static String payload(final String resourceId) {
+        final InputStream inputStream = MockMedium.class.getClassLoader()
+            .getResourceAsStream(resourceId);
+
+        final Scanner scanner =
+            new Scanner(inputStream, "UTF-8").useDelimiter("\\A");
+
+        return scanner.hasNext() ? scanner.next() : "";
+    }
+
+    /**
+     * Routes requests to canned payloads by the shape of their path.
+     */
+    private static final class CannedDispatcher extends Dispatcher {
+
+        private final String user = payload("user.json");
+        private final String publications = payload("publication-list.json");
+        private final String contributors = payload("contributor-list.json");
+        private final String post = payload("post.json");
+        private final String token = payload("access-token.json");
+
+        private final long latencyNanos;
+
+        CannedDispatcher(final long latencyNanos) {
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public MockResponse dispatch(final RecordedRequest request)
+                throws InterruptedException {
+            final String path = request.getPath();
+
+            // Each connection has its own thread, so this holds up only
+            // the request being answered
+            TimeUnit.NANOSECONDS.sleep(latencyNanos);
+
+            if ("HEAD".equals(request.getMethod())) {
+                return new MockResponse();
+            } else if (path.endsWith("/me")) {
+                return new MockResponse().setBody(user);
+            } else if (path.endsWith("/publications")) {
+                return new MockResponse().setBody(publications);
+            } else if (path.endsWith("/contributors")) {
+                return new MockResponse().setBody(contributors);
+            } else if (path.endsWith("/posts")) {
+                return new MockResponse().setBody(post);
+            } else if (path.endsWith("/tokens")) {
+                return new MockResponse().setBody(token);
+            }
+
+            return new MockResponse().setResponseCode(404);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sun.misc.Unsafe;
+
+/**
+ * Sizes the objects reachable from a set of roots, in the way JOL's
+ * GraphLayout does: each object's shallow size is worked out from the
+ * field offsets the running VM chose, and objects reached more than
+ * once are counted once. Enum constants and classes are shared by every
+ * model, so they are not counted.
+ */
+final class ObjectGraph {
+
+    private static final Unsafe UNSAFE = unsafe();
+
+    /**
+     * The size of an object header, found from where arrays keep their
+     * elements, after the header and a four byte length.
+     */
+    private static final long HEADER =
+        UNSAFE.arrayBaseOffset(Object[].class) - 4;
+
+    private static final long ALIGNMENT = 8;
+
+    private final Map<Class<?>, long[]> histogram =
+        new HashMap<Class<?>, long[]>();
+
+    private final Map<Class<?>, Layout> layouts =
+        new HashMap<Class<?>, Layout>();
+
+    private long objects;
+    private long bytes;
+
+    /**
+     * Walks the graph of objects reachable from the roots.
+     *
+     * @param roots the objects from which to start
+     */
+    ObjectGraph(final Object... roots) {
+        final Map<Object, Boolean> seen =
+            new IdentityHashMap<Object, Boolean>();
+        final Deque<Object> pending = new ArrayDeque<Object>();
+
+        for (final Object root : roots) {
+            pending.push(root);
+        }
+
+        while (!pending.isEmpty()) {
+            final Object object = pending.pop();
+            if (object instanceof Enum || object instanceof Class
+                    || seen.put(object, Boolean.TRUE) != null) {
+                continue;
+            }
+
+            final long size = visit(object, pending);
+
+            long[] entry = histogram.get(object.getClass());
+            if (entry == null) {
+                entry = new long[2];
+                histogram.put(object.getClass(), entry);
+            }
+            entry[0]++;
+            entry[1] += size;
+
+            objects++;
+            bytes += size;
+        }
+    }
+
+    /**
+     * Gets the number of objects in the graph.
+     *
+     * @return the number of objects
+     */
+    long getObjects() {
+        return objects;
+    }
+
+    /**
+     * Gets the total shallow size of the objects in the graph.
+     *
+     * @return the size, in bytes
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number and total size of the objects of each class in
+     * the graph.
+     *
+     * @return pairs of count and bytes, by class
+     */
+    Map<Class<?>, long[]> getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Queues the objects an object refers to, and sizes it.
+     *
+     * @param object the object
+     * @param pending where to queue the objects it refers to
+     *
+     * @return its shallow size, in bytes
+     */
+    private long visit(final Object object, final Deque<Object> pending) {
+        final Class<?> type = object.getClass();
+
+        if (type.isArray()) {
+            final int length = java.lang.reflect.Array.getLength(object);
+            if (!type.getComponentType().isPrimitive()) {
+                for (final Object element : (Object[]) object) {
+                    if (element != null) {
+                        pending.push(element);
+                    }
+                }
+            }
+            return align(UNSAFE.arrayBaseOffset(type)
+                + (long) length * UNSAFE.arrayIndexScale(type));
+        }
+
+        Layout layout = layouts.get(type);
+        if (layout == null) {
+            layout = new Layout(type);
+            layouts.put(type, layout);
+        }
+
+        for (final long offset : layout.references) {
+            final Object value = UNSAFE.getObject(object, offset);
+            if (value != null) {
+                pending.push(value);
+            }
+        }
+        return layout.size;
+    }
+
+    /**
+     * Rounds a size up to the VM's object alignment.
+     *
+     * @param size the size
+     *
+     * @return the aligned size
+     */
+    private static long align(final long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Gets hold of the VM's Unsafe, which knows where fields are.
+     *
+     * @return the Unsafe
+     */
+    private static Unsafe unsafe() {
+        try {
+            final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (final NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The shallow size of a class's instances, and where they keep
+     * their references.
+     */
+    private static final class Layout {
+
+        private final long size;
+        private final long[] references;
+
+        /**
+         * Works out the layout of a class.
+         *
+         * @param type the class
+         */
+        Layout(final Class<?> type) {
+            final List<Long> offsets = new ArrayList<Long>();
+            long end = HEADER;
+
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+
+                    final long offset = UNSAFE.objectFieldOffset(field);
+                    end = Math.max(end, offset + sizeOf(field.getType()));
+                    if (!field.getType().isPrimitive()) {
+                        offsets.add(offset);
+                    }
+                }
+            }
+
+            this.size = align(end);
+            this.references = new long[offsets.size()];
+            for (int i = 0; i < references.length; i++) {
+                references[i] = offsets.get(i);
+            }
+        }
+
+        /**
+         * Gets the size of a field of the given type.
+         *
+         * @param type the type of the field
+         *
+         * @return its size, in bytes
+         */
+        private static long sizeOf(final Class<?> type) {
+            if (type == long.class || type == double.class) {
+                return 8;
+            } else if (type == int.class || type == float.class) {
+                return 4;
+            } else if (type == short.class || type == char.class) {
+                return 2;
+            } else if (type == byte.class || type == boolean.class) {
+                return 1;
+            }
+            return UNSAFE.arrayIndexScale(Object[].class);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives an operation at a constant rate of arrivals, from a fixed
+ * number of threads, and records how long each took.
+ *
+ * The load is open: each call is scheduled for a time fixed before the
+ * run begins, and its latency is measured from that time rather than
+ * from when a thread got round to making it. A thread held up by a slow
+ * call makes its next calls late, and their latency includes the wait,
+ * as it would for users who kept arriving while the client was stuck.
+ * Measuring from when calls are actually made would instead leave out
+ * the calls which could not be made, and report latencies which are
+ * too good exactly when the client is struggling.
+ */
+public final class OpenLoopLoad {
+
+    /**
+     * The operation to call.
+     */
+    private final Callable<?> operation;
+
+    /**
+     * The number of threads making calls.
+     */
+    private final int threads;
+
+    /**
+     * The number of calls to start each second, across all threads.
+     */
+    private final double rate;
+
+    /**
+     * Prepares a load, which does nothing until it is run.
+     *
+     * @param operation the operation to call
+     * @param threads the number of threads making calls
+     * @param rate the number of calls to start each second, across all
+     *             threads
+     */
+    public OpenLoopLoad(
+            final Callable<?> operation, final int threads, final double rate) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+
+        this.operation = operation;
+        this.threads = threads;
+        this.rate = rate;
+    }
+
+    /**
+     * Applies the load for a while, waiting for the calls which are
+     * still running at the end of it.
+     *
+     * @param duration how long to start calls for
+     * @param unit the unit of the duration
+     *
+     * @return the latencies and counts of the calls made
+     * @throws InterruptedException
+     *         If interrupted while waiting for the calls to finish
+     */
+    public LoadResult run(final long duration, final TimeUnit unit)
+            throws InterruptedException {
+
+        final long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        final long durationNanos = unit.toNanos(duration);
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+
+        // Give the threads a moment to start before the first arrival
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        final long end = start + durationNanos;
+
+        final List<Thread> workers = new ArrayList<Thread>(threads);
+        for (int i = 0; i < threads; i++) {
+            final Thread worker = new Thread(new Worker(
+                start + i * intervalNanos, end, intervalNanos * threads,
+                latencies, errors), "load-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+
+        return new LoadResult(threads, rate, latencies.snapshot(),
+            errors.get(), elapsedNanos);
+    }
+
+    /**
+     * Makes the calls scheduled for one thread: every thread has its own
+     * share of the arrivals, evenly spaced and interleaved with the
+     * shares of the others.
+     */
+    private final class Worker implements Runnable {
+
+        private final long first;
+        private final long end;
+        private final long intervalNanos;
+        private final LatencyHistogram latencies;
+        private final AtomicLong errors;
+
+        Worker(final long first, final long end, final long intervalNanos,
+                final LatencyHistogram latencies, final AtomicLong errors) {
+            this.first = first;
+            this.end = end;
+            this.intervalNanos = intervalNanos;
+            this.latencies = latencies;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            for (long intended = first; intended < end;
+                    intended += intervalNanos) {
+
+                long wait = intended - System.nanoTime();
+                while (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    wait = intended - System.nanoTime();
+                }
+
+                try {
+                    operation.call();
+                } catch (final Exception exception) {
+                    errors.incrementAndGet();
+                }
+
+                latencies.recordNanos(System.nanoTime() - intended);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.MediumClient;
+import com.medium.api.dependencies.http.OkayHttpClient;
+import com.medium.api.dependencies.http.RecordingHttpClient;
+import com.medium.api.dependencies.http.ReplayingHttpClient;
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.Submission;
+import com.medium.api.model.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures whole API calls made through a {@link MediumClient}, with
+ * everything but the network: the responses are replayed from a
+ * cassette recorded against the {@link MediumSimulator} during setup.
+ * Unlike {@link ClientBenchmark}, no server shares the machine, so the
+ * numbers are the client's own and vary much less from run to run.
+ *
+ * Run with {@code -prof gc} to see the allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public class ReplayBenchmark {
+
+    private File cassette;
+    private MediumClient client;
+    private Submission submission;
+    private String userId;
+
+    /**
+     * Records one of each call against the simulator, then builds a
+     * client which replays them.
+     *
+     * @throws IOException
+     *         If the simulator cannot be started, or the cassette cannot
+     *         be written
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        submission = new Submission.Builder()
+            .withTitle("Hard things in software development")
+            .withContent("<p>Cache invalidation</p><p>Naming things</p>")
+            .build();
+
+        cassette = File.createTempFile("medium", ".cassette");
+        final MediumSimulator api = new MediumSimulator.Builder()
+            .withSeed(1)
+            .build();
+        try {
+            final RecordingHttpClient recorder = new RecordingHttpClient(
+                new OkayHttpClient(api.createAccessToken()), cassette);
+            try {
+                final MediumClient recording = new MediumClient.Builder()
+                    .withEndpoint(api.getEndpoint())
+                    .withHttpClient(recorder)
+                    .build();
+
+                userId = recording.getUser().getId();
+                recording.listContributors("b45573563f5a");
+                recording.createPost(submission, userId);
+            } finally {
+                recorder.close();
+            }
+        } finally {
+            api.shutdown();
+        }
+
+        client = new MediumClient.Builder()
+            .withEndpoint(api.getEndpoint())
+            .withHttpClient(new ReplayingHttpClient(cassette, false))
+            .build();
+    }
+
+    /**
+     * Deletes the cassette.
+     */
+    @TearDown(Level.Trial)
+    public void teardown() {
+        if (!cassette.delete()) {
+            cassette.deleteOnExit();
+        }
+    }
+
+    /**
+     * Gets the authenticated user.
+     *
+     * @return the user, so that the call is not optimized away
+     */
+    @Benchmark
+    public User getUser() {
+        return client.getUser();
+    }
+
+    /**
+     * Lists the contributors to a publication.
+     *
+     * @return the contributors, so that the call is not optimized away
+     */
+    @Benchmark
+    public List<Contributor> listContributors() {
+        return client.listContributors("b45573563f5a");
+    }
+
+    /**
+     * Creates a post.
+     *
+     * @return the post, so that the call is not optimized away
+     */
+    @Benchmark
+    public Post createPost() {
+        return client.createPost(submission, userId);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.OkayHttpClient;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what {@link OkayHttpClient} does around each request: building
+ * it with its headers, handing it to OkHttp and reading the body of the
+ * response. OkHttp answers from an interceptor before it ever opens a
+ * connection, so there is no I/O to measure.
+ *
+ * Run with {@code -prof gc} to see the allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class RequestBenchmark {
+
+    private static final String URL = "http://localhost/v1/me";
+
+    private HttpClient client;
+    private String submission;
+
+    /**
+     * Builds a client whose requests never leave the process.
+     */
+    @Setup
+    public void setup() {
+        final String user = MockMedium.payload("user.json");
+        submission = MockMedium.payload("submission.json");
+
+        final OkHttpClient okHttpClient = new OkHttpClient.Builder()
+            .addInterceptor(new CannedInterceptor(user))
+            .build();
+
+        client = new OkayHttpClient(okHttpClient, "benchmark");
+    }
+
+    /**
+     * Makes a GET request.
+     *
+     * @return the response, so that the call is not optimized away
+     */
+    @Benchmark
+    public String get() {
+        return client.get(URL);
+    }
+
+    /**
+     * Makes a POST request with a JSON body.
+     *
+     * @return the response, so that the call is not optimized away
+     */
+    @Benchmark
+    public String post() {
+        return client.post(URL, submission);
+    }
+
+    /**
+     * Answers every request with the same payload, without proceeding
+     * to the network.
+     */
+    private static final class CannedInterceptor implements Interceptor {
+
+        private static final MediaType JSON =
+            MediaType.parse("application/json");
+
+        private final String body;
+
+        CannedInterceptor(final String body) {
+            this.body = body;
+        }
+
+        @Override
+        public Response intercept(final Chain chain) throws IOException {
+            return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(JSON, body))
+                .build();
+        }
+    }
+}
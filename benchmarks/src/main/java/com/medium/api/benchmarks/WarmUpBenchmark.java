@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import com.medium.api.MediumClient;
+import com.medium.api.model.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to the first response of a freshly started
+ * {@link MediumClient}, with and without {@link MediumClient#warmUp()}.
+ *
+ * Every measurement happens in a brand new JVM, since class loading and
+ * serializer construction are a large part of what is being measured.
+ * The mock server speaks plain HTTP, so TLS setup is not included.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(20)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@State(Scope.Thread)
+public class WarmUpBenchmark {
+
+    @Param({"cold", "warm"})
+    private String start;
+
+    private MockMedium api;
+    private MediumClient client;
+
+    /**
+     * Starts the mock API and a new client, warming up the client if
+     * required.
+     *
+     * @throws IOException
+     *         If the mock API cannot be started
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        api = new MockMedium();
+        client = new MediumClient.Builder()
+            .withEndpoint(api.getEndpoint())
+            .withAccessToken("benchmark")
+            .build();
+
+        if ("warm".equals(start)) {
+            client.warmUp();
+        }
+    }
+
+    /**
+     * Stops the mock API.
+     *
+     * @throws IOException
+     *         If the mock API cannot be stopped
+     */
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        api.shutdown();
+    }
+
+    /**
+     * Makes the first call of the client's life.
+     *
+     * @return the user, so that the call is not optimized away
+     */
+    @Benchmark
+    public User firstGetUser() {
+        return client.getUser();
+    }
+}
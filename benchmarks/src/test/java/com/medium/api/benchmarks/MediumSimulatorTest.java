@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.medium.api.MediumClient;
+import com.medium.api.auth.AccessToken;
+import com.medium.api.auth.Credentials;
+import com.medium.api.chaos.LatencyDistribution;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.model.Post;
+import com.medium.api.model.Submission;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the MediumSimulator through a real client.
+ */
+public class MediumSimulatorTest {
+
+    private static final String DEVELOPERS = "b45573563f5a";
+    private static final String ABOUT_MEDIUM = "b969ac62a46b";
+
+    private MediumSimulator simulator;
+
+    @After
+    public void teardown() throws IOException {
+        if (null != simulator) {
+            simulator.shutdown();
+        }
+    }
+
+    @Test
+    public void testCalls_KeepState() throws IOException {
+
+        // Arrange
+        simulator = new MediumSimulator.Builder().withSeed(1).build();
+        final MediumClient client = client(simulator.createAccessToken());
+        final Submission submission = new Submission.Builder()
+            .withTitle("Hard Things!")
+            .withContent("<p>Naming things</p>")
+            .build();
+
+        // Act
+        final String userId = client.getUser().getId();
+        final Post post = client.createPost(submission, userId);
+        client.createPostForPublication(submission, DEVELOPERS);
+
+        // Assert
+        assertEquals(simulator.getUserId(), userId);
+        assertEquals(userId, post.getAuthorId());
+        assertTrue(post.getUrl().endsWith("/hard-things-" + post.getId()));
+        assertEquals(2, client.listPublications(userId).size());
+        assertEquals(6, client.listContributors(DEVELOPERS).size());
+        assertEquals(2, simulator.getPostCount());
+        assertStatus(403, client, "createPostForPublication", ABOUT_MEDIUM);
+    }
+
+    @Test
+    public void testTokens_ExpireAndRefresh() throws Exception {
+
+        // Arrange
+        simulator = new MediumSimulator.Builder()
+            .withTokenLifetime(200, TimeUnit.MILLISECONDS)
+            .build();
+        final MediumClient client = new MediumClient.Builder()
+            .withEndpoint(simulator.getEndpoint())
+            .withCredentials(new Credentials("id", "secret"))
+            .build();
+
+        // Act
+        final AccessToken token = client.exchangeAuthorizationCode(
+            simulator.createAuthorizationCode(), "https://example.com");
+        final MediumClient authorized = client(token.getAccessToken());
+        authorized.getUser();
+        Thread.sleep(250);
+
+        // Assert
+        assertStatus(401, authorized, "getUser", null);
+        final AccessToken refreshed =
+            client.exchangeRefreshToken(token.getRefreshToken());
+        assertNotEquals(token.getAccessToken(), refreshed.getAccessToken());
+        assertEquals(token.getRefreshToken(), refreshed.getRefreshToken());
+        client(refreshed.getAccessToken()).getUser();
+    }
+
+    @Test
+    public void testRateLimit_RetryAfter() throws IOException {
+
+        // Arrange
+        simulator = new MediumSimulator.Builder()
+            .withRateLimit(2, 1, TimeUnit.MINUTES)
+            .build();
+        final String token = simulator.createAccessToken();
+        final OkHttpClient http = new OkHttpClient();
+        final Request request = new Request.Builder()
+            .url(simulator.getEndpoint() + "/me")
+            .header("Authorization", "Bearer " + token)
+            .build();
+
+        // Act
+        final int first = http.newCall(request).execute().code();
+        final int second = http.newCall(request).execute().code();
+        final Response third = http.newCall(request).execute();
+
+        // Assert
+        assertEquals(200, first);
+        assertEquals(200, second);
+        assertEquals(429, third.code());
+        assertEquals("30", third.header("Retry-After"));
+        assertEquals(1, simulator.getRateLimitedCount());
+    }
+
+    @Test
+    public void testErrorRate_FailsRequests() throws IOException {
+
+        // Arrange
+        simulator = new MediumSimulator.Builder()
+            .withErrorRate(1, 503)
+            .withLatency(LatencyDistribution.fixed(5, TimeUnit.MILLISECONDS))
+            .build();
+        final MediumClient client = client(simulator.createAccessToken());
+
+        // Act
+        final long start = System.nanoTime();
+        assertStatus(503, client, "getUser", null);
+        final long elapsed = System.nanoTime() - start;
+
+        // Assert
+        assertEquals(1, simulator.getInjectedErrorCount());
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(5));
+    }
+
+    private MediumClient client(final String accessToken) {
+        return new MediumClient.Builder()
+            .withEndpoint(simulator.getEndpoint())
+            .withAccessToken(accessToken)
+            .build();
+    }
+
+    private static void assertStatus(final int status,
+            final MediumClient client, final String call,
+            final String publicationId) {
+        try {
+            if ("getUser".equals(call)) {
+                client.getUser();
+            } else {
+                client.createPostForPublication(new Submission.Builder()
+                    .withTitle("Title")
+                    .withContent("Content")
+                    .build(), publicationId);
+            }
+            fail("Expected " + status);
+        } catch (final HttpException exception) {
+            assertEquals(status, exception.getCode());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An ApiCallEvent covers one call the client makes to the Medium API,
+ * from the point of view of the caller: including any time spent
+ * waiting on limiters, and any hedged requests.
+ */
+@Name("com.medium.api.ApiCall")
+@Label("Medium API Call")
+@Category({"Medium", "API"})
+@Description("A call to the Medium API")
+@StackTrace(false)
+public class ApiCallEvent extends Event {
+
+    @Label("Operation")
+    @Description("The operation making the call, such as createPost")
+    String operation;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    @Description("The path of the endpoint called")
+    String path;
+
+    @Label("Status")
+    @Description("The status of the response, or -1 if none arrived")
+    int status;
+
+    @Label("Bytes Sent")
+    @DataAmount
+    long bytesSent;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytesReceived;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A DeserializationEvent covers the conversion of one response from
+ * JSON into models.
+ */
+@Name("com.medium.api.Deserialization")
+@Label("Medium Deserialization")
+@Category({"Medium", "JSON"})
+@Description("The conversion of a response from JSON into models")
+@StackTrace(false)
+public class DeserializationEvent extends Event {
+
+    @Label("Type")
+    @Description("The type of model read")
+    Class<?> type;
+
+    @Label("Length")
+    @Description("The number of characters of JSON read")
+    long length;
+
+    @Label("Models")
+    @Description("The number of models read")
+    int models;
+}
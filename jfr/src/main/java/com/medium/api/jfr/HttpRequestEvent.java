@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * An HttpRequestEvent breaks down one HTTP request by network phase.
+ * A hedged API call makes more than one. It is recorded as the request
+ * ends, with the duration of each phase as a field.
+ */
+@Name("com.medium.api.HttpRequest")
+@Label("Medium HTTP Request")
+@Category({"Medium", "HTTP"})
+@Description("The network phases of one HTTP request to the Medium API")
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Status")
+    @Description("The status of the response, or -1 if none arrived")
+    int status;
+
+    @Label("Connection Reused")
+    @Description("Whether the request got a connection from the pool")
+    boolean connectionReused;
+
+    @Label("Total")
+    @Timespan(Timespan.NANOSECONDS)
+    long total;
+
+    @Label("DNS")
+    @Timespan(Timespan.NANOSECONDS)
+    long dns;
+
+    @Label("Connect")
+    @Timespan(Timespan.NANOSECONDS)
+    long connect;
+
+    @Label("TLS")
+    @Timespan(Timespan.NANOSECONDS)
+    long tls;
+
+    @Label("Upload")
+    @Timespan(Timespan.NANOSECONDS)
+    long upload;
+
+    @Label("Server")
+    @Description("Waiting on the server for the headers of the response")
+    @Timespan(Timespan.NANOSECONDS)
+    long server;
+
+    @Label("Download")
+    @Timespan(Timespan.NANOSECONDS)
+    long download;
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import com.medium.api.Operation;
+
+import com.medium.api.dependencies.http.CallPhase;
+import com.medium.api.dependencies.http.CallTimings;
+import com.medium.api.dependencies.http.CallTimingsListener;
+import com.medium.api.dependencies.http.Exchange;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.Interceptor;
+
+import com.medium.api.util.StringUtils;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JfrInterceptor records Java Flight Recorder events for the calls a
+ * client makes: an {@link ApiCallEvent} for each call, and a
+ * {@link TokenRefreshEvent} for each token refresh. Given to an
+ * {@link com.medium.api.dependencies.http.OkayHttpClient} as its
+ * {@link CallTimingsListener}, it also records an
+ * {@link HttpRequestEvent} for each HTTP request.
+ *
+ * When no recording is running, or the events are disabled, it does no
+ * more than check so once per call.
+ */
+public final class JfrInterceptor implements Interceptor, CallTimingsListener {
+
+    /**
+     * The name of the operation which refreshes tokens.
+     */
+    private static final String REFRESH_OPERATION =
+        Operation.EXCHANGE_REFRESH_TOKEN.getOperationName();
+
+    private static final EventType API_CALL =
+        EventType.getEventType(ApiCallEvent.class);
+
+    private static final EventType TOKEN_REFRESH =
+        EventType.getEventType(TokenRefreshEvent.class);
+
+    private static final EventType HTTP_REQUEST =
+        EventType.getEventType(HttpRequestEvent.class);
+
+    @Override
+    public void onRequest(final Exchange exchange) {
+        if (API_CALL.isEnabled()) {
+            exchange.setAttribute(API_CALL, begin(new ApiCallEvent()));
+        }
+        if (TOKEN_REFRESH.isEnabled()
+                && REFRESH_OPERATION.equals(exchange.getOperation())) {
+            exchange.setAttribute(TOKEN_REFRESH, begin(new TokenRefreshEvent()));
+        }
+    }
+
+    @Override
+    public void onResponse(final Exchange exchange) {
+        end(exchange, true);
+    }
+
+    @Override
+    public void onException(
+            final Exchange exchange, final HttpException exception) {
+        end(exchange, false);
+    }
+
+    @Override
+    public void onCallTimings(final CallTimings timings) {
+        if (!HTTP_REQUEST.isEnabled()) {
+            return;
+        }
+        final HttpRequestEvent event = new HttpRequestEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.operation = timings.getOperation();
+        event.method = timings.getMethod();
+        event.path = pathOf(timings.getUrl());
+        event.status = timings.getStatus();
+        event.connectionReused = timings.isConnectionReused();
+        event.total = timings.getTotal(TimeUnit.NANOSECONDS);
+        event.dns = timings.getDuration(CallPhase.DNS, TimeUnit.NANOSECONDS);
+        event.connect =
+            timings.getDuration(CallPhase.CONNECT, TimeUnit.NANOSECONDS);
+        event.tls = timings.getDuration(CallPhase.TLS, TimeUnit.NANOSECONDS);
+        event.upload =
+            timings.getDuration(CallPhase.UPLOAD, TimeUnit.NANOSECONDS);
+        event.server =
+            timings.getDuration(CallPhase.SERVER, TimeUnit.NANOSECONDS);
+        event.download =
+            timings.getDuration(CallPhase.DOWNLOAD, TimeUnit.NANOSECONDS);
+        event.commit();
+    }
+
+    /**
+     * Starts timing an event.
+     *
+     * @param event the event
+     *
+     * @return the event
+     */
+    private static Event begin(final Event event) {
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the events of the call, and commits them. The events travel
+     * with the call itself, so a call which never ends leaves nothing
+     * behind.
+     *
+     * @param exchange the call
+     * @param succeeded whether the call succeeded
+     */
+    private static void end(final Exchange exchange, final boolean succeeded) {
+        final TokenRefreshEvent refresh =
+            (TokenRefreshEvent) exchange.getAttribute(TOKEN_REFRESH);
+        if (null != refresh) {
+            refresh.end();
+            if (refresh.shouldCommit()) {
+                refresh.succeeded = succeeded;
+                refresh.status = exchange.getStatus();
+                refresh.commit();
+            }
+        }
+
+        final Event call = (Event) exchange.getAttribute(API_CALL);
+        if (null == call) {
+            return;
+        }
+        call.end();
+        if (call.shouldCommit()) {
+            final ApiCallEvent event = (ApiCallEvent) call;
+            event.operation = exchange.getOperation();
+            event.method = exchange.getMethod();
+            event.path = pathOf(exchange.getUrl());
+            event.status = exchange.getStatus();
+            event.bytesSent = StringUtils.utf8Length(exchange.getRequestBody());
+            event.bytesReceived =
+                StringUtils.utf8Length(exchange.getResponseBody());
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the path of a URL, leaving out the host and any query.
+     *
+     * @param url the URL
+     *
+     * @return the path, or the whole URL if it cannot be parsed
+     */
+    private static String pathOf(final String url) {
+        try {
+            return URI.create(url).getPath();
+        } catch (final IllegalArgumentException illegalArgumentException) {
+            return url;
+        }
+    }
+}
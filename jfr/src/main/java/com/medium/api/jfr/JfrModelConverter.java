@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import com.medium.api.dependencies.json.JsonModelConverter;
+
+import jdk.jfr.EventType;
+
+import java.util.List;
+
+/**
+ * A JfrModelConverter records a {@link DeserializationEvent} for each
+ * response another converter reads.
+ */
+public final class JfrModelConverter implements JsonModelConverter {
+
+    private static final EventType DESERIALIZATION =
+        EventType.getEventType(DeserializationEvent.class);
+
+    /**
+     * The converter doing the work.
+     */
+    private final JsonModelConverter delegate;
+
+    /**
+     * Constructs a new JfrModelConverter.
+     *
+     * @param delegate the converter to record
+     */
+    public JfrModelConverter(final JsonModelConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String asJson(final Object object) {
+        return delegate.asJson(object);
+    }
+
+    @Override
+    public <T> T asSingle(final Class<T> asType, final String json) {
+        if (!DESERIALIZATION.isEnabled()) {
+            return delegate.asSingle(asType, json);
+        }
+        final DeserializationEvent event = new DeserializationEvent();
+        event.begin();
+        final T model = delegate.asSingle(asType, json);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = asType;
+            event.length = json.length();
+            event.models = 1;
+            event.commit();
+        }
+        return model;
+    }
+
+    @Override
+    public <T> List<T> asListOf(final Class<T> asType, final String json) {
+        if (!DESERIALIZATION.isEnabled()) {
+            return delegate.asListOf(asType, json);
+        }
+        final DeserializationEvent event = new DeserializationEvent();
+        event.begin();
+        final List<T> models = delegate.asListOf(asType, json);
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = asType;
+            event.length = json.length();
+            event.models = models.size();
+            event.commit();
+        }
+        return models;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A TokenRefreshEvent covers one exchange of a refresh token for a new
+ * access token.
+ */
+@Name("com.medium.api.TokenRefresh")
+@Label("Medium Token Refresh")
+@Category({"Medium", "Auth"})
+@Description("An exchange of a refresh token for a new access token")
+@StackTrace(false)
+public class TokenRefreshEvent extends Event {
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    @Label("Status")
+    @Description("The status of the response, or -1 if none arrived")
+    int status;
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.InterceptingHttpClient;
+import com.medium.api.dependencies.http.Interceptor;
+import com.medium.api.dependencies.json.JacksonModelConverter;
+
+import com.medium.api.model.Contributor;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Tests the JfrInterceptor and JfrModelConverter against a real flight
+ * recording.
+ */
+public class JfrInterceptorTest {
+
+    private static final String TEST_URL =
+        "https://api.medium.com/v1/tokens?x=1";
+
+    private Recording recording;
+
+    @Before
+    public void setup() {
+        recording = new Recording();
+        recording.enable(ApiCallEvent.class).withoutThreshold();
+        recording.enable(TokenRefreshEvent.class).withoutThreshold();
+        recording.enable(DeserializationEvent.class).withoutThreshold();
+        recording.start();
+    }
+
+    @After
+    public void teardown() {
+        recording.close();
+    }
+
+    @Test
+    public void testInterceptor_RecordsCallsAndRefreshes() throws Exception {
+
+        // Arrange
+        final HttpClient http = InterceptingHttpClient.wrap(new HttpClient() {
+            private int calls;
+
+            @Override
+            public String post(final String url, final String json) {
+                if (++calls > 1) {
+                    throw new HttpException(401, "Unauthorized");
+                }
+                CallContext.recordStatus(200);
+                return "{\"access_token\":\"é\"}";
+            }
+
+            @Override
+            public String get(final String url) {
+                return "[]";
+            }
+
+            @Override
+            public void setBearerToken(final String bearerToken) {
+            }
+        }, Collections.<Interceptor>singletonList(new JfrInterceptor()));
+
+        // Act
+        final String previous =
+            CallContext.enterOperation("exchangeRefreshToken");
+        try {
+            http.post(TEST_URL, "{}");
+            try {
+                http.post(TEST_URL, "{}");
+                fail("Expected the second refresh to fail");
+            } catch (final HttpException httpException) {
+                assertEquals(401, httpException.getCode());
+            }
+        } finally {
+            CallContext.exitOperation(previous);
+        }
+
+        // Assert
+        final List<RecordedEvent> calls = events("com.medium.api.ApiCall");
+        assertEquals(2, calls.size());
+        assertEquals("exchangeRefreshToken",
+            calls.get(0).getString("operation"));
+        assertEquals("POST", calls.get(0).getString("method"));
+        assertEquals("/v1/tokens", calls.get(0).getString("path"));
+        assertEquals(200, calls.get(0).getInt("status"));
+        assertEquals(2, calls.get(0).getLong("bytesSent"));
+        assertEquals(21, calls.get(0).getLong("bytesReceived"));
+        assertEquals(401, calls.get(1).getInt("status"));
+
+        final List<RecordedEvent> refreshes =
+            events("com.medium.api.TokenRefresh");
+        assertEquals(2, refreshes.size());
+        assertTrue(refreshes.get(0).getBoolean("succeeded"));
+        assertFalse(refreshes.get(1).getBoolean("succeeded"));
+        assertEquals(401, refreshes.get(1).getInt("status"));
+    }
+
+    @Test
+    public void testConverter_RecordsDeserialization() throws Exception {
+
+        // Arrange
+        final JfrModelConverter converter =
+            new JfrModelConverter(new JacksonModelConverter());
+        final String json = new Scanner(
+            getClass().getResourceAsStream("/contributor-list.json"), "UTF-8")
+            .useDelimiter("\\A").next();
+
+        // Act
+        final List<Contributor> contributors =
+            converter.asListOf(Contributor.class, json);
+
+        // Assert
+        assertTrue(contributors.size() > 0);
+        final List<RecordedEvent> reads =
+            events("com.medium.api.Deserialization");
+        assertEquals(1, reads.size());
+        assertEquals(contributors.size(), reads.get(0).getInt("models"));
+        assertEquals(json.length(), reads.get(0).getLong("length"));
+        assertEquals(Contributor.class.getName(),
+            reads.get(0).getClass("type").getName());
+    }
+
+    private List<RecordedEvent> events(final String name) throws Exception {
+        if (RecordingState.RUNNING == recording.getState()) {
+            recording.stop();
+        }
+        final File file = File.createTempFile("medium", ".jfr");
+        file.deleteOnExit();
+        recording.dump(file.toPath());
+
+        final List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (final RecordedEvent event
+                : RecordingFile.readAllEvents(file.toPath())) {
+            if (name.equals(event.getEventType().getName())) {
+                events.add(event);
+            }
+        }
+        Collections.sort(events, new Comparator<RecordedEvent>() {
+            @Override
+            public int compare(final RecordedEvent a, final RecordedEvent b) {
+                return a.getStartTime().compareTo(b.getStartTime());
+            }
+        });
+        return events;
+    }
+}
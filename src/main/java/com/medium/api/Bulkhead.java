@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api;
+
+/**
+ * Bulkhead describes the families of operations on the Medium API which
+ * can be isolated from one another, so that one family being slow or
+ * saturated doesn't hold up the others.
+ *
+ * @see MediumClient.Builder#withBulkhead(Bulkhead,
+ *      com.medium.api.dependencies.http.ConcurrencyLimiter)
+ */
+public enum Bulkhead {
+
+    /**
+     * Exchanging codes and refresh tokens for access tokens.
+     */
+    AUTH,
+
+    /**
+     * Getting the user, and listing publications and contributors.
+     */
+    READ,
+
+    /**
+     * Creating posts.
+     */
+    PUBLISH,
+
+    /**
+     * Uploading images.
+     */
+    UPLOAD
+}
@@ -23,11 +23,26 @@ import com.medium.api.auth.Credentials;
 import com.medium.api.auth.RefreshTokenRequest;
 import com.medium.api.auth.Scope;
 
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.ConcurrencyLimiter;
+import com.medium.api.dependencies.http.ConcurrencyLimitingHttpClient;
+import com.medium.api.dependencies.http.HedgingHttpClient;
+import com.medium.api.dependencies.http.HedgingPolicy;
 import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.InterceptingHttpClient;
+import com.medium.api.dependencies.http.Interceptor;
 import com.medium.api.dependencies.http.OkayHttpClient;
+import com.medium.api.dependencies.http.Preconnectable;
+import com.medium.api.dependencies.http.Priority;
+import com.medium.api.dependencies.http.StreamingHttpClient;
+import com.medium.api.dependencies.json.ConverterException;
 import com.medium.api.dependencies.json.JacksonModelConverter;
 import com.medium.api.dependencies.json.JsonModelConverter;
 
+import com.medium.api.metrics.MetricsInterceptor;
+import com.medium.api.metrics.MetricsRegistry;
+
 import com.medium.api.model.Contributor;
 import com.medium.api.model.Image;
 import com.medium.api.model.Post;
@@ -35,13 +50,50 @@ import com.medium.api.model.Publication;
 import com.medium.api.model.Submission;
 import com.medium.api.model.User;
 
+import com.medium.api.tracing.NoopTracer;
+import com.medium.api.tracing.Span;
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+import com.medium.api.tracing.Tracer;
+import com.medium.api.tracing.TracingHttpClient;
+import com.medium.api.tracing.TracingModelConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the {@link Medium} API.
  */
-public class MediumClient implements Medium {
+public class MediumClient implements StreamingMedium {
+
+    /**
+     * The number of connections opened by {@link #warmUp()}.
+     */
+    public static final int DEFAULT_WARM_UP_CONNECTIONS = 2;
+
+    /**
+     * The model classes that cross the wire, and which are therefore
+     * worth preparing the converter for ahead of time.
+     */
+    private static final Class<?>[] MODEL_CLASSES = {
+        AccessToken.class,
+        AccessTokenRequest.class,
+        Contributor.class,
+        Image.class,
+        Post.class,
+        Publication.class,
+        RefreshTokenRequest.class,
+        Submission.class,
+        User.class
+    };
 
     /**
      * The credentials this client will use when talking to a Medium
@@ -59,11 +111,48 @@ public class MediumClient implements Medium {
      */
     private final HttpClient httpClient;
 
+    /**
+     * The HTTP client for each family of operations, by ordinal, each
+     * wrapped in the decorators configured for it.
+     */
+    private final HttpClient[] httpClients;
+
     /**
      * Serializes and deserializes objects from the data model.
      */
     private final JsonModelConverter converter;
 
+    /**
+     * The context in which all calls are made, if any. Otherwise, calls
+     * are made in the context attached to the calling thread, if any.
+     */
+    private final CallContext context;
+
+    /**
+     * The time each call is allowed to take, in nanoseconds; zero if
+     * calls may take as long as they like.
+     */
+    private final long timeoutNanos;
+
+    /**
+     * The priority of calls made by this client, if it has its own.
+     * Otherwise, calls have the priority of the context they are made
+     * in.
+     */
+    private final Priority priority;
+
+    /**
+     * The tenant on whose behalf this client makes calls, if it has its
+     * own. Otherwise, calls are made for the tenant of the context they
+     * are made in, if any.
+     */
+    private final String tenant;
+
+    /**
+     * Starts the spans of each operation, and of its parts.
+     */
+    private final Tracer tracer;
+
     /**
      * Construct a new instance of MediumClient via Credentials.
      *
@@ -72,8 +161,15 @@ public class MediumClient implements Medium {
     public MediumClient(final Credentials credentials) {
         this.endpoint = Endpoint.API_BASE;
         this.httpClient = new OkayHttpClient();
+        this.httpClients = new HttpClient[Bulkhead.values().length];
+        Arrays.fill(this.httpClients, this.httpClient);
         this.converter = new JacksonModelConverter();
         this.credentials = credentials;
+        this.context = null;
+        this.timeoutNanos = 0;
+        this.priority = null;
+        this.tenant = null;
+        this.tracer = NoopTracer.INSTANCE;
     }
 
     /**
@@ -97,7 +193,121 @@ public class MediumClient implements Medium {
         this.credentials = builder.credentials;
         this.endpoint = builder.endpoint;
         this.httpClient = builder.httpClient;
-        this.converter = builder.converter;
+        this.httpClients = builder.decorateHttpClients();
+        this.converter = NoopTracer.INSTANCE != builder.tracer
+            ? new TracingModelConverter(builder.converter, builder.tracer)
+            : builder.converter;
+        this.context = null;
+        this.timeoutNanos = builder.timeoutNanos;
+        this.priority = null;
+        this.tenant = null;
+        this.tracer = builder.tracer;
+    }
+
+    /**
+     * Constructs a view of another MediumClient, which makes its calls
+     * with different options.
+     *
+     * @param client the client of which to construct a view
+     * @param context the context in which all calls are made, if any
+     * @param timeoutNanos the time each call is allowed to take, or
+     *                     zero
+     * @param priority the priority of calls, if any
+     * @param tenant the tenant of calls, if any
+     */
+    private MediumClient(final MediumClient client,
+            final CallContext context, final long timeoutNanos,
+            final Priority priority, final String tenant) {
+
+        this.credentials = client.credentials;
+        this.endpoint = client.endpoint;
+        this.httpClient = client.httpClient;
+        this.httpClients = client.httpClients;
+        this.converter = client.converter;
+        this.context = context;
+        this.timeoutNanos = timeoutNanos;
+        this.priority = priority;
+        this.tenant = tenant;
+        this.tracer = client.tracer;
+    }
+
+    /**
+     * Gets a view of this client in which every call must complete
+     * within the given amount of time, or else fail with a
+     * {@link com.medium.api.dependencies.http.DeadlineExceededException}.
+     *
+     * Each call gets its own deadline, which is also bounded by the
+     * deadline of the context the call is made in, if any.
+     *
+     * @param timeout the time each call is allowed to take
+     * @param unit the unit of the timeout
+     *
+     * @return a view of this client with a timeout on every call
+     */
+    public MediumClient withTimeout(final long timeout, final TimeUnit unit) {
+        return new MediumClient(
+            this, context, unit.toNanos(timeout), priority, tenant
+        );
+    }
+
+    /**
+     * Gets a view of this client which makes all of its calls in the
+     * given context, so that they share its deadline and can all be
+     * aborted by cancelling it:
+     *
+     * <pre>
+     * CallContext context = CallContext.withTimeout(5, TimeUnit.SECONDS);
+     * Post post = medium.withContext(context).createPost(submission, id);
+     * </pre>
+     *
+     * @param context the context in which to make calls
+     *
+     * @return a view of this client which makes calls in the context
+     */
+    public MediumClient withContext(final CallContext context) {
+        return new MediumClient(
+            this, context, timeoutNanos, priority, tenant
+        );
+    }
+
+    /**
+     * Gets a view of this client whose calls have the given priority.
+     * When calls are held back by a
+     * {@link com.medium.api.dependencies.http.ConcurrencyLimiter},
+     * interactive calls go ahead of waiting batch work:
+     *
+     * <pre>
+     * MediumClient batch = medium.withPriority(Priority.BATCH);
+     * for (Submission submission : backlog) {
+     *     batch.createPostForPublication(submission, publicationId);
+     * }
+     * </pre>
+     *
+     * @param priority the priority of calls
+     *
+     * @return a view of this client which makes calls with the priority
+     */
+    public MediumClient withPriority(final Priority priority) {
+        return new MediumClient(
+            this, context, timeoutNanos, priority, tenant
+        );
+    }
+
+    /**
+     * Gets a view of this client which makes calls on behalf of a
+     * tenant. When calls are held back by a
+     * {@link com.medium.api.dependencies.http.ConcurrencyLimiter},
+     * tenants take turns, so that one busy tenant can't crowd out the
+     * others.
+     *
+     * @param tenant the key of the tenant
+     *
+     * @return a view of this client which makes calls for the tenant
+     */
+    public MediumClient withTenant(final String tenant) {
+        return new MediumClient(
+            this, context, timeoutNanos, priority, tenant
+        );
     }
 
     @Override
@@ -117,75 +327,146 @@ public class MediumClient implements Medium {
     public AccessToken exchangeAuthorizationCode(
             final String code, final String redirectUri) {
 
-        return converter.asSingle(AccessToken.class, httpClient.post(
-            endpoint + "/tokens",
-            converter.asJson(new AccessTokenRequest.Builder()
-                .withClientId(credentials.getClientId())
-                .withClientSecret(credentials.getClientSecret())
-                .withCode(code)
-                .withRedirectUri(redirectUri)
-                .build()
-            )
-        ));
+        return invoke(Operation.EXCHANGE_AUTHORIZATION_CODE,
+            new Invocation<AccessToken>() {
+                @Override
+                public AccessToken run(final HttpClient http) {
+                    return converter.asSingle(AccessToken.class, http.post(
+                        endpoint + "/tokens",
+                        converter.asJson(new AccessTokenRequest.Builder()
+                            .withClientId(credentials.getClientId())
+                            .withClientSecret(credentials.getClientSecret())
+                            .withCode(code)
+                            .withRedirectUri(redirectUri)
+                            .build()
+                        )
+                    ));
+                }
+            });
     }
 
     @Override
     public AccessToken exchangeRefreshToken(final String refreshToken) {
 
-        return converter.asSingle(AccessToken.class, httpClient.post(
-            endpoint + "/tokens",
-            converter.asJson(new RefreshTokenRequest.Builder()
-                .withClientId(credentials.getClientId())
-                .withClientSecret(credentials.getClientSecret())
-                .withRefreshToken(refreshToken)
-                .build()
-            )
-        ));
+        return invoke(Operation.EXCHANGE_REFRESH_TOKEN,
+            new Invocation<AccessToken>() {
+                @Override
+                public AccessToken run(final HttpClient http) {
+                    return converter.asSingle(AccessToken.class, http.post(
+                        endpoint + "/tokens",
+                        converter.asJson(new RefreshTokenRequest.Builder()
+                            .withClientId(credentials.getClientId())
+                            .withClientSecret(credentials.getClientSecret())
+                            .withRefreshToken(refreshToken)
+                            .build()
+                        )
+                    ));
+                }
+            });
     }
 
     @Override
     public User getUser() {
-        return converter.asSingle(User.class, httpClient.get(
-            endpoint + "/me"
-        ));
+        return invoke(Operation.GET_USER, new Invocation<User>() {
+            @Override
+            public User run(final HttpClient http) {
+                return converter.asSingle(User.class, http.get(
+                    endpoint + "/me"
+                ));
+            }
+        });
     }
 
     @Override
     public List<Publication> listPublications(final String userId) {
-        return converter.asListOf(Publication.class, httpClient.get(
-            String.format("%s/users/%s/publications", endpoint, userId)
-        ));
+        return invoke(Operation.LIST_PUBLICATIONS,
+            new Invocation<List<Publication>>() {
+                @Override
+                public List<Publication> run(final HttpClient http) {
+                    return converter.asListOf(Publication.class, http.get(
+                        String.format("%s/users/%s/publications", endpoint, userId)
+                    ));
+                }
+            });
     }
 
     @Override
     public List<Contributor> listContributors(final String publicationId) {
-        return converter.asListOf(Contributor.class, httpClient.get(
+        return invoke(Operation.LIST_CONTRIBUTORS,
+            new Invocation<List<Contributor>>() {
+                @Override
+                public List<Contributor> run(final HttpClient http) {
+                    return converter.asListOf(Contributor.class, http.get(
+                        String.format("%s/publications/%s/contributors",
+                            endpoint, publicationId
+                        )
+                    ));
+                }
+            });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The publications are read from the network as they arrive if the
+     * HTTP client is a {@link StreamingHttpClient} and the converter is
+     * a {@link JacksonModelConverter}. Otherwise, the whole response is
+     * read first.
+     */
+    @Override
+    public ModelIterator<Publication> iteratePublications(
+            final String userId) {
+        return iterate(Operation.LIST_PUBLICATIONS, Publication.class,
+            String.format("%s/users/%s/publications", endpoint, userId));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The contributors are read from the network as they arrive if the
+     * HTTP client is a {@link StreamingHttpClient} and the converter is
+     * a {@link JacksonModelConverter}. Otherwise, the whole response is
+     * read first.
+     */
+    @Override
+    public ModelIterator<Contributor> iterateContributors(
+            final String publicationId) {
+        return iterate(Operation.LIST_CONTRIBUTORS, Contributor.class,
             String.format("%s/publications/%s/contributors",
-                endpoint, publicationId
-            )
-        ));
+                endpoint, publicationId));
     }
 
     @Override
     public Post createPost(
             final Submission submission, final String userId) {
 
-        return converter.asSingle(Post.class, httpClient.post(
-            String.format("%s/users/%s/posts", endpoint, userId),
-            converter.asJson(submission)
-        ));
+        return invoke(Operation.CREATE_POST, new Invocation<Post>() {
+            @Override
+            public Post run(final HttpClient http) {
+                return converter.asSingle(Post.class, http.post(
+                    String.format("%s/users/%s/posts", endpoint, userId),
+                    converter.asJson(submission)
+                ));
+            }
+        });
     }
 
     @Override
     public Post createPostForPublication(
             final Submission submission, final String publicationId) {
 
-        return converter.asSingle(Post.class, httpClient.post(
-            String.format("%s/publications/%s/posts",
-                endpoint, publicationId
-            ),
-            converter.asJson(submission)
-        ));
+        return invoke(Operation.CREATE_POST_FOR_PUBLICATION,
+            new Invocation<Post>() {
+                @Override
+                public Post run(final HttpClient http) {
+                    return converter.asSingle(Post.class, http.post(
+                        String.format("%s/publications/%s/posts",
+                            endpoint, publicationId
+                        ),
+                        converter.asJson(submission)
+                    ));
+                }
+            });
     }
 
     @Override
@@ -193,6 +474,430 @@ public class MediumClient implements Medium {
         throw new RuntimeException("Not implement yet.");
     }
 
+    /**
+     * Warms up the client with {@link #DEFAULT_WARM_UP_CONNECTIONS}
+     * connections.
+     *
+     * @return the number of connections that were established
+     *
+     * @see #warmUp(int)
+     */
+    public int warmUp() {
+        return warmUp(DEFAULT_WARM_UP_CONNECTIONS);
+    }
+
+    /**
+     * Pays the one-time costs of the first API call up front: resolves
+     * the endpoint's host, opens pooled connections to it in parallel,
+     * and, at the same time, builds the converter's serializers for all
+     * of the model classes.
+     *
+     * Connections are only opened if the HTTP client is
+     * {@link Preconnectable}, and serializers are only built if the
+     * converter is a {@link JacksonModelConverter}.
+     *
+     * @param connections the number of connections to open
+     *
+     * @return the number of connections that were established
+     *
+     * @throws com.medium.api.dependencies.http.HttpException
+     *         If the endpoint's host cannot be resolved
+     */
+    public int warmUp(final int connections) {
+        final Thread converterWarmUp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (converter instanceof JacksonModelConverter) {
+                    ((JacksonModelConverter) converter).warmUp(MODEL_CLASSES);
+                }
+            }
+        }, "medium-converter-warm-up");
+        converterWarmUp.start();
+
+        try {
+            if (httpClient instanceof Preconnectable) {
+                return ((Preconnectable) httpClient).preconnect(
+                    endpoint, connections
+                );
+            }
+
+            return 0;
+        } finally {
+            joinUninterruptibly(converterWarmUp);
+        }
+    }
+
+    /**
+     * Lists models one at a time, streaming them from the network when
+     * the HTTP client and converter can.
+     *
+     * The call's deadline, if it has one, covers reading the whole
+     * list, but its span, if it is traced, ends once the response has
+     * begun to arrive.
+     *
+     * @param <T> the type of model
+     * @param operation the operation which lists the models
+     * @param itemType the type of model
+     * @param url the URL from which to GET the list
+     *
+     * @return an iterator over the models
+     */
+    private <T> ModelIterator<T> iterate(final Operation operation,
+            final Class<T> itemType, final String url) {
+        return invoke(operation, new Invocation<ModelIterator<T>>() {
+            @Override
+            public ModelIterator<T> run(final HttpClient http) {
+                if (http instanceof StreamingHttpClient
+                        && converter instanceof JacksonModelConverter) {
+                    return new StreamedModelIterator<T>(
+                        ((JacksonModelConverter) converter).iterateListOf(
+                            itemType,
+                            ((StreamingHttpClient) http).getStream(url)),
+                        CallContext.current());
+                }
+
+                return new ListModelIterator<T>(
+                    converter.asListOf(itemType, http.get(url)));
+            }
+
+            @Override
+            boolean adopt(final ModelIterator<T> result,
+                    final CallContext callContext) {
+                if (!(result instanceof StreamedModelIterator)) {
+                    return false;
+                }
+
+                ((StreamedModelIterator<T>) result).adopt(callContext);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Runs an invocation of the API in the context of this client: the
+     * client's own context if it has one, or else the one attached to
+     * the calling thread, with the client's timeout, priority and
+     * tenant applied to it. The invocation is given the HTTP client of
+     * the bulkhead it belongs to, and the name of the operation is made
+     * known to the HTTP client through
+     * {@link CallContext#currentOperation()}.
+     *
+     * @param <T> the type of the result of the invocation
+     * @param operation the operation the invocation makes
+     * @param invocation the invocation to run
+     *
+     * @return the result of the invocation
+     */
+    private <T> T invoke(
+            final Operation operation, final Invocation<T> invocation) {
+
+        final HttpClient http = httpClients[operation.getBulkhead().ordinal()];
+        final String previousOperation =
+            CallContext.enterOperation(operation.getOperationName());
+        try {
+            if (NoopTracer.INSTANCE == tracer) {
+                return invoke(http, invocation);
+            }
+
+            return trace(operation, http, invocation);
+        } finally {
+            CallContext.exitOperation(previousOperation);
+        }
+    }
+
+    /**
+     * Runs an invocation of the API in a span of its own, which is the
+     * parent of the spans of its serialization, requests and
+     * deserialization.
+     *
+     * @param <T> the type of the result of the invocation
+     * @param operation the operation the invocation makes
+     * @param http the HTTP client with which to make the call
+     * @param invocation the invocation to run
+     *
+     * @return the result of the invocation
+     */
+    private <T> T trace(final Operation operation, final HttpClient http,
+            final Invocation<T> invocation) {
+
+        final Span span =
+            tracer.startSpan(operation.getOperationName(), Spans.current());
+        span.setAttribute(
+            "medium.bulkhead",
+            operation.getBulkhead().name().toLowerCase(Locale.ROOT));
+
+        final SpanContext previous = Spans.enter(span.getContext());
+        try {
+            return invoke(http, invocation);
+        } catch (final HttpException httpException) {
+            span.setAttribute("http.status_code", httpException.getCode());
+            span.setError(httpException);
+            throw httpException;
+        } catch (final RuntimeException runtimeException) {
+            span.setError(runtimeException);
+            throw runtimeException;
+        } finally {
+            Spans.exit(previous);
+            span.end();
+        }
+    }
+
+    /**
+     * Runs an invocation of the API with the given HTTP client, in the
+     * context of this client.
+     *
+     * @param <T> the type of the result of the invocation
+     * @param http the HTTP client with which to make the call
+     * @param invocation the invocation to run
+     *
+     * @return the result of the invocation
+     */
+    private <T> T invoke(
+            final HttpClient http, final Invocation<T> invocation) {
+
+        final CallContext parent =
+            null != context ? context : CallContext.current();
+
+        final boolean ownContext = 0 != timeoutNanos
+            || differs(priority, null != parent ? parent.getPriority() : null)
+            || differs(tenant, null != parent ? parent.getTenant() : null);
+
+        if (!ownContext && null == parent) {
+            return invocation.run(http);
+        }
+
+        final CallContext callContext;
+        if (!ownContext) {
+            callContext = parent;
+        } else {
+            final CallContext.Builder builder = new CallContext.Builder()
+                .withParent(parent)
+                .withPriority(priority)
+                .withTenant(tenant);
+
+            if (0 != timeoutNanos) {
+                builder.withTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+
+            callContext = builder.build();
+        }
+
+        final CallContext previous = callContext.attach();
+        boolean adopted = false;
+        try {
+            callContext.checkActive();
+            final T result = invocation.run(http);
+            adopted = callContext != parent
+                && invocation.adopt(result, callContext);
+            return result;
+        } finally {
+            callContext.detach(previous);
+
+            if (callContext != parent && !adopted) {
+                callContext.close();
+            }
+        }
+    }
+
+    /**
+     * Checks whether an option of this client overrides that of the
+     * context a call is made in.
+     *
+     * @param own the client's own option, or null if it has none
+     * @param inherited the option of the context, or null
+     *
+     * @return true if the client has its own, different option
+     */
+    private static boolean differs(final Object own, final Object inherited) {
+        return null != own && !own.equals(inherited);
+    }
+
+    /**
+     * Waits for a thread to finish, preserving the interrupt status of
+     * the calling thread if it is interrupted in the meantime.
+     *
+     * @param thread the thread to wait for
+     */
+    private static void joinUninterruptibly(final Thread thread) {
+        boolean interrupted = false;
+
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException interruptedException) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A single call to the API, to be run by {@link #invoke}.
+     *
+     * @param <T> the type of the result of the call
+     */
+    private abstract static class Invocation<T> {
+
+        /**
+         * Makes the call.
+         *
+         * @param http the HTTP client with which to make the call
+         *
+         * @return the result of the call
+         */
+        abstract T run(HttpClient http);
+
+        /**
+         * Hands the context a call was made in over to its result, if
+         * the result is still using the call once it has returned. The
+         * result then closes the context when it is done with it.
+         * Otherwise, the context is closed as soon as the call returns.
+         *
+         * @param result the result of the call
+         * @param callContext the context of the call, made for it alone
+         *
+         * @return true if the result has taken over the context
+         */
+        boolean adopt(final T result, final CallContext callContext) {
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the models of a list as they are read from the network,
+     * within the context of the call which is reading it. A context
+     * made for the call alone is closed when the iterator is closed or
+     * the list has been read, so that cancelling the context it was
+     * made from still aborts the read until then.
+     *
+     * @param <T> the type of model
+     */
+    private static final class StreamedModelIterator<T>
+            implements ModelIterator<T> {
+
+        private final ModelIterator<T> models;
+        private final CallContext context;
+        private boolean owned;
+
+        /**
+         * Constructs a new StreamedModelIterator.
+         *
+         * @param models the models, as they are read
+         * @param context the context of the call, or null
+         */
+        StreamedModelIterator(final ModelIterator<T> models,
+                final CallContext context) {
+            this.models = models;
+            this.context = context;
+        }
+
+        /**
+         * Takes over the context of the call, which is then closed
+         * along with the iterator.
+         *
+         * @param callContext the context of the call
+         */
+        void adopt(final CallContext callContext) {
+            owned = callContext == context;
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkActive();
+            try {
+                if (models.hasNext()) {
+                    return true;
+                }
+            } catch (final ConverterException converterException) {
+                close();
+                checkActive();
+                throw converterException;
+            }
+
+            close();
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return models.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        @Override
+        public void close() {
+            models.close();
+
+            if (owned) {
+                owned = false;
+                context.close();
+            }
+        }
+
+        /**
+         * Reports a cancelled or expired call as such, rather than
+         * handing out models that were read ahead of it.
+         */
+        private void checkActive() {
+            if (null != context
+                    && (context.isCancelled() || context.isExpired())) {
+                close();
+                context.checkActive();
+            }
+        }
+    }
+
+    /**
+     * Hands out the models of a list which has already been read in
+     * full.
+     *
+     * @param <T> the type of model
+     */
+    private static final class ListModelIterator<T>
+            implements ModelIterator<T> {
+
+        private final Iterator<T> models;
+
+        /**
+         * Constructs a new ListModelIterator.
+         *
+         * @param models the models to hand out
+         */
+        ListModelIterator(final List<T> models) {
+            this.models = models.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return models.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return models.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+
     /**
      * Builder fascilitates the creation of a MediumClient.
      */
@@ -203,6 +908,14 @@ public class MediumClient implements Medium {
         private String endpoint;
         private HttpClient httpClient;
         private JsonModelConverter converter;
+        private long timeoutNanos;
+        private HedgingPolicy hedgingPolicy;
+        private ConcurrencyLimiter concurrencyLimiter;
+        private final Map<Bulkhead, ConcurrencyLimiter> bulkheads =
+            new EnumMap<Bulkhead, ConcurrencyLimiter>(Bulkhead.class);
+        private final List<Interceptor> interceptors =
+            new ArrayList<Interceptor>();
+        private Tracer tracer = NoopTracer.INSTANCE;
 
         /**
          * Constructs a new instance of Builder with default values
@@ -275,6 +988,130 @@ public class MediumClient implements Medium {
             return this;
         }
 
+        /**
+         * Sets the time every call is allowed to take. By default,
+         * calls may take as long as the HTTP client allows.
+         *
+         * @param timeout the time each call is allowed to take
+         * @param unit the unit of the timeout
+         *
+         * @return the updated instance of the builder
+         *
+         * @see MediumClient#withTimeout(long, TimeUnit)
+         */
+        public Builder withTimeout(final long timeout, final TimeUnit unit) {
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Hedges GET requests according to a policy: when a response is
+         * slow to arrive, an identical request is sent, and whichever
+         * response comes first is used.
+         *
+         * @param hedgingPolicy the policy deciding when to hedge
+         *
+         * @return the updated instance of the builder
+         *
+         * @see HedgingHttpClient
+         */
+        public Builder withHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Limits the number of calls in flight at once. Calls beyond
+         * the limit wait for their turn, and the limit adapts to how
+         * the server is coping. Hedged requests count against the limit
+         * too.
+         *
+         * @param concurrencyLimiter the limiter through which calls pass
+         *
+         * @return the updated instance of the builder
+         *
+         * @see ConcurrencyLimitingHttpClient
+         */
+        public Builder withConcurrencyLimiter(
+                final ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Isolates a family of operations behind a limiter of its own,
+         * so that when its calls are slow or piling up, they only hold
+         * up each other, and not the calls of other families. The
+         * limiter bounds the calls in flight and the calls waiting
+         * within the family; it applies on top of any limiter shared
+         * by all calls.
+         *
+         * @param bulkhead the family of operations to isolate
+         * @param limiter the limiter of the family, which must not be
+         *                used by any other family
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withBulkhead(
+                final Bulkhead bulkhead, final ConcurrencyLimiter limiter) {
+            this.bulkheads.put(bulkhead, limiter);
+            return this;
+        }
+
+        /**
+         * Adds an interceptor, which sees every HTTP call the client
+         * makes along with the name of the operation making it.
+         * Interceptors see requests in the order in which they are
+         * added, and see each call as a whole, including any time spent
+         * waiting on limiters and any hedged requests.
+         *
+         * @param interceptor the interceptor to add
+         *
+         * @return the updated instance of the builder
+         *
+         * @see InterceptingHttpClient
+         */
+        public Builder withInterceptor(final Interceptor interceptor) {
+            this.interceptors.add(interceptor);
+            return this;
+        }
+
+        /**
+         * Records the count, errors, bytes and latency of every call
+         * the client makes into a registry, by operation. Calls are
+         * recorded as the caller sees them, including any time spent
+         * waiting on limiters and any hedged requests.
+         *
+         * @param registry the registry into which to record calls
+         *
+         * @return the updated instance of the builder
+         *
+         * @see MetricsRegistry#snapshot()
+         */
+        public Builder withMetrics(final MetricsRegistry registry) {
+            return withInterceptor(new MetricsInterceptor(registry));
+        }
+
+        /**
+         * Traces every operation the client makes: each gets a span,
+         * with child spans for serializing the request, for each HTTP
+         * request, including hedges, and for deserializing the
+         * response. Requests carry their span to the server in a W3C
+         * {@code traceparent} header, when made through an
+         * {@link OkayHttpClient}.
+         *
+         * Operations made while a span is current, as of
+         * {@link Spans#current()}, become part of its trace.
+         *
+         * @param tracer the tracer which starts the spans
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withTracer(final Tracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
         /**
          * Contructs a new instance of a MediumClient using the options
          * that were provided to this Builder instance.
@@ -288,6 +1125,64 @@ public class MediumClient implements Medium {
 
             return new MediumClient(this);
         }
+
+        /**
+         * Wraps the HTTP client in the decorators for the options that
+         * were provided to this Builder instance, for each family of
+         * operations.
+         *
+         * @return the HTTP client for each family of operations, by
+         *         ordinal
+         */
+        private HttpClient[] decorateHttpClients() {
+            final HttpClient[] decorated =
+                new HttpClient[Bulkhead.values().length];
+
+            for (Bulkhead bulkhead : Bulkhead.values()) {
+                decorated[bulkhead.ordinal()] = decorateHttpClient(bulkhead);
+            }
+
+            return decorated;
+        }
+
+        /**
+         * Wraps the HTTP client in the decorators for the options that
+         * were provided to this Builder instance: tracing closest to
+         * the client, so that each request gets its own span, then the
+         * shared limiter, then the limiter of the bulkhead, then
+         * hedging, so that hedged requests count against both limits,
+         * and the interceptors outermost.
+         *
+         * @param bulkhead the family of operations
+         *
+         * @return the HTTP client for the family of operations to use
+         */
+        private HttpClient decorateHttpClient(final Bulkhead bulkhead) {
+            HttpClient decorated = this.httpClient;
+
+            if (NoopTracer.INSTANCE != this.tracer) {
+                decorated = new TracingHttpClient(decorated, this.tracer);
+            }
+
+            if (null != this.concurrencyLimiter) {
+                decorated = new ConcurrencyLimitingHttpClient(
+                    decorated, this.concurrencyLimiter
+                );
+            }
+
+            final ConcurrencyLimiter bulkheadLimiter = bulkheads.get(bulkhead);
+            if (null != bulkheadLimiter) {
+                decorated = new ConcurrencyLimitingHttpClient(
+                    decorated, bulkheadLimiter
+                );
+            }
+
+            if (null != this.hedgingPolicy) {
+                decorated = new HedgingHttpClient(decorated, this.hedgingPolicy);
+            }
+
+            return InterceptingHttpClient.wrap(decorated, this.interceptors);
+        }
     }
 }
 
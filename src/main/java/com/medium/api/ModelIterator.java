@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * A ModelIterator hands out the models of a list one at a time, reading
+ * each only when it is asked for, so that a large list need never be
+ * held in memory all at once.
+ *
+ * It may be reading from the network, so it must be closed when done
+ * with, including when it is abandoned part way through. It is closed
+ * by itself once the last model has been read.
+ *
+ * @param <T> the type of model
+ */
+public interface ModelIterator<T> extends Iterator<T>, Closeable {
+
+    /**
+     * Stops reading models, and releases what they were being read
+     * from.
+     */
+    @Override
+    void close();
+}
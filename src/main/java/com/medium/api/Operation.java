@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api;
+
+/**
+ * Operation describes each of the calls {@link MediumClient} makes to
+ * the Medium API, and the {@link Bulkhead} each one belongs to.
+ */
+public enum Operation {
+
+    /**
+     * {@link Medium#exchangeAuthorizationCode(String, String)}.
+     */
+    EXCHANGE_AUTHORIZATION_CODE("exchangeAuthorizationCode", Bulkhead.AUTH),
+
+    /**
+     * {@link Medium#exchangeRefreshToken(String)}.
+     */
+    EXCHANGE_REFRESH_TOKEN("exchangeRefreshToken", Bulkhead.AUTH),
+
+    /**
+     * {@link Medium#getUser()}.
+     */
+    GET_USER("getUser", Bulkhead.READ),
+
+    /**
+     * {@link Medium#listPublications(String)}.
+     */
+    LIST_PUBLICATIONS("listPublications", Bulkhead.READ),
+
+    /**
+     * {@link Medium#listContributors(String)}.
+     */
+    LIST_CONTRIBUTORS("listContributors", Bulkhead.READ),
+
+    /**
+     * {@link Medium#createPost(com.medium.api.model.Submission, String)}.
+     */
+    CREATE_POST("createPost", Bulkhead.PUBLISH),
+
+    /**
+     * {@link Medium#createPostForPublication(
+     * com.medium.api.model.Submission, String)}.
+     */
+    CREATE_POST_FOR_PUBLICATION("createPostForPublication", Bulkhead.PUBLISH),
+
+    /**
+     * {@link Medium#uploadImage()}.
+     */
+    UPLOAD_IMAGE("uploadImage", Bulkhead.UPLOAD);
+
+    /**
+     * The name of the operation, as seen by HTTP clients.
+     */
+    private final String operationName;
+
+    /**
+     * The family of operations this one belongs to.
+     */
+    private final Bulkhead bulkhead;
+
+    /**
+     * Constructs a new Operation.
+     *
+     * @param operationName the name of the operation
+     * @param bulkhead the family of operations it belongs to
+     */
+    Operation(final String operationName, final Bulkhead bulkhead) {
+        this.operationName = operationName;
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Gets the name of the operation, which is the name of the method
+     * of {@link Medium} that makes it.
+     *
+     * @return the name of the operation
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Gets the family of operations this one belongs to.
+     *
+     * @return the bulkhead of the operation
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+}
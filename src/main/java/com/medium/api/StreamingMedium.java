@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api;
+
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Publication;
+
+/**
+ * Extends the interface to the Medium endpoint with lists which are
+ * handed out one item at a time, as they are read, rather than all at
+ * once.
+ */
+public interface StreamingMedium extends Medium {
+
+    /**
+     * Lists the user's publications one at a time, as they are read.
+     *
+     * Unlike {@link #listPublications(String)}, the publications need
+     * not all be held in memory at once, and the first can be processed
+     * before the rest have arrived. The iterator must be closed if it is
+     * abandoned before the end of the list.
+     *
+     * @param userId the id of the user
+     *
+     * @return an iterator over the user's publications
+     */
+    ModelIterator<Publication> iteratePublications(final String userId);
+
+    /**
+     * Lists the contributors to a publication one at a time, as they
+     * are read.
+     *
+     * Unlike {@link #listContributors(String)}, the contributors need
+     * not all be held in memory at once, and the first can be processed
+     * before the rest have arrived. The iterator must be closed if it is
+     * abandoned before the end of the list.
+     *
+     * @param publicationId the publication for which to list
+     *                      contributors
+     *
+     * @return an iterator over the publication's contributors
+     */
+    ModelIterator<Contributor> iterateContributors(
+            final String publicationId);
+}
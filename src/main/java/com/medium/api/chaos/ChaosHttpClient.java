@@ -0,0 +1,199 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.chaos;
+
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.ForwardingHttpClient;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ChaosHttpClient injects faults into the calls it passes on to
+ * another client, following a set of {@link ChaosRule}s, so that the
+ * behavior of the code around it can be measured while the API is slow
+ * or failing in a controlled way.
+ *
+ * Every rule which matches a call is tried, in order, and may inject its
+ * fault. Delays add up; the first error or reset fails the call without
+ * sending the request; and a truncated or slow body affects the
+ * response once it has come back. Injected delays honor the
+ * {@link CallContext} of the call, failing it when its deadline passes
+ * or it is cancelled, as a real slow request would.
+ *
+ * Given a seed, the faults injected into a sequence of calls made from
+ * one thread are the same every time.
+ */
+public class ChaosHttpClient extends ForwardingHttpClient {
+
+    /**
+     * The body of the responses to injected errors, in the shape of the
+     * API's errors.
+     */
+    static final String ERROR_BODY =
+        "{\"errors\":[{\"message\":\"Injected fault.\",\"code\":-1}]}";
+
+    /**
+     * The rules by which faults are injected.
+     */
+    private final List<ChaosRule> rules;
+
+    /**
+     * The source of randomness for probabilities and delays.
+     */
+    private final Random random;
+
+    /**
+     * Constructs a new ChaosHttpClient.
+     *
+     * @param delegate the client to which to forward calls
+     * @param rules the rules by which to inject faults
+     */
+    public ChaosHttpClient(final HttpClient delegate,
+            final ChaosRule... rules) {
+        this(delegate, new Random(), rules);
+    }
+
+    /**
+     * Constructs a new ChaosHttpClient, which injects the same faults
+     * every time for the same sequence of calls.
+     *
+     * @param delegate the client to which to forward calls
+     * @param seed the seed of the randomness of the faults
+     * @param rules the rules by which to inject faults
+     */
+    public ChaosHttpClient(final HttpClient delegate, final long seed,
+            final ChaosRule... rules) {
+        this(delegate, new Random(seed), rules);
+    }
+
+    /**
+     * Constructs a new ChaosHttpClient.
+     *
+     * @param delegate the client to which to forward calls
+     * @param random the source of randomness
+     * @param rules the rules by which to inject faults
+     */
+    private ChaosHttpClient(final HttpClient delegate, final Random random,
+            final ChaosRule... rules) {
+        super(delegate);
+        this.random = random;
+        this.rules = Collections.unmodifiableList(
+            new ArrayList<ChaosRule>(Arrays.asList(rules)));
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+        final List<Fault> after = before("POST", url);
+        return after(after, super.post(url, body));
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        final List<Fault> after = before("GET", url);
+        return after(after, super.get(url));
+    }
+
+    /**
+     * Gets the rules by which faults are injected, which keep count of
+     * the faults injected.
+     *
+     * @return the rules
+     */
+    public List<ChaosRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Injects the faults which happen before a request is sent.
+     *
+     * @param method the method of the call
+     * @param url the URL of the call
+     *
+     * @return the faults to inject into the response, or null if none
+     * @throws HttpException
+     *         If an error or reset is injected, or the call's deadline
+     *         passes during a delay
+     */
+    private List<Fault> before(final String method, final String url)
+            throws HttpException {
+
+        List<Fault> after = null;
+        for (final ChaosRule rule : rules) {
+            if (!rule.fire(method, url, random)) {
+                continue;
+            }
+
+            final Fault fault = rule.getFault();
+            switch (fault.getKind()) {
+                case LATENCY:
+                    CallContext.sleep(fault.getLatency().sampleNanos(random));
+                    break;
+                case STATUS:
+                    throw new HttpException(
+                        (int) fault.getValue(), ERROR_BODY);
+                case RESET:
+                    throw new HttpException(-1, "Connection reset");
+                default:
+                    if (null == after) {
+                        after = new ArrayList<Fault>(1);
+                    }
+                    after.add(fault);
+                    break;
+            }
+        }
+        return after;
+    }
+
+    /**
+     * Injects the faults which spoil a response.
+     *
+     * @param faults the faults to inject, or null if none
+     * @param response the body of the response
+     *
+     * @return the spoiled body
+     * @throws HttpException
+     *         If the call's deadline passes while the body drips in
+     */
+    private String after(final List<Fault> faults, final String response)
+            throws HttpException {
+
+        if (null == faults || null == response) {
+            return response;
+        }
+
+        String body = response;
+        for (final Fault fault : faults) {
+            if (Fault.Kind.TRUNCATE == fault.getKind()) {
+                body = body.substring(
+                    0, (int) (body.length() * fault.getFraction()));
+            } else {
+                CallContext.sleep(StringUtils.utf8Length(body)
+                    * TimeUnit.SECONDS.toNanos(1) / fault.getValue());
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.chaos;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * A ChaosRule says which calls a {@link Fault} is injected into, and
+ * how often: calls with a given method, to URLs matching a pattern,
+ * with some probability, up to some number of times.
+ */
+public final class ChaosRule {
+
+    /**
+     * The method of the calls affected, or null for any.
+     */
+    private final String method;
+
+    /**
+     * The pattern found in the URLs of the calls affected, or null for
+     * any.
+     */
+    private final Pattern url;
+
+    /**
+     * The probability that a matching call is affected.
+     */
+    private final double probability;
+
+    /**
+     * The most calls which may be affected.
+     */
+    private final int limit;
+
+    /**
+     * The fault to inject.
+     */
+    private final Fault fault;
+
+    /**
+     * The number of calls affected so far.
+     */
+    private final AtomicInteger injected = new AtomicInteger();
+
+    /**
+     * Constructs a new ChaosRule.
+     *
+     * @param builder the builder from which the rule is configured
+     */
+    private ChaosRule(final Builder builder) {
+        this.method = builder.method;
+        this.url = null == builder.url ? null : Pattern.compile(builder.url);
+        this.probability = builder.probability;
+        this.limit = builder.limit;
+        this.fault = builder.fault;
+    }
+
+    /**
+     * Gets the number of calls this rule has injected its fault into.
+     *
+     * @return the number of calls affected
+     */
+    public int getInjectedCount() {
+        return injected.get();
+    }
+
+    /**
+     * Gets the fault the rule injects.
+     *
+     * @return the fault
+     */
+    public Fault getFault() {
+        return fault;
+    }
+
+    /**
+     * Decides whether to inject the fault into a call.
+     *
+     * @param callMethod the method of the call
+     * @param callUrl the URL of the call
+     * @param random the source of randomness
+     *
+     * @return true if the fault should be injected
+     */
+    boolean fire(final String callMethod, final String callUrl,
+            final Random random) {
+
+        if (null != method && !method.equals(callMethod)) {
+            return false;
+        }
+        if (null != url && !url.matcher(callUrl).find()) {
+            return false;
+        }
+        if (probability < 1 && random.nextDouble() >= probability) {
+            return false;
+        }
+
+        while (true) {
+            final int count = injected.get();
+            if (count >= limit) {
+                return false;
+            }
+            if (injected.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %s",
+            null == method ? "*" : method,
+            null == url ? "*" : url.pattern(), fault);
+    }
+
+    /**
+     * Fascilitates the construction of a ChaosRule.
+     */
+    public static class Builder {
+
+        private String method;
+        private String url;
+        private double probability = 1;
+        private int limit = Integer.MAX_VALUE;
+        private Fault fault;
+
+        /**
+         * Affects only calls with a method. Calls with any method are
+         * affected by default.
+         *
+         * @param method the method, GET or POST
+         *
+         * @return the builder
+         */
+        public Builder withMethod(final String method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * Affects only calls to URLs in which a regular expression is
+         * found, eg. {@code "/posts$"}. Calls to any URL are affected by
+         * default.
+         *
+         * @param regex the regular expression
+         *
+         * @return the builder
+         */
+        public Builder withUrlMatching(final String regex) {
+            this.url = regex;
+            return this;
+        }
+
+        /**
+         * Affects each matching call only with some probability. Every
+         * matching call is affected by default.
+         *
+         * @param probability the probability, from 0 to 1
+         *
+         * @return the builder
+         */
+        public Builder withProbability(final double probability) {
+            this.probability = probability;
+            return this;
+        }
+
+        /**
+         * Stops affecting calls after a number of them, eg. to fail the
+         * first few attempts at a call and let the rest through. There
+         * is no limit by default.
+         *
+         * @param limit the most calls to affect
+         *
+         * @return the builder
+         */
+        public Builder withLimit(final int limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Sets the fault to inject.
+         *
+         * @param fault the fault
+         *
+         * @return the builder
+         */
+        public Builder withFault(final Fault fault) {
+            this.fault = fault;
+            return this;
+        }
+
+        /**
+         * Builds the rule.
+         *
+         * @return the rule
+         */
+        public ChaosRule build() {
+            if (null == fault) {
+                throw new IllegalStateException("A rule needs a fault");
+            }
+            return new ChaosRule(this);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.chaos;
+
+/**
+ * A Fault is something which a {@link ChaosHttpClient} does to a call
+ * on purpose, to see how the code making the call copes.
+ *
+ * Some faults happen before the request would be sent, and may stop it
+ * from being sent at all: delays, error responses and connection
+ * resets. The others spoil the response once it has come back:
+ * truncating it, or delivering it slowly.
+ */
+public final class Fault {
+
+    /**
+     * What the fault does.
+     */
+    private final Kind kind;
+
+    /**
+     * The delay, for a {@link Kind#LATENCY} fault.
+     */
+    private final LatencyDistribution latency;
+
+    /**
+     * The status code, for a {@link Kind#STATUS} fault; the bytes per
+     * second, for a {@link Kind#SLOW_DRIP} fault.
+     */
+    private final long value;
+
+    /**
+     * The share of the body kept, for a {@link Kind#TRUNCATE} fault.
+     */
+    private final double fraction;
+
+    /**
+     * Constructs a new Fault.
+     *
+     * @param kind what the fault does
+     * @param latency the delay, if it is a delay
+     * @param value the status code or rate, if it has one
+     * @param fraction the share of the body kept, if it truncates it
+     */
+    private Fault(final Kind kind, final LatencyDistribution latency,
+            final long value, final double fraction) {
+        this.kind = kind;
+        this.latency = latency;
+        this.value = value;
+        this.fraction = fraction;
+    }
+
+    /**
+     * Gets a fault which delays the request before it is sent, as a slow
+     * network or an overloaded server would. A delay longer than the
+     * call's deadline fails it with a
+     * {@link com.medium.api.dependencies.http.DeadlineExceededException}
+     * once the deadline passes.
+     *
+     * @param latency how long to delay the request
+     *
+     * @return the fault
+     */
+    public static Fault latency(final LatencyDistribution latency) {
+        return new Fault(Kind.LATENCY, latency, 0, 0);
+    }
+
+    /**
+     * Gets a fault which answers with an error status, without sending
+     * the request.
+     *
+     * @param status the HTTP status with which to fail, eg. 503
+     *
+     * @return the fault
+     */
+    public static Fault status(final int status) {
+        return new Fault(Kind.STATUS, null, status, 0);
+    }
+
+    /**
+     * Gets a fault which fails the call as if its connection had been
+     * reset before the request was sent.
+     *
+     * @return the fault
+     */
+    public static Fault connectionReset() {
+        return new Fault(Kind.RESET, null, 0, 0);
+    }
+
+    /**
+     * Gets a fault which cuts the body of the response short, as if the
+     * connection had dropped part way through it, so that it can't be
+     * parsed. The request is sent, so anything it changes is changed.
+     *
+     * @param fraction the share of the body to keep, from 0 to 1
+     *
+     * @return the fault
+     */
+    public static Fault truncatedBody(final double fraction) {
+        if (fraction < 0 || fraction >= 1) {
+            throw new IllegalArgumentException(
+                "The fraction kept must be at least 0 and less than 1");
+        }
+        return new Fault(Kind.TRUNCATE, null, 0, fraction);
+    }
+
+    /**
+     * Gets a fault which delivers the body of the response slowly, at a
+     * given rate. Like a delay, it is cut short by the call's deadline.
+     *
+     * @param bytesPerSecond the rate at which to deliver the body
+     *
+     * @return the fault
+     */
+    public static Fault slowDrip(final long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("The rate must be positive");
+        }
+        return new Fault(Kind.SLOW_DRIP, null, bytesPerSecond, 0);
+    }
+
+    /**
+     * Gets what the fault does.
+     *
+     * @return the kind of fault
+     */
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the delay of a latency fault.
+     *
+     * @return the distribution of the delay
+     */
+    LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the status code of a status fault, or the rate of a slow
+     * drip.
+     *
+     * @return the status code or rate
+     */
+    long getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the share of the body a truncating fault keeps.
+     *
+     * @return the share kept, from 0 to 1
+     */
+    double getFraction() {
+        return fraction;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case STATUS:
+                return "status " + value;
+            case TRUNCATE:
+                return "truncated body " + fraction;
+            case SLOW_DRIP:
+                return "slow drip " + value + "B/s";
+            case RESET:
+                return "connection reset";
+            default:
+                return "latency";
+        }
+    }
+
+    /**
+     * The kinds of fault.
+     */
+    enum Kind {
+
+        /**
+         * Delays the request.
+         */
+        LATENCY,
+
+        /**
+         * Answers with an error status.
+         */
+        STATUS,
+
+        /**
+         * Resets the connection.
+         */
+        RESET,
+
+        /**
+         * Truncates the body of the response.
+         */
+        TRUNCATE,
+
+        /**
+         * Delivers the body of the response slowly.
+         */
+        SLOW_DRIP
+    }
+}
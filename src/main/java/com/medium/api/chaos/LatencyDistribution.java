@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.chaos;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A LatencyDistribution says how long something takes, as drawn at
+ * random: a request to a simulated server, or a delay injected by a
+ * {@link ChaosHttpClient}.
+ */
+public abstract class LatencyDistribution {
+
+    /**
+     * The number of standard deviations of a normal distribution below
+     * its 99th percentile.
+     */
+    private static final double Z_99 = 2.326;
+
+    /**
+     * Draws a latency.
+     *
+     * @param random the source of randomness to draw from
+     *
+     * @return the latency in nanoseconds, never negative
+     */
+    public abstract long sampleNanos(Random random);
+
+    /**
+     * Gets a distribution which never takes any time.
+     *
+     * @return the distribution
+     */
+    public static LatencyDistribution none() {
+        return fixed(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets a distribution which always takes the same time.
+     *
+     * @param latency the latency, every time
+     * @param unit the unit of the latency
+     *
+     * @return the distribution
+     */
+    public static LatencyDistribution fixed(
+            final long latency, final TimeUnit unit) {
+        final long nanos = Math.max(0, unit.toNanos(latency));
+
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * Gets a distribution whose latencies are spread evenly between two
+     * bounds.
+     *
+     * @param min the shortest latency
+     * @param max the longest latency
+     * @param unit the unit of the bounds
+     *
+     * @return the distribution
+     */
+    public static LatencyDistribution uniform(
+            final long min, final long max, final TimeUnit unit) {
+        final long low = Math.max(0, unit.toNanos(min));
+        final long range = Math.max(0, unit.toNanos(max) - low);
+
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return low + (long) (random.nextDouble() * range);
+            }
+        };
+    }
+
+    /**
+     * Gets a log-normal distribution, which most latencies fall close
+     * to the median of, but with a long tail of slow ones, as is typical
+     * of real services.
+     *
+     * @param median the median latency
+     * @param p99 the latency at the 99th percentile, which must be at
+     *            least the median
+     * @param unit the unit of the latencies
+     *
+     * @return the distribution
+     */
+    public static LatencyDistribution logNormal(
+            final long median, final long p99, final TimeUnit unit) {
+        if (p99 < median) {
+            throw new IllegalArgumentException(
+                "The 99th percentile must not be below the median");
+        }
+
+        final double mu = Math.log(Math.max(1, unit.toNanos(median)));
+        final double sigma =
+            (Math.log(Math.max(1, unit.toNanos(p99))) - mu) / Z_99;
+
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(final Random random) {
+                return (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+        };
+    }
+}
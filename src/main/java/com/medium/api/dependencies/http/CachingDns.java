@@ -0,0 +1,414 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import okhttp3.Dns;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CachingDns is an OkHttp {@link Dns} which remembers the addresses of
+ * the hosts it has resolved, so that opening a new connection does not
+ * have to wait on a blocking system lookup.
+ *
+ * Entries are refreshed in the background a little before they expire.
+ * If the underlying resolver fails, the last known addresses continue
+ * to be served for a while. The returned addresses are rotated on every
+ * lookup, so that new connections are spread across all of them.
+ *
+ * To use it with your own OkHttpClient:
+ *
+ * <pre>
+ * new OkHttpClient.Builder().dns(new CachingDns()).build();
+ * </pre>
+ */
+public class CachingDns implements Dns {
+
+    /**
+     * How long resolved addresses are served by default.
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * How long addresses are served past their expiry by default, if
+     * they can't be resolved again.
+     */
+    public static final long DEFAULT_MAX_STALE_MILLIS =
+        TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * The fraction of the time to live after which an entry is
+     * refreshed in the background.
+     */
+    private static final double REFRESH_AHEAD_FACTOR = 0.75;
+
+    /**
+     * How long the thread refreshing entries lingers without work
+     * before it exits, in seconds.
+     */
+    private static final long REFRESHER_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Runs the background refreshes of every CachingDns which was not
+     * given an executor of its own. Its one daemon thread is started on
+     * the first refresh and exits once there are none to run.
+     */
+    private static final Executor SHARED_REFRESHER = newRefresher();
+
+    /**
+     * The resolver that actually looks up hosts.
+     */
+    private final Dns delegate;
+
+    /**
+     * How long resolved addresses are served, in milliseconds.
+     */
+    private final long ttlMillis;
+
+    /**
+     * How long addresses are served past their expiry, in milliseconds,
+     * if they can't be resolved again.
+     */
+    private final long maxStaleMillis;
+
+    /**
+     * Runs the background refreshes.
+     */
+    private final Executor refresher;
+
+    /**
+     * The resolved addresses, by host name.
+     */
+    private final ConcurrentMap<String, Entry> entries;
+
+    /**
+     * The number of lookups served from fresh entries.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * The number of lookups which had to wait on the resolver.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * The number of lookups served from expired entries, because the
+     * resolver failed.
+     */
+    private final AtomicLong staleHits;
+
+    /**
+     * Constructs a new CachingDns in front of the system resolver, with
+     * default settings.
+     */
+    public CachingDns() {
+        this(new Builder());
+    }
+
+    /**
+     * Constructs a new CachingDns from the settings in a builder.
+     *
+     * @param builder the builder holding the settings
+     */
+    CachingDns(final Builder builder) {
+        this.delegate = builder.delegate;
+        this.ttlMillis = builder.ttlMillis;
+        this.maxStaleMillis = builder.maxStaleMillis;
+        this.refresher = null != builder.refresher
+            ? builder.refresher
+            : SHARED_REFRESHER;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.staleHits = new AtomicLong();
+    }
+
+    @Override
+    public List<InetAddress> lookup(final String hostname)
+            throws UnknownHostException {
+
+        final Entry entry = entries.get(hostname);
+        final long now = now();
+
+        if (null != entry && now < entry.expiresAt) {
+            if (now >= entry.refreshAt) {
+                refreshInBackground(hostname, entry);
+            }
+
+            hits.incrementAndGet();
+            return entry.nextAddresses();
+        }
+
+        misses.incrementAndGet();
+
+        try {
+            return resolve(hostname).nextAddresses();
+        } catch (final UnknownHostException unknownHostException) {
+            if (null != entry && now < entry.expiresAt + maxStaleMillis) {
+                staleHits.incrementAndGet();
+                return entry.nextAddresses();
+            }
+
+            throw unknownHostException;
+        }
+    }
+
+    /**
+     * Gets the number of lookups served from fresh entries.
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups which had to wait on the resolver.
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of lookups served from expired entries because
+     * the resolver was failing.
+     *
+     * @return the number of stale hits
+     */
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    /**
+     * Gets the current time. Exists so that tests may control time.
+     *
+     * @return the current time in milliseconds
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Looks up a host with the delegate resolver, and caches the
+     * result.
+     *
+     * @param hostname the host to look up
+     *
+     * @return the new cache entry
+     *
+     * @throws UnknownHostException
+     *         If the delegate cannot resolve the host
+     */
+    private Entry resolve(final String hostname) throws UnknownHostException {
+        final List<InetAddress> addresses = delegate.lookup(hostname);
+
+        if (addresses.isEmpty()) {
+            throw new UnknownHostException("No addresses for " + hostname);
+        }
+
+        final long now = now();
+        final Entry entry = new Entry(
+            addresses,
+            now + (long) (ttlMillis * REFRESH_AHEAD_FACTOR),
+            now + ttlMillis
+        );
+
+        entries.put(hostname, entry);
+        return entry;
+    }
+
+    /**
+     * Refreshes an entry in the background, unless that is already
+     * happening.
+     *
+     * @param hostname the host whose entry to refresh
+     * @param entry the current entry for the host
+     */
+    private void refreshInBackground(final String hostname, final Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        refresher.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resolve(hostname);
+                } catch (final UnknownHostException unknownHostException) {
+                    // Keep serving what we have; try again on next use.
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the executor shared by background refreshes.
+     *
+     * @return an executor with at most one thread, which times out
+     */
+    private static Executor newRefresher() {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, REFRESHER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new DaemonThreadFactory("medium-dns-refresh")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A set of resolved addresses for a host.
+     */
+    private static final class Entry {
+
+        private final List<InetAddress> addresses;
+        private final long refreshAt;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing;
+        private final AtomicInteger rotation;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param addresses the resolved addresses
+         * @param refreshAt when to start refreshing the entry
+         * @param expiresAt when the entry expires
+         */
+        Entry(final List<InetAddress> addresses,
+                final long refreshAt, final long expiresAt) {
+            this.addresses = Collections.unmodifiableList(
+                new ArrayList<InetAddress>(addresses)
+            );
+            this.refreshAt = refreshAt;
+            this.expiresAt = expiresAt;
+            this.refreshing = new AtomicBoolean();
+            this.rotation = new AtomicInteger();
+        }
+
+        /**
+         * Gets the addresses, rotated by one place since the last call.
+         * OkHttp tries addresses in order, so this spreads new
+         * connections across all of them.
+         *
+         * @return the addresses in the order in which to try them
+         */
+        List<InetAddress> nextAddresses() {
+            final int size = addresses.size();
+
+            if (1 == size) {
+                return addresses;
+            }
+
+            final int first = (rotation.getAndIncrement() & Integer.MAX_VALUE) % size;
+            final List<InetAddress> rotated = new ArrayList<InetAddress>(size);
+            rotated.addAll(addresses.subList(first, size));
+            rotated.addAll(addresses.subList(0, first));
+            return rotated;
+        }
+    }
+
+    /**
+     * Fascilitates the construction of a CachingDns.
+     */
+    public static class Builder {
+
+        private Dns delegate = Dns.SYSTEM;
+        private long ttlMillis = DEFAULT_TTL_MILLIS;
+        private long maxStaleMillis = DEFAULT_MAX_STALE_MILLIS;
+        private Executor refresher;
+
+        /**
+         * Sets the resolver that actually looks up hosts. Defaults to
+         * the system resolver.
+         *
+         * @param delegate the resolver to cache
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withDelegate(final Dns delegate) {
+            this.delegate = delegate;
+            return this;
+        }
+
+        /**
+         * Sets how long resolved addresses are served.
+         *
+         * @param ttl the time to live of resolved addresses
+         * @param unit the unit of the time to live
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withTtl(final long ttl, final TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Sets how long addresses continue to be served after they
+         * expire, if the resolver is failing.
+         *
+         * @param maxStale how long to serve stale addresses
+         * @param unit the unit of maxStale
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxStale(final long maxStale, final TimeUnit unit) {
+            this.maxStaleMillis = unit.toMillis(maxStale);
+            return this;
+        }
+
+        /**
+         * Sets the executor on which background refreshes run. Defaults
+         * to a single daemon thread shared by every CachingDns, which
+         * exits when it has been idle for a while.
+         *
+         * @param refresher the executor for background refreshes
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withRefresher(final Executor refresher) {
+            this.refresher = refresher;
+            return this;
+        }
+
+        /**
+         * Builds a new CachingDns with the configured settings.
+         *
+         * @return a new instance of CachingDns
+         */
+        public CachingDns build() {
+            return new CachingDns(this);
+        }
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CallContext carries the deadline and the cancellation state of one
+ * or more calls to the Medium API, from the caller down to the
+ * {@link HttpClient} which executes the requests.
+ *
+ * A context is attached to the calling thread for the duration of a
+ * call, so that HTTP clients can find it with {@link #current()}
+ * without it appearing in the {@link HttpClient} interface:
+ *
+ * <pre>
+ * CallContext context = CallContext.withTimeout(2, TimeUnit.SECONDS);
+ * CallContext previous = context.attach();
+ * try {
+ *     ...
+ * } finally {
+ *     context.detach(previous);
+ * }
+ * </pre>
+ *
+ * Any thread may {@link #cancel()} a context, which aborts the calls
+ * running in it as well as in all of its children.
+ *
+ * A context also carries the {@link Priority} of its calls and the
+ * tenant on whose behalf they are made, which its children inherit
+ * unless they are given their own.
+ */
+public final class CallContext {
+
+    /**
+     * The context attached to each thread, if any.
+     */
+    private static final ThreadLocal<CallContext> CURRENT =
+        new ThreadLocal<CallContext>();
+
+    /**
+     * The name of the operation each thread is making, if any.
+     */
+    private static final ThreadLocal<String> OPERATION =
+        new ThreadLocal<String>();
+
+    /**
+     * The status of the response each thread last received, in a
+     * holder of its own so that recording one costs no allocation.
+     */
+    private static final ThreadLocal<int[]> STATUS =
+        new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[] {Exchange.UNKNOWN_STATUS};
+            }
+        };
+
+    /**
+     * The longest {@link #sleep(long)} sleeps before checking whether
+     * its call has been cancelled.
+     */
+    private static final long CHECK_INTERVAL_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * The context from which this one inherits its deadline and its
+     * cancellation, if any.
+     */
+    private final CallContext parent;
+
+    /**
+     * Whether calls in this context have a deadline at all.
+     */
+    private final boolean hasDeadline;
+
+    /**
+     * The deadline, as a value of {@link System#nanoTime()}.
+     */
+    private final long deadlineNanos;
+
+    /**
+     * The priority of calls in this context.
+     */
+    private final Priority priority;
+
+    /**
+     * The key of the tenant on whose behalf calls are made, if any.
+     */
+    private final String tenant;
+
+    /**
+     * The parties to notify on cancellation. Guarded by itself.
+     */
+    private final List<CancellationListener> listeners;
+
+    /**
+     * Cancels this context when its parent is cancelled.
+     */
+    private final CancellationListener cancelWithParent =
+        new CancellationListener() {
+            @Override
+            public void onCancelled(final CallContext context) {
+                cancel();
+            }
+        };
+
+    /**
+     * Whether this context has been cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a new CallContext.
+     *
+     * @param parent the parent context, or null
+     * @param hasDeadline whether there is a deadline
+     * @param deadlineNanos the deadline, in terms of System.nanoTime()
+     * @param priority the priority of calls in the context
+     * @param tenant the tenant of calls in the context, or null
+     */
+    private CallContext(final CallContext parent, final boolean hasDeadline,
+            final long deadlineNanos, final Priority priority,
+            final String tenant) {
+
+        this.parent = parent;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.priority = priority;
+        this.tenant = tenant;
+        this.listeners = new ArrayList<CancellationListener>(2);
+    }
+
+    /**
+     * Gets the context attached to the current thread.
+     *
+     * @return the current context, or null if there is none
+     */
+    public static CallContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Gets the name of the operation the current thread is making, such
+     * as {@code "getUser"}, so that HTTP clients can tell calls apart.
+     * The operation is kept apart from the context, so that naming it
+     * costs no allocation.
+     *
+     * @return the name of the current operation, or null if there is
+     *         none
+     */
+    public static String currentOperation() {
+        return OPERATION.get();
+    }
+
+    /**
+     * Marks the current thread as making an operation, until
+     * {@link #exitOperation(String)} is called.
+     *
+     * @param operation the name of the operation
+     *
+     * @return the name of the operation the thread was making before,
+     *         which must be passed to {@link #exitOperation(String)}
+     */
+    public static String enterOperation(final String operation) {
+        final String previous = OPERATION.get();
+        OPERATION.set(operation);
+        return previous;
+    }
+
+    /**
+     * Marks the current thread as done with an operation, restoring the
+     * one it was making before.
+     *
+     * @param previous the value returned by
+     *                 {@link #enterOperation(String)}
+     */
+    public static void exitOperation(final String previous) {
+        OPERATION.set(previous);
+    }
+
+    /**
+     * Records the status of the response the current thread has just
+     * received, so that the decorators the call went through can find
+     * it with {@link #lastStatus()} once the {@link HttpClient} returns.
+     * HTTP clients which make requests record the status of each one;
+     * those which hand a call to another thread record the status of
+     * the response they use on the calling thread.
+     *
+     * @param status the status of the response, or
+     *               {@link Exchange#UNKNOWN_STATUS} to forget the last
+     */
+    public static void recordStatus(final int status) {
+        STATUS.get()[0] = status;
+    }
+
+    /**
+     * Gets the status of the response the current thread last received.
+     *
+     * @return the status last recorded with {@link #recordStatus(int)},
+     *         or {@link Exchange#UNKNOWN_STATUS} if there is none
+     */
+    public static int lastStatus() {
+        return STATUS.get()[0];
+    }
+
+    /**
+     * Waits on the current thread for a time, such as a simulated
+     * latency, or until the current context's deadline passes or it is
+     * cancelled, if that is sooner.
+     *
+     * @param nanos how long to wait, in nanoseconds
+     *
+     * @throws HttpException
+     *         If the current context's deadline passes, or it is
+     *         cancelled, or the thread is interrupted
+     */
+    public static void sleep(final long nanos) throws HttpException {
+        final CallContext context = CURRENT.get();
+        final long end = System.nanoTime() + nanos;
+
+        try {
+            long remaining = nanos;
+            while (remaining > 0) {
+                if (null != context) {
+                    context.checkActive();
+                    remaining = Math.min(remaining,
+                        context.remaining(TimeUnit.NANOSECONDS));
+                }
+                TimeUnit.NANOSECONDS.sleep(
+                    Math.min(remaining, CHECK_INTERVAL_NANOS));
+                remaining = end - System.nanoTime();
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CancelledException("Interrupted while waiting");
+        }
+
+        if (null != context) {
+            context.checkActive();
+        }
+    }
+
+    /**
+     * Creates a new context which has no deadline, but which can be
+     * cancelled.
+     *
+     * @return a new cancellable context
+     */
+    public static CallContext cancellable() {
+        return new CallContext(null, false, 0, Priority.NORMAL, null);
+    }
+
+    /**
+     * Creates a new context whose deadline is the given amount of time
+     * from now.
+     *
+     * @param timeout the time until the deadline
+     * @param unit the unit of the timeout
+     *
+     * @return a new context with a deadline
+     */
+    public static CallContext withTimeout(
+            final long timeout, final TimeUnit unit) {
+
+        return new CallContext(
+            null, true, deadlineAfter(timeout, unit), Priority.NORMAL, null
+        );
+    }
+
+    /**
+     * Creates a child of this context, which shares its deadline and is
+     * cancelled along with it, but can be cancelled on its own.
+     *
+     * A child must be {@link #close() closed} once it is no longer
+     * used.
+     *
+     * @return a new child context
+     */
+    public CallContext newChild() {
+        return adopt(
+            new CallContext(this, hasDeadline, deadlineNanos, priority, tenant)
+        );
+    }
+
+    /**
+     * Creates a child of this context, as {@link #newChild()}, whose
+     * deadline is the earlier of this context's and the given amount of
+     * time from now.
+     *
+     * @param timeout the time until the deadline of the child
+     * @param unit the unit of the timeout
+     *
+     * @return a new child context
+     */
+    public CallContext newChild(final long timeout, final TimeUnit unit) {
+        long deadline = deadlineAfter(timeout, unit);
+
+        if (hasDeadline && deadlineNanos - deadline < 0) {
+            deadline = deadlineNanos;
+        }
+
+        return adopt(
+            new CallContext(this, true, deadline, priority, tenant)
+        );
+    }
+
+    /**
+     * Attaches this context to the current thread.
+     *
+     * @return the context that was previously attached, which must be
+     *         passed to {@link #detach(CallContext)}
+     */
+    public CallContext attach() {
+        final CallContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Detaches this context from the current thread, restoring the one
+     * that was attached before it.
+     *
+     * @param previous the value returned by {@link #attach()}
+     */
+    public void detach(final CallContext previous) {
+        if (null != previous) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Cancels this context and all of its children. Calls which are in
+     * flight are aborted, and future calls fail right away.
+     */
+    public void cancel() {
+        final List<CancellationListener> notified;
+
+        synchronized (listeners) {
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            notified = new ArrayList<CancellationListener>(listeners);
+            listeners.clear();
+        }
+
+        for (CancellationListener listener : notified) {
+            listener.onCancelled(this);
+        }
+    }
+
+    /**
+     * Releases a child context from its parent. Has no effect on a
+     * context without a parent.
+     */
+    public void close() {
+        if (null != parent) {
+            parent.removeListener(cancelWithParent);
+        }
+    }
+
+    /**
+     * Gets the priority of calls in this context.
+     *
+     * @return the priority of calls in the context
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Gets the tenant on whose behalf calls in this context are made.
+     *
+     * @return the key of the tenant, or null if there is none
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Checks whether this context, or one of its parents, has been
+     * cancelled.
+     *
+     * @return true if the context has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks whether calls in this context have a deadline.
+     *
+     * @return true if there is a deadline
+     */
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * Checks whether the deadline of this context has passed.
+     *
+     * @return true if there is a deadline and it has passed
+     */
+    public boolean isExpired() {
+        return hasDeadline && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Gets the time remaining until the deadline.
+     *
+     * @param unit the unit in which to express the remaining time
+     *
+     * @return the remaining time, which is zero if the deadline has
+     *         passed, or {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long remaining(final TimeUnit unit) {
+        if (!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+
+        return unit.convert(
+            Math.max(0, deadlineNanos - System.nanoTime()),
+            TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Throws if calls should no longer be made in this context.
+     *
+     * @throws CancelledException
+     *         If the context has been cancelled
+     * @throws DeadlineExceededException
+     *         If the deadline has passed
+     */
+    public void checkActive()
+            throws CancelledException, DeadlineExceededException {
+
+        if (cancelled) {
+            throw new CancelledException("Call was cancelled");
+        }
+
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded");
+        }
+    }
+
+    /**
+     * Registers a listener to be notified when this context is
+     * cancelled. If it already is, the listener is notified right away.
+     *
+     * @param listener the listener to register
+     */
+    public void addListener(final CancellationListener listener) {
+        synchronized (listeners) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+
+        listener.onCancelled(this);
+    }
+
+    /**
+     * Unregisters a cancellation listener.
+     *
+     * @param listener the listener to unregister
+     */
+    public void removeListener(final CancellationListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Computes a deadline some time from now, without overflowing.
+     *
+     * @param timeout the time until the deadline
+     * @param unit the unit of the timeout
+     *
+     * @return the deadline in terms of System.nanoTime()
+     */
+    private static long deadlineAfter(final long timeout, final TimeUnit unit) {
+        final long nanos = Math.min(
+            unit.toNanos(Math.max(0, timeout)), Long.MAX_VALUE / 2
+        );
+
+        return System.nanoTime() + nanos;
+    }
+
+    /**
+     * Links a new child into this context's cancellation.
+     *
+     * @param child the new child
+     *
+     * @return the child
+     */
+    private CallContext adopt(final CallContext child) {
+        addListener(child.cancelWithParent);
+        return child;
+    }
+
+    /**
+     * Notified when a {@link CallContext} is cancelled.
+     */
+    public interface CancellationListener {
+
+        /**
+         * Called when a context is cancelled, on the thread which
+         * cancelled it.
+         *
+         * @param context the context that was cancelled
+         */
+        void onCancelled(CallContext context);
+    }
+
+    /**
+     * Fascilitates the construction of a CallContext with several
+     * options at once. A context built with a parent is a child of it,
+     * as from {@link CallContext#newChild()}, and must be closed.
+     */
+    public static class Builder {
+
+        private CallContext parent;
+        private boolean hasTimeout;
+        private long timeout;
+        private TimeUnit unit;
+        private Priority priority;
+        private String tenant;
+
+        /**
+         * Sets the parent of the context.
+         *
+         * @param parent the parent context, or null for none
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withParent(final CallContext parent) {
+            this.parent = parent;
+            return this;
+        }
+
+        /**
+         * Sets the time until the deadline of the context. If it has a
+         * parent with an earlier deadline, that deadline is kept.
+         *
+         * @param timeout the time until the deadline
+         * @param unit the unit of the timeout
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withTimeout(final long timeout, final TimeUnit unit) {
+            this.hasTimeout = true;
+            this.timeout = timeout;
+            this.unit = unit;
+            return this;
+        }
+
+        /**
+         * Sets the priority of calls in the context. By default, it is
+         * that of the parent, or {@link Priority#NORMAL}.
+         *
+         * @param priority the priority of calls in the context
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withPriority(final Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets the tenant on whose behalf calls in the context are made.
+         * By default, it is that of the parent, if any.
+         *
+         * @param tenant the key of the tenant
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withTenant(final String tenant) {
+            this.tenant = tenant;
+            return this;
+        }
+
+        /**
+         * Builds a new CallContext with the configured options.
+         *
+         * @return a new instance of CallContext
+         */
+        public CallContext build() {
+            boolean hasDeadline = null != parent && parent.hasDeadline;
+            long deadline = null != parent ? parent.deadlineNanos : 0;
+
+            if (hasTimeout) {
+                final long own = deadlineAfter(timeout, unit);
+
+                if (!hasDeadline || own - deadline < 0) {
+                    deadline = own;
+                }
+                hasDeadline = true;
+            }
+
+            Priority contextPriority = priority;
+            if (null == contextPriority) {
+                contextPriority = null != parent
+                    ? parent.priority : Priority.NORMAL;
+            }
+
+            String contextTenant = tenant;
+            if (null == contextTenant && null != parent) {
+                contextTenant = parent.tenant;
+            }
+
+            final CallContext context = new CallContext(
+                parent, hasDeadline, deadline, contextPriority, contextTenant
+            );
+
+            return null != parent ? parent.adopt(context) : context;
+        }
+    }
+}
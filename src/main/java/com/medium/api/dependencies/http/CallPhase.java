@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * The phases of an HTTP call, in the order in which they happen. A call
+ * which reuses a pooled connection skips straight to {@link #UPLOAD}.
+ *
+ * @see CallTimings
+ */
+public enum CallPhase {
+
+    /**
+     * Resolving the host's addresses.
+     */
+    DNS,
+
+    /**
+     * Opening a TCP connection to the host.
+     */
+    CONNECT,
+
+    /**
+     * Negotiating TLS on a new connection.
+     */
+    TLS,
+
+    /**
+     * Sending the body of the request.
+     */
+    UPLOAD,
+
+    /**
+     * Waiting on the server, from the end of the request until the
+     * headers of the response arrive.
+     */
+    SERVER,
+
+    /**
+     * Receiving the body of the response.
+     */
+    DOWNLOAD
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * A CallRejectedException is thrown when a call is turned away before
+ * it is sent, because too many calls are already waiting to be.
+ */
+public class CallRejectedException extends HttpException {
+
+    /**
+     * Constructs a new CallRejectedException.
+     *
+     * @param message the reason for the exception
+     */
+    public CallRejectedException(final String message) {
+        super(-1, message);
+    }
+}
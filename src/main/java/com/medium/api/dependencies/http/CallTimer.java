@@ -0,0 +1,343 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import javax.net.SocketFactory;
+
+/**
+ * A CallTimer times the phases of the calls an {@link OkayHttpClient}
+ * makes, and hands the {@link CallTimings} of each to a listener.
+ *
+ * OkHttp runs a synchronous call on the thread which made it, from
+ * resolving the host to reading the response, so the timer hooks into
+ * each phase on the way, and keeps the timings of the call in progress
+ * on a thread local.
+ */
+final class CallTimer {
+
+    /**
+     * The timings of the call in progress on each thread.
+     */
+    private static final ThreadLocal<Recording> CURRENT =
+        new ThreadLocal<Recording>();
+
+    /**
+     * The listener to which the timings of each call are handed.
+     */
+    private final CallTimingsListener listener;
+
+    /**
+     * Constructs a new CallTimer.
+     *
+     * @param listener the listener to which to hand the timings of each
+     *                 call
+     */
+    CallTimer(final CallTimingsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Derives a client from another, whose calls can be timed. The two
+     * clients share a connection pool.
+     *
+     * Connections are only timed when the client opens its sockets with
+     * the default SocketFactory; with any other, their time is counted
+     * as part of {@link CallPhase#TLS}, and every call looks like it
+     * reused a connection.
+     *
+     * @param okHttpClient the client to derive from
+     *
+     * @return the client whose calls to time
+     */
+    OkHttpClient instrument(final OkHttpClient okHttpClient) {
+        final OkHttpClient.Builder builder = okHttpClient.newBuilder()
+            .dns(new TimingDns(okHttpClient.dns()))
+            .addNetworkInterceptor(new TimingInterceptor());
+        if (okHttpClient.socketFactory() == SocketFactory.getDefault()) {
+            builder.socketFactory(new TimingSocketFactory());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Starts timing a call on the current thread.
+     *
+     * @param request the request the call is about to make
+     */
+    void start(final Request request) {
+        CURRENT.set(new Recording(request));
+    }
+
+    /**
+     * Stops timing the call on the current thread, and hands its
+     * timings to the listener.
+     */
+    void stop() {
+        final Recording recording = CURRENT.get();
+        CURRENT.remove();
+        if (null != recording) {
+            listener.onCallTimings(recording.finish());
+        }
+    }
+
+    /**
+     * The timings of a call in progress, only touched by the thread
+     * making it.
+     */
+    private static final class Recording {
+
+        private final String operation;
+        private final String method;
+        private final String url;
+        private final long startNanos;
+        private final long[] phaseNanos = new long[CallPhase.values().length];
+        private int status = -1;
+        private int connectionsOpened;
+        private long connectedAt;
+        private long respondedAt;
+
+        /**
+         * Constructs a new Recording of a call about to start.
+         *
+         * @param request the request the call is about to make
+         */
+        Recording(final Request request) {
+            this.operation = CallContext.currentOperation();
+            this.method = request.method();
+            this.url = request.url().toString();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Adds to the time spent in a phase.
+         *
+         * @param phase the phase
+         * @param nanos the time spent, in nanoseconds
+         */
+        void add(final CallPhase phase, final long nanos) {
+            phaseNanos[phase.ordinal()] += nanos;
+        }
+
+        /**
+         * Completes the timings, once the body of the response, if any,
+         * has been read.
+         *
+         * @return the timings of the call
+         */
+        CallTimings finish() {
+            final long now = System.nanoTime();
+            if (0 != respondedAt) {
+                add(CallPhase.DOWNLOAD, now - respondedAt);
+            }
+            return new CallTimings(operation, method, url, status,
+                startNanos, now - startNanos, phaseNanos, connectionsOpened);
+        }
+    }
+
+    /**
+     * Times host lookups.
+     */
+    private static final class TimingDns implements Dns {
+
+        private final Dns delegate;
+
+        /**
+         * Constructs a new TimingDns.
+         *
+         * @param delegate the resolver to time
+         */
+        TimingDns(final Dns delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<InetAddress> lookup(final String hostname)
+                throws UnknownHostException {
+
+            final long start = System.nanoTime();
+            try {
+                return delegate.lookup(hostname);
+            } finally {
+                final Recording recording = CURRENT.get();
+                if (null != recording) {
+                    recording.add(CallPhase.DNS, System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates sockets whose connections are timed.
+     */
+    private static final class TimingSocketFactory extends SocketFactory {
+
+        @Override
+        public Socket createSocket() {
+            return new TimingSocket();
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port)
+                throws IOException {
+            return SocketFactory.getDefault().createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port,
+                final InetAddress localHost, final int localPort)
+                throws IOException {
+            return SocketFactory.getDefault().createSocket(
+                host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress host, final int port)
+                throws IOException {
+            return SocketFactory.getDefault().createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress address, final int port,
+                final InetAddress localAddress, final int localPort)
+                throws IOException {
+            return SocketFactory.getDefault().createSocket(
+                address, port, localAddress, localPort);
+        }
+    }
+
+    /**
+     * A socket whose connection is timed.
+     */
+    private static final class TimingSocket extends Socket {
+
+        @Override
+        public void connect(final SocketAddress endpoint, final int timeout)
+                throws IOException {
+
+            final long start = System.nanoTime();
+            try {
+                super.connect(endpoint, timeout);
+            } finally {
+                final Recording recording = CURRENT.get();
+                if (null != recording) {
+                    final long now = System.nanoTime();
+                    recording.add(CallPhase.CONNECT, now - start);
+                    recording.connectionsOpened++;
+                    recording.connectedAt = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Times the request and the wait for the response, once a
+     * connection has been established.
+     */
+    private static final class TimingInterceptor implements Interceptor {
+
+        @Override
+        public Response intercept(final Chain chain) throws IOException {
+            final Recording recording = CURRENT.get();
+            if (null == recording) {
+                return chain.proceed(chain.request());
+            }
+
+            final long start = System.nanoTime();
+            if (0 != recording.connectedAt) {
+                if (chain.request().isHttps()) {
+                    recording.add(CallPhase.TLS, start - recording.connectedAt);
+                }
+                recording.connectedAt = 0;
+            }
+
+            Request request = chain.request();
+            if (null != request.body()) {
+                request = request.newBuilder()
+                    .method(request.method(),
+                        new TimingRequestBody(request.body(), recording))
+                    .build();
+            }
+
+            final long uploaded = recording.phaseNanos[CallPhase.UPLOAD.ordinal()];
+            final Response response = chain.proceed(request);
+            final long now = System.nanoTime();
+            recording.add(CallPhase.SERVER, now - start
+                - (recording.phaseNanos[CallPhase.UPLOAD.ordinal()] - uploaded));
+            recording.respondedAt = now;
+            recording.status = response.code();
+            return response;
+        }
+    }
+
+    /**
+     * A request body whose sending is timed.
+     */
+    private static final class TimingRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private final Recording recording;
+
+        /**
+         * Constructs a new TimingRequestBody.
+         *
+         * @param delegate the body to send
+         * @param recording the timings of the call sending it
+         */
+        TimingRequestBody(
+                final RequestBody delegate, final Recording recording) {
+            this.delegate = delegate;
+            this.recording = recording;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public void writeTo(final BufferedSink sink) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                delegate.writeTo(sink);
+            } finally {
+                recording.add(CallPhase.UPLOAD, System.nanoTime() - start);
+            }
+        }
+    }
+}
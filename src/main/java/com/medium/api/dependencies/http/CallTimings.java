@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CallTimings break down where the time of one HTTP call went, phase by
+ * phase, and say whether it got a connection from the pool.
+ *
+ * Phases which happen more than once in a call, such as when OkHttp
+ * retries on another route or follows a redirect, are added together.
+ * Time spent in the client itself, between phases, is part of the
+ * total only.
+ */
+public final class CallTimings {
+
+    /**
+     * The name of the operation which made the call, if known.
+     */
+    private final String operation;
+
+    /**
+     * The method of the request.
+     */
+    private final String method;
+
+    /**
+     * The URL of the request.
+     */
+    private final String url;
+
+    /**
+     * The status of the response, or -1 if there was none.
+     */
+    private final int status;
+
+    /**
+     * When the call started, as of System.nanoTime().
+     */
+    private final long startNanos;
+
+    /**
+     * How long the call took, in nanoseconds.
+     */
+    private final long totalNanos;
+
+    /**
+     * How long each phase took, in nanoseconds, by ordinal.
+     */
+    private final long[] phaseNanos;
+
+    /**
+     * The number of connections the call opened.
+     */
+    private final int connectionsOpened;
+
+    /**
+     * Constructs a new CallTimings.
+     *
+     * @param operation the name of the operation, or null
+     * @param method the method of the request
+     * @param url the URL of the request
+     * @param status the status of the response, or -1
+     * @param startNanos when the call started
+     * @param totalNanos how long the call took
+     * @param phaseNanos how long each phase took, by ordinal, which is
+     *                   not copied
+     * @param connectionsOpened the number of connections opened
+     */
+    CallTimings(final String operation, final String method,
+            final String url, final int status, final long startNanos,
+            final long totalNanos, final long[] phaseNanos,
+            final int connectionsOpened) {
+
+        this.operation = operation;
+        this.method = method;
+        this.url = url;
+        this.status = status;
+        this.startNanos = startNanos;
+        this.totalNanos = totalNanos;
+        this.phaseNanos = phaseNanos;
+        this.connectionsOpened = connectionsOpened;
+    }
+
+    /**
+     * Gets the name of the operation which made the call.
+     *
+     * @return the name of the operation, or null if it is not known
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the method of the request.
+     *
+     * @return the method of the request
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the URL of the request.
+     *
+     * @return the URL of the request
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the status of the response.
+     *
+     * @return the status of the response, or -1 if none arrived
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets when the call started.
+     *
+     * @return the start of the call, as of {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Gets how long the call took, from start to finish.
+     *
+     * @param unit the unit in which to express the time
+     *
+     * @return the duration of the call
+     */
+    public long getTotal(final TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets how long a phase of the call took.
+     *
+     * @param phase the phase
+     * @param unit the unit in which to express the time
+     *
+     * @return the duration of the phase, or zero if the call skipped it
+     */
+    public long getDuration(final CallPhase phase, final TimeUnit unit) {
+        return unit.convert(
+            phaseNanos[phase.ordinal()], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Whether the call was made on a connection taken from the pool,
+     * rather than one it opened itself.
+     *
+     * @return true if the call opened no connections
+     */
+    public boolean isConnectionReused() {
+        return 0 == connectionsOpened;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder()
+            .append(null != operation ? operation : method)
+            .append(' ').append(url)
+            .append(" status=").append(status)
+            .append(" total=").append(getTotal(TimeUnit.MICROSECONDS))
+            .append("us");
+        for (final CallPhase phase : CallPhase.values()) {
+            builder.append(' ').append(phase.name().toLowerCase())
+                .append('=').append(getDuration(phase, TimeUnit.MICROSECONDS))
+                .append("us");
+        }
+        return builder.append(" reused=").append(isConnectionReused())
+            .toString();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * A CallTimingsListener receives the {@link CallTimings} of each call
+ * an {@link OkayHttpClient} makes. It is called on the thread which
+ * made the call, once the call is done, so it should be quick.
+ */
+public interface CallTimingsListener {
+
+    /**
+     * Called when a call is done, whether or not it succeeded.
+     *
+     * @param timings the timings of the call
+     */
+    void onCallTimings(CallTimings timings);
+}
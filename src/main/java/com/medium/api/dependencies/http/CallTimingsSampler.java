@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A CallTimingsSampler keeps the {@link CallTimings} of recent calls in
+ * a ring buffer, for looking into after the fact, such as when a call
+ * was slow. It keeps one in every so many calls, and once the buffer is
+ * full, each new sample replaces the oldest. Sampling never blocks.
+ */
+public class CallTimingsSampler implements CallTimingsListener {
+
+    /**
+     * The samples, by sequence number modulo the capacity.
+     */
+    private final AtomicReferenceArray<CallTimings> samples;
+
+    /**
+     * Keep one in every this many calls.
+     */
+    private final int interval;
+
+    /**
+     * The number of calls seen.
+     */
+    private final AtomicLong seen = new AtomicLong();
+
+    /**
+     * The number of samples taken.
+     */
+    private final AtomicLong taken = new AtomicLong();
+
+    /**
+     * Constructs a new CallTimingsSampler which keeps every call.
+     *
+     * @param capacity the number of samples to keep
+     */
+    public CallTimingsSampler(final int capacity) {
+        this(capacity, 1);
+    }
+
+    /**
+     * Constructs a new CallTimingsSampler.
+     *
+     * @param capacity the number of samples to keep
+     * @param interval keep one in every this many calls
+     */
+    public CallTimingsSampler(final int capacity, final int interval) {
+        if (capacity < 1 || interval < 1) {
+            throw new IllegalArgumentException(
+                "Capacity and interval must be positive, got "
+                + capacity + " and " + interval
+            );
+        }
+        this.samples = new AtomicReferenceArray<CallTimings>(capacity);
+        this.interval = interval;
+    }
+
+    @Override
+    public void onCallTimings(final CallTimings timings) {
+        if (0 != seen.getAndIncrement() % interval) {
+            return;
+        }
+        final long sequence = taken.getAndIncrement();
+        samples.set((int) (sequence % samples.length()), timings);
+    }
+
+    /**
+     * Gets the samples kept. Samples taken while this runs may or may
+     * not be included.
+     *
+     * @return the samples, from the oldest to the newest
+     */
+    public List<CallTimings> getSamples() {
+        final long end = taken.get();
+        final long start = Math.max(0, end - samples.length());
+        final List<CallTimings> list =
+            new ArrayList<CallTimings>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final CallTimings sample =
+                samples.get((int) (sequence % samples.length()));
+            if (null != sample) {
+                list.add(sample);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Gets the number of samples taken, including those since replaced.
+     *
+     * @return the number of samples taken
+     */
+    public long getSampleCount() {
+        return taken.get();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
+
+/**
+ * Describes the file format shared by {@link RecordingHttpClient} and
+ * {@link ReplayingHttpClient}: a cassette of recorded HTTP exchanges.
+ *
+ * A cassette begins with {@link #MAGIC} and {@link #VERSION}, followed
+ * by one record per exchange, in the order they completed:
+ *
+ * <pre>
+ * byte   method      ({@link #GET} or {@link #POST})
+ * byte   outcome     ({@link #SUCCEEDED} or {@link #FAILED})
+ * int    code        (the HttpException's code if it failed, else the
+ *                     status of the response, or 0 if not known)
+ * long   latency     (in nanoseconds)
+ * string url
+ * string request     (the body, or null for a GET)
+ * string response    (the body, or the exception's message)
+ * </pre>
+ *
+ * where a string is its length in UTF-8 bytes as an int, or -1 for
+ * null, followed by those bytes. All numbers are big-endian.
+ */
+final class Cassette {
+
+    /**
+     * The first four bytes of every cassette.
+     */
+    static final int MAGIC = 0x4d454443;
+
+    /**
+     * The version of the format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The method of a GET exchange.
+     */
+    static final byte GET = 'G';
+
+    /**
+     * The method of a POST exchange.
+     */
+    static final byte POST = 'P';
+
+    /**
+     * The outcome of an exchange which returned a body.
+     */
+    static final byte SUCCEEDED = 0;
+
+    /**
+     * The outcome of an exchange which threw an HttpException.
+     */
+    static final byte FAILED = 1;
+
+    /**
+     * The encoding of strings.
+     */
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * What secrets are replaced with.
+     */
+    static final String REDACTED = "REDACTED";
+
+    /**
+     * Matches the JSON string fields which hold credentials, in both the
+     * requests this SDK sends and the tokens the API returns.
+     */
+    private static final Pattern SECRETS = Pattern.compile(
+        "(\"(?:access_token|refresh_token|accessToken|refreshToken"
+        + "|clientSecret|client_secret|code)\"\\s*:\\s*\")"
+        + "(?:[^\"\\\\]|\\\\.)*(\")");
+
+    /**
+     * Not to be instantiated.
+     */
+    private Cassette() {
+    }
+
+    /**
+     * Replaces the credentials in a request or response body, so that
+     * they are not written to disk.
+     *
+     * @param body the body, which may be null
+     *
+     * @return the body without credentials
+     */
+    static String redact(final String body) {
+        if (null == body || body.indexOf('"') < 0) {
+            return body;
+        }
+        return SECRETS.matcher(body).replaceAll("$1" + REDACTED + "$2");
+    }
+
+    /**
+     * Makes the key by which an exchange is matched on replay.
+     *
+     * @param method the method of the exchange
+     * @param url the url requested
+     * @param request the redacted body of the request, or null
+     *
+     * @return the key
+     */
+    static String keyOf(final byte method, final String url,
+            final String request) {
+        final StringBuilder key = new StringBuilder()
+            .append((char) method).append(' ').append(url);
+        if (null != request) {
+            key.append('\n').append(request);
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.medium.api.dependencies.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A CompletingInputStream wraps the body of a streamed response, and
+ * tells its subclass once, when it is closed, how reading it went. It
+ * lets the decorators of a {@link StreamingHttpClient} finish what they
+ * started for a call, such as releasing a permit or ending a span, when
+ * the call is really over rather than when its headers arrive.
+ */
+public abstract class CompletingInputStream extends FilterInputStream {
+
+    /**
+     * Why reading the body failed, or null if it has not.
+     */
+    private HttpException failure;
+
+    /**
+     * Whether the subclass has been told how the call went.
+     */
+    private boolean completed;
+
+    /**
+     * Constructs a new CompletingInputStream.
+     *
+     * @param body the body of the response
+     */
+    protected CompletingInputStream(final InputStream body) {
+        super(body);
+    }
+
+    @Override
+    public int read() throws IOException {
+        try {
+            return super.read();
+        } catch (final IOException ioException) {
+            throw failed(ioException);
+        } catch (final HttpException httpException) {
+            throw failed(httpException);
+        }
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length)
+            throws IOException {
+        try {
+            return super.read(buffer, offset, length);
+        } catch (final IOException ioException) {
+            throw failed(ioException);
+        } catch (final HttpException httpException) {
+            throw failed(httpException);
+        }
+    }
+
+    @Override
+    public long skip(final long count) throws IOException {
+        try {
+            return super.skip(count);
+        } catch (final IOException ioException) {
+            throw failed(ioException);
+        } catch (final HttpException httpException) {
+            throw failed(httpException);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (!completed) {
+                completed = true;
+                onComplete(failure);
+            }
+        }
+    }
+
+    /**
+     * Called once, when the stream is first closed. A stream closed
+     * before it has all been read is not a failure.
+     *
+     * @param readFailure why reading the body failed, with a status of
+     *                    {@link Exchange#UNKNOWN_STATUS} if the
+     *                    connection broke, or null if it did not fail
+     */
+    protected abstract void onComplete(HttpException readFailure);
+
+    /**
+     * Notes that reading the body failed because the connection broke.
+     *
+     * @param ioException why reading failed
+     *
+     * @return the failure, to be thrown
+     */
+    private IOException failed(final IOException ioException) {
+        if (null == failure) {
+            failure = new HttpException(Exchange.UNKNOWN_STATUS,
+                ioException.getMessage(), ioException);
+        }
+        return ioException;
+    }
+
+    /**
+     * Notes that reading the body failed because the call was aborted.
+     *
+     * @param httpException why reading failed
+     *
+     * @return the failure, to be thrown
+     */
+    private HttpException failed(final HttpException httpException) {
+        if (null == failure) {
+            failure = httpException;
+        }
+        return httpException;
+    }
+}
@@ -0,0 +1,1367 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ConcurrencyLimiter bounds the number of calls in flight at once.
+ * Calls beyond the limit wait in a queue for their turn, and calls
+ * beyond the bounds of the queue are rejected outright.
+ *
+ * By default the limit adapts to conditions upstream, by additive
+ * increase and multiplicative decrease (AIMD): it creeps up by one
+ * every time a full limit's worth of calls succeed, and is cut back by
+ * a tenth whenever a call is throttled (429), fails on the server
+ * (5xx), times out, or takes much longer than usual. It is cut back at
+ * most once per typical call latency, since the calls in flight at the
+ * time of one failure are likely to fail along with it.
+ *
+ * Waiting calls give up when the deadline of their {@link CallContext}
+ * passes, or when it is cancelled, and are never sent once it has: a
+ * call whose deadline passes while it waits is dropped rather than
+ * given a turn. Calls may also be given a maximum time to wait, after
+ * which they are shed.
+ *
+ * Each {@link Priority} has a lane of its own: waiting calls are let
+ * through from the highest priority lane first, and new calls never
+ * wait behind calls of a lower priority. Each lane may also be given a
+ * share of the limit, so that bulk work can't take up all of it and
+ * there is always room left for interactive calls. When the queue is
+ * full, a new call pushes out the newest call of the lowest priority
+ * below its own, so that low priority work is shed first.
+ *
+ * Within a lane, waiting calls are let through fairly across tenants,
+ * by deficit round robin: each tenant with calls waiting takes turns,
+ * sending as many calls per turn as its weight, so that one busy tenant
+ * can't crowd out the others. A tenant may also be capped to a number
+ * of calls in flight. Calls made outside of any tenant share the
+ * {@link #DEFAULT_TENANT}.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * The default initial limit.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    /**
+     * The default lower bound of the adaptive limit.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    /**
+     * The default upper bound of the adaptive limit.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    /**
+     * The default number of calls which may wait for their turn.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
+
+    /**
+     * The default share of the limit which batch calls may take up.
+     */
+    public static final double DEFAULT_BATCH_SHARE = 0.5;
+
+    /**
+     * The tenant of calls made outside of any tenant.
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    /**
+     * The default number of idle tenants whose metrics are kept.
+     */
+    public static final int DEFAULT_MAX_IDLE_TENANTS = 1024;
+
+    /**
+     * The lane of calls made outside of any context.
+     */
+    private static final int DEFAULT_LANE = Priority.NORMAL.ordinal();
+
+    /**
+     * The factor by which the limit is cut back.
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * How many times longer than usual a call must take to count as a
+     * sign of congestion.
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * The weight of each new latency in the typical latency.
+     */
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final boolean adaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final int maxInFlightPerTenant;
+    private final int maxIdleTenants;
+    private final Map<String, Integer> tenantWeights;
+
+    /**
+     * The longest each priority of call may wait, in nanoseconds, by
+     * ordinal.
+     */
+    private final long[] maxQueueWaitNanos;
+
+    /**
+     * Guards the state below, and is what waiting calls wait on.
+     */
+    private final ReentrantLock lock;
+
+    /**
+     * The lane of each priority, from the highest to the lowest.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * The tenants which have calls in flight or waiting, and those
+     * which recently have had, by key.
+     */
+    private final Map<String, Tenant> tenants;
+
+    /**
+     * The tenants with no calls in flight or waiting, by key, from the
+     * one idle longest to the one most recently idle.
+     */
+    private final Map<String, Tenant> idleTenants;
+
+    /**
+     * The number of calls rejected because the queue was full.
+     */
+    private final AtomicLong rejected;
+
+    /**
+     * The number of waiting calls shed, to make room for calls of a
+     * higher priority or because they waited too long.
+     */
+    private final AtomicLong shed;
+
+    /**
+     * The number of calls which gave up waiting, because they were
+     * cancelled or their deadline passed.
+     */
+    private final AtomicLong abandoned;
+
+    /**
+     * The current limit. It is fractional so that it can grow by less
+     * than one call at a time.
+     */
+    private double limit;
+
+    /**
+     * The number of calls in flight.
+     */
+    private int inFlight;
+
+    /**
+     * The number of calls waiting for their turn, in all lanes.
+     */
+    private int queueSize;
+
+    /**
+     * The typical latency of a successful call, in nanoseconds.
+     */
+    private double typicalLatencyNanos;
+
+    /**
+     * When the limit was last cut back, as of System.nanoTime().
+     */
+    private long lastBackoffNanos;
+
+    /**
+     * Constructs a new ConcurrencyLimiter with an adaptive limit and
+     * default settings.
+     */
+    public ConcurrencyLimiter() {
+        this(new Builder());
+    }
+
+    /**
+     * Constructs a new ConcurrencyLimiter from the settings in a
+     * builder.
+     *
+     * @param builder the builder holding the settings
+     */
+    private ConcurrencyLimiter(final Builder builder) {
+        this.adaptive = builder.adaptive;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.maxQueueSize = builder.maxQueueSize;
+        this.maxInFlightPerTenant = builder.maxInFlightPerTenant;
+        this.maxIdleTenants = builder.maxIdleTenants;
+        this.tenantWeights = new HashMap<String, Integer>(builder.weights);
+        this.maxQueueWaitNanos = builder.maxQueueWaitNanos.clone();
+        this.limit = builder.initialLimit;
+        this.lock = new ReentrantLock();
+        this.lanes = new Lane[Priority.values().length];
+        for (Priority priority : Priority.values()) {
+            lanes[priority.ordinal()] =
+                new Lane(priority, builder.shares[priority.ordinal()]);
+        }
+        this.tenants = new HashMap<String, Tenant>();
+        this.idleTenants = new LinkedHashMap<String, Tenant>();
+        this.rejected = new AtomicLong();
+        this.shed = new AtomicLong();
+        this.abandoned = new AtomicLong();
+        this.lastBackoffNanos = System.nanoTime();
+    }
+
+    /**
+     * Waits until a call may be sent, in the lane for the priority of
+     * the current context, on behalf of its tenant. Every successful
+     * acquire must be followed by exactly one of
+     * {@link #onSuccess(Permit, long)}, {@link #onDropped(Permit)},
+     * {@link #onTimeout(Permit, long)} or {@link #onIgnored(Permit)}.
+     *
+     * @return the permit to send the call, to be handed back on release
+     *
+     * @throws CallRejectedException
+     *         If too many calls are already waiting, or the call is shed
+     *         while waiting
+     * @throws CancelledException
+     *         If the current context is cancelled, or its deadline
+     *         passes, before the call's turn
+     */
+    public Permit acquire() throws CallRejectedException, CancelledException {
+        final CallContext context = CallContext.current();
+        if (null != context) {
+            context.checkActive();
+        }
+
+        final int laneIndex = null != context
+            ? context.getPriority().ordinal() : DEFAULT_LANE;
+        final String tenantKey = null != context && null != context.getTenant()
+            ? context.getTenant() : DEFAULT_TENANT;
+        final Waiter waiter;
+        final Flow flow;
+
+        lock.lock();
+        try {
+            flow = tenant(tenantKey).flows[laneIndex];
+
+            if (!hasWaitersAbove(flow.lane) && mayRun(flow)) {
+                grant(flow, 0);
+                return flow.permit;
+            }
+
+            if (queueSize >= maxQueueSize && !evictBelow(flow.lane)) {
+                retireIfIdle(flow.tenant);
+                rejected.incrementAndGet();
+                throw new CallRejectedException(
+                    "Too many calls waiting to be sent: " + queueSize
+                );
+            }
+
+            waiter = new Waiter(flow, context, lock.newCondition());
+            enqueue(waiter);
+
+            // The call may only be waiting on its own tenant's turn
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+
+        await(waiter, context);
+        return flow.permit;
+    }
+
+    /**
+     * Releases a call which succeeded, and takes its latency into
+     * account.
+     *
+     * @param permit the permit with which the call was sent
+     * @param latencyNanos the latency of the call, in nanoseconds
+     */
+    public void onSuccess(final Permit permit, final long latencyNanos) {
+        lock.lock();
+        try {
+            release(permit.flow);
+
+            if (adaptive) {
+                adapt(latencyNanos);
+            }
+
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a call which failed in a way that suggests the upstream
+     * is overloaded, so that the limit is cut back.
+     *
+     * @param permit the permit with which the call was sent
+     */
+    public void onDropped(final Permit permit) {
+        lock.lock();
+        try {
+            release(permit.flow);
+
+            if (adaptive) {
+                backOff();
+            }
+
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a call which ran out of time before it got a response.
+     * The deadline may have been its caller's own, and shorter than
+     * the upstream ever needs, so the call only counts as dropped if it
+     * took longer than a successful call typically does, by the same
+     * margin that cuts back the limit on success. Otherwise, or before
+     * any call has succeeded, it is ignored.
+     *
+     * @param permit the permit with which the call was sent
+     * @param latencyNanos how long the call took, in nanoseconds
+     */
+    public void onTimeout(final Permit permit, final long latencyNanos) {
+        lock.lock();
+        try {
+            release(permit.flow);
+
+            if (adaptive && 0 != typicalLatencyNanos
+                    && latencyNanos > LATENCY_TOLERANCE * typicalLatencyNanos) {
+                backOff();
+            }
+
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases a call whose outcome says nothing about the upstream,
+     * such as a call that was cancelled by its caller.
+     *
+     * @param permit the permit with which the call was sent
+     */
+    public void onIgnored(final Permit permit) {
+        lock.lock();
+        try {
+            release(permit.flow);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current limit on calls in flight.
+     *
+     * @return the current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls in flight.
+     *
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls of a priority in flight.
+     *
+     * @param priority the priority of the calls
+     *
+     * @return the number of calls of the priority in flight
+     */
+    public int getInFlight(final Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls waiting for their turn.
+     *
+     * @return the number of waiting calls
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queueSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls of a priority waiting for their turn.
+     *
+     * @param priority the priority of the calls
+     *
+     * @return the number of waiting calls of the priority
+     */
+    public int getQueueSize(final Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of calls rejected because too many calls were
+     * already waiting.
+     *
+     * @return the number of rejected calls
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Gets the number of waiting calls which were shed, to make room for
+     * calls of a higher priority or because they waited too long.
+     *
+     * @return the number of shed calls
+     */
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    /**
+     * Gets the number of calls which gave up waiting for their turn,
+     * because they were cancelled or their deadline passed.
+     *
+     * @return the number of calls which gave up
+     */
+    public long getAbandonedCount() {
+        return abandoned.get();
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every tenant with calls in
+     * flight or waiting, and of the tenants which most recently had.
+     * Beyond {@link Builder#withMaxIdleTenants(int)} idle tenants, the
+     * metrics of the tenant idle longest are dropped, and start again
+     * from zero if it makes calls again.
+     *
+     * @return the metrics of each tenant, by tenant key
+     */
+    public Map<String, TenantMetrics> getTenantMetrics() {
+        lock.lock();
+        try {
+            final Map<String, TenantMetrics> metrics =
+                new HashMap<String, TenantMetrics>(tenants.size() * 2);
+
+            for (Tenant tenant : tenants.values()) {
+                metrics.put(tenant.key, new TenantMetrics(tenant));
+            }
+
+            return Collections.unmodifiableMap(metrics);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a queued call's turn, and gives it up if the call is
+     * shed, or its context is no longer active by the time it comes.
+     *
+     * @param waiter the queued call
+     * @param context the context of the call, or null
+     */
+    private void await(final Waiter waiter, final CallContext context) {
+        if (null != context) {
+            context.addListener(waiter);
+        }
+
+        final long maxWaitNanos =
+            maxQueueWaitNanos[waiter.flow.lane.priority.ordinal()];
+
+        lock.lock();
+        try {
+            while (!waiter.granted || !isActive(context)) {
+                if (!isActive(context)) {
+                    abandon(waiter);
+                    abandoned.incrementAndGet();
+                    context.checkActive();
+                }
+
+                final long waitLeft =
+                    maxWaitNanos - (System.nanoTime() - waiter.queuedAtNanos);
+
+                if (waiter.shed || waitLeft <= 0) {
+                    abandon(waiter);
+                    shed.incrementAndGet();
+                    throw new CallRejectedException(waiter.shed
+                        ? "Shed to make room for calls of a higher priority"
+                        : "Waited too long to be sent"
+                    );
+                }
+
+                final long timeLeft = null != context
+                    ? Math.min(
+                        waitLeft, context.remaining(TimeUnit.NANOSECONDS)
+                    )
+                    : waitLeft;
+
+                waiter.turn.awaitNanos(timeLeft);
+            }
+        } catch (final InterruptedException interruptedException) {
+            abandon(waiter);
+            Thread.currentThread().interrupt();
+            throw new CancelledException("Interrupted while waiting to be sent");
+        } finally {
+            lock.unlock();
+
+            if (null != context) {
+                context.removeListener(waiter);
+            }
+        }
+    }
+
+    /**
+     * Checks whether calls may still be sent in a context.
+     *
+     * @param context the context, or null
+     *
+     * @return true if there is no context, or it is neither cancelled
+     *         nor past its deadline
+     */
+    private static boolean isActive(final CallContext context) {
+        return null == context || !(context.isCancelled() || context.isExpired());
+    }
+
+    /**
+     * Gets a tenant by key for a new call, creating it on its first
+     * call or if it was forgotten while idle. Must hold the lock.
+     *
+     * @param key the key of the tenant
+     *
+     * @return the tenant
+     */
+    private Tenant tenant(final String key) {
+        Tenant tenant = tenants.get(key);
+
+        if (null == tenant) {
+            final Integer weight = tenantWeights.get(key);
+            tenant = new Tenant(key, null != weight ? weight : 1, lanes);
+            tenants.put(key, tenant);
+        } else {
+            idleTenants.remove(key);
+        }
+
+        return tenant;
+    }
+
+    /**
+     * Marks a tenant as idle if it has no calls in flight or waiting,
+     * and forgets the tenants which have been idle longest once there
+     * are too many. An idle tenant's turns have all been reset, so
+     * nothing is lost but its metrics. Must hold the lock.
+     *
+     * @param tenant the tenant which may have become idle
+     */
+    private void retireIfIdle(final Tenant tenant) {
+        if (0 != tenant.inFlight || 0 != tenant.waiting) {
+            return;
+        }
+
+        idleTenants.remove(tenant.key);
+        idleTenants.put(tenant.key, tenant);
+
+        if (idleTenants.size() > maxIdleTenants) {
+            final Iterator<Tenant> eldest = idleTenants.values().iterator();
+            tenants.remove(eldest.next().key);
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Puts a call in line. Must hold the lock.
+     *
+     * @param waiter the call
+     */
+    private void enqueue(final Waiter waiter) {
+        final Flow flow = waiter.flow;
+
+        if (flow.queue.isEmpty()) {
+            flow.lane.active.addLast(flow);
+        }
+
+        flow.queue.addLast(waiter);
+        flow.lane.waiting++;
+        flow.tenant.waiting++;
+        queueSize++;
+    }
+
+    /**
+     * Takes a call out of line. Must hold the lock.
+     *
+     * @param waiter the call
+     */
+    private void remove(final Waiter waiter) {
+        final Flow flow = waiter.flow;
+        flow.queue.remove(waiter);
+
+        if (flow.queue.isEmpty()) {
+            flow.lane.active.remove(flow);
+            flow.deficit = 0;
+        }
+
+        flow.lane.waiting--;
+        flow.tenant.waiting--;
+        queueSize--;
+        retireIfIdle(flow.tenant);
+    }
+
+    /**
+     * Pushes out the newest call of the lowest priority below that of a
+     * lane, to make room for a call in the lane. Must hold the lock.
+     *
+     * @param lane the lane of the call which needs room
+     *
+     * @return true if a call was pushed out
+     */
+    private boolean evictBelow(final Lane lane) {
+        for (int i = lanes.length - 1; i > lane.priority.ordinal(); i--) {
+            if (0 < lanes[i].waiting) {
+                final Flow flow = lanes[i].active.peekLast();
+                final Waiter waiter = flow.queue.peekLast();
+
+                remove(waiter);
+                waiter.shed = true;
+                waiter.turn.signal();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Takes a call out of line, giving back its turn if it already got
+     * one. Must hold the lock.
+     *
+     * @param waiter the call which is giving up
+     */
+    private void abandon(final Waiter waiter) {
+        final Flow flow = waiter.flow;
+
+        if (waiter.granted) {
+            release(flow);
+            dispatch();
+        } else if (flow.queue.contains(waiter)) {
+            remove(waiter);
+        }
+    }
+
+    /**
+     * Lets waiting calls through, from the highest priority lane down,
+     * for as long as there is room. A lane which has used up its share
+     * does not hold up the lanes below it. Must hold the lock.
+     */
+    private void dispatch() {
+        for (int i = 0; i < lanes.length && 0 < queueSize; i++) {
+            dispatch(lanes[i]);
+
+            if (inFlight >= currentLimit()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lets waiting calls of one lane through, taking turns across
+     * tenants by deficit round robin. A tenant's turn ends when it has
+     * used up its weight in calls, has no more calls waiting, or has
+     * reached its cap; a tenant at its cap does not hold up the others.
+     * Must hold the lock.
+     *
+     * @param lane the lane
+     */
+    private void dispatch(final Lane lane) {
+        int capped = 0;
+
+        while (0 < lane.waiting && capped < lane.active.size()) {
+            final Flow flow = lane.active.peekFirst();
+
+            if (!mayRun(flow)) {
+                if (!hasRoom(lane)) {
+                    return;
+                }
+
+                lane.active.addLast(lane.active.pollFirst());
+                capped++;
+                continue;
+            }
+
+            final Waiter waiter = flow.queue.peekFirst();
+            remove(waiter);
+
+            if (!isActive(waiter.context)) {
+                // Too late for the call; it gives up once it wakes
+                waiter.turn.signal();
+                continue;
+            }
+
+            if (flow.deficit < 1) {
+                flow.deficit += flow.tenant.weight;
+            }
+
+            flow.deficit--;
+            grant(flow, System.nanoTime() - waiter.queuedAtNanos);
+            waiter.granted = true;
+            waiter.turn.signal();
+            capped = 0;
+
+            if (!flow.queue.isEmpty() && flow.deficit < 1) {
+                lane.active.addLast(lane.active.pollFirst());
+            }
+        }
+    }
+
+    /**
+     * Checks whether calls are waiting in a lane of a higher priority
+     * than, or the same priority as, the given lane. Must hold the lock.
+     *
+     * @param lane the lane of a new call
+     *
+     * @return true if the new call would jump the queue
+     */
+    private boolean hasWaitersAbove(final Lane lane) {
+        for (int i = 0; i <= lane.priority.ordinal(); i++) {
+            if (0 < lanes[i].waiting) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether there is room for another call of a tenant in a
+     * lane. Must hold the lock.
+     *
+     * @param flow the calls of the tenant in the lane
+     *
+     * @return true if the call may be sent
+     */
+    private boolean mayRun(final Flow flow) {
+        return hasRoom(flow.lane)
+            && flow.tenant.inFlight < maxInFlightPerTenant;
+    }
+
+    /**
+     * Checks whether there is room for another call in a lane,
+     * regardless of its tenant. Must hold the lock.
+     *
+     * @param lane the lane of the call
+     *
+     * @return true if the lane has room
+     */
+    private boolean hasRoom(final Lane lane) {
+        final int limitNow = currentLimit();
+
+        return inFlight < limitNow
+            && lane.inFlight < Math.max(1, (int) (limitNow * lane.share));
+    }
+
+    /**
+     * Counts a call as in flight. Must hold the lock.
+     *
+     * @param flow the calls of the tenant in the lane of the call
+     * @param waitNanos how long the call waited for its turn
+     */
+    private void grant(final Flow flow, final long waitNanos) {
+        inFlight++;
+        flow.lane.inFlight++;
+        flow.tenant.inFlight++;
+        flow.tenant.acquired++;
+        flow.tenant.totalWaitNanos += waitNanos;
+        flow.tenant.maxWaitNanos = Math.max(flow.tenant.maxWaitNanos, waitNanos);
+    }
+
+    /**
+     * Counts a call as no longer in flight. Must hold the lock.
+     *
+     * @param flow the calls of the tenant in the lane of the call
+     */
+    private void release(final Flow flow) {
+        inFlight--;
+        flow.lane.inFlight--;
+        flow.tenant.inFlight--;
+        retireIfIdle(flow.tenant);
+    }
+
+    /**
+     * Adapts the limit to the latency of a successful call. Must hold
+     * the lock.
+     *
+     * @param latencyNanos the latency of the call
+     */
+    private void adapt(final long latencyNanos) {
+        if (0 == typicalLatencyNanos) {
+            typicalLatencyNanos = latencyNanos;
+        }
+
+        if (latencyNanos > LATENCY_TOLERANCE * typicalLatencyNanos) {
+            backOff();
+        } else if (inFlight + 1 >= limit / 2) {
+            // Only grow if the limit is actually being put to use
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+
+        typicalLatencyNanos += LATENCY_SMOOTHING
+            * (latencyNanos - typicalLatencyNanos);
+    }
+
+    /**
+     * Cuts back the limit, unless it was cut back very recently. Must
+     * hold the lock.
+     */
+    private void backOff() {
+        final long now = System.nanoTime();
+
+        if (now - lastBackoffNanos < typicalLatencyNanos) {
+            return;
+        }
+
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastBackoffNanos = now;
+    }
+
+    /**
+     * Gets the limit as a whole number of calls. Must hold the lock.
+     *
+     * @return the current limit
+     */
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * A call waiting for its turn, which is woken up if its context is
+     * cancelled.
+     */
+    private final class Waiter implements CallContext.CancellationListener {
+
+        private final Flow flow;
+        private final CallContext context;
+        private final Condition turn;
+        private final long queuedAtNanos;
+        private boolean granted;
+        private boolean shed;
+
+        /**
+         * Constructs a new Waiter.
+         *
+         * @param flow the calls of the tenant in the lane of the call
+         * @param context the context of the call, or null
+         * @param turn the condition signalled when it is this call's
+         *             turn
+         */
+        Waiter(final Flow flow, final CallContext context,
+                final Condition turn) {
+            this.flow = flow;
+            this.context = context;
+            this.turn = turn;
+            this.queuedAtNanos = System.nanoTime();
+        }
+
+        @Override
+        public void onCancelled(final CallContext context) {
+            lock.lock();
+            try {
+                turn.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * The calls of one priority, in flight and waiting. Guarded by the
+     * lock of the limiter.
+     */
+    private static final class Lane {
+
+        private final Priority priority;
+        private final double share;
+
+        /**
+         * The tenants with calls waiting in this lane, in the order of
+         * their turns.
+         */
+        private final Deque<Flow> active;
+        private int inFlight;
+        private int waiting;
+
+        /**
+         * Constructs a new Lane.
+         *
+         * @param priority the priority of calls in the lane
+         * @param share the share of the limit the lane may take up
+         */
+        Lane(final Priority priority, final double share) {
+            this.priority = priority;
+            this.share = share;
+            this.active = new ArrayDeque<Flow>();
+        }
+    }
+
+    /**
+     * The calls of one tenant, in flight and waiting, with what it has
+     * made and waited so far. Guarded by the lock of the limiter.
+     */
+    private static final class Tenant {
+
+        private final String key;
+        private final int weight;
+        private final Flow[] flows;
+        private int inFlight;
+        private int waiting;
+        private long acquired;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        /**
+         * Constructs a new Tenant.
+         *
+         * @param key the key of the tenant
+         * @param weight the number of calls the tenant sends per turn
+         * @param lanes the lanes of the limiter
+         */
+        Tenant(final String key, final int weight, final Lane[] lanes) {
+            this.key = key;
+            this.weight = weight;
+            this.flows = new Flow[lanes.length];
+            for (int i = 0; i < lanes.length; i++) {
+                flows[i] = new Flow(this, lanes[i]);
+            }
+        }
+    }
+
+    /**
+     * The calls of one tenant in one lane. Guarded by the lock of the
+     * limiter.
+     */
+    private static final class Flow {
+
+        private final Tenant tenant;
+        private final Lane lane;
+        private final Deque<Waiter> queue;
+        private final Permit permit;
+
+        /**
+         * The number of calls the tenant may still send in its current
+         * turn.
+         */
+        private int deficit;
+
+        /**
+         * Constructs a new Flow.
+         *
+         * @param tenant the tenant making the calls
+         * @param lane the lane of the calls
+         */
+        Flow(final Tenant tenant, final Lane lane) {
+            this.tenant = tenant;
+            this.lane = lane;
+            this.queue = new ArrayDeque<Waiter>();
+            this.permit = new Permit(this);
+        }
+    }
+
+    /**
+     * Permission to send a call, handed out by
+     * {@link ConcurrencyLimiter#acquire()} and handed back on release.
+     */
+    public static final class Permit {
+
+        private final Flow flow;
+
+        /**
+         * Constructs a new Permit.
+         *
+         * @param flow the calls of the tenant in the lane of the call
+         */
+        private Permit(final Flow flow) {
+            this.flow = flow;
+        }
+
+        /**
+         * Gets the priority of the call sent with this permit.
+         *
+         * @return the priority of the call
+         */
+        public Priority getPriority() {
+            return flow.lane.priority;
+        }
+
+        /**
+         * Gets the tenant of the call sent with this permit.
+         *
+         * @return the key of the tenant
+         */
+        public String getTenant() {
+            return flow.tenant.key;
+        }
+    }
+
+    /**
+     * A snapshot of the calls of one tenant.
+     */
+    public static final class TenantMetrics {
+
+        private final int weight;
+        private final int inFlight;
+        private final int queueSize;
+        private final long acquiredCount;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        /**
+         * Constructs a new TenantMetrics.
+         *
+         * @param tenant the tenant of which to take a snapshot
+         */
+        private TenantMetrics(final Tenant tenant) {
+            this.weight = tenant.weight;
+            this.inFlight = tenant.inFlight;
+            this.queueSize = tenant.waiting;
+            this.acquiredCount = tenant.acquired;
+            this.totalWaitNanos = tenant.totalWaitNanos;
+            this.maxWaitNanos = tenant.maxWaitNanos;
+        }
+
+        /**
+         * Gets the number of calls the tenant sends per turn.
+         *
+         * @return the weight of the tenant
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets the number of calls of the tenant in flight.
+         *
+         * @return the number of calls in flight
+         */
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Gets the number of calls of the tenant waiting for their turn.
+         *
+         * @return the queue depth of the tenant
+         */
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /**
+         * Gets the number of calls of the tenant which have been let
+         * through, whether they had to wait or not.
+         *
+         * @return the number of calls let through
+         */
+        public long getAcquiredCount() {
+            return acquiredCount;
+        }
+
+        /**
+         * Gets the mean time calls of the tenant waited for their turn.
+         *
+         * @param unit the unit in which to express the time
+         *
+         * @return the mean wait, which is zero if no calls were made
+         */
+        public long getMeanWait(final TimeUnit unit) {
+            if (0 == acquiredCount) {
+                return 0;
+            }
+
+            return unit.convert(
+                totalWaitNanos / acquiredCount, TimeUnit.NANOSECONDS
+            );
+        }
+
+        /**
+         * Gets the longest time a call of the tenant waited for its turn.
+         *
+         * @param unit the unit in which to express the time
+         *
+         * @return the longest wait
+         */
+        public long getMaxWait(final TimeUnit unit) {
+            return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Fascilitates the construction of a ConcurrencyLimiter.
+     */
+    public static class Builder {
+
+        private boolean adaptive = true;
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+        private int minLimit = DEFAULT_MIN_LIMIT;
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+        private int maxInFlightPerTenant = Integer.MAX_VALUE;
+        private int maxIdleTenants = DEFAULT_MAX_IDLE_TENANTS;
+        private final double[] shares = defaultShares();
+        private final long[] maxQueueWaitNanos = defaultMaxQueueWaits();
+        private final Map<String, Integer> weights =
+            new HashMap<String, Integer>();
+
+        /**
+         * Sets the limit to start with.
+         *
+         * @param initialLimit the initial limit
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withInitialLimit(final int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Sets the bounds within which the limit adapts.
+         *
+         * @param minLimit the lowest the limit may go
+         * @param maxLimit the highest the limit may go
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withLimitBounds(final int minLimit, final int maxLimit) {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException(String.format(
+                    "Invalid limit bounds [%d, %d]", minLimit, maxLimit
+                ));
+            }
+
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Fixes the limit, so that it does not adapt.
+         *
+         * @param fixedLimit the limit
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withFixedLimit(final int fixedLimit) {
+            this.initialLimit = fixedLimit;
+            this.adaptive = false;
+            return this;
+        }
+
+        /**
+         * Sets the number of calls which may wait for their turn before
+         * further calls are rejected.
+         *
+         * @param maxQueueSize the maximum number of waiting calls
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxQueueSize(final int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Sets the share of the limit which calls of a priority may
+         * take up. By default, batch calls may take up half of it and
+         * other calls all of it.
+         *
+         * @param priority the priority of the calls
+         * @param share the share of the limit, between 0 and 1
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withShare(final Priority priority, final double share) {
+            if (share <= 0 || share > 1) {
+                throw new IllegalArgumentException(
+                    "Share must be in (0, 1], got " + share
+                );
+            }
+
+            this.shares[priority.ordinal()] = share;
+            return this;
+        }
+
+        /**
+         * Sets the longest calls of a priority may wait for their turn,
+         * after which they are shed with a {@link CallRejectedException}
+         * rather than sent late. By default, calls wait for as long as
+         * their deadline allows.
+         *
+         * @param priority the priority of the calls
+         * @param maxWait the longest the calls may wait
+         * @param unit the unit of the wait
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxQueueWait(final Priority priority,
+                final long maxWait, final TimeUnit unit) {
+            this.maxQueueWaitNanos[priority.ordinal()] = unit.toNanos(maxWait);
+            return this;
+        }
+
+        /**
+         * Caps the number of calls any one tenant may have in flight.
+         * By default, tenants are only bounded by the limit.
+         *
+         * @param maxInFlightPerTenant the cap on each tenant
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxInFlightPerTenant(final int maxInFlightPerTenant) {
+            if (maxInFlightPerTenant < 1) {
+                throw new IllegalArgumentException(
+                    "Cap must be at least 1, got " + maxInFlightPerTenant
+                );
+            }
+
+            this.maxInFlightPerTenant = maxInFlightPerTenant;
+            return this;
+        }
+
+        /**
+         * Sets the number of tenants with no calls in flight or waiting
+         * whose metrics are kept. Tenants come from the contexts of
+         * calls, so without a bound, a service with many tenants would
+         * keep every one it ever saw. By default, 1024 are kept.
+         *
+         * @param maxIdleTenants the number of idle tenants to keep
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxIdleTenants(final int maxIdleTenants) {
+            if (maxIdleTenants < 0) {
+                throw new IllegalArgumentException(
+                    "Idle tenants must not be negative, got " + maxIdleTenants
+                );
+            }
+
+            this.maxIdleTenants = maxIdleTenants;
+            return this;
+        }
+
+        /**
+         * Sets the weight of a tenant: the number of calls it sends per
+         * turn when tenants are taking turns. By default, each tenant
+         * has a weight of 1.
+         *
+         * @param tenant the key of the tenant
+         * @param weight the weight of the tenant
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withTenantWeight(final String tenant, final int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException(
+                    "Weight must be at least 1, got " + weight
+                );
+            }
+
+            this.weights.put(tenant, weight);
+            return this;
+        }
+
+        /**
+         * Builds a new ConcurrencyLimiter with the configured settings.
+         *
+         * @return a new instance of ConcurrencyLimiter
+         */
+        public ConcurrencyLimiter build() {
+            if (initialLimit < 1) {
+                throw new IllegalArgumentException(
+                    "Limit must be at least 1, got " + initialLimit
+                );
+            }
+
+            return new ConcurrencyLimiter(this);
+        }
+
+        /**
+         * Gets the default share of the limit of each priority.
+         *
+         * @return the default shares, by priority
+         */
+        private static double[] defaultShares() {
+            final double[] defaults = new double[Priority.values().length];
+            Arrays.fill(defaults, 1.0);
+            defaults[Priority.BATCH.ordinal()] = DEFAULT_BATCH_SHARE;
+            return defaults;
+        }
+
+        /**
+         * Gets the default longest wait of each priority, which is
+         * unbounded.
+         *
+         * @return the default longest waits, by priority
+         */
+        private static long[] defaultMaxQueueWaits() {
+            final long[] defaults = new long[Priority.values().length];
+            Arrays.fill(defaults, Long.MAX_VALUE);
+            return defaults;
+        }
+    }
+}
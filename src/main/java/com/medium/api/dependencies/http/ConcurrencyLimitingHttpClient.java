@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.InputStream;
+
+/**
+ * A ConcurrencyLimitingHttpClient holds each call until a
+ * {@link ConcurrencyLimiter} lets it through, and then reports back how
+ * the call went so that the limiter can adapt.
+ */
+public class ConcurrencyLimitingHttpClient extends ForwardingHttpClient {
+
+    /**
+     * The status code with which a server throttles its clients.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * The lowest status code of a server error.
+     */
+    private static final int SERVER_ERROR = 500;
+
+    /**
+     * The limiter through which calls pass.
+     */
+    private final ConcurrencyLimiter limiter;
+
+    /**
+     * Constructs a new ConcurrencyLimitingHttpClient.
+     *
+     * @param delegate the client which makes the calls
+     * @param limiter the limiter through which calls pass
+     */
+    public ConcurrencyLimitingHttpClient(
+            final HttpClient delegate, final ConcurrencyLimiter limiter) {
+        super(delegate);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+
+        return limit(Exchange.POST, url, body);
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        return limit(Exchange.GET, url, null);
+    }
+
+    /**
+     * Streams the response of a GET once the limiter lets it through,
+     * holding its permit until the stream is closed. The latency the
+     * limiter learns from is the time until the response began to
+     * arrive, which does not depend on how quickly it is read.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        final long start = System.nanoTime();
+        boolean released = false;
+
+        try {
+            final InputStream body = getDelegateStream(url);
+            final long latency = System.nanoTime() - start;
+            released = true;
+            return new CompletingInputStream(body) {
+                @Override
+                protected void onComplete(final HttpException readFailure) {
+                    if (null == readFailure) {
+                        limiter.onSuccess(permit, latency);
+                    } else {
+                        release(permit, readFailure, System.nanoTime() - start);
+                    }
+                }
+            };
+        } catch (final HttpException httpException) {
+            released = true;
+            release(permit, httpException, System.nanoTime() - start);
+            throw httpException;
+        } finally {
+            if (!released) {
+                limiter.onIgnored(permit);
+            }
+        }
+    }
+
+    /**
+     * Gets the limiter through which calls pass.
+     *
+     * @return the limiter
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Makes a call once the limiter lets it through, and tells the
+     * limiter how it went.
+     *
+     * @param method the method of the request, {@link Exchange#GET} or
+     *               {@link Exchange#POST}
+     * @param url the URL of the request
+     * @param body the body of the request, or null for a GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    private String limit(final String method, final String url,
+            final String body) throws HttpException {
+
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        final long start = System.nanoTime();
+        boolean released = false;
+
+        try {
+            final String response = Exchange.POST.equals(method)
+                ? getDelegate().post(url, body)
+                : getDelegate().get(url);
+            released = true;
+            limiter.onSuccess(permit, System.nanoTime() - start);
+            return response;
+        } catch (final HttpException httpException) {
+            released = true;
+            release(permit, httpException, System.nanoTime() - start);
+            throw httpException;
+        } finally {
+            if (!released) {
+                limiter.onIgnored(permit);
+            }
+        }
+    }
+
+    /**
+     * Releases a call which failed, telling the limiter whether the
+     * failure is a sign of overload. A call which ran out of time may
+     * only have had a tight deadline of its own, so the limiter decides
+     * from how long it took.
+     *
+     * @param permit the permit with which the call was sent
+     * @param httpException the failure
+     * @param latencyNanos how long the call took, in nanoseconds
+     */
+    private void release(final ConcurrencyLimiter.Permit permit,
+            final HttpException httpException, final long latencyNanos) {
+
+        if (httpException instanceof DeadlineExceededException) {
+            limiter.onTimeout(permit, latencyNanos);
+        } else if (isOverload(httpException)) {
+            limiter.onDropped(permit);
+        } else {
+            limiter.onIgnored(permit);
+        }
+    }
+
+    /**
+     * Decides whether a failure may be a sign that the server is
+     * overloaded. Throttling, server errors, timeouts and failures to
+     * connect may be; cancellations and other client errors are not.
+     * Missed deadlines never get here: whether one is depends on how
+     * long the call took, which is left to
+     * {@link ConcurrencyLimiter#onTimeout}.
+     *
+     * @param httpException the failure
+     *
+     * @return true if the failure suggests overload
+     */
+    static boolean isOverload(final HttpException httpException) {
+        if (httpException instanceof CancelledException
+                || httpException instanceof CallRejectedException) {
+            return false;
+        }
+
+        final int code = httpException.getCode();
+        return code < 0 || code == TOO_MANY_REQUESTS || code >= SERVER_ERROR;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads, so that the background work of the
+ * HTTP clients never holds the JVM open.
+ */
+final class DaemonThreadFactory implements ThreadFactory {
+
+    /**
+     * The prefix of the names of the threads.
+     */
+    private final String name;
+
+    /**
+     * The number of threads created so far.
+     */
+    private final AtomicInteger count;
+
+    /**
+     * Constructs a new DaemonThreadFactory.
+     *
+     * @param name the prefix of the names of the threads
+     */
+    DaemonThreadFactory(final String name) {
+        this.name = name;
+        this.count = new AtomicInteger();
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+        final Thread thread =
+            new Thread(runnable, name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An Exchange describes one HTTP call, as seen by {@link Interceptor}s:
+ * the operation which made it, the request, and once it is done, the
+ * outcome and how long it took.
+ */
+public final class Exchange {
+
+    /**
+     * The method of GET requests.
+     */
+    public static final String GET = "GET";
+
+    /**
+     * The method of POST requests.
+     */
+    public static final String POST = "POST";
+
+    /**
+     * The status of a call whose status is not known: one which failed
+     * without getting a response, or one made through an
+     * {@link HttpClient} which does not record the status of its
+     * responses with {@link CallContext#recordStatus(int)}.
+     */
+    public static final int UNKNOWN_STATUS = -1;
+
+    /**
+     * The name of the operation which made the call, if known.
+     */
+    private final String operation;
+
+    /**
+     * The method of the request.
+     */
+    private final String method;
+
+    /**
+     * The URL of the request.
+     */
+    private final String url;
+
+    /**
+     * The body of the request, if any.
+     */
+    private final String requestBody;
+
+    /**
+     * When the call started, as of System.nanoTime().
+     */
+    private final long startNanos;
+
+    /**
+     * When the call ended, as of System.nanoTime(), or zero if it has
+     * not.
+     */
+    private long endNanos;
+
+    /**
+     * The status of the response, or zero if there is none yet.
+     */
+    private int status;
+
+    /**
+     * The body of a successful response, if any.
+     */
+    private String responseBody;
+
+    /**
+     * What interceptors have attached to the call, as keys followed by
+     * their values, or null if nothing has been.
+     */
+    private Object[] attributes;
+
+    /**
+     * Whether an interceptor has asked for the call to be made again.
+     */
+    private boolean retryRequested;
+
+    /**
+     * Constructs a new Exchange for a call which is about to start.
+     *
+     * @param operation the name of the operation making the call, or
+     *                  null
+     * @param method the method of the request
+     * @param url the URL of the request
+     * @param requestBody the body of the request, or null
+     */
+    Exchange(final String operation, final String method, final String url,
+            final String requestBody) {
+
+        this.operation = operation;
+        this.method = method;
+        this.url = url;
+        this.requestBody = requestBody;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Gets the name of the operation which made the call, such as
+     * {@code "getUser"}.
+     *
+     * @return the name of the operation, or null if it is not known
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the method of the request, {@link #GET} or {@link #POST}.
+     *
+     * @return the method of the request
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the URL of the request.
+     *
+     * @return the URL of the request
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the body of the request.
+     *
+     * @return the body of the request, or null for a GET
+     */
+    public String getRequestBody() {
+        return requestBody;
+    }
+
+    /**
+     * Gets the status of the response. The status of a failure is that
+     * of its {@link HttpException}, which is {@link #UNKNOWN_STATUS} if
+     * it never got a response, such as a timeout. The status of a
+     * successful call is the one its {@link HttpClient} recorded with
+     * {@link CallContext#recordStatus(int)}, such as 201 for a new post,
+     * or {@link #UNKNOWN_STATUS} if it did not record one.
+     *
+     * @return the status of the response, or zero if the call is not
+     *         done yet
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the body of a successful response.
+     *
+     * @return the body of the response, or null if the call has not
+     *         succeeded or its response was streamed
+     */
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    /**
+     * Gets when the call started.
+     *
+     * @return the start of the call, as of {@link System#nanoTime()}
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Gets how long the call took, or has taken so far if it is not
+     * done yet.
+     *
+     * @param unit the unit in which to express the time
+     *
+     * @return the duration of the call
+     */
+    public long getElapsed(final TimeUnit unit) {
+        final long end = 0 != endNanos ? endNanos : System.nanoTime();
+        return unit.convert(end - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Attaches a value to the call, such as state an interceptor sets
+     * up in {@link Interceptor#onRequest} and needs again once the call
+     * is done. Attaching to the call, rather than to the thread, means
+     * nothing is left behind however the call ends.
+     *
+     * @param key the key, compared by identity
+     * @param value the value, or null to remove it
+     */
+    public void setAttribute(final Object key, final Object value) {
+        if (null == attributes) {
+            attributes = new Object[2];
+        }
+
+        int free = -1;
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (key == attributes[i]) {
+                attributes[i + 1] = value;
+                return;
+            }
+            if (null == attributes[i] && free < 0) {
+                free = i;
+            }
+        }
+
+        if (free < 0) {
+            free = attributes.length;
+            attributes = Arrays.copyOf(attributes, 2 * attributes.length);
+        }
+        attributes[free] = key;
+        attributes[free + 1] = value;
+    }
+
+    /**
+     * Gets a value attached to the call.
+     *
+     * @param key the key, compared by identity
+     *
+     * @return the value, or null if there is none
+     */
+    public Object getAttribute(final Object key) {
+        if (null != attributes) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (key == attributes[i]) {
+                    return attributes[i + 1];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Answers the call without sending it. Called from
+     * {@link Interceptor#onRequest}, this skips the interceptors after
+     * this one and the call itself, as for a response from a cache; the
+     * interceptors which saw the request then see this response.
+     *
+     * @param responseStatus the status of the response
+     * @param response the body of the response
+     *
+     * @throws IllegalStateException
+     *         If the call is already done
+     */
+    public void respond(final int responseStatus, final String response) {
+        if (isDone()) {
+            throw new IllegalStateException("The call is already done");
+        }
+        complete(responseStatus, response);
+    }
+
+    /**
+     * Asks for the call to be made again once the interceptors have
+     * seen that it failed. Called from {@link Interceptor#onException},
+     * the failure is not thrown, and the call starts over as a new
+     * Exchange, unless its context has been cancelled or its deadline
+     * has passed in the meantime. Interceptors which ask for retries
+     * are responsible for not asking forever.
+     */
+    public void retry() {
+        this.retryRequested = true;
+    }
+
+    /**
+     * Tells whether an interceptor has asked for the call to be made
+     * again.
+     *
+     * @return whether to make the call again
+     */
+    boolean isRetryRequested() {
+        return retryRequested;
+    }
+
+    /**
+     * Tells whether the call is done.
+     *
+     * @return whether the call has succeeded or failed
+     */
+    boolean isDone() {
+        return 0 != endNanos;
+    }
+
+    /**
+     * Marks the call as done.
+     *
+     * @param responseStatus the status of the response
+     * @param response the body of the response, or null if the call
+     *                 failed
+     */
+    void complete(final int responseStatus, final String response) {
+        this.endNanos = System.nanoTime();
+        this.status = responseStatus;
+        this.responseBody = response;
+    }
+}
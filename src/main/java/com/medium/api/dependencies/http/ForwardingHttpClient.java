@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A ForwardingHttpClient passes every call through to another
+ * {@link HttpClient}. It is the base for clients which decorate another
+ * with some extra behavior, and which only need to override the calls
+ * they are interested in.
+ *
+ * It is a {@link StreamingHttpClient} whatever its delegate, but only
+ * streams responses as they arrive if it overrides
+ * {@link #getStream(String)} to do so; otherwise, the response is read
+ * whole through {@link #get(String)}, so that the decorator's behavior
+ * still applies.
+ */
+public class ForwardingHttpClient
+        implements HttpClient, Preconnectable, StreamingHttpClient {
+
+    /**
+     * The encoding of buffered responses handed over as streams.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The client to which calls are forwarded.
+     */
+    private final HttpClient delegate;
+
+    /**
+     * Constructs a new ForwardingHttpClient.
+     *
+     * @param delegate the client to which to forward calls
+     */
+    public ForwardingHttpClient(final HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+        return delegate.post(url, body);
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        return delegate.get(url);
+    }
+
+    /**
+     * Reads the response whole through {@link #get(String)}, and hands
+     * it over as a stream. Decorators which can stream override this.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        return streamOf(get(url));
+    }
+
+    @Override
+    public void setBearerToken(final String bearerToken) {
+        delegate.setBearerToken(bearerToken);
+    }
+
+    /**
+     * Preconnects the delegate, if it is {@link Preconnectable}.
+     *
+     * @param url a URL on the host to which to connect
+     * @param connections the number of connections to open
+     *
+     * @return the number of connections that were established, which
+     *         is zero if the delegate can't preconnect
+     */
+    @Override
+    public int preconnect(final String url, final int connections)
+            throws HttpException {
+
+        if (delegate instanceof Preconnectable) {
+            return ((Preconnectable) delegate).preconnect(url, connections);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Makes a GET with the delegate, streaming the response if the
+     * delegate is a {@link StreamingHttpClient}, or else reading it
+     * whole.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    protected InputStream getDelegateStream(final String url)
+            throws HttpException {
+
+        if (delegate instanceof StreamingHttpClient) {
+            return ((StreamingHttpClient) delegate).getStream(url);
+        }
+
+        return streamOf(delegate.get(url));
+    }
+
+    /**
+     * Hands over a response which has been read whole as a stream.
+     *
+     * @param body the body of the response
+     *
+     * @return the body as a stream
+     */
+    protected static InputStream streamOf(final String body) {
+        return new ByteArrayInputStream(body.getBytes(UTF_8));
+    }
+
+    /**
+     * Gets the client to which calls are forwarded.
+     *
+     * @return the delegate client
+     */
+    protected HttpClient getDelegate() {
+        return delegate;
+    }
+}
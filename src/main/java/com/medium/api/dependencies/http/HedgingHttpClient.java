@@ -0,0 +1,321 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A HedgingHttpClient cuts the tail latency of GET requests by sending
+ * a second, identical request when the first is slow to respond, and
+ * using whichever response arrives first. The other request is then
+ * cancelled.
+ *
+ * Only GETs are hedged, since they are idempotent, and only when read
+ * whole: streams are passed straight through, since a response which
+ * is already being read cannot be swapped for another. When to hedge,
+ * and how often, is up to the {@link HedgingPolicy}.
+ *
+ * The original request runs on the calling thread and hedges run on
+ * background threads, each in a child of the caller's
+ * {@link CallContext}, so that they share its deadline. Hedges are
+ * made in the caller's operation and span too, so that they are traced
+ * as part of the same call. The status of the response which wins is
+ * recorded on the calling thread, wherever it arrived.
+ */
+public class HedgingHttpClient extends ForwardingHttpClient {
+
+    /**
+     * Runs the hedged requests.
+     */
+    private static final Executor HEDGES =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("medium-hedge"));
+
+    /**
+     * Decides when to hedge, and keeps score.
+     */
+    private final HedgingPolicy policy;
+
+    /**
+     * Constructs a new HedgingHttpClient.
+     *
+     * @param delegate the client which makes the requests
+     * @param policy the policy deciding when to hedge
+     */
+    public HedgingHttpClient(
+            final HttpClient delegate, final HedgingPolicy policy) {
+
+        super(delegate);
+        this.policy = policy;
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        policy.onRequest();
+        return new Race(url, CallContext.current()).start();
+    }
+
+    /**
+     * Streams the response of a GET from the delegate, without hedging
+     * it.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        return getDelegateStream(url);
+    }
+
+    /**
+     * Gets the policy deciding when to hedge, which also holds the
+     * hedging statistics.
+     *
+     * @return the hedging policy
+     */
+    public HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * A race between the original request and, should it be slow, a
+     * hedge.
+     */
+    private final class Race implements Runnable {
+
+        private final String url;
+        private final String operation;
+        private final SpanContext span;
+        private final CallContext primaryContext;
+        private final CallContext hedgeContext;
+        private final long startNanos;
+
+        // These are all guarded by the race itself
+        private boolean over;
+        private boolean hedging;
+        private boolean hedgeDone;
+        private String result;
+        private int status = Exchange.UNKNOWN_STATUS;
+
+        /**
+         * Sets up a new Race.
+         *
+         * @param url the url to GET
+         * @param parent the context of the caller, or null
+         */
+        Race(final String url, final CallContext parent) {
+            this.url = url;
+            this.operation = CallContext.currentOperation();
+            this.span = Spans.current();
+            this.primaryContext = newChild(parent);
+            this.hedgeContext = newChild(parent);
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Runs the original request on the calling thread, and a hedge
+         * if it is too slow.
+         *
+         * @return the first successful response
+         *
+         * @throws HttpException
+         *         If neither request is successful
+         */
+        String start() throws HttpException {
+            final ScheduledFuture<?> hedgeTimer = SharedTimer.schedule(
+                this, policy.getDelay(TimeUnit.NANOSECONDS)
+            );
+
+            final CallContext previous = primaryContext.attach();
+            try {
+                final String response = getDelegate().get(url);
+                finish(response, CallContext.lastStatus(), false);
+            } catch (final HttpException primaryFailure) {
+                return awaitHedge(primaryFailure);
+            } finally {
+                primaryContext.detach(previous);
+                primaryContext.close();
+                SharedTimer.cancel(hedgeTimer);
+                endHedging();
+            }
+
+            synchronized (this) {
+                CallContext.recordStatus(status);
+                return result;
+            }
+        }
+
+        /**
+         * Sends the hedge, if the race is not over yet and the budget
+         * allows it.
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (over || !policy.tryHedge()) {
+                    return;
+                }
+                hedging = true;
+            }
+
+            HEDGES.execute(new Runnable() {
+                @Override
+                public void run() {
+                    hedge();
+                }
+            });
+        }
+
+        /**
+         * Makes the hedged request, on a background thread.
+         */
+        private void hedge() {
+            final CallContext previous = hedgeContext.attach();
+            final String previousOperation =
+                CallContext.enterOperation(operation);
+            final SpanContext previousSpan = Spans.enter(span);
+
+            try {
+                finish(getDelegate().get(url), CallContext.lastStatus(), true);
+            } catch (final HttpException exception) {
+                // The original request may yet succeed
+            } finally {
+                Spans.exit(previousSpan);
+                CallContext.exitOperation(previousOperation);
+                hedgeContext.detach(previous);
+                hedgeContext.close();
+
+                synchronized (this) {
+                    hedgeDone = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Takes the first successful response, and cancels the request
+         * which lost. Either way, the time since the original request
+         * was sent is recorded as its latency: when the hedge wins, the
+         * original would have taken at least that long, whereas timing
+         * the hedge from when it was sent would make requests look
+         * faster than they are.
+         *
+         * @param response the response
+         * @param responseStatus the status of the response
+         * @param fromHedge whether the response is from the hedge
+         */
+        private void finish(final String response, final int responseStatus,
+                final boolean fromHedge) {
+            synchronized (this) {
+                if (null != result) {
+                    return;
+                }
+                result = response;
+                status = responseStatus;
+                over = true;
+                notifyAll();
+            }
+
+            policy.recordLatency(System.nanoTime() - startNanos);
+            if (fromHedge) {
+                policy.onHedgeWin();
+                primaryContext.cancel();
+            } else {
+                hedgeContext.cancel();
+            }
+        }
+
+        /**
+         * Waits for the hedge, after the original request has failed
+         * or been cancelled because the hedge won.
+         *
+         * @param primaryFailure why the original request failed
+         *
+         * @return the response to the hedge
+         *
+         * @throws HttpException
+         *         If there is no hedge, or it failed too
+         */
+        private String awaitHedge(final HttpException primaryFailure) {
+            boolean interrupted = false;
+
+            try {
+                synchronized (this) {
+                    over = over || !hedging;
+
+                    while (null == result && hedging && !hedgeDone) {
+                        try {
+                            wait();
+                        } catch (final InterruptedException exception) {
+                            interrupted = true;
+                            hedgeContext.cancel();
+                        }
+                    }
+
+                    if (null != result) {
+                        CallContext.recordStatus(status);
+                        return result;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            throw primaryFailure;
+        }
+
+        /**
+         * Makes sure no hedge is sent after the original request is
+         * done, and releases the hedge's context if none was sent.
+         */
+        private void endHedging() {
+            final boolean unused;
+
+            synchronized (this) {
+                over = true;
+                unused = !hedging;
+            }
+
+            if (unused) {
+                hedgeContext.close();
+            }
+        }
+
+        /**
+         * Creates a context for one of the requests in the race.
+         *
+         * @param parent the context of the caller, or null
+         *
+         * @return a new context for a request
+         */
+        private CallContext newChild(final CallContext parent) {
+            return null != parent ? parent.newChild() : CallContext.cancellable();
+        }
+    }
+}
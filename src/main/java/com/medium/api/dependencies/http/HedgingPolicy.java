@@ -0,0 +1,394 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A HedgingPolicy decides when a {@link HedgingHttpClient} sends a
+ * second copy of a slow request, and keeps count of how that works out.
+ *
+ * The hedge is sent once a request has taken longer than the hedging
+ * delay. By default the delay tracks a high percentile of the observed
+ * latencies, so that only the slowest few requests are hedged. The
+ * extra load is capped by a budget: hedges may make up at most a given
+ * fraction of all requests.
+ */
+public class HedgingPolicy {
+
+    /**
+     * The number of latency samples from which the percentile is
+     * estimated.
+     */
+    private static final int SAMPLE_SIZE = 512;
+
+    /**
+     * The number of samples to record between estimates.
+     */
+    private static final int ESTIMATE_INTERVAL = 64;
+
+    /**
+     * The number of samples needed before the estimate is used.
+     */
+    private static final int MIN_SAMPLES = 100;
+
+    /**
+     * Budget is accounted in thousandths of a hedge, to avoid floating
+     * point arithmetic in the atomic updates.
+     */
+    private static final long MILLI_TOKENS_PER_HEDGE = 1000;
+
+    /**
+     * The most hedges which may be saved up in the budget, so that a
+     * long quiet period can't be followed by a storm of hedges.
+     */
+    private static final long MAX_SAVED_HEDGES = 10;
+
+    /**
+     * The hedging delay until the percentile can be estimated, or
+     * always, if it is fixed.
+     */
+    private final long delayNanos;
+
+    /**
+     * Whether the delay is adapted to observed latencies.
+     */
+    private final boolean adaptive;
+
+    /**
+     * The percentile of observed latency used as the delay.
+     */
+    private final double percentile;
+
+    /**
+     * The budget each request adds, in thousandths of a hedge.
+     */
+    private final long milliTokensPerRequest;
+
+    /**
+     * The budget currently available, in thousandths of a hedge.
+     */
+    private final AtomicLong milliTokens;
+
+    /**
+     * The most recent latency samples, in nanoseconds.
+     */
+    private final AtomicLongArray samples;
+
+    /**
+     * The number of samples recorded so far.
+     */
+    private final AtomicLong sampleCount;
+
+    /**
+     * Guards against concurrent re-estimation.
+     */
+    private final AtomicBoolean estimating;
+
+    /**
+     * The latest percentile estimate; zero until there is one.
+     */
+    private volatile long estimateNanos;
+
+    /**
+     * The number of requests which were eligible for hedging.
+     */
+    private final AtomicLong requests;
+
+    /**
+     * The number of hedges sent.
+     */
+    private final AtomicLong hedges;
+
+    /**
+     * The number of hedges whose response was used.
+     */
+    private final AtomicLong hedgeWins;
+
+    /**
+     * Constructs a new HedgingPolicy, which hedges at the 95th
+     * percentile of latency, within a budget of 5% extra requests.
+     */
+    public HedgingPolicy() {
+        this(new Builder());
+    }
+
+    /**
+     * Constructs a new HedgingPolicy from the settings in a builder.
+     *
+     * @param builder the builder holding the settings
+     */
+    private HedgingPolicy(final Builder builder) {
+        this.delayNanos = builder.delayNanos;
+        this.adaptive = builder.adaptive;
+        this.percentile = builder.percentile;
+        this.milliTokensPerRequest =
+            Math.round(builder.budget * MILLI_TOKENS_PER_HEDGE);
+        this.milliTokens = new AtomicLong();
+        this.samples = new AtomicLongArray(SAMPLE_SIZE);
+        this.sampleCount = new AtomicLong();
+        this.estimating = new AtomicBoolean();
+        this.requests = new AtomicLong();
+        this.hedges = new AtomicLong();
+        this.hedgeWins = new AtomicLong();
+    }
+
+    /**
+     * Gets how long to wait for a response before hedging.
+     *
+     * @param unit the unit in which to express the delay
+     *
+     * @return the current hedging delay
+     */
+    public long getDelay(final TimeUnit unit) {
+        final long estimate = estimateNanos;
+        return unit.convert(
+            adaptive && estimate > 0 ? estimate : delayNanos,
+            TimeUnit.NANOSECONDS
+        );
+    }
+
+    /**
+     * Gets the number of requests which were eligible for hedging.
+     *
+     * @return the number of requests
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of hedges that were sent.
+     *
+     * @return the number of hedges
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Gets the number of hedges whose response was used.
+     *
+     * @return the number of winning hedges
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Gets the fraction of requests which were hedged.
+     *
+     * @return the hedge rate, between 0 and 1
+     */
+    public double getHedgeRate() {
+        return ratio(hedges.get(), requests.get());
+    }
+
+    /**
+     * Gets the fraction of hedges which beat the original request.
+     *
+     * @return the win rate, between 0 and 1
+     */
+    public double getWinRate() {
+        return ratio(hedgeWins.get(), hedges.get());
+    }
+
+    /**
+     * Accounts for a new request, adding to the hedging budget.
+     */
+    void onRequest() {
+        requests.incrementAndGet();
+
+        final long max = MAX_SAVED_HEDGES * MILLI_TOKENS_PER_HEDGE;
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!milliTokens.compareAndSet(
+            current, Math.min(max, current + milliTokensPerRequest)));
+    }
+
+    /**
+     * Takes a hedge out of the budget, if there is one available.
+     *
+     * @return true if a hedge may be sent
+     */
+    boolean tryHedge() {
+        long current;
+        do {
+            current = milliTokens.get();
+            if (current < MILLI_TOKENS_PER_HEDGE) {
+                return false;
+            }
+        } while (!milliTokens.compareAndSet(
+            current, current - MILLI_TOKENS_PER_HEDGE));
+
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Accounts for a hedge having won the race.
+     */
+    void onHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * Records the latency of a successful request, or how long it had
+     * taken when a hedge beat it, which is the least it would have
+     * taken.
+     *
+     * @param latencyNanos the latency, in nanoseconds
+     */
+    void recordLatency(final long latencyNanos) {
+        if (!adaptive) {
+            return;
+        }
+
+        final long count = sampleCount.getAndIncrement();
+        samples.set((int) (count % SAMPLE_SIZE), latencyNanos);
+
+        if (count + 1 >= MIN_SAMPLES && 0 == count % ESTIMATE_INTERVAL) {
+            estimate(Math.min(count + 1, SAMPLE_SIZE));
+        }
+    }
+
+    /**
+     * Re-estimates the percentile from the recorded samples, unless
+     * another thread is already doing so.
+     *
+     * @param size the number of samples available
+     */
+    private void estimate(final long size) {
+        if (!estimating.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            final long[] sorted = new long[(int) size];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+
+            final int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            estimateNanos = sorted[Math.max(0, index)];
+        } finally {
+            estimating.set(false);
+        }
+    }
+
+    /**
+     * Divides two counts, treating division by zero as zero.
+     *
+     * @param numerator the numerator
+     * @param denominator the denominator
+     *
+     * @return the ratio of the counts
+     */
+    private static double ratio(final long numerator, final long denominator) {
+        return 0 == denominator ? 0 : (double) numerator / denominator;
+    }
+
+    /**
+     * Fascilitates the construction of a HedgingPolicy.
+     */
+    public static class Builder {
+
+        private long delayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private boolean adaptive = true;
+        private double percentile = 95;
+        private double budget = 0.05;
+
+        /**
+         * Hedges requests after a fixed delay, rather than at a
+         * percentile of observed latency.
+         *
+         * @param delay the time after which to hedge
+         * @param unit the unit of the delay
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withDelay(final long delay, final TimeUnit unit) {
+            this.delayNanos = unit.toNanos(delay);
+            this.adaptive = false;
+            return this;
+        }
+
+        /**
+         * Hedges requests which take longer than a percentile of the
+         * observed latency. Until enough latencies have been observed,
+         * the initial delay is used instead. This is the default, at
+         * the 95th percentile with an initial delay of 100ms.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @param initialDelay the delay to use until then
+         * @param unit the unit of the initial delay
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withPercentile(final double percentile,
+                final long initialDelay, final TimeUnit unit) {
+
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException(
+                    "Percentile must be in (0, 100], got " + percentile
+                );
+            }
+
+            this.percentile = percentile;
+            this.delayNanos = unit.toNanos(initialDelay);
+            this.adaptive = true;
+            return this;
+        }
+
+        /**
+         * Sets the largest fraction of requests that may be hedged,
+         * e.g. 0.05 for 5%. The default is 0.05.
+         *
+         * @param budget the hedging budget, between 0 and 1
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withBudget(final double budget) {
+            if (budget < 0 || budget > 1) {
+                throw new IllegalArgumentException(
+                    "Budget must be in [0, 1], got " + budget
+                );
+            }
+
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Builds a new HedgingPolicy with the configured settings.
+         *
+         * @return a new instance of HedgingPolicy
+         */
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
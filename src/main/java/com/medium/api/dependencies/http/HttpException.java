@@ -39,6 +39,20 @@ public class HttpException extends RuntimeException {
         this.code = code;
     }
 
+    /**
+     * Constructs a new HttpException.
+     *
+     * @param code the HTTP status code, if avaialable
+     * @param message the reason for the exception
+     * @param cause what caused the exception
+     */
+    public HttpException(final int code, final String message,
+            final Throwable cause) {
+
+        super(message, cause);
+        this.code = code;
+    }
+
     /**
      * Gets the status code.
      *
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * An InterceptingHttpClient passes each call through a chain of
+ * {@link Interceptor}s, for behavior that cuts across all calls such as
+ * logging or metrics.
+ *
+ * An empty chain costs nothing: {@link #wrap(HttpClient, List)} returns
+ * the client it is given as it is, so calls go straight through to it.
+ */
+public class InterceptingHttpClient extends ForwardingHttpClient {
+
+    /**
+     * The interceptors, in the order in which they see requests.
+     */
+    private final Interceptor[] interceptors;
+
+    /**
+     * Constructs a new InterceptingHttpClient.
+     *
+     * @param delegate the client which makes the calls
+     * @param interceptors the interceptors, in the order in which they
+     *                     see requests
+     */
+    public InterceptingHttpClient(final HttpClient delegate,
+            final List<Interceptor> interceptors) {
+
+        super(delegate);
+        this.interceptors =
+            interceptors.toArray(new Interceptor[interceptors.size()]);
+    }
+
+    /**
+     * Wraps a client in a chain of interceptors, unless the chain is
+     * empty.
+     *
+     * @param delegate the client which makes the calls
+     * @param interceptors the interceptors, in the order in which they
+     *                     see requests
+     *
+     * @return the intercepting client, or the delegate itself if there
+     *         are no interceptors
+     */
+    public static HttpClient wrap(final HttpClient delegate,
+            final List<Interceptor> interceptors) {
+
+        if (interceptors.isEmpty()) {
+            return delegate;
+        }
+
+        return new InterceptingHttpClient(delegate, interceptors);
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+
+        return intercept(Exchange.POST, url, body);
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        return intercept(Exchange.GET, url, null);
+    }
+
+    /**
+     * Streams the response of a GET, letting the interceptors see the
+     * call before it is sent, and after the stream is closed. A call
+     * which fails before the stream is handed over may be retried; one
+     * which fails while it is being read may not.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        while (true) {
+            final Exchange exchange = new Exchange(
+                CallContext.currentOperation(), Exchange.GET, url, null
+            );
+            try {
+                return attemptStream(exchange);
+            } catch (final RuntimeException failure) {
+                retryOrThrow(exchange, failure);
+            }
+        }
+    }
+
+    /**
+     * Makes a call, letting the interceptors see it before and after,
+     * and making it again for as long as they ask.
+     *
+     * @param method the method of the request
+     * @param url the URL of the request
+     * @param body the body of the request, or null
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    private String intercept(final String method, final String url,
+            final String body) throws HttpException {
+
+        while (true) {
+            final Exchange exchange = new Exchange(
+                CallContext.currentOperation(), method, url, body
+            );
+            try {
+                return attempt(exchange);
+            } catch (final RuntimeException failure) {
+                retryOrThrow(exchange, failure);
+            }
+        }
+    }
+
+    /**
+     * Makes one attempt at a call, letting the interceptors see it
+     * before and after.
+     *
+     * @param exchange the call to make
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    private String attempt(final Exchange exchange) throws HttpException {
+        final int entered = enter(exchange);
+
+        if (exchange.isDone()) {
+            CallContext.recordStatus(exchange.getStatus());
+        } else {
+            final String response;
+            try {
+                response = send(exchange);
+            } catch (final RuntimeException failure) {
+                throw fail(exchange, entered, failure);
+            }
+            exchange.complete(CallContext.lastStatus(), response);
+        }
+
+        succeed(exchange, entered);
+        return exchange.getResponseBody();
+    }
+
+    /**
+     * Makes one attempt at streaming the response of a GET, letting the
+     * interceptors see it before it is sent, and after the stream is
+     * closed.
+     *
+     * @param exchange the call to make
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    private InputStream attemptStream(final Exchange exchange)
+            throws HttpException {
+
+        final int entered = enter(exchange);
+
+        if (exchange.isDone()) {
+            CallContext.recordStatus(exchange.getStatus());
+            succeed(exchange, entered);
+            return streamOf(exchange.getResponseBody());
+        }
+
+        final InputStream body;
+        CallContext.recordStatus(Exchange.UNKNOWN_STATUS);
+        try {
+            body = getDelegateStream(exchange.getUrl());
+        } catch (final RuntimeException failure) {
+            throw fail(exchange, entered, failure);
+        }
+
+        final int status = CallContext.lastStatus();
+        return new CompletingInputStream(body) {
+            @Override
+            protected void onComplete(final HttpException readFailure) {
+                if (null == readFailure) {
+                    exchange.complete(status, null);
+                    succeed(exchange, entered);
+                } else {
+                    fail(exchange, entered, readFailure);
+                }
+            }
+        };
+    }
+
+    /**
+     * Lets the interceptors see a call before it is sent, until one of
+     * them answers it.
+     *
+     * @param exchange the call
+     *
+     * @return how many interceptors saw the request
+     */
+    private int enter(final Exchange exchange) {
+        int entered = 0;
+        try {
+            while (entered < interceptors.length && !exchange.isDone()) {
+                interceptors[entered].onRequest(exchange);
+                entered++;
+            }
+        } catch (final RuntimeException failure) {
+            throw fail(exchange, entered, failure);
+        }
+        return entered;
+    }
+
+    /**
+     * Sends a call to the delegate.
+     *
+     * @param exchange the call to send
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    private String send(final Exchange exchange) throws HttpException {
+        CallContext.recordStatus(Exchange.UNKNOWN_STATUS);
+        if (Exchange.POST.equals(exchange.getMethod())) {
+            return getDelegate().post(
+                exchange.getUrl(), exchange.getRequestBody()
+            );
+        }
+        return getDelegate().get(exchange.getUrl());
+    }
+
+    /**
+     * Lets the interceptors which saw a call know that it succeeded.
+     *
+     * @param exchange the call which succeeded
+     * @param entered how many interceptors saw the request
+     */
+    private void succeed(final Exchange exchange, final int entered) {
+        for (int i = entered - 1; i >= 0; i--) {
+            interceptors[i].onResponse(exchange);
+        }
+    }
+
+    /**
+     * Marks a call as failed, and lets the interceptors which saw it
+     * know. A failure other than an {@link HttpException} is passed to
+     * them wrapped in one.
+     *
+     * @param exchange the call which failed
+     * @param entered how many interceptors saw the request
+     * @param failure why the call failed
+     *
+     * @return the failure, to be thrown
+     */
+    private RuntimeException fail(final Exchange exchange, final int entered,
+            final RuntimeException failure) {
+
+        final HttpException httpException = failure instanceof HttpException
+            ? (HttpException) failure
+            : new HttpException(
+                Exchange.UNKNOWN_STATUS, failure.toString(), failure);
+
+        exchange.complete(httpException.getCode(), null);
+
+        for (int i = entered - 1; i >= 0; i--) {
+            interceptors[i].onException(exchange, httpException);
+        }
+
+        return failure;
+    }
+
+    /**
+     * Rethrows the failure of a call, unless an interceptor asked for
+     * the call to be made again and its context is still active.
+     *
+     * @param exchange the call which failed
+     * @param failure why the call failed
+     */
+    private static void retryOrThrow(final Exchange exchange,
+            final RuntimeException failure) {
+
+        if (!exchange.isRetryRequested()) {
+            throw failure;
+        }
+
+        final CallContext context = CallContext.current();
+        if (null != context) {
+            context.checkActive();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * An Interceptor sees each HTTP call made through an
+ * {@link InterceptingHttpClient}: before it is sent, and once it has
+ * succeeded or failed. Besides observing, it may answer a call itself
+ * with {@link Exchange#respond(int, String)}, or ask for a failed one
+ * to be made again with {@link Exchange#retry()}.
+ *
+ * Interceptors are called in order before a call is sent, and in
+ * reverse order after, so that the first interceptor sees the whole of
+ * the call as made by the others. Every interceptor which saw a request
+ * sees how it ended, whatever the call throws. They run on the calling
+ * thread, so they should be quick; an interceptor which throws fails
+ * the call.
+ */
+public interface Interceptor {
+
+    /**
+     * Called before a call is sent.
+     *
+     * @param exchange the call, which the interceptor may answer with
+     *                 {@link Exchange#respond(int, String)}
+     */
+    void onRequest(Exchange exchange);
+
+    /**
+     * Called after a call has succeeded.
+     *
+     * @param exchange the call, with its response
+     */
+    void onResponse(Exchange exchange);
+
+    /**
+     * Called after a call has failed. A failure other than an
+     * {@link HttpException} is passed on wrapped in one, with an
+     * {@link Exchange#UNKNOWN_STATUS}, and is then thrown as it was.
+     *
+     * @param exchange the call, with the status of the failure, which
+     *                 the interceptor may ask to be made again with
+     *                 {@link Exchange#retry()}
+     * @param exception why the call failed
+     */
+    void onException(Exchange exchange, HttpException exception);
+}
@@ -16,13 +16,31 @@
 
 package com.medium.api.dependencies.http;
 
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * OkHttpClient is a dependency wrapper around the OkHttp library.
@@ -32,7 +50,8 @@ import java.io.IOException;
  *
  * "OkHttp may change, but your app logic shouldn't have to." (TM)
  */
-public class OkayHttpClient implements HttpClient {
+public class OkayHttpClient
+        implements HttpClient, Preconnectable, StreamingHttpClient {
 
     // Miscellaneous HTTP Header Constants
     private static final String CONTENT_TYPE = "Content-Type";
@@ -48,6 +67,17 @@ public class OkayHttpClient implements HttpClient {
      */
     private final OkHttpClient okHttpClient;
 
+    /**
+     * The OkHttpClient through which API calls are made, which times
+     * them if there is a timer.
+     */
+    private final OkHttpClient callClient;
+
+    /**
+     * The timer of API calls, or null if they are not timed.
+     */
+    private final CallTimer timer;
+
     /**
      * The valid access token for Medium.
      */
@@ -76,17 +106,48 @@ public class OkayHttpClient implements HttpClient {
      * instance and a default access token for all outgoing HTTP
      * request headers.
      *
+     * If no OkHttpClient is provided, a new one is created which
+     * resolves hosts through a {@link CachingDns}.
+     *
      * @param okHttpClient the OkHttpClient instance to use
      * @param bearerToken the access token to put in all outgoing
      *                    requests
      */
     public OkayHttpClient(
             final OkHttpClient okHttpClient, final String bearerToken) {
+        this(okHttpClient, bearerToken, null);
+    }
+
+    /**
+     * Constructs a new OkHttpClient which times the phases of every API
+     * call it makes, and hands their {@link CallTimings} to a listener.
+     *
+     * If no OkHttpClient is provided, a new one is created which
+     * resolves hosts through a {@link CachingDns}.
+     *
+     * @param okHttpClient the OkHttpClient instance to use
+     * @param bearerToken the access token to put in all outgoing
+     *                    requests
+     * @param listener the listener to receive the timings of each call,
+     *                 or null not to time calls
+     */
+    public OkayHttpClient(final OkHttpClient okHttpClient,
+            final String bearerToken, final CallTimingsListener listener) {
 
         if (null != okHttpClient) {
             this.okHttpClient = okHttpClient;
         } else {
-            this.okHttpClient = new OkHttpClient();
+            this.okHttpClient = new OkHttpClient.Builder()
+                .dns(new CachingDns())
+                .build();
+        }
+
+        if (null != listener) {
+            this.timer = new CallTimer(listener);
+            this.callClient = timer.instrument(this.okHttpClient);
+        } else {
+            this.timer = null;
+            this.callClient = this.okHttpClient;
         }
 
         setBearerToken(bearerToken);
@@ -115,11 +176,90 @@ public class OkayHttpClient implements HttpClient {
         }
     }
 
+    /**
+     * Executes an HTTP GET, and returns the body of the response as it
+     * arrives. Call timings, if any are being taken, end when the
+     * headers of the response have been read.
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        try {
+            final Request request = ofUrl(url).build();
+            if (null == timer) {
+                return openStream(request);
+            }
+
+            timer.start(request);
+            try {
+                return openStream(request);
+            } finally {
+                timer.stop();
+            }
+        } catch (final IOException ioException) {
+            throw new HttpException(-1, ioException.getMessage());
+        }
+    }
+
     @Override
     public void setBearerToken(final String bearerToken) {
         this.bearerToken = bearerToken;
     }
 
+    /**
+     * Gets the OkHttpClient on which this client was built, eg. so
+     * that its connection pool can be monitored.
+     *
+     * @return the OkHttpClient
+     */
+    public OkHttpClient getOkHttpClient() {
+        return okHttpClient;
+    }
+
+    @Override
+    public int preconnect(final String url, final int connections)
+            throws HttpException {
+
+        if (connections < 1) {
+            throw new IllegalArgumentException(
+                "Must open at least one connection, got " + connections
+            );
+        }
+
+        final HttpUrl httpUrl = HttpUrl.parse(url);
+        if (null == httpUrl) {
+            throw new HttpException(-1, "Not an HTTP URL: " + url);
+        }
+
+        try {
+            okHttpClient.dns().lookup(httpUrl.host());
+        } catch (final UnknownHostException unknownHostException) {
+            throw new HttpException(-1, unknownHostException.getMessage());
+        }
+
+        // All of the requests must be in flight at the same time, or
+        // else they would just keep reusing the first connection.
+        final CountDownLatch startingGate = new CountDownLatch(1);
+        final ExecutorService executor =
+            Executors.newFixedThreadPool(connections);
+        final List<Future<Boolean>> attempts =
+            new ArrayList<Future<Boolean>>(connections);
+
+        for (int i = 0; i < connections; i++) {
+            attempts.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws InterruptedException {
+                    startingGate.await();
+                    return openConnection(httpUrl);
+                }
+            }));
+        }
+
+        startingGate.countDown();
+        executor.shutdown();
+
+        return countEstablished(attempts);
+    }
+
     /**
      * Bootstraps a request builder with common header information, and
      * with a target url.
@@ -139,6 +279,11 @@ public class OkayHttpClient implements HttpClient {
             .addHeader(ACCEPT, APPLICATION_JSON)
             .addHeader(ACCEPT_CHARSET, UTF_8);
 
+        final SpanContext span = Spans.current();
+        if (span.isValid()) {
+            builder.header(SpanContext.TRACEPARENT, span.toTraceparent());
+        }
+
         if (null != bearerToken) {
             builder.addHeader(
                 AUTHORIZATION,
@@ -150,25 +295,314 @@ public class OkayHttpClient implements HttpClient {
     }
 
     /**
-     * Executes an HTTP request.
+     * Makes a HEAD request to the URL, which leaves behind an idle
+     * connection in the pool. The response itself is of no interest.
+     *
+     * @param url the url to connect to
+     *
+     * @return true if a connection was established, false otherwise
+     */
+    private boolean openConnection(final HttpUrl url) {
+        try {
+            okHttpClient.newCall(
+                new Request.Builder().url(url).head().build()
+            ).execute().close();
+            return true;
+        } catch (final IOException ioException) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for all of the connection attempts to complete, and counts
+     * those which were successful.
+     *
+     * @param attempts the pending connection attempts
+     *
+     * @return the number of successful connection attempts
+     */
+    private static int countEstablished(
+            final List<Future<Boolean>> attempts) {
+
+        int established = 0;
+
+        for (Future<Boolean> attempt : attempts) {
+            try {
+                if (attempt.get()) {
+                    established++;
+                }
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (final ExecutionException executionException) {
+                // Best effort; just don't count it.
+            }
+        }
+
+        return established;
+    }
+
+    /**
+     * Executes an HTTP request, timing it if there is a timer.
+     *
+     * If there is a {@link CallContext} attached to the calling thread,
+     * the call is aborted as soon as the context is cancelled or its
+     * deadline passes, which also releases its connection.
      *
      * @param request the request to execute
      *
      * @return the content of the response body as a string
      * @throws IOException
      *         On unsuccessful HTTP transport (unrelated to error codes)
+     * @throws CancelledException
+     *         If the call is aborted by its context
      */
     private String makeRequest(final Request request) throws IOException {
+        if (null == timer) {
+            return execute(request);
+        }
+
+        timer.start(request);
+        try {
+            return execute(request);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Executes an HTTP request, aborting it if the context attached to
+     * the calling thread is cancelled.
+     *
+     * @param request the request to execute
+     *
+     * @return the content of the response body as a string
+     * @throws IOException
+     *         On unsuccessful HTTP transport (unrelated to error codes)
+     * @throws CancelledException
+     *         If the call is aborted by its context
+     */
+    private String execute(final Request request) throws IOException {
+        final CallContext context = CallContext.current();
+        final Call call = callClient.newCall(request);
+
+        if (null == context) {
+            return readResponse(call.execute());
+        }
+
+        context.checkActive();
+
+        final CallCanceller canceller = new CallCanceller(call);
+        context.addListener(canceller);
+
+        final ScheduledFuture<?> deadline = context.hasDeadline()
+            ? SharedTimer.schedule(
+                canceller, context.remaining(TimeUnit.NANOSECONDS))
+            : null;
+
+        try {
+            return readResponse(call.execute());
+        } catch (final IOException ioException) {
+            // Report an abort as such, rather than as a broken socket
+            context.checkActive();
+            throw ioException;
+        } finally {
+            context.removeListener(canceller);
+
+            SharedTimer.cancel(deadline);
+        }
+    }
+
+    /**
+     * Executes an HTTP request, and returns the body of its response
+     * without reading it. If the context attached to the calling thread
+     * is cancelled before the body has been read and closed, the call
+     * is aborted.
+     *
+     * @param request the request to execute
+     *
+     * @return the body of the response
+     * @throws IOException
+     *         On unsuccessful HTTP transport (unrelated to error codes)
+     * @throws CancelledException
+     *         If the call is aborted by its context
+     */
+    private InputStream openStream(final Request request) throws IOException {
+        final CallContext context = CallContext.current();
+        final Call call = callClient.newCall(request);
+
+        if (null == context) {
+            return new ResponseStream(checkResponse(call.execute()), null,
+                null, null);
+        }
+
+        context.checkActive();
+
+        final CallCanceller canceller = new CallCanceller(call);
+        context.addListener(canceller);
+
+        final ScheduledFuture<?> deadline = context.hasDeadline()
+            ? SharedTimer.schedule(
+                canceller, context.remaining(TimeUnit.NANOSECONDS))
+            : null;
+
+        boolean streaming = false;
+        try {
+            final InputStream body = new ResponseStream(
+                checkResponse(call.execute()), context, canceller, deadline);
+            streaming = true;
+            return body;
+        } catch (final IOException ioException) {
+            // Report an abort as such, rather than as a broken socket
+            context.checkActive();
+            throw ioException;
+        } finally {
+            if (!streaming) {
+                context.removeListener(canceller);
+                SharedTimer.cancel(deadline);
+            }
+        }
+    }
+
+    /**
+     * Checks that a response was successful.
+     *
+     * @param response the response to check
+     *
+     * @return the response
+     * @throws IOException
+     *         On unsuccessful HTTP transport (unrelated to error codes)
+     * @throws HttpException
+     *         If the response code is not 200, with its body
+     */
+    private static Response checkResponse(final Response response)
+            throws IOException {
+
+        CallContext.recordStatus(response.code());
 
-        final Response response = okHttpClient.newCall(request).execute();
-    
         if (!response.isSuccessful()) {
             throw new HttpException(
                 response.code(), response.body().string()
             );
         }
 
-        return response.body().string();
+        return response;
     }
-}
 
+    /**
+     * Reads the body of a response.
+     *
+     * @param response the response to read
+     *
+     * @return the content of the response body as a string
+     * @throws IOException
+     *         On unsuccessful HTTP transport (unrelated to error codes)
+     */
+    private static String readResponse(final Response response)
+            throws IOException {
+
+        return checkResponse(response).body().string();
+    }
+
+    /**
+     * The body of a response being streamed. Closing it releases the
+     * connection and stops watching the call's context.
+     */
+    private static final class ResponseStream extends FilterInputStream {
+
+        private final Response response;
+        private final CallContext context;
+        private final CallCanceller canceller;
+        private final ScheduledFuture<?> deadline;
+
+        /**
+         * Constructs a new ResponseStream.
+         *
+         * @param response the response whose body to stream
+         * @param context the context of the call, or null
+         * @param canceller aborts the call, or null
+         * @param deadline when the call is to be aborted, or null
+         */
+        ResponseStream(final Response response, final CallContext context,
+                final CallCanceller canceller,
+                final ScheduledFuture<?> deadline) {
+            super(response.body().byteStream());
+            this.response = response;
+            this.context = context;
+            this.canceller = canceller;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (final IOException ioException) {
+                throw aborted(ioException);
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset,
+                final int length) throws IOException {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (final IOException ioException) {
+                throw aborted(ioException);
+            }
+        }
+
+        @Override
+        public void close() {
+            response.close();
+
+            if (null != context) {
+                context.removeListener(canceller);
+                SharedTimer.cancel(deadline);
+            }
+        }
+
+        /**
+         * Reports an abort as such, rather than as a broken socket.
+         *
+         * @param ioException the failure to read
+         *
+         * @return the failure, if the call was not aborted
+         */
+        private IOException aborted(final IOException ioException) {
+            if (null != context) {
+                context.checkActive();
+            }
+            return ioException;
+        }
+    }
+
+    /**
+     * Aborts an OkHttp call when its context is cancelled, or when its
+     * deadline passes.
+     */
+    private static final class CallCanceller
+            implements Runnable, CallContext.CancellationListener {
+
+        private final Call call;
+
+        /**
+         * Constructs a new CallCanceller.
+         *
+         * @param call the call to abort
+         */
+        CallCanceller(final Call call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            call.cancel();
+        }
+
+        @Override
+        public void onCancelled(final CallContext context) {
+            call.cancel();
+        }
+    }
+}
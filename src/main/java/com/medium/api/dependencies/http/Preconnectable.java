@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * A Preconnectable is an {@link HttpClient} that can establish
+ * connections to a host before the first real request is made to it.
+ *
+ * The first call to a cold client otherwise pays for the DNS lookup,
+ * the TCP handshake and the TLS handshake all at once.
+ */
+public interface Preconnectable {
+
+    /**
+     * Resolves the host of the URL and opens connections to it in
+     * parallel, leaving them idle in the connection pool.
+     *
+     * This is a best-effort operation: failing to open a connection is
+     * not an error, it is simply not counted.
+     *
+     * @param url a URL on the host to which to connect
+     * @param connections the number of connections to open
+     *
+     * @return the number of connections that were established
+     *
+     * @throws HttpException
+     *         If the URL is invalid or its host cannot be resolved
+     */
+    int preconnect(String url, int connections) throws HttpException;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+/**
+ * The priority of a call, which decides the order in which calls waiting
+ * for a {@link ConcurrencyLimiter} are let through, and how much of the
+ * limit each kind of call may take up. Priorities are listed from the
+ * highest to the lowest.
+ */
+public enum Priority {
+
+    /**
+     * Calls which someone is waiting on, such as those made in response
+     * to a click. They go ahead of all other waiting calls.
+     */
+    INTERACTIVE,
+
+    /**
+     * Calls with no particular priority, which is the default.
+     */
+    NORMAL,
+
+    /**
+     * Bulk calls which can wait, such as those made by migrations and
+     * nightly jobs. They only go once no other calls are waiting, and
+     * may only take up part of the limit.
+     */
+    BATCH
+}
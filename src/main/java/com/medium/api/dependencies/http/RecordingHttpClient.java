@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A RecordingHttpClient passes calls through to another client, and
+ * writes each exchange to a cassette, from which a
+ * {@link ReplayingHttpClient} can later serve them again without a
+ * network.
+ *
+ * Access and refresh tokens, client secrets and authorization codes are
+ * redacted from the bodies before they are written, and the bearer
+ * token, which is sent as a header, is never seen. Each exchange is
+ * written as soon as it completes, so that the cassette holds every
+ * exchange up to a crash; {@link #close()} must be called to release
+ * the file.
+ */
+public class RecordingHttpClient extends ForwardingHttpClient
+        implements Closeable {
+
+    /**
+     * The cassette being written.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Whether writing to the cassette has failed, after which no more
+     * exchanges are recorded.
+     */
+    private boolean broken;
+
+    /**
+     * Constructs a new RecordingHttpClient, which starts a new cassette
+     * in a file, replacing any that was there.
+     *
+     * @param delegate the client to which to forward calls
+     * @param cassette the file to record to
+     *
+     * @throws IOException
+     *         If the file cannot be written
+     */
+    public RecordingHttpClient(final HttpClient delegate, final File cassette)
+            throws IOException {
+        super(delegate);
+
+        this.out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(cassette)));
+        this.out.writeInt(Cassette.MAGIC);
+        this.out.writeInt(Cassette.VERSION);
+        this.out.flush();
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+        final long start = System.nanoTime();
+        CallContext.recordStatus(Exchange.UNKNOWN_STATUS);
+        try {
+            final String response = super.post(url, body);
+            record(Cassette.POST, url, body, start, null, response);
+            return response;
+        } catch (final HttpException exception) {
+            record(Cassette.POST, url, body, start, exception, null);
+            throw exception;
+        }
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        final long start = System.nanoTime();
+        CallContext.recordStatus(Exchange.UNKNOWN_STATUS);
+        try {
+            final String response = super.get(url);
+            record(Cassette.GET, url, null, start, null, response);
+            return response;
+        } catch (final HttpException exception) {
+            record(Cassette.GET, url, null, start, exception, null);
+            throw exception;
+        }
+    }
+
+    /**
+     * Flushes and closes the cassette. Exchanges which complete after
+     * this are not recorded.
+     *
+     * @throws IOException
+     *         If the cassette cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        broken = true;
+        out.close();
+    }
+
+    /**
+     * Writes an exchange to the cassette. Failing to record an exchange
+     * does not fail the call: the recording stops instead.
+     *
+     * @param method the method of the exchange
+     * @param url the url requested
+     * @param request the body of the request, or null
+     * @param start when the request was made, from System.nanoTime()
+     * @param exception the exception thrown, or null if it succeeded
+     * @param response the body of the response, if it succeeded
+     */
+    private synchronized void record(final byte method, final String url,
+            final String request, final long start,
+            final HttpException exception, final String response) {
+
+        final long latency = System.nanoTime() - start;
+        if (broken) {
+            return;
+        }
+
+        try {
+            out.writeByte(method);
+            if (null == exception) {
+                out.writeByte(Cassette.SUCCEEDED);
+                out.writeInt(Math.max(0, CallContext.lastStatus()));
+            } else {
+                out.writeByte(Cassette.FAILED);
+                out.writeInt(exception.getCode());
+            }
+            out.writeLong(latency);
+            writeString(url);
+            writeString(Cassette.redact(request));
+            writeString(Cassette.redact(
+                null == exception ? response : exception.getMessage()));
+            out.flush();
+        } catch (final IOException ioException) {
+            broken = true;
+        }
+    }
+
+    /**
+     * Writes a string to the cassette.
+     *
+     * @param value the string, which may be null
+     *
+     * @throws IOException
+     *         If the string cannot be written
+     */
+    private void writeString(final String value) throws IOException {
+        if (null == value) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(Cassette.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
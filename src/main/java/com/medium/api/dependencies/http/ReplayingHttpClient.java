@@ -0,0 +1,317 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ReplayingHttpClient answers calls from a cassette written by a
+ * {@link RecordingHttpClient}, without a network, so that the rest of
+ * the SDK can be measured against exactly the same responses every run.
+ *
+ * Calls are matched to recorded exchanges by their method, url and
+ * request body, with credentials redacted. When a call was recorded
+ * more than once, its responses are served in the order they were
+ * recorded, starting over once they run out. A recorded failure is
+ * thrown again as an {@link HttpException} with the same code, and a
+ * call which was never recorded fails with a code of -1.
+ *
+ * The cassette is memory-mapped rather than read into the heap: only
+ * an index of where each exchange lies is kept, and each response is
+ * decoded from the mapping when it is served. Responses can be served
+ * at once, or after the latency with which they were recorded.
+ */
+public class ReplayingHttpClient implements HttpClient {
+
+    /**
+     * The recorded exchanges, by the key of the call they answer.
+     */
+    private final Map<String, Recording> recordings;
+
+    /**
+     * Whether to wait for each exchange's recorded latency.
+     */
+    private final boolean replayLatency;
+
+    /**
+     * Constructs a new ReplayingHttpClient from a cassette.
+     *
+     * @param cassette the file recorded by a RecordingHttpClient
+     * @param replayLatency whether to wait as long as each exchange
+     *                      took when it was recorded, or to answer at
+     *                      once
+     *
+     * @throws IOException
+     *         If the cassette cannot be read, or is not a cassette
+     */
+    public ReplayingHttpClient(final File cassette, final boolean replayLatency)
+            throws IOException {
+        this.recordings = index(map(cassette));
+        this.replayLatency = replayLatency;
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+        return replay(Cassette.POST, url, body);
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        return replay(Cassette.GET, url, null);
+    }
+
+    @Override
+    public void setBearerToken(final String bearerToken) {
+        // Bearer tokens are never recorded, so they can't matter
+    }
+
+    /**
+     * Gets the number of exchanges in the cassette.
+     *
+     * @return the number of exchanges
+     */
+    public int size() {
+        int size = 0;
+        for (final Recording recording : recordings.values()) {
+            size += recording.exchanges.length;
+        }
+        return size;
+    }
+
+    /**
+     * Answers a call from the cassette.
+     *
+     * @param method the method of the call
+     * @param url the url requested
+     * @param request the body of the request, or null
+     *
+     * @return the recorded response
+     * @throws HttpException
+     *         If the recorded exchange failed, or the call was never
+     *         recorded
+     */
+    private String replay(final byte method, final String url,
+            final String request) throws HttpException {
+
+        // Most bodies hold no credentials, so try them as they are
+        // before paying to redact them
+        Recording recording =
+            recordings.get(Cassette.keyOf(method, url, request));
+        if (null == recording && null != request) {
+            recording = recordings.get(
+                Cassette.keyOf(method, url, Cassette.redact(request)));
+        }
+        if (null == recording) {
+            throw new HttpException(-1, String.format(
+                "No recorded exchange for %s %s",
+                Cassette.GET == method ? "GET" : "POST", url));
+        }
+
+        final Exchanged exchange = recording.next();
+        if (replayLatency && 0 < exchange.latency) {
+            CallContext.sleep(exchange.latency);
+        }
+
+        final String response = exchange.response();
+        if (exchange.failed) {
+            throw new HttpException(exchange.code, response);
+        }
+        CallContext.recordStatus(
+            0 < exchange.code ? exchange.code : Exchange.UNKNOWN_STATUS);
+        return response;
+    }
+
+    /**
+     * Maps a cassette into memory.
+     *
+     * @param cassette the cassette
+     *
+     * @return the mapping, positioned after the header
+     * @throws IOException
+     *         If the cassette cannot be read, or is not a cassette
+     */
+    private static ByteBuffer map(final File cassette) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(cassette, "r");
+        final MappedByteBuffer buffer;
+        try {
+            // The mapping outlives the channel it was made from
+            buffer = file.getChannel()
+                .map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        } finally {
+            file.close();
+        }
+
+        if (buffer.remaining() < 8
+                || Cassette.MAGIC != buffer.getInt()
+                || Cassette.VERSION != buffer.getInt()) {
+            throw new IOException(cassette + " is not a cassette");
+        }
+        return buffer;
+    }
+
+    /**
+     * Indexes the exchanges in a cassette. A record cut short at the
+     * end, as by a crash while recording, is left out.
+     *
+     * @param buffer the cassette, positioned after the header
+     *
+     * @return the exchanges, by the key of the call they answer
+     */
+    private static Map<String, Recording> index(final ByteBuffer buffer) {
+        final Map<String, List<Exchanged>> exchanges =
+            new HashMap<String, List<Exchanged>>();
+
+        try {
+            while (buffer.hasRemaining()) {
+                final byte method = buffer.get();
+                final boolean failed = Cassette.FAILED == buffer.get();
+                final int code = buffer.getInt();
+                final long latency = buffer.getLong();
+                final String url = readString(buffer);
+                final String request = readString(buffer);
+
+                final int length = buffer.getInt();
+                final int offset = buffer.position();
+                if (length > buffer.remaining()) {
+                    break;
+                }
+                buffer.position(offset + Math.max(0, length));
+
+                final String key = Cassette.keyOf(method, url, request);
+                List<Exchanged> list = exchanges.get(key);
+                if (null == list) {
+                    list = new ArrayList<Exchanged>(1);
+                    exchanges.put(key, list);
+                }
+                list.add(new Exchanged(
+                    buffer, failed, code, latency, offset, length));
+            }
+        } catch (final BufferUnderflowException truncated) {
+            // Keep the exchanges before the one cut short
+        }
+
+        final Map<String, Recording> recordings =
+            new HashMap<String, Recording>();
+        for (final Map.Entry<String, List<Exchanged>> entry
+                : exchanges.entrySet()) {
+            recordings.put(entry.getKey(), new Recording(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(recordings);
+    }
+
+    /**
+     * Reads a string from a cassette.
+     *
+     * @param buffer the cassette, positioned at the string
+     *
+     * @return the string, or null
+     * @throws BufferUnderflowException
+     *         If the string is cut short
+     */
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return Cassette.UTF_8.decode(bytes).toString();
+    }
+
+    /**
+     * The exchanges recorded for one call, served in turn.
+     */
+    private static final class Recording {
+
+        private final Exchanged[] exchanges;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Recording(final List<Exchanged> exchanges) {
+            this.exchanges = exchanges.toArray(new Exchanged[0]);
+        }
+
+        /**
+         * Takes the next exchange in turn.
+         *
+         * @return the exchange
+         */
+        Exchanged next() {
+            final int turn = next.getAndIncrement() & Integer.MAX_VALUE;
+            return exchanges[turn % exchanges.length];
+        }
+    }
+
+    /**
+     * Where a recorded exchange's response lies in the cassette, and how
+     * it went.
+     */
+    private static final class Exchanged {
+
+        private final ByteBuffer cassette;
+        private final boolean failed;
+        private final int code;
+        private final long latency;
+        private final int offset;
+        private final int length;
+
+        Exchanged(final ByteBuffer cassette, final boolean failed,
+                final int code, final long latency, final int offset,
+                final int length) {
+            this.cassette = cassette;
+            this.failed = failed;
+            this.code = code;
+            this.latency = latency;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Decodes the response from the cassette.
+         *
+         * @return the body of the response, or the message of the
+         *         exception
+         */
+        String response() {
+            if (length < 0) {
+                return null;
+            }
+            // Read through a view of our own, as other threads may be
+            // reading other responses at the same time
+            final ByteBuffer bytes = cassette.duplicate();
+            bytes.limit(offset + length);
+            bytes.position(offset);
+            return Cassette.UTF_8.decode(bytes).toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single daemon thread on which the HTTP clients schedule their
+ * short-lived timers, such as deadlines and hedging delays.
+ *
+ * Timers are almost always cancelled before they fire, so cancelled
+ * timers are removed from the queue rather than left to expire.
+ */
+final class SharedTimer {
+
+    /**
+     * The thread running the timers.
+     */
+    private static final ScheduledThreadPoolExecutor TIMER =
+        new ScheduledThreadPoolExecutor(
+            1, new DaemonThreadFactory("medium-timer")
+        );
+
+    /**
+     * Not to be instantiated.
+     */
+    private SharedTimer() {
+    }
+
+    /**
+     * Schedules a task to run after a delay.
+     *
+     * @param task the task to run
+     * @param delayNanos the delay, in nanoseconds
+     *
+     * @return a handle with which to {@link #cancel} the task
+     */
+    static ScheduledFuture<?> schedule(
+            final Runnable task, final long delayNanos) {
+
+        return TIMER.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels a scheduled task, if it has not already run.
+     *
+     * @param timer the handle of the task, or null
+     */
+    static void cancel(final ScheduledFuture<?> timer) {
+        if (null != timer && timer.cancel(false)) {
+            TIMER.remove((Runnable) timer);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import java.io.InputStream;
+
+/**
+ * A StreamingHttpClient is an {@link HttpClient} that can hand over the
+ * body of a response as it arrives, rather than once all of it has been
+ * read into a string.
+ *
+ * Large responses can then be consumed piece by piece, in constant
+ * memory, starting before the download completes.
+ *
+ * The limiting, hedging, intercepting and tracing decorators forward
+ * streams from a client which can stream, and finish their work on a
+ * call, such as releasing its permit or ending its span, when the
+ * stream is closed; hedging does not hedge streams. Other decorators
+ * of {@link ForwardingHttpClient}, and decorators of a client which
+ * cannot stream, fall back to reading the whole response first.
+ */
+public interface StreamingHttpClient {
+
+    /**
+     * Executes an HTTP GET to the specified URL, and returns the body of
+     * the response once its headers have arrived.
+     *
+     * The stream must be closed once read, or abandoned, to release the
+     * connection. If a {@link CallContext} is attached to the calling
+     * thread, its deadline and cancellation apply until the stream is
+     * closed.
+     *
+     * @param url the url to GET
+     *
+     * @return On response code 200, the body of the response.
+     *
+     * @throws HttpException
+     *         If the response code is not 200.
+     */
+    InputStream getStream(String url) throws HttpException;
+}
@@ -30,4 +30,14 @@ public class ConverterException extends RuntimeException {
     public ConverterException(final String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new ConverterException.
+     *
+     * @param message the error message
+     * @param cause what caused the error
+     */
+    public ConverterException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
 }
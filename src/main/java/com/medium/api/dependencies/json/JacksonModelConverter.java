@@ -19,9 +19,14 @@ package com.medium.api.dependencies.json;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
+import com.medium.api.ModelIterator;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.List;
 
 /**
@@ -34,13 +39,23 @@ public class JacksonModelConverter implements JsonModelConverter {
      * JSON representations of our model entities are wrapped in an
      * envelope whose key name is:
      */
-    private static final String ENVELOPE_FIELD_NAME = "data";
+    static final String ENVELOPE_FIELD_NAME = "data";
+
+    /**
+     * The encoding of the JSON which lazy models keep.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     /**
      * Instance of Jackson ObjectMapper.
      */
     private final ObjectMapper jackson;
 
+    /**
+     * The pool for repeated strings, or null.
+     */
+    private final StringPool pool;
+
     /**
      * Constructs a new JacksonModelConverter.
      */
@@ -55,6 +70,33 @@ public class JacksonModelConverter implements JsonModelConverter {
      */
     public JacksonModelConverter(final ObjectMapper mapper) {
         this.jackson = mapper;
+        this.pool = null;
+    }
+
+    /**
+     * Constructs a new JacksonModelConverter which passes the values of
+     * the pool's fields through the pool as it reads them.
+     *
+     * @param pool the pool of repeated strings
+     */
+    public JacksonModelConverter(final StringPool pool) {
+        this(new ObjectMapper(), pool);
+    }
+
+    /**
+     * Constructs a new JacksonModelConverter which passes the values of
+     * the pool's fields through the pool as it reads them.
+     *
+     * @param mapper the mapper to use, which will have the pool
+     *               registered with it
+     * @param pool the pool of repeated strings
+     */
+    public JacksonModelConverter(
+            final ObjectMapper mapper, final StringPool pool) {
+        this.jackson = mapper;
+        this.pool = pool;
+        this.jackson.registerModule(new SimpleModule("StringPool")
+            .addDeserializer(String.class, new PooledStringDeserializer(pool)));
     }
 
     @Override
@@ -72,6 +114,112 @@ public class JacksonModelConverter implements JsonModelConverter {
         return writeValueAsStringOrError(object);
     }
 
+    /**
+     * Indexes a single model without reading it, so that its fields are
+     * read only when asked for.
+     *
+     * @param <T> the type of model
+     * @param asType the type of model
+     * @param json the JSON of the model, possibly in an envelope
+     *
+     * @return the lazy model
+     */
+    public <T> LazyModel<T> asLazy(final Class<T> asType, final String json) {
+        final List<LazyModel<T>> items = asLazyListOf(asType, json);
+        if (items.size() != 1 || null == items.get(0)) {
+            throw new ConverterException("Expected a single JSON object");
+        }
+        return items.get(0);
+    }
+
+    /**
+     * Indexes a list of models without reading them, so that their
+     * fields are read only when asked for.
+     *
+     * @param <T> the type of model
+     * @param itemType the type of model
+     * @param json the JSON of the list, possibly in an envelope
+     *
+     * @return the lazy models
+     */
+    public <T> List<LazyModel<T>> asLazyListOf(
+            final Class<T> itemType, final String json) {
+        return asLazyListOf(itemType, json.getBytes(UTF_8));
+    }
+
+    /**
+     * Indexes a list of models without reading them, so that their
+     * fields are read only when asked for. The models keep the bytes,
+     * which must not be changed afterwards.
+     *
+     * The bytes are read once, recording where each item and each of
+     * its fields start; the values themselves are skipped over.
+     *
+     * @param <T> the type of model
+     * @param itemType the type of model
+     * @param json the UTF-8 JSON of the list, possibly in an envelope
+     *
+     * @return the lazy models
+     */
+    public <T> List<LazyModel<T>> asLazyListOf(
+            final Class<T> itemType, final byte[] json) {
+        try {
+            return new LazyIndexer<T>(jackson, pool, itemType, json).index();
+        } catch (final IOException mapperException) {
+            throw new ConverterException(mapperException.getMessage());
+        }
+    }
+
+    /**
+     * Reads a list of models from a stream one at a time, as each is
+     * asked for, so that the list need never be held in memory all at
+     * once. The iterator closes the stream when it is closed, or when
+     * the list ends.
+     *
+     * @param <T> the type of model
+     * @param itemType the type of model
+     * @param json the UTF-8 JSON of the list, possibly in an envelope
+     *
+     * @return an iterator over the models
+     */
+    public <T> ModelIterator<T> iterateListOf(
+            final Class<T> itemType, final InputStream json) {
+        try {
+            return new JacksonModelIterator<T>(jackson.readerFor(itemType),
+                jackson.getFactory().createParser(json), ENVELOPE_FIELD_NAME);
+        } catch (final IOException ioException) {
+            try {
+                json.close();
+            } catch (final IOException closeException) {
+                // The list could not be read either way
+            }
+            throw JacksonModelIterator.readFailure(ioException);
+        }
+    }
+
+    /**
+     * Builds and caches the Jackson serializers and deserializers for
+     * the given model classes, so that the first real conversion of
+     * each does not have to introspect the class.
+     *
+     * @param modelClasses the model classes which will be converted
+     */
+    public void warmUp(final Class<?>... modelClasses) {
+        try {
+            jackson.readTree("{}");
+        } catch (final IOException mapperException) {
+            throw new ConverterException(mapperException.getMessage());
+        }
+
+        // Readers and writers eagerly fetch and cache their root
+        // (de)serializers in the mapper when constructed.
+        for (Class<?> modelClass : modelClasses) {
+            jackson.writerFor(modelClass);
+            jackson.readerFor(modelClass);
+            jackson.readerFor(listOf(modelClass));
+        }
+    }
+
     /**
      * Gets the JSON string value of the object, or throws an error.
      *
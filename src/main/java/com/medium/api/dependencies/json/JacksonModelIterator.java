@@ -0,0 +1,209 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.medium.api.ModelIterator;
+import com.medium.api.dependencies.http.Exchange;
+import com.medium.api.dependencies.http.HttpException;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Binds the items of a JSON list one at a time, as they are read from
+ * a stream. Only the item being bound is held in memory.
+ *
+ * Not safe for use by more than one thread at a time.
+ *
+ * @param <T> the type of model
+ */
+final class JacksonModelIterator<T> implements ModelIterator<T> {
+
+    /**
+     * Binds each item.
+     */
+    private final ObjectReader reader;
+
+    /**
+     * Reads the list, and closes its stream when it is closed.
+     */
+    private final JsonParser parser;
+
+    /**
+     * The item read ahead by {@link #hasNext()}, which may be null.
+     */
+    private T next;
+
+    /**
+     * Whether {@link #next} holds an item not yet handed out.
+     */
+    private boolean ready;
+
+    /**
+     * Whether the end of the list has been reached, or the iterator
+     * has been closed.
+     */
+    private boolean done;
+
+    /**
+     * Constructs a new JacksonModelIterator, and reads up to the first
+     * item of the list, which may be in an envelope.
+     *
+     * @param reader binds each item
+     * @param parser reads the list
+     * @param envelope the name of the envelope's field holding the list
+     *
+     * @throws IOException
+     *         If the list cannot be read
+     */
+    JacksonModelIterator(final ObjectReader reader, final JsonParser parser,
+            final String envelope) throws IOException {
+        this.reader = reader;
+        this.parser = parser;
+
+        boolean opened = false;
+        try {
+            openList(envelope);
+            opened = true;
+        } finally {
+            if (!opened) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready && !done) {
+            readNext();
+        }
+        return ready;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final T item = next;
+        next = null;
+        ready = false;
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        ready = false;
+        next = null;
+        try {
+            parser.close();
+        } catch (final IOException ioException) {
+            // Nothing more will be read from it either way
+        }
+    }
+
+    /**
+     * Reads up to the opening bracket of the list.
+     *
+     * @param envelope the name of the envelope's field holding the list
+     *
+     * @throws IOException
+     *         If the JSON is not a list, nor a list in an envelope
+     */
+    private void openList(final String envelope) throws IOException {
+        JsonToken token = parser.nextToken();
+
+        if (JsonToken.START_OBJECT == token) {
+            token = null;
+            while (JsonToken.FIELD_NAME == parser.nextToken()) {
+                if (envelope.equals(parser.getCurrentName())) {
+                    token = parser.nextToken();
+                    break;
+                }
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        }
+
+        if (JsonToken.START_ARRAY != token) {
+            throw new ConverterException("Expected a JSON array, but got "
+                + (null == token ? "no " + envelope : token));
+        }
+    }
+
+    /**
+     * Binds the next item, or closes the iterator at the end of the
+     * list or if the item cannot be read.
+     */
+    private void readNext() {
+        boolean read = false;
+        try {
+            final JsonToken token = parser.nextToken();
+            if (JsonToken.END_ARRAY == token) {
+                close();
+                return;
+            }
+            if (null == token) {
+                throw new ConverterException("Unexpected end of JSON list");
+            }
+
+            next = JsonToken.VALUE_NULL == token
+                ? null
+                : reader.<T>readValue(parser);
+            ready = true;
+            read = true;
+        } catch (final IOException ioException) {
+            throw readFailure(ioException);
+        } finally {
+            if (!read) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Tells apart a list which is not valid JSON, or does not bind to
+     * the model, from one which could not be read off the network.
+     *
+     * @param ioException why the list could not be read
+     *
+     * @return a {@link ConverterException} if the JSON is at fault, or
+     *         an {@link HttpException} with a status of
+     *         {@link Exchange#UNKNOWN_STATUS} if the stream broke
+     */
+    static RuntimeException readFailure(final IOException ioException) {
+        if (ioException instanceof JsonProcessingException) {
+            return new ConverterException(
+                ioException.getMessage(), ioException);
+        }
+
+        return new HttpException(
+            Exchange.UNKNOWN_STATUS, ioException.getMessage(), ioException);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Indexes the items of one response for {@link LazyModel}s, in a single
+ * pass over its bytes: it records where each item, and the value of
+ * each of its fields, starts and ends, and skips over the values
+ * without reading them.
+ *
+ * @param <T> the type of model
+ */
+final class LazyIndexer<T> {
+
+    /**
+     * The mapper with which the models will read their fields.
+     */
+    private final ObjectMapper jackson;
+
+    /**
+     * The pool for the values of string fields, or null.
+     */
+    private final StringPool pool;
+
+    /**
+     * The type of model.
+     */
+    private final Class<T> itemType;
+
+    /**
+     * The UTF-8 JSON of the response.
+     */
+    private final byte[] json;
+
+    /**
+     * The names of the fields of the item being indexed, reused from
+     * item to item.
+     */
+    private String[] names = new String[16];
+
+    /**
+     * The offsets of the values of the item being indexed, in pairs,
+     * reused from item to item.
+     */
+    private int[] offsets = new int[32];
+
+    /**
+     * Constructs a new LazyIndexer.
+     *
+     * @param jackson the mapper with which the models will read fields
+     * @param pool the pool for the values of string fields, or null
+     * @param itemType the type of model
+     * @param json the UTF-8 JSON of the response
+     */
+    LazyIndexer(final ObjectMapper jackson, final StringPool pool,
+            final Class<T> itemType, final byte[] json) {
+        this.jackson = jackson;
+        this.pool = pool;
+        this.itemType = itemType;
+        this.json = json;
+    }
+
+    /**
+     * Indexes the items of the response: a list or a single item,
+     * either of which may be in an envelope whose first field is its
+     * data.
+     *
+     * @return the lazy models
+     *
+     * @throws IOException
+     *         If the response is not valid JSON
+     */
+    List<LazyModel<T>> index() throws IOException {
+        final JsonParser parser = jackson.getFactory().createParser(json);
+        try {
+            return index(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Indexes the items of the response.
+     *
+     * @param parser a parser at the start of the response
+     *
+     * @return the lazy models
+     *
+     * @throws IOException
+     *         If the response is not valid JSON
+     */
+    private List<LazyModel<T>> index(final JsonParser parser)
+            throws IOException {
+
+        JsonToken token = parser.nextToken();
+        if (JsonToken.START_OBJECT == token) {
+            if (JsonToken.FIELD_NAME == parser.nextToken()
+                    && JacksonModelConverter.ENVELOPE_FIELD_NAME.equals(
+                        parser.getCurrentName())) {
+                token = parser.nextToken();
+            } else {
+                // Not in an envelope, so the object is the item
+                final JsonParser item =
+                    jackson.getFactory().createParser(json);
+                try {
+                    item.nextToken();
+                    return Collections.singletonList(indexItem(item));
+                } finally {
+                    item.close();
+                }
+            }
+        }
+
+        if (JsonToken.START_OBJECT == token) {
+            return Collections.singletonList(indexItem(parser));
+        }
+
+        if (JsonToken.START_ARRAY != token) {
+            throw new ConverterException(
+                "Expected a JSON object or array, but got " + token);
+        }
+
+        final List<LazyModel<T>> items = new ArrayList<LazyModel<T>>();
+        while (JsonToken.END_ARRAY != (token = parser.nextToken())) {
+            if (JsonToken.START_OBJECT == token) {
+                items.add(indexItem(parser));
+            } else if (JsonToken.VALUE_NULL == token) {
+                items.add(null);
+            } else {
+                throw new ConverterException(
+                    "Expected a JSON object in the list, but got " + token);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Indexes the fields of an item, skipping over their values.
+     *
+     * @param parser a parser at the item's opening brace, which began
+     *               reading at the response's first byte
+     *
+     * @return the lazy model
+     *
+     * @throws IOException
+     *         If the item is not valid JSON
+     */
+    private LazyModel<T> indexItem(final JsonParser parser)
+            throws IOException {
+
+        final int start = (int) parser.getTokenLocation().getByteOffset();
+        int fields = 0;
+
+        while (JsonToken.FIELD_NAME == parser.nextToken()) {
+            if (fields == names.length) {
+                names = Arrays.copyOf(names, fields * 2);
+                offsets = Arrays.copyOf(offsets, fields * 4);
+            }
+            names[fields] = parser.getCurrentName();
+
+            // A string's contents are skipped, not read, so its end is
+            // not known yet; other values have been read to their end
+            final JsonToken value = parser.nextToken();
+            offsets[2 * fields] =
+                (int) parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+            offsets[2 * fields + 1] = JsonToken.VALUE_STRING == value
+                ? -1
+                : (int) parser.getCurrentLocation().getByteOffset();
+            fields++;
+        }
+
+        final int end = (int) parser.getCurrentLocation().getByteOffset();
+        for (int i = 1; i < 2 * fields; i += 2) {
+            if (offsets[i] < 0) {
+                offsets[i] = end;
+            }
+        }
+
+        return new LazyModel<T>(jackson, pool, itemType, json, start, end,
+            Arrays.copyOf(names, fields), Arrays.copyOf(offsets, 2 * fields));
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A LazyModel is a model which has not been read yet: it keeps the raw
+ * UTF-8 JSON of one item, and where in it each of its fields starts,
+ * and reads a field only when asked for it.
+ *
+ * Jobs which read only a field or two of each item in a large result
+ * set, such as the id and URL of each post, skip the work of building
+ * every other field. The whole model can still be read with
+ * {@link #get()} when it is needed.
+ *
+ * The items of one response share the response's bytes. Fields are
+ * remembered once read; a LazyModel may be shared between threads,
+ * although two threads may then both read the same field.
+ *
+ * @param <T> the type of model
+ */
+public final class LazyModel<T> {
+
+    /**
+     * The encoding of the JSON.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The mapper with which fields are read.
+     */
+    private final ObjectMapper jackson;
+
+    /**
+     * The pool for the values of string fields, or null.
+     */
+    private final StringPool pool;
+
+    /**
+     * The type of model.
+     */
+    private final Class<T> type;
+
+    /**
+     * The UTF-8 JSON of the response the item is part of.
+     */
+    private final byte[] json;
+
+    /**
+     * The offset of the item's opening brace.
+     */
+    private final int start;
+
+    /**
+     * The offset just past the item's closing brace.
+     */
+    private final int end;
+
+    /**
+     * The names of the item's fields, in the order they appear.
+     */
+    private final String[] names;
+
+    /**
+     * The offsets at which the value of each field starts and ends, in
+     * pairs. A string's end is the item's end, as strings end
+     * themselves.
+     */
+    private final int[] offsets;
+
+    /**
+     * The values of the fields read so far, by index, or null before
+     * any have been read. Published safely, so that a thread which
+     * finds a value another thread read sees all of it.
+     */
+    private volatile AtomicReferenceArray<Object> values;
+
+    /**
+     * The whole model, once it has been read.
+     */
+    private volatile T model;
+
+    /**
+     * Constructs a new LazyModel over an indexed item.
+     *
+     * @param jackson the mapper with which fields are read
+     * @param pool the pool for the values of string fields, or null
+     * @param type the type of model
+     * @param json the UTF-8 JSON of the response
+     * @param start the offset of the item's opening brace
+     * @param end the offset just past the item's closing brace
+     * @param names the names of the item's fields
+     * @param offsets the offsets at which the values of the fields
+     *                start and end, in pairs
+     */
+    LazyModel(final ObjectMapper jackson, final StringPool pool,
+            final Class<T> type,
+            final byte[] json, final int start, final int end,
+            final String[] names, final int[] offsets) {
+        this.jackson = jackson;
+        this.pool = pool;
+        this.type = type;
+        this.json = json;
+        this.start = start;
+        this.end = end;
+        this.names = names;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Checks whether the item has a field, even if its value is null.
+     *
+     * @param field the JSON name of the field
+     *
+     * @return true if the item has the field
+     */
+    public boolean has(final String field) {
+        return indexOf(field) >= 0;
+    }
+
+    /**
+     * Reads a field whose value is a string.
+     *
+     * @param field the JSON name of the field
+     *
+     * @return the value, or null if the field is null or missing
+     */
+    public String getString(final String field) {
+        return get(field, String.class);
+    }
+
+    /**
+     * Reads a field as the given type, the same way it is read when
+     * the whole model is.
+     *
+     * @param <V> the type of the value
+     * @param field the JSON name of the field
+     * @param valueType the type of the value
+     *
+     * @return the value, or null if the field is null or missing
+     */
+    public <V> V get(final String field, final Class<V> valueType) {
+        final int index = indexOf(field);
+        if (index < 0) {
+            return null;
+        }
+
+        AtomicReferenceArray<Object> read = values;
+        if (null == read) {
+            read = new AtomicReferenceArray<Object>(names.length);
+            values = read;
+        }
+
+        final Object value = read.get(index);
+        if (valueType.isInstance(value)) {
+            return valueType.cast(value);
+        }
+
+        final int from = offsets[2 * index];
+        final int to = offsets[2 * index + 1];
+        V decoded = String.class == valueType
+            ? valueType.cast(decodeString(from, to))
+            : decode(from, to, valueType);
+        if (decoded instanceof String && null != pool
+                && pool.getFields().contains(field)) {
+            decoded = valueType.cast(pool.canonicalize((String) decoded));
+        }
+        read.set(index, decoded);
+        return decoded;
+    }
+
+    /**
+     * Reads the whole model, the first time it is asked for.
+     *
+     * @return the model
+     */
+    public T get() {
+        T read = model;
+        if (null == read) {
+            read = decode(start, end, type);
+            model = read;
+        }
+        return read;
+    }
+
+    /**
+     * Gets the type of model.
+     *
+     * @return the type of model
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Finds a field by name.
+     *
+     * @param field the JSON name of the field
+     *
+     * @return its index, or -1 if there is no such field
+     */
+    private int indexOf(final String field) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a string value. A string without escapes, as most are, is
+     * decoded straight from its bytes; anything else is left to
+     * Jackson.
+     *
+     * @param from where the value starts
+     * @param to where the value, or the item, ends
+     *
+     * @return the value
+     */
+    private String decodeString(final int from, final int to) {
+        if ('"' == json[from]) {
+            for (int i = from + 1; i < to; i++) {
+                if ('"' == json[i]) {
+                    return new String(json, from + 1, i - from - 1, UTF_8);
+                } else if ('\\' == json[i]) {
+                    break;
+                }
+            }
+        }
+        return decode(from, to, String.class);
+    }
+
+    /**
+     * Reads the value which starts at an offset in the item.
+     *
+     * @param <V> the type of the value
+     * @param from where the value starts
+     * @param to where the value ends
+     * @param valueType the type of the value
+     *
+     * @return the value
+     */
+    private <V> V decode(
+            final int from, final int to, final Class<V> valueType) {
+        try {
+            final JsonParser parser = jackson.getFactory()
+                .createParser(json, from, to - from);
+            try {
+                return jackson.readValue(parser, valueType);
+            } finally {
+                parser.close();
+            }
+        } catch (final IOException mapperException) {
+            throw new ConverterException(mapperException.getMessage());
+        }
+    }
+}
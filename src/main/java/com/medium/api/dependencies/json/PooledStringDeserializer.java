@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads strings as Jackson does, then passes the values of the fields
+ * a {@link StringPool} is configured for through the pool.
+ *
+ * Jackson asks for a deserializer for each property it reads, which is
+ * where the field is checked: properties which are not pooled get
+ * Jackson's own, so that reading them costs nothing more.
+ */
+final class PooledStringDeserializer extends StdScalarDeserializer<String>
+        implements ContextualDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The pool through which strings are passed.
+     */
+    private final transient StringPool pool;
+
+    /**
+     * Constructs a new PooledStringDeserializer.
+     *
+     * @param pool the pool through which strings are passed
+     */
+    PooledStringDeserializer(final StringPool pool) {
+        super(String.class);
+        this.pool = pool;
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(
+            final DeserializationContext context,
+            final BeanProperty property) {
+
+        if (null != property && pool.getFields().contains(property.getName())) {
+            return this;
+        }
+        return StringDeserializer.instance;
+    }
+
+    @Override
+    public String deserialize(final JsonParser parser,
+            final DeserializationContext context) throws IOException {
+        return pool.canonicalize(
+            StringDeserializer.instance.deserialize(parser, context));
+    }
+}
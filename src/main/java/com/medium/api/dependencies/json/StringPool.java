@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import com.medium.api.metrics.StripedCounter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A StringPool canonicalizes the strings which models repeat, such as
+ * the author of many posts or the publication of many contributors, so
+ * that a large result set kept in memory holds one copy of each rather
+ * than one per model.
+ *
+ * The pool is bounded and safe for concurrent use without locking. It
+ * is a direct-mapped cache: each string has one slot, chosen by its
+ * hash, and a string displaces whatever other string was in its slot.
+ * Values which recur keep their place; values seen once are soon
+ * displaced and left to be collected.
+ *
+ * A {@link JacksonModelConverter} given a pool passes the values of the
+ * configured JSON fields through it as it reads them.
+ */
+public final class StringPool {
+
+    /**
+     * The fields pooled unless others are configured: those whose values
+     * recur across the models of a large crawl.
+     */
+    public static final Set<String> DEFAULT_FIELDS =
+        Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "authorId", "tags", "licenseUrl", "publicationId", "userId"
+        )));
+
+    /**
+     * The number of slots in the pool unless another is configured.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The longest string pooled unless another length is configured.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 256;
+
+    /**
+     * The size of a String object and of the header of its char array,
+     * on a 64-bit VM with compressed references.
+     */
+    private static final int STRING_OVERHEAD = 24 + 16;
+
+    /**
+     * The slots, each holding the last string which hashed to it.
+     */
+    private final AtomicReferenceArray<String> slots;
+
+    /**
+     * Masks a hash to a slot index.
+     */
+    private final int mask;
+
+    /**
+     * The longest string worth pooling.
+     */
+    private final int maxLength;
+
+    /**
+     * The names of the JSON fields whose values are pooled.
+     */
+    private final Set<String> fields;
+
+    /**
+     * The number of strings replaced by a pooled copy.
+     */
+    private final StripedCounter hits = new StripedCounter();
+
+    /**
+     * The number of strings which had no pooled copy.
+     */
+    private final StripedCounter misses = new StripedCounter();
+
+    /**
+     * The estimated size of the duplicates replaced by pooled copies.
+     */
+    private final StripedCounter bytesSaved = new StripedCounter();
+
+    /**
+     * Constructs a new StringPool from a Builder.
+     *
+     * @param builder the builder
+     */
+    private StringPool(final Builder builder) {
+        int capacity = 1;
+        while (capacity < builder.capacity) {
+            capacity <<= 1;
+        }
+
+        this.slots = new AtomicReferenceArray<String>(capacity);
+        this.mask = capacity - 1;
+        this.maxLength = builder.maxLength;
+        this.fields = Collections.unmodifiableSet(
+            new HashSet<String>(builder.fields));
+    }
+
+    /**
+     * Gets the pooled copy of a string, or pools this one if there was
+     * none.
+     *
+     * @param value the string, which may be null
+     *
+     * @return an equal string, which is the same instance for as long as
+     *         it stays in the pool
+     */
+    public String canonicalize(final String value) {
+        if (null == value || value.length() > maxLength) {
+            return value;
+        }
+
+        final int hash = value.hashCode();
+        final int slot = (hash ^ (hash >>> 16)) & mask;
+
+        final String pooled = slots.get(slot);
+        if (null != pooled && pooled.equals(value)) {
+            hits.increment();
+            if (pooled != value) {
+                bytesSaved.add(sizeOf(value));
+            }
+            return pooled;
+        }
+
+        slots.lazySet(slot, value);
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Gets the names of the JSON fields whose values are pooled.
+     *
+     * @return the field names
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Gets the number of slots in the pool.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Gets the number of strings replaced by a pooled copy.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of strings which had no pooled copy, and were
+     * pooled themselves.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets an estimate of the heap saved by replacing strings with their
+     * pooled copies, as the size of the duplicates which were dropped.
+     *
+     * @return the bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Estimates the size of a string and its characters.
+     *
+     * @param value the string
+     *
+     * @return its size, in bytes
+     */
+    private static long sizeOf(final String value) {
+        return (STRING_OVERHEAD + 2L * value.length() + 7) & ~7L;
+    }
+
+    /**
+     * Fascilitates the construction of a StringPool.
+     */
+    public static class Builder {
+
+        private int capacity = DEFAULT_CAPACITY;
+        private int maxLength = DEFAULT_MAX_LENGTH;
+        private Set<String> fields = DEFAULT_FIELDS;
+
+        /**
+         * Sets the number of slots in the pool, which is rounded up to a
+         * power of two. More slots keep more distinct values, at four or
+         * eight bytes a slot.
+         *
+         * @param capacity the number of slots
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withCapacity(final int capacity) {
+            if (capacity < 1 || capacity > 1 << 30) {
+                throw new IllegalArgumentException(
+                    "Capacity must be between 1 and 2^30: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the longest string to pool. Longer values, such as post
+         * content, are rarely repeated and costly to compare.
+         *
+         * @param maxLength the longest string to pool
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withMaxLength(final int maxLength) {
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Sets the JSON fields whose values are pooled, in place of
+         * {@link StringPool#DEFAULT_FIELDS}. The values of a field which
+         * is an array of strings are pooled one by one.
+         *
+         * @param fields the names of the fields
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withFields(final String... fields) {
+            this.fields = new HashSet<String>(Arrays.asList(fields));
+            return this;
+        }
+
+        /**
+         * Builds the StringPool.
+         *
+         * @return a new instance of StringPool
+         */
+        public StringPool build() {
+            return new StringPool(this);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A HistogramSnapshot is a copy of a {@link LatencyHistogram} at a
+ * point in time, from which percentiles can be read. Values read from
+ * it are exact to within the width of the bucket in which they fall,
+ * about 3% of their value.
+ */
+public final class HistogramSnapshot {
+
+    /**
+     * The count of each bucket.
+     */
+    private final long[] counts;
+
+    /**
+     * The number of durations recorded.
+     */
+    private final long count;
+
+    /**
+     * The sum of all durations recorded, in nanoseconds.
+     */
+    private final long sum;
+
+    /**
+     * The longest duration recorded, in nanoseconds.
+     */
+    private final long max;
+
+    /**
+     * Constructs a new HistogramSnapshot.
+     *
+     * @param counts the count of each bucket, which is not copied
+     * @param sum the sum of all durations recorded, in nanoseconds
+     * @param max the longest duration recorded, in nanoseconds
+     */
+    HistogramSnapshot(final long[] counts, final long sum, final long max) {
+        long total = 0;
+        for (final long c : counts) {
+            total += c;
+        }
+        this.counts = counts;
+        this.count = total;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Gets the number of durations recorded.
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of all durations recorded.
+     *
+     * @param unit the unit in which to express the sum
+     *
+     * @return the sum of all durations
+     */
+    public long getSum(final TimeUnit unit) {
+        return unit.convert(sum, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the mean of the durations recorded.
+     *
+     * @param unit the unit in which to express the mean
+     *
+     * @return the mean duration, or zero if none have been recorded
+     */
+    public long getMean(final TimeUnit unit) {
+        if (0 == count) {
+            return 0;
+        }
+        return unit.convert(sum / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the longest duration recorded.
+     *
+     * @param unit the unit in which to express the duration
+     *
+     * @return the longest duration, or zero if none have been recorded
+     */
+    public long getMax(final TimeUnit unit) {
+        return unit.convert(max, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the duration at a percentile: the duration which the given
+     * percentage of durations recorded did not exceed.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @param unit the unit in which to express the duration
+     *
+     * @return the duration at the percentile, or zero if none have
+     *         been recorded
+     */
+    public long getValueAtPercentile(
+            final double percentile, final TimeUnit unit) {
+
+        if (0 == count) {
+            return 0;
+        }
+        final double fraction = Math.min(100, Math.max(0, percentile)) / 100;
+        final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                final long value = Math.min(LatencyHistogram.highestOf(i), max);
+                return unit.convert(value, TimeUnit.NANOSECONDS);
+            }
+        }
+        return unit.convert(max, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the number of durations recorded which did not exceed a
+     * bound. Durations in the bucket which holds the bound are counted
+     * as within it, so the count may include durations up to about 3%
+     * above the bound.
+     *
+     * @param bound the bound
+     * @param unit the unit of the bound
+     *
+     * @return the number of durations within the bound
+     */
+    public long getCountAtOrBelow(final long bound, final TimeUnit unit) {
+        final long nanos = unit.toNanos(bound);
+        if (nanos < 0) {
+            return 0;
+        }
+        final int last = LatencyHistogram.bucketOf(nanos);
+        long within = 0;
+        for (int i = 0; i <= last; i++) {
+            within += counts[i];
+        }
+        return within;
+    }
+}
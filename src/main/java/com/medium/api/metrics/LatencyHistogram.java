@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram counts durations in buckets whose width grows with
+ * the duration, in the manner of an HdrHistogram: every power of two
+ * is split into {@value #SUB_BUCKETS} buckets, so any duration is
+ * counted to within about 3% of its value, from a nanosecond up to
+ * centuries, in a fixed amount of memory.
+ *
+ * Recording is lock-free: it increments one bucket and a few counters
+ * and never blocks, so it may be called on the hot path of every call.
+ * {@link #snapshot()} copies the buckets for reading, without stopping
+ * recording; a snapshot taken while durations are being recorded may
+ * include some of them and not others.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits of a duration kept beyond its highest bit.
+     */
+    static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets into which every power of two is split.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets needed to count any non-negative long.
+     */
+    static final int BUCKETS =
+        SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /**
+     * The count of each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The sum of all durations recorded, in nanoseconds.
+     */
+    private final StripedCounter sum = new StripedCounter();
+
+    /**
+     * The longest duration recorded, in nanoseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param duration the duration, which is taken as zero if it is
+     *                 negative
+     * @param unit the unit of the duration
+     */
+    public void record(final long duration, final TimeUnit unit) {
+        recordNanos(unit.toNanos(duration));
+    }
+
+    /**
+     * Records a duration in nanoseconds.
+     *
+     * @param nanos the duration, which is taken as zero if it is
+     *              negative
+     */
+    public void recordNanos(final long nanos) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Copies the current state of the histogram.
+     *
+     * @return the snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, sum.sum(), max.get());
+    }
+
+    /**
+     * Gets the bucket in which a duration is counted.
+     *
+     * @param nanos the duration, which must not be negative
+     *
+     * @return the index of the bucket
+     */
+    static int bucketOf(final long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS
+            + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the shortest duration counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     *
+     * @return the lowest value of the bucket, in nanoseconds
+     */
+    static long lowestOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    /**
+     * Gets the longest duration counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     *
+     * @return the highest value of the bucket, in nanoseconds
+     */
+    static long highestOf(final int bucket) {
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestOf(bucket + 1) - 1;
+    }
+}
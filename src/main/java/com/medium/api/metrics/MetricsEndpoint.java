@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/**
+ * A MetricsEndpoint serves the metrics of a {@link PrometheusExporter}
+ * over HTTP, at {@value #PATH}, for Prometheus to scrape.
+ */
+public class MetricsEndpoint {
+
+    /**
+     * The path at which metrics are served.
+     */
+    public static final String PATH = "/metrics";
+
+    /**
+     * The status of a successful scrape.
+     */
+    private static final int OK = 200;
+
+    /**
+     * The status of a request for anything but a GET or HEAD.
+     */
+    private static final int METHOD_NOT_ALLOWED = 405;
+
+    /**
+     * The exporter rendering the metrics.
+     */
+    private final PrometheusExporter exporter;
+
+    /**
+     * The address on which to listen.
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * The HTTP server, once started.
+     */
+    private HttpServer server;
+
+    /**
+     * Constructs a new MetricsEndpoint.
+     *
+     * @param exporter the exporter rendering the metrics
+     * @param address the address on which to listen; a port of zero
+     *                picks any free port
+     */
+    public MetricsEndpoint(
+            final PrometheusExporter exporter,
+            final InetSocketAddress address) {
+
+        this.exporter = exporter;
+        this.address = address;
+    }
+
+    /**
+     * Starts listening for scrapes, on a thread of the server's own.
+     *
+     * @throws IOException
+     *         If the server cannot listen on the address
+     */
+    public synchronized void start() throws IOException {
+        if (null != server) {
+            return;
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext(PATH, new MetricsHandler());
+        server.setExecutor(null);
+        server.start();
+    }
+
+    /**
+     * Stops listening for scrapes.
+     */
+    public synchronized void stop() {
+        if (null != server) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Gets the port on which the endpoint is listening.
+     *
+     * @return the port, or -1 if the endpoint is not started
+     */
+    public synchronized int getPort() {
+        return null != server ? server.getAddress().getPort() : -1;
+    }
+
+    /**
+     * Serves the rendered metrics.
+     */
+    private class MetricsHandler implements HttpHandler {
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                final String method = exchange.getRequestMethod();
+                if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(METHOD_NOT_ALLOWED, -1);
+                    return;
+                }
+
+                final byte[] body = exporter.render().getBytes("UTF-8");
+                exchange.getResponseHeaders().set(
+                    "Content-Type", PrometheusExporter.CONTENT_TYPE);
+                if ("HEAD".equals(method)) {
+                    exchange.sendResponseHeaders(OK, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(OK, body.length);
+                final OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
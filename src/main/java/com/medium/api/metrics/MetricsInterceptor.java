@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.medium.api.dependencies.http.Exchange;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.Interceptor;
+
+import com.medium.api.util.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A MetricsInterceptor records every call it sees into a
+ * {@link MetricsRegistry}, under the name of the operation which made
+ * it.
+ */
+public final class MetricsInterceptor implements Interceptor {
+
+    /**
+     * The registry into which calls are recorded.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * Constructs a new MetricsInterceptor.
+     *
+     * @param registry the registry into which to record calls
+     */
+    public MetricsInterceptor(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void onRequest(final Exchange exchange) {
+    }
+
+    @Override
+    public void onResponse(final Exchange exchange) {
+        registry.getOperation(exchange.getOperation()).recordSuccess(
+            exchange.getElapsed(TimeUnit.NANOSECONDS),
+            StringUtils.utf8Length(exchange.getRequestBody()),
+            StringUtils.utf8Length(exchange.getResponseBody()));
+    }
+
+    @Override
+    public void onException(
+            final Exchange exchange, final HttpException exception) {
+
+        registry.getOperation(exchange.getOperation()).recordFailure(
+            exception.getCode(),
+            exchange.getElapsed(TimeUnit.NANOSECONDS),
+            StringUtils.utf8Length(exchange.getRequestBody()));
+    }
+}
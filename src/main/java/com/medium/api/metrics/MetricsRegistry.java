@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.medium.api.dependencies.http.CallTimings;
+import com.medium.api.dependencies.http.CallTimingsListener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A MetricsRegistry holds the {@link OperationMetrics} of each
+ * operation a client makes, such as {@code "createPost"}. Pass one to
+ * {@link com.medium.api.MediumClient.Builder#withMetrics(MetricsRegistry)}
+ * to have the client record every call into it, then read it at any
+ * time with {@link #snapshot()}.
+ *
+ * A registry is also a {@link CallTimingsListener}: give it to an
+ * {@link com.medium.api.dependencies.http.OkayHttpClient} to break down
+ * the latency of each operation by phase.
+ */
+public final class MetricsRegistry implements CallTimingsListener {
+
+    /**
+     * The operation under which calls made outside of any operation
+     * are recorded.
+     */
+    public static final String UNKNOWN_OPERATION = "unknown";
+
+    /**
+     * The metrics of each operation, by name.
+     */
+    private final ConcurrentMap<String, OperationMetrics> operations =
+        new ConcurrentHashMap<String, OperationMetrics>();
+
+    /**
+     * Gets the metrics of an operation, creating them if this is the
+     * first time it has been seen.
+     *
+     * @param operation the name of the operation, or null for
+     *                  {@link #UNKNOWN_OPERATION}
+     *
+     * @return the live metrics of the operation
+     */
+    public OperationMetrics getOperation(final String operation) {
+        final String name = null != operation ? operation : UNKNOWN_OPERATION;
+        final OperationMetrics metrics = operations.get(name);
+        if (null != metrics) {
+            return metrics;
+        }
+        final OperationMetrics created = new OperationMetrics();
+        final OperationMetrics existing = operations.putIfAbsent(name, created);
+        return null != existing ? existing : created;
+    }
+
+    @Override
+    public void onCallTimings(final CallTimings timings) {
+        getOperation(timings.getOperation()).recordTimings(timings);
+    }
+
+    /**
+     * Gets the live metrics of every operation seen so far.
+     *
+     * @return the metrics of each operation, by name
+     */
+    public Map<String, OperationMetrics> getOperations() {
+        return Collections.unmodifiableMap(operations);
+    }
+
+    /**
+     * Copies the current metrics of every operation seen so far.
+     *
+     * @return a snapshot of the metrics of each operation, in order of
+     *         name
+     */
+    public Map<String, OperationSnapshot> snapshot() {
+        final Map<String, OperationSnapshot> snapshot =
+            new TreeMap<String, OperationSnapshot>();
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
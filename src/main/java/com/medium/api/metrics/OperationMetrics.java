@@ -0,0 +1,299 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.medium.api.dependencies.http.CallPhase;
+import com.medium.api.dependencies.http.CallTimings;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * OperationMetrics holds the live metrics of one operation: how many
+ * calls it has made, how many failed and with what status, how many
+ * bytes they sent and received, and how long they took. Updates are
+ * lock-free, and so are reads, which see each counter as it is at the
+ * moment it is read.
+ */
+public final class OperationMetrics {
+
+    /**
+     * The number of calls made.
+     */
+    private final StripedCounter calls = new StripedCounter();
+
+    /**
+     * The number of calls which failed.
+     */
+    private final StripedCounter errors = new StripedCounter();
+
+    /**
+     * The number of calls which failed, by status.
+     */
+    private final ConcurrentMap<Integer, StripedCounter> errorsByStatus =
+        new ConcurrentHashMap<Integer, StripedCounter>();
+
+    /**
+     * The number of bytes of request bodies sent.
+     */
+    private final StripedCounter bytesSent = new StripedCounter();
+
+    /**
+     * The number of bytes of response bodies received.
+     */
+    private final StripedCounter bytesReceived = new StripedCounter();
+
+    /**
+     * How long calls took, whether or not they succeeded.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * How long each phase of calls took, by ordinal, once calls of the
+     * operation have been timed.
+     */
+    private final AtomicReferenceArray<LatencyHistogram> phases =
+        new AtomicReferenceArray<LatencyHistogram>(CallPhase.values().length);
+
+    /**
+     * The number of timed calls made on a pooled connection.
+     */
+    private final StripedCounter reusedConnections = new StripedCounter(1);
+
+    /**
+     * The number of timed calls which opened a connection.
+     */
+    private final StripedCounter newConnections = new StripedCounter(1);
+
+    /**
+     * Constructs a new OperationMetrics with nothing recorded.
+     */
+    OperationMetrics() {
+    }
+
+    /**
+     * Records a call which succeeded.
+     *
+     * @param latencyNanos how long the call took, in nanoseconds
+     * @param sent the number of bytes of the request body
+     * @param received the number of bytes of the response body
+     */
+    public void recordSuccess(
+            final long latencyNanos, final long sent, final long received) {
+
+        calls.increment();
+        bytesSent.add(sent);
+        bytesReceived.add(received);
+        latency.recordNanos(latencyNanos);
+    }
+
+    /**
+     * Records a call which failed.
+     *
+     * @param status the status of the failure, as of
+     *               {@link com.medium.api.dependencies.http.HttpException#getCode()}
+     * @param latencyNanos how long the call took, in nanoseconds
+     * @param sent the number of bytes of the request body
+     */
+    public void recordFailure(
+            final int status, final long latencyNanos, final long sent) {
+
+        calls.increment();
+        errors.increment();
+        errorCounter(status).increment();
+        bytesSent.add(sent);
+        latency.recordNanos(latencyNanos);
+    }
+
+    /**
+     * Records the phases of a call, as timed by an
+     * {@link com.medium.api.dependencies.http.OkayHttpClient}.
+     *
+     * @param timings the timings of the call
+     */
+    public void recordTimings(final CallTimings timings) {
+        for (final CallPhase phase : CallPhase.values()) {
+            phase(phase).recordNanos(
+                timings.getDuration(phase, TimeUnit.NANOSECONDS));
+        }
+        if (timings.isConnectionReused()) {
+            reusedConnections.increment();
+        } else {
+            newConnections.increment();
+        }
+    }
+
+    /**
+     * Gets the number of calls made.
+     *
+     * @return the number of calls
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * Gets the number of calls which failed.
+     *
+     * @return the number of failed calls
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * Gets the number of calls which failed, by the status with which
+     * they failed. Failures which got no response, such as timeouts,
+     * have a status of -1.
+     *
+     * @return the number of failed calls by status, in order of status
+     */
+    public Map<Integer, Long> getErrorCountsByStatus() {
+        final Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (final Map.Entry<Integer, StripedCounter> entry
+                : errorsByStatus.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Gets the number of bytes of request bodies sent.
+     *
+     * @return the number of bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Gets the number of bytes of response bodies received.
+     *
+     * @return the number of bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * Gets the histogram of how long calls took.
+     *
+     * @return the live histogram of latencies
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the histograms of how long each phase of calls took.
+     *
+     * @return the live histogram of each phase, or an empty map if no
+     *         calls have been timed
+     */
+    public Map<CallPhase, LatencyHistogram> getPhases() {
+        final Map<CallPhase, LatencyHistogram> map =
+            new EnumMap<CallPhase, LatencyHistogram>(CallPhase.class);
+        for (final CallPhase phase : CallPhase.values()) {
+            final LatencyHistogram histogram = phases.get(phase.ordinal());
+            if (null != histogram) {
+                map.put(phase, histogram);
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Gets the number of timed calls made on a connection taken from
+     * the pool.
+     *
+     * @return the number of calls which reused a connection
+     */
+    public long getReusedConnectionCount() {
+        return reusedConnections.sum();
+    }
+
+    /**
+     * Gets the number of timed calls which opened a connection.
+     *
+     * @return the number of calls which opened a connection
+     */
+    public long getNewConnectionCount() {
+        return newConnections.sum();
+    }
+
+    /**
+     * Copies the current state of the metrics.
+     *
+     * @return the snapshot
+     */
+    public OperationSnapshot snapshot() {
+        final Map<CallPhase, HistogramSnapshot> phaseSnapshots =
+            new EnumMap<CallPhase, HistogramSnapshot>(CallPhase.class);
+        for (final Map.Entry<CallPhase, LatencyHistogram> entry
+                : getPhases().entrySet()) {
+            phaseSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new OperationSnapshot(
+            getCallCount(), getErrorCount(), getErrorCountsByStatus(),
+            getBytesSent(), getBytesReceived(), latency.snapshot(),
+            Collections.unmodifiableMap(phaseSnapshots),
+            getReusedConnectionCount(), getNewConnectionCount());
+    }
+
+    /**
+     * Gets the histogram of a phase, creating it if this is the first
+     * call to be timed.
+     *
+     * @param phase the phase
+     *
+     * @return the histogram
+     */
+    private LatencyHistogram phase(final CallPhase phase) {
+        final LatencyHistogram histogram = phases.get(phase.ordinal());
+        if (null != histogram) {
+            return histogram;
+        }
+        phases.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+        return phases.get(phase.ordinal());
+    }
+
+    /**
+     * Gets the counter of failures with a status, creating it if this
+     * is the first.
+     *
+     * @param status the status of the failure
+     *
+     * @return the counter
+     */
+    private StripedCounter errorCounter(final int status) {
+        final Integer key = status;
+        final StripedCounter counter = errorsByStatus.get(key);
+        if (null != counter) {
+            return counter;
+        }
+        final StripedCounter created = new StripedCounter(1);
+        final StripedCounter existing =
+            errorsByStatus.putIfAbsent(key, created);
+        return null != existing ? existing : created;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.medium.api.dependencies.http.CallPhase;
+
+import java.util.Map;
+
+/**
+ * An OperationSnapshot is a copy of the {@link OperationMetrics} of one
+ * operation at a point in time.
+ */
+public final class OperationSnapshot {
+
+    /**
+     * The number of calls made.
+     */
+    private final long callCount;
+
+    /**
+     * The number of calls which failed.
+     */
+    private final long errorCount;
+
+    /**
+     * The number of calls which failed, by status.
+     */
+    private final Map<Integer, Long> errorCountsByStatus;
+
+    /**
+     * The number of bytes of request bodies sent.
+     */
+    private final long bytesSent;
+
+    /**
+     * The number of bytes of response bodies received.
+     */
+    private final long bytesReceived;
+
+    /**
+     * How long calls took.
+     */
+    private final HistogramSnapshot latency;
+
+    /**
+     * How long each phase of timed calls took.
+     */
+    private final Map<CallPhase, HistogramSnapshot> phases;
+
+    /**
+     * The number of timed calls which reused a connection.
+     */
+    private final long reusedConnectionCount;
+
+    /**
+     * The number of timed calls which opened a connection.
+     */
+    private final long newConnectionCount;
+
+    /**
+     * Constructs a new OperationSnapshot.
+     *
+     * @param callCount the number of calls made
+     * @param errorCount the number of calls which failed
+     * @param errorCountsByStatus the number of calls which failed, by
+     *                            status
+     * @param bytesSent the number of bytes sent
+     * @param bytesReceived the number of bytes received
+     * @param latency how long calls took
+     * @param phases how long each phase of timed calls took
+     * @param reusedConnectionCount the number of timed calls which
+     *                              reused a connection
+     * @param newConnectionCount the number of timed calls which opened
+     *                           a connection
+     */
+    OperationSnapshot(final long callCount, final long errorCount,
+            final Map<Integer, Long> errorCountsByStatus,
+            final long bytesSent, final long bytesReceived,
+            final HistogramSnapshot latency,
+            final Map<CallPhase, HistogramSnapshot> phases,
+            final long reusedConnectionCount, final long newConnectionCount) {
+
+        this.callCount = callCount;
+        this.errorCount = errorCount;
+        this.errorCountsByStatus = errorCountsByStatus;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.latency = latency;
+        this.phases = phases;
+        this.reusedConnectionCount = reusedConnectionCount;
+        this.newConnectionCount = newConnectionCount;
+    }
+
+    /**
+     * Gets the number of calls made.
+     *
+     * @return the number of calls
+     */
+    public long getCallCount() {
+        return callCount;
+    }
+
+    /**
+     * Gets the number of calls which failed.
+     *
+     * @return the number of failed calls
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the number of calls which failed, by the status with which
+     * they failed.
+     *
+     * @return the number of failed calls by status, in order of status
+     */
+    public Map<Integer, Long> getErrorCountsByStatus() {
+        return errorCountsByStatus;
+    }
+
+    /**
+     * Gets the number of bytes of request bodies sent.
+     *
+     * @return the number of bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Gets the number of bytes of response bodies received.
+     *
+     * @return the number of bytes received
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets how long calls took.
+     *
+     * @return the histogram of latencies
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets how long each phase of timed calls took.
+     *
+     * @return the histogram of each phase, or an empty map if no calls
+     *         were timed
+     */
+    public Map<CallPhase, HistogramSnapshot> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Gets the number of timed calls made on a connection taken from
+     * the pool.
+     *
+     * @return the number of calls which reused a connection
+     */
+    public long getReusedConnectionCount() {
+        return reusedConnectionCount;
+    }
+
+    /**
+     * Gets the number of timed calls which opened a connection.
+     *
+     * @return the number of calls which opened a connection
+     */
+    public long getNewConnectionCount() {
+        return newConnectionCount;
+    }
+}
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import com.medium.api.Operation;
+
+import com.medium.api.dependencies.http.CachingDns;
+import com.medium.api.dependencies.http.CallPhase;
+import com.medium.api.dependencies.http.HedgingPolicy;
+import com.medium.api.dependencies.http.OkayHttpClient;
+
+import com.medium.api.dependencies.json.StringPool;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A PrometheusExporter renders client metrics in the Prometheus text
+ * exposition format: the calls, errors, bytes and latencies of each
+ * operation in a {@link MetricsRegistry}, the number of token
+ * refreshes, and, given the {@link OkayHttpClient}, the utilization of
+ * its connection pool and the hit ratio of its {@link CachingDns}, the
+ * heap saved by a {@link StringPool}, and how often a
+ * {@link HedgingPolicy} hedges and how often its hedges win.
+ *
+ * Metrics are read from the live counters each time they are rendered,
+ * without taking any of the SDK's locks, so scraping never holds up
+ * calls. Serve them with a {@link MetricsEndpoint}.
+ */
+public final class PrometheusExporter {
+
+    /**
+     * The content type of the text exposition format.
+     */
+    public static final String CONTENT_TYPE =
+        "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The upper bounds of the latency buckets, in milliseconds.
+     */
+    private static final long[] BUCKET_MILLIS = {
+        5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+    };
+
+    /**
+     * The upper bounds of the latency buckets, in seconds, as labels.
+     */
+    private static final String[] BUCKET_LABELS = {
+        "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5",
+        "5", "10",
+    };
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The name of the operation which refreshes tokens.
+     */
+    private static final String REFRESH_OPERATION =
+        Operation.EXCHANGE_REFRESH_TOKEN.getOperationName();
+
+    /**
+     * The registry of operation metrics, if any.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * The connection pool to report on, if any.
+     */
+    private final ConnectionPool connectionPool;
+
+    /**
+     * The DNS cache to report on, if any.
+     */
+    private final CachingDns dns;
+
+    /**
+     * The string pool to report on, if any.
+     */
+    private final StringPool stringPool;
+
+    /**
+     * The hedging policy to report on, if any.
+     */
+    private final HedgingPolicy hedgingPolicy;
+
+    /**
+     * Constructs a new PrometheusExporter from a Builder.
+     *
+     * @param builder the builder
+     */
+    private PrometheusExporter(final Builder builder) {
+        this.registry = builder.registry;
+        this.connectionPool = builder.connectionPool;
+        this.dns = builder.dns;
+        this.stringPool = builder.stringPool;
+        this.hedgingPolicy = builder.hedgingPolicy;
+    }
+
+    /**
+     * Renders the current metrics.
+     *
+     * @return the metrics, in the text exposition format
+     */
+    public String render() {
+        final StringBuilder out = new StringBuilder();
+        try {
+            writeTo(out);
+        } catch (final IOException ioException) {
+            throw new IllegalStateException(ioException);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Renders the current metrics.
+     *
+     * @param out where to write the metrics, in the text exposition
+     *            format
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    public void writeTo(final Appendable out) throws IOException {
+        if (null != registry) {
+            writeOperations(out, new TreeMap<String, OperationMetrics>(
+                registry.getOperations()));
+        }
+        if (null != connectionPool) {
+            writeConnectionPool(out);
+        }
+        if (null != dns) {
+            writeDns(out);
+        }
+        if (null != stringPool) {
+            writeStringPool(out);
+        }
+        if (null != hedgingPolicy) {
+            writeHedging(out);
+        }
+    }
+
+    /**
+     * Writes the metrics of each operation, and of token refreshes.
+     *
+     * @param out where to write the metrics
+     * @param operations the metrics of each operation, by name
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private static void writeOperations(final Appendable out,
+            final Map<String, OperationMetrics> operations)
+            throws IOException {
+
+        header(out, "medium_calls_total", "counter",
+            "Calls made, by operation.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            sample(out, "medium_calls_total", entry.getKey(), null,
+                entry.getValue().getCallCount());
+        }
+
+        header(out, "medium_call_errors_total", "counter",
+            "Calls which failed, by operation and status.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            for (final Map.Entry<Integer, Long> error
+                    : entry.getValue().getErrorCountsByStatus().entrySet()) {
+                sample(out, "medium_call_errors_total", entry.getKey(),
+                    "status=\"" + error.getKey() + "\"", error.getValue());
+            }
+        }
+
+        header(out, "medium_sent_bytes_total", "counter",
+            "Bytes of request bodies sent, by operation.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            sample(out, "medium_sent_bytes_total", entry.getKey(), null,
+                entry.getValue().getBytesSent());
+        }
+
+        header(out, "medium_received_bytes_total", "counter",
+            "Bytes of response bodies received, by operation.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            sample(out, "medium_received_bytes_total", entry.getKey(), null,
+                entry.getValue().getBytesReceived());
+        }
+
+        header(out, "medium_call_duration_seconds", "histogram",
+            "How long calls took, by operation.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            writeHistogram(out, "medium_call_duration_seconds",
+                entry.getKey(), null,
+                entry.getValue().getLatency().snapshot());
+        }
+
+        header(out, "medium_call_phase_duration_seconds", "histogram",
+            "How long each phase of timed calls took, by operation.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            for (final Map.Entry<CallPhase, LatencyHistogram> phase
+                    : entry.getValue().getPhases().entrySet()) {
+                writeHistogram(out, "medium_call_phase_duration_seconds",
+                    entry.getKey(),
+                    "phase=\"" + phase.getKey().name().toLowerCase() + "\"",
+                    phase.getValue().snapshot());
+            }
+        }
+
+        header(out, "medium_call_connections_total", "counter",
+            "Timed calls, by whether they reused a pooled connection.");
+        for (final Map.Entry<String, OperationMetrics> entry
+                : operations.entrySet()) {
+            final OperationMetrics metrics = entry.getValue();
+            if (0 == metrics.getReusedConnectionCount()
+                    + metrics.getNewConnectionCount()) {
+                continue;
+            }
+            sample(out, "medium_call_connections_total", entry.getKey(),
+                "connection=\"reused\"", metrics.getReusedConnectionCount());
+            sample(out, "medium_call_connections_total", entry.getKey(),
+                "connection=\"new\"", metrics.getNewConnectionCount());
+        }
+
+        final OperationMetrics refreshes = operations.get(REFRESH_OPERATION);
+        header(out, "medium_token_refreshes_total", "counter",
+            "Access tokens refreshed.");
+        out.append("medium_token_refreshes_total ")
+            .append(Long.toString(null != refreshes
+                ? refreshes.getCallCount() - refreshes.getErrorCount()
+                : 0))
+            .append('\n');
+        header(out, "medium_token_refresh_failures_total", "counter",
+            "Access token refreshes which failed.");
+        out.append("medium_token_refresh_failures_total ")
+            .append(Long.toString(null != refreshes
+                ? refreshes.getErrorCount()
+                : 0))
+            .append('\n');
+    }
+
+    /**
+     * Writes a latency histogram of one operation.
+     *
+     * @param out where to write the metrics
+     * @param name the name of the metric
+     * @param operation the name of the operation
+     * @param labels further labels, already rendered, or null
+     * @param latency the latencies
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private static void writeHistogram(final Appendable out,
+            final String name, final String operation, final String labels,
+            final HistogramSnapshot latency) throws IOException {
+
+        final String prefix = null != labels ? labels + "," : "";
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            sample(out, name + "_bucket", operation,
+                prefix + "le=\"" + BUCKET_LABELS[i] + "\"",
+                latency.getCountAtOrBelow(
+                    BUCKET_MILLIS[i], TimeUnit.MILLISECONDS));
+        }
+        sample(out, name + "_bucket", operation, prefix + "le=\"+Inf\"",
+            latency.getCount());
+        out.append(name).append("_sum{operation=\"")
+            .append(escape(operation)).append('"');
+        if (null != labels) {
+            out.append(',').append(labels);
+        }
+        out.append("} ")
+            .append(Double.toString(
+                latency.getSum(TimeUnit.NANOSECONDS) / NANOS_PER_SECOND))
+            .append('\n');
+        sample(out, name + "_count", operation, labels, latency.getCount());
+    }
+
+    /**
+     * Writes the utilization of the connection pool.
+     *
+     * @param out where to write the metrics
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private void writeConnectionPool(final Appendable out)
+            throws IOException {
+
+        final int total = connectionPool.connectionCount();
+        final int idle = connectionPool.idleConnectionCount();
+        header(out, "medium_pool_connections", "gauge",
+            "Connections in the pool, by state.");
+        out.append("medium_pool_connections{state=\"active\"} ")
+            .append(Integer.toString(Math.max(0, total - idle)))
+            .append('\n');
+        out.append("medium_pool_connections{state=\"idle\"} ")
+            .append(Integer.toString(idle))
+            .append('\n');
+    }
+
+    /**
+     * Writes the hits and misses of the DNS cache.
+     *
+     * @param out where to write the metrics
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private void writeDns(final Appendable out) throws IOException {
+        final long hits = dns.getHitCount();
+        final long stale = dns.getStaleHitCount();
+        final long misses = dns.getMissCount();
+        header(out, "medium_dns_lookups_total", "counter",
+            "DNS lookups, by how the cache served them.");
+        out.append("medium_dns_lookups_total{result=\"hit\"} ")
+            .append(Long.toString(hits)).append('\n');
+        out.append("medium_dns_lookups_total{result=\"stale\"} ")
+            .append(Long.toString(stale)).append('\n');
+        out.append("medium_dns_lookups_total{result=\"miss\"} ")
+            .append(Long.toString(misses)).append('\n');
+
+        final long lookups = hits + stale + misses;
+        header(out, "medium_dns_cache_hit_ratio", "gauge",
+            "The share of DNS lookups served from the cache.");
+        out.append("medium_dns_cache_hit_ratio ")
+            .append(Double.toString(0 == lookups
+                ? 0
+                : (double) (hits + stale) / lookups))
+            .append('\n');
+    }
+
+    /**
+     * Writes how many strings the pool has deduplicated, and the heap
+     * that saved.
+     *
+     * @param out where to write the metrics
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private void writeStringPool(final Appendable out) throws IOException {
+        header(out, "medium_string_pool_lookups_total", "counter",
+            "Strings passed through the pool, by whether it had a copy.");
+        out.append("medium_string_pool_lookups_total{result=\"hit\"} ")
+            .append(Long.toString(stringPool.getHitCount())).append('\n');
+        out.append("medium_string_pool_lookups_total{result=\"miss\"} ")
+            .append(Long.toString(stringPool.getMissCount())).append('\n');
+
+        header(out, "medium_string_pool_saved_bytes_total", "counter",
+            "Estimated size of the duplicate strings the pool replaced.");
+        out.append("medium_string_pool_saved_bytes_total ")
+            .append(Long.toString(stringPool.getBytesSaved())).append('\n');
+    }
+
+    /**
+     * Writes how many requests were hedged, and how many of the hedges
+     * beat the original request.
+     *
+     * @param out where to write the metrics
+     *
+     * @throws IOException
+     *         If the metrics cannot be written
+     */
+    private void writeHedging(final Appendable out) throws IOException {
+        header(out, "medium_hedge_requests_total", "counter",
+            "GET requests which were eligible for hedging.");
+        out.append("medium_hedge_requests_total ")
+            .append(Long.toString(hedgingPolicy.getRequestCount()))
+            .append('\n');
+
+        header(out, "medium_hedges_total", "counter",
+            "Hedges sent, by whether they beat the original request.");
+        final long hedges = hedgingPolicy.getHedgeCount();
+        final long wins = hedgingPolicy.getHedgeWinCount();
+        out.append("medium_hedges_total{result=\"won\"} ")
+            .append(Long.toString(wins)).append('\n');
+        out.append("medium_hedges_total{result=\"lost\"} ")
+            .append(Long.toString(Math.max(0, hedges - wins))).append('\n');
+
+        header(out, "medium_hedge_rate", "gauge",
+            "The share of eligible requests which were hedged.");
+        out.append("medium_hedge_rate ")
+            .append(Double.toString(hedgingPolicy.getHedgeRate()))
+            .append('\n');
+
+        header(out, "medium_hedge_win_rate", "gauge",
+            "The share of hedges which beat the original request.");
+        out.append("medium_hedge_win_rate ")
+            .append(Double.toString(hedgingPolicy.getWinRate()))
+            .append('\n');
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric.
+     *
+     * @param out where to write the lines
+     * @param name the name of the metric
+     * @param type the type of the metric
+     * @param help what the metric measures
+     *
+     * @throws IOException
+     *         If the lines cannot be written
+     */
+    private static void header(final Appendable out, final String name,
+            final String type, final String help) throws IOException {
+
+        out.append("# HELP ").append(name).append(' ').append(help)
+            .append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type)
+            .append('\n');
+    }
+
+    /**
+     * Writes one sample of a metric labelled with an operation.
+     *
+     * @param out where to write the sample
+     * @param name the name of the metric
+     * @param operation the name of the operation
+     * @param labels further labels, already rendered, or null
+     * @param value the value of the sample
+     *
+     * @throws IOException
+     *         If the sample cannot be written
+     */
+    private static void sample(final Appendable out, final String name,
+            final String operation, final String labels, final long value)
+            throws IOException {
+
+        out.append(name).append("{operation=\"").append(escape(operation))
+            .append('"');
+        if (null != labels) {
+            out.append(',').append(labels);
+        }
+        out.append("} ").append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value the label value
+     *
+     * @return the value with backslashes, quotes and newlines escaped
+     */
+    static String escape(final String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+            .replace("\n", "\\n");
+    }
+
+    /**
+     * Builder fascilitates the construction of a PrometheusExporter.
+     */
+    public static class Builder {
+
+        private MetricsRegistry registry;
+        private ConnectionPool connectionPool;
+        private CachingDns dns;
+        private StringPool stringPool;
+        private HedgingPolicy hedgingPolicy;
+
+        /**
+         * Exports the metrics of each operation in a registry.
+         *
+         * @param registry the registry of operation metrics
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withRegistry(final MetricsRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Exports the utilization of the connection pool of an HTTP
+         * client, and the hit ratio of its DNS cache if it resolves
+         * hosts through a {@link CachingDns}.
+         *
+         * @param httpClient the HTTP client
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withHttpClient(final OkayHttpClient httpClient) {
+            this.connectionPool =
+                httpClient.getOkHttpClient().connectionPool();
+            final Dns clientDns = httpClient.getOkHttpClient().dns();
+            if (clientDns instanceof CachingDns) {
+                this.dns = (CachingDns) clientDns;
+            }
+            return this;
+        }
+
+        /**
+         * Exports how many strings a pool has deduplicated, and the
+         * heap that saved.
+         *
+         * @param stringPool the pool
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withStringPool(final StringPool stringPool) {
+            this.stringPool = stringPool;
+            return this;
+        }
+
+        /**
+         * Exports how often a hedging policy hedges requests, and how
+         * often its hedges win.
+         *
+         * @param hedgingPolicy the policy
+         *
+         * @return the updated instance of the builder
+         */
+        public Builder withHedgingPolicy(final HedgingPolicy hedgingPolicy) {
+            this.hedgingPolicy = hedgingPolicy;
+            return this;
+        }
+
+        /**
+         * Builds the PrometheusExporter.
+         *
+         * @return a new instance of PrometheusExporter
+         */
+        public PrometheusExporter build() {
+            return new PrometheusExporter(this);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A StripedCounter is a counter which many threads may add to at once
+ * without contending: each thread adds to one of several cells, spread
+ * apart so that they do not share a cache line, and reading the counter
+ * sums the cells.
+ *
+ * Reads are not atomic with respect to concurrent updates; a sum taken
+ * while other threads are adding reflects some, but not necessarily
+ * all, of their additions.
+ */
+public final class StripedCounter {
+
+    /**
+     * The number of longs between the cells, so that each has a cache
+     * line to itself.
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * The most cells a counter may have.
+     */
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * The number of cells, less one; the number is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The cells, PADDING apart.
+     */
+    private final AtomicLongArray cells;
+
+    /**
+     * Constructs a new StripedCounter with a cell for every two
+     * processors available.
+     */
+    public StripedCounter() {
+        this(2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new StripedCounter with at least the given number of
+     * cells.
+     *
+     * @param stripes the number of cells over which to spread updates
+     */
+    public StripedCounter(final int stripes) {
+        int size = 1;
+        while (size < stripes && size < MAX_STRIPES) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray(size * PADDING);
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds to the counter.
+     *
+     * @param delta the amount to add
+     */
+    public void add(final long delta) {
+        cells.getAndAdd(index(), delta);
+    }
+
+    /**
+     * Gets the sum of all that has been added to the counter.
+     *
+     * @return the value of the counter
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+    /**
+     * Gets the cell to which the current thread adds.
+     *
+     * @return the index of the cell
+     */
+    private int index() {
+        long id = Thread.currentThread().getId();
+        id ^= id >>> 33;
+        id *= 0xff51afd7ed558ccdL;
+        id ^= id >>> 33;
+        return ((int) id & mask) * PADDING;
+    }
+}
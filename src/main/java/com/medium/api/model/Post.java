@@ -19,7 +19,9 @@ package com.medium.api.model;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 
 /**
@@ -29,6 +31,10 @@ import java.util.Date;
  *
  * A Post is different from an {@link Submission}; submissions may be
  * rejected and may never become Posts.
+ *
+ * Posts are often kept by the thousand, so they are stored compactly:
+ * the published date as epoch milliseconds and the tags as an array.
+ * The getters build the usual types from them on demand.
  */
 public class Post {
 
@@ -82,6 +88,11 @@ public class Post {
      */
     private static final String JSON_KEY_LICENSE_URL = "licenseUrl";
 
+    /**
+     * Stands for a published date which is not known, as for a draft.
+     */
+    private static final long UNPUBLISHED = Long.MIN_VALUE;
+
     /**
      * A unique identifier for the post.
      */
@@ -98,9 +109,9 @@ public class Post {
     private final String authorId;
 
     /**
-     * The post's tags.
+     * The post's tags, or null if it has none.
      */
-    private final Collection<String> tags;
+    private final String[] tags;
 
     /**
      * The URL of the post on Medium.
@@ -119,9 +130,10 @@ public class Post {
     private final PublishStatus publishStatus;
 
     /**
-     * The post's published date, if publish status is not draft.
+     * The post's published date in epoch milliseconds, or UNPUBLISHED
+     * if publish status is draft.
      */
-    private final Date publishedAt;
+    private final long publishedAt;
 
     /**
      * The license of the post.
@@ -163,11 +175,11 @@ public class Post {
         this.id = id;
         this.title = title;
         this.authorId = authorId;
-        this.tags = tags;
+        this.tags = toArray(tags);
         this.url = url;
         this.canonicalUrl = canonicalUrl;
         this.publishStatus = publishStatus;
-        this.publishedAt = publishedAt;
+        this.publishedAt = toMillis(publishedAt);
         this.license = license;
         this.licenseUrl = licenseUrl;
     }
@@ -182,11 +194,11 @@ public class Post {
         this.id = builder.id;
         this.title = builder.title;
         this.authorId = builder.authorId;
-        this.tags = builder.tags;
+        this.tags = toArray(builder.tags);
         this.url = builder.url;
         this.canonicalUrl = builder.canonicalUrl;
         this.publishStatus = builder.publishStatus;
-        this.publishedAt = builder.publishedAt;
+        this.publishedAt = toMillis(builder.publishedAt);
         this.license = builder.license;
         this.licenseUrl = builder.licenseUrl;
     }
@@ -224,11 +236,14 @@ public class Post {
     /**
      * Gets the post's tags.
      *
-     * @return the post's tags
+     * @return an unmodifiable view of the post's tags
      */
     @JsonProperty(JSON_KEY_TAGS)
     public Collection<String> getTags() {
-        return tags;
+        if (tags == null) {
+            return null;
+        }
+        return Collections.unmodifiableList(Arrays.asList(tags));
     }
 
     /**
@@ -265,11 +280,14 @@ public class Post {
     /**
      * Gets the post's published date, if the post is not a draft.
      *
-     * @return the post's published date
+     * @return a new copy of the post's published date
      */
     @JsonProperty(JSON_KEY_PUBLISHED_AT)
     public Date getPublishedAt() {
-        return publishedAt;
+        if (publishedAt == UNPUBLISHED) {
+            return null;
+        }
+        return new Date(publishedAt);
     }
 
     /**
@@ -292,6 +310,34 @@ public class Post {
         return licenseUrl;
     }
 
+    /**
+     * Copies the tags into an array of just the right size.
+     *
+     * @param tags the tags, which may be null
+     *
+     * @return the tags, or null if there were none
+     */
+    private static String[] toArray(final Collection<String> tags) {
+        if (tags == null) {
+            return null;
+        }
+        return tags.toArray(new String[tags.size()]);
+    }
+
+    /**
+     * Gets a date as epoch milliseconds.
+     *
+     * @param date the date, which may be null
+     *
+     * @return the milliseconds, or UNPUBLISHED if there was no date
+     */
+    private static long toMillis(final Date date) {
+        if (date == null) {
+            return UNPUBLISHED;
+        }
+        return date.getTime();
+    }
+
     /**
      * Fascilitates the construction of a Post.
      */
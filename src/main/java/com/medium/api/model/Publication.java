@@ -53,27 +53,27 @@ public class Publication {
     /**
      * A unique identifier for the publication.
      */
-    private String id;
+    private final String id;
 
     /**
      * The publication’s name on Medium.
      */
-    private String name;
+    private final String name;
 
     /**
      * A short description of the publication.
      */
-    private String description;
+    private final String description;
 
     /**
      * The URL to the publication’s homepage.
      */
-    private String url;
+    private final String url;
 
     /**
      * The URL to the publication’s image/logo.
      */
-    private String imageUrl;
+    private final String imageUrl;
 
     /**
      * Constructs a new Publication.
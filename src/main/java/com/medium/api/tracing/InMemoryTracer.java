@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An InMemoryTracer keeps every span it starts, once ended, in memory,
+ * so that tests can check what was traced.
+ */
+public class InMemoryTracer implements Tracer {
+
+    /**
+     * The spans which have ended, in the order in which they ended.
+     */
+    private final List<RecordedSpan> finished = new ArrayList<RecordedSpan>();
+
+    @Override
+    public Span startSpan(final String name, final SpanContext parent) {
+        return new RecordedSpan(this, name, parent);
+    }
+
+    /**
+     * Gets the spans which have ended.
+     *
+     * @return the spans, in the order in which they ended
+     */
+    public synchronized List<RecordedSpan> getFinishedSpans() {
+        return Collections.unmodifiableList(
+            new ArrayList<RecordedSpan>(finished));
+    }
+
+    /**
+     * Gets the spans of a name which have ended.
+     *
+     * @param name the name of the spans
+     *
+     * @return the spans, in the order in which they ended
+     */
+    public synchronized List<RecordedSpan> getFinishedSpans(
+            final String name) {
+
+        final List<RecordedSpan> named = new ArrayList<RecordedSpan>();
+        for (final RecordedSpan span : finished) {
+            if (span.getName().equals(name)) {
+                named.add(span);
+            }
+        }
+        return Collections.unmodifiableList(named);
+    }
+
+    /**
+     * Forgets the spans which have ended.
+     */
+    public synchronized void reset() {
+        finished.clear();
+    }
+
+    /**
+     * Keeps a span which has ended.
+     *
+     * @param span the span
+     */
+    synchronized void onEnd(final RecordedSpan span) {
+        finished.add(span);
+    }
+}
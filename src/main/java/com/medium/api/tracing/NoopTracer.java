@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+/**
+ * A NoopTracer traces nothing, and is the default. A client with no
+ * tracer of its own does not pay for tracing at all.
+ */
+public final class NoopTracer implements Tracer {
+
+    /**
+     * The only instance.
+     */
+    public static final NoopTracer INSTANCE = new NoopTracer();
+
+    /**
+     * The only span.
+     */
+    private static final Span SPAN = new Span() {
+        @Override
+        public SpanContext getContext() {
+            return SpanContext.INVALID;
+        }
+
+        @Override
+        public void setAttribute(final String key, final String value) {
+        }
+
+        @Override
+        public void setAttribute(final String key, final long value) {
+        }
+
+        @Override
+        public void setError(final Throwable error) {
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    /**
+     * Use {@link #INSTANCE}.
+     */
+    private NoopTracer() {
+    }
+
+    @Override
+    public Span startSpan(final String name, final SpanContext parent) {
+        return SPAN;
+    }
+}
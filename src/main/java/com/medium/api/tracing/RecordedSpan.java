@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A RecordedSpan is a span started by an {@link InMemoryTracer}, which
+ * can be inspected once it has ended.
+ */
+public final class RecordedSpan implements Span {
+
+    /**
+     * The tracer to which the span reports when it ends.
+     */
+    private final InMemoryTracer tracer;
+
+    /**
+     * The name of the span.
+     */
+    private final String name;
+
+    /**
+     * The context of the span.
+     */
+    private final SpanContext context;
+
+    /**
+     * The context of the parent span.
+     */
+    private final SpanContext parent;
+
+    /**
+     * When the span started, as of System.nanoTime().
+     */
+    private final long startNanos;
+
+    /**
+     * The attributes of the span, in the order in which they were set.
+     */
+    private final Map<String, Object> attributes =
+        new LinkedHashMap<String, Object>();
+
+    /**
+     * When the span ended, as of System.nanoTime(), or zero.
+     */
+    private long endNanos;
+
+    /**
+     * Why the work failed, if it did.
+     */
+    private Throwable error;
+
+    /**
+     * Constructs a new RecordedSpan, which starts now.
+     *
+     * @param tracer the tracer to report to when the span ends
+     * @param name the name of the span
+     * @param parent the context of the parent span
+     */
+    RecordedSpan(final InMemoryTracer tracer, final String name,
+            final SpanContext parent) {
+
+        this.tracer = tracer;
+        this.name = name;
+        this.parent = parent;
+        this.context = SpanContext.newChild(parent);
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public SpanContext getContext() {
+        return context;
+    }
+
+    @Override
+    public synchronized void setAttribute(
+            final String key, final String value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    public synchronized void setAttribute(final String key, final long value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    public synchronized void setError(final Throwable cause) {
+        this.error = cause;
+    }
+
+    @Override
+    public void end() {
+        synchronized (this) {
+            if (0 != endNanos) {
+                return;
+            }
+            endNanos = System.nanoTime();
+        }
+        tracer.onEnd(this);
+    }
+
+    /**
+     * Gets the name of the span.
+     *
+     * @return the name of the span
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the context of the parent span.
+     *
+     * @return the context of the parent, or {@link SpanContext#INVALID}
+     *         if the span is a root
+     */
+    public SpanContext getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the attributes of the span.
+     *
+     * @return the attributes, in the order in which they were set
+     */
+    public synchronized Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(
+            new LinkedHashMap<String, Object>(attributes));
+    }
+
+    /**
+     * Gets why the work failed.
+     *
+     * @return the error, or null if the work did not fail
+     */
+    public synchronized Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Gets how long the span lasted.
+     *
+     * @param unit the unit in which to express the duration
+     *
+     * @return the duration of the span, or zero if it has not ended
+     */
+    public synchronized long getDuration(final TimeUnit unit) {
+        return 0 != endNanos
+            ? unit.convert(endNanos - startNanos, TimeUnit.NANOSECONDS)
+            : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + ' ' + context;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+/**
+ * A Span is one timed piece of work within a trace, such as an API
+ * operation or the HTTP request it makes.
+ */
+public interface Span {
+
+    /**
+     * Gets the context which identifies this span, and which children
+     * and remote services are given as their parent.
+     *
+     * @return the context of the span
+     */
+    SpanContext getContext();
+
+    /**
+     * Sets an attribute of the span.
+     *
+     * @param key the name of the attribute
+     * @param value the value of the attribute
+     */
+    void setAttribute(String key, String value);
+
+    /**
+     * Sets a numeric attribute of the span.
+     *
+     * @param key the name of the attribute
+     * @param value the value of the attribute
+     */
+    void setAttribute(String key, long value);
+
+    /**
+     * Marks the span as failed.
+     *
+     * @param error why the work failed
+     */
+    void setError(Throwable error);
+
+    /**
+     * Ends the span. It must not be changed afterwards.
+     */
+    void end();
+}
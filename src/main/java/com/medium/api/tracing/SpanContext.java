@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import java.util.Random;
+
+/**
+ * A SpanContext identifies a span within a trace, as carried by the
+ * W3C {@code traceparent} header: a 32 digit trace id, shared by every
+ * span of the trace, a 16 digit span id, and whether the trace is
+ * sampled.
+ */
+public final class SpanContext {
+
+    /**
+     * The context of no span at all.
+     */
+    public static final SpanContext INVALID =
+        new SpanContext("00000000000000000000000000000000", "0000000000000000",
+            false);
+
+    /**
+     * The name of the header which carries span contexts between
+     * services.
+     */
+    public static final String TRACEPARENT = "traceparent";
+
+    /**
+     * The version of the traceparent header written.
+     */
+    private static final String VERSION = "00";
+
+    /**
+     * The number of hex digits of a trace id.
+     */
+    private static final int TRACE_ID_LENGTH = 32;
+
+    /**
+     * The number of hex digits of a span id.
+     */
+    private static final int SPAN_ID_LENGTH = 16;
+
+    /**
+     * The hex digits, in order.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Generates ids.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * The id of the trace, in lower case hex.
+     */
+    private final String traceId;
+
+    /**
+     * The id of the span, in lower case hex.
+     */
+    private final String spanId;
+
+    /**
+     * Whether the trace is sampled.
+     */
+    private final boolean sampled;
+
+    /**
+     * Constructs a new SpanContext.
+     *
+     * @param traceId the id of the trace, in lower case hex
+     * @param spanId the id of the span, in lower case hex
+     * @param sampled whether the trace is sampled
+     */
+    public SpanContext(
+            final String traceId, final String spanId, final boolean sampled) {
+
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Creates the context of a new span: a child of the given parent,
+     * or the root of a new, sampled trace if the parent is invalid.
+     *
+     * @param parent the context of the parent span
+     *
+     * @return the context of the new span
+     */
+    public static SpanContext newChild(final SpanContext parent) {
+        if (parent.isValid()) {
+            return new SpanContext(
+                parent.traceId, randomHex(SPAN_ID_LENGTH), parent.sampled);
+        }
+        return new SpanContext(
+            randomHex(TRACE_ID_LENGTH), randomHex(SPAN_ID_LENGTH), true);
+    }
+
+    /**
+     * Parses a traceparent header, such as one received from the
+     * service which made the request being handled.
+     *
+     * @param traceparent the value of the header, or null
+     *
+     * @return the context, or {@link #INVALID} if the header is
+     *         missing or malformed
+     */
+    public static SpanContext fromTraceparent(final String traceparent) {
+        if (null == traceparent) {
+            return INVALID;
+        }
+        final String[] parts = traceparent.trim().split("-");
+        if (parts.length < 4 || 2 != parts[0].length()
+                || "ff".equals(parts[0])
+                || !isHex(parts[1], TRACE_ID_LENGTH)
+                || !isHex(parts[2], SPAN_ID_LENGTH)
+                || !isHex(parts[3], 2)) {
+            return INVALID;
+        }
+        final SpanContext context = new SpanContext(parts[1], parts[2],
+            0 != (Integer.parseInt(parts[3], HEX.length) & 1));
+        return context.isValid() ? context : INVALID;
+    }
+
+    /**
+     * Gets the id of the trace.
+     *
+     * @return the id of the trace, in lower case hex
+     */
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * Gets the id of the span.
+     *
+     * @return the id of the span, in lower case hex
+     */
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * Whether the trace is sampled.
+     *
+     * @return true if the trace is sampled
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Whether this identifies a span; the all-zero ids do not.
+     *
+     * @return true if neither id is all zeros
+     */
+    public boolean isValid() {
+        return !isZero(traceId) && !isZero(spanId);
+    }
+
+    /**
+     * Renders this context as a traceparent header.
+     *
+     * @return the value of the header
+     */
+    public String toTraceparent() {
+        return VERSION + '-' + traceId + '-' + spanId
+            + (sampled ? "-01" : "-00");
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof SpanContext)) {
+            return false;
+        }
+        final SpanContext that = (SpanContext) other;
+        return traceId.equals(that.traceId) && spanId.equals(that.spanId)
+            && sampled == that.sampled;
+    }
+
+    @Override
+    public int hashCode() {
+        return traceId.hashCode() * 31 + spanId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toTraceparent();
+    }
+
+    /**
+     * Generates a random id.
+     *
+     * @param length the number of hex digits
+     *
+     * @return the id, which is not all zeros
+     */
+    private static String randomHex(final int length) {
+        final char[] digits = new char[length];
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            if (0 == i % SPAN_ID_LENGTH) {
+                bits = RANDOM.nextLong();
+            }
+            digits[i] = HEX[(int) (bits & 0xf)];
+            bits >>>= 4;
+        }
+        if (isZero(new String(digits))) {
+            digits[length - 1] = '1';
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Checks whether a string is made of lower case hex digits.
+     *
+     * @param text the string
+     * @param length the number of digits it must have
+     *
+     * @return true if the string is that many hex digits
+     */
+    private static boolean isHex(final String text, final int length) {
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether an id is all zeros.
+     *
+     * @param id the id
+     *
+     * @return true if every digit is zero
+     */
+    private static boolean isZero(final String id) {
+        for (int i = 0; i < id.length(); i++) {
+            if ('0' != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+/**
+ * Spans keeps track of the span in which the current thread is working,
+ * so that the spans it starts become its children, and so that its
+ * context can be passed on to remote services and to other threads.
+ *
+ * To make a client's spans part of a trace started elsewhere, such as
+ * by the service which received the request being handled, enter the
+ * context of that trace around the calls:
+ *
+ * <pre>
+ * SpanContext previous = Spans.enter(
+ *     SpanContext.fromTraceparent(request.getHeader("traceparent")));
+ * try {
+ *     medium.createPost(submission, userId);
+ * } finally {
+ *     Spans.exit(previous);
+ * }
+ * </pre>
+ */
+public final class Spans {
+
+    /**
+     * The context of the span in which each thread is working.
+     */
+    private static final ThreadLocal<SpanContext> CURRENT =
+        new ThreadLocal<SpanContext>();
+
+    /**
+     * Not to be constructed.
+     */
+    private Spans() {
+    }
+
+    /**
+     * Gets the context of the span in which the current thread is
+     * working.
+     *
+     * @return the context of the current span, or
+     *         {@link SpanContext#INVALID} if there is none
+     */
+    public static SpanContext current() {
+        final SpanContext current = CURRENT.get();
+        return null != current ? current : SpanContext.INVALID;
+    }
+
+    /**
+     * Makes a span the current span of the calling thread, until
+     * {@link #exit(SpanContext)} is called.
+     *
+     * @param context the context of the span
+     *
+     * @return the context of the span which was current before, to be
+     *         passed to {@link #exit(SpanContext)}
+     */
+    public static SpanContext enter(final SpanContext context) {
+        final SpanContext previous = current();
+        CURRENT.set(context);
+        return previous;
+    }
+
+    /**
+     * Restores the span which was current before
+     * {@link #enter(SpanContext)} was called.
+     *
+     * @param previous the value returned by {@link #enter(SpanContext)}
+     */
+    public static void exit(final SpanContext previous) {
+        if (previous.isValid()) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+/**
+ * A Tracer starts the {@link Span}s with which a client traces its
+ * calls. Implement it to bridge to the tracing system of your choice.
+ *
+ * @see NoopTracer
+ * @see InMemoryTracer
+ */
+public interface Tracer {
+
+    /**
+     * Starts a span.
+     *
+     * @param name the name of the span, such as {@code "createPost"}
+     * @param parent the context of the parent span, which is
+     *               {@link SpanContext#INVALID} if the span is a root
+     *
+     * @return the started span, which must be ended
+     */
+    Span startSpan(String name, SpanContext parent);
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import com.medium.api.dependencies.http.CompletingInputStream;
+import com.medium.api.dependencies.http.ForwardingHttpClient;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+
+import java.io.InputStream;
+
+/**
+ * A TracingHttpClient opens a span around each HTTP request, and makes
+ * it the current span while the request is made, so that the request
+ * carries it to the server in a {@code traceparent} header.
+ */
+public class TracingHttpClient extends ForwardingHttpClient {
+
+    /**
+     * The tracer which starts the spans.
+     */
+    private final Tracer tracer;
+
+    /**
+     * Constructs a new TracingHttpClient.
+     *
+     * @param delegate the client which makes the requests
+     * @param tracer the tracer which starts the spans
+     */
+    public TracingHttpClient(final HttpClient delegate, final Tracer tracer) {
+        super(delegate);
+        this.tracer = tracer;
+    }
+
+    @Override
+    public String post(final String url, final String body)
+            throws HttpException {
+
+        final Span span = start("POST", url);
+        final SpanContext previous = Spans.enter(span.getContext());
+        try {
+            return super.post(url, body);
+        } catch (final HttpException httpException) {
+            fail(span, httpException);
+            throw httpException;
+        } finally {
+            Spans.exit(previous);
+            span.end();
+        }
+    }
+
+    @Override
+    public String get(final String url) throws HttpException {
+        final Span span = start("GET", url);
+        final SpanContext previous = Spans.enter(span.getContext());
+        try {
+            return super.get(url);
+        } catch (final HttpException httpException) {
+            fail(span, httpException);
+            throw httpException;
+        } finally {
+            Spans.exit(previous);
+            span.end();
+        }
+    }
+
+    /**
+     * Streams the response of a GET in a span which ends when the
+     * stream is closed.
+     *
+     * @param url the url to GET
+     *
+     * @return the body of the response
+     *
+     * @throws HttpException
+     *         If the call fails
+     */
+    @Override
+    public InputStream getStream(final String url) throws HttpException {
+        final Span span = start("GET", url);
+        final SpanContext previous = Spans.enter(span.getContext());
+        boolean streaming = false;
+        try {
+            final InputStream response = getDelegateStream(url);
+            final InputStream body = new CompletingInputStream(response) {
+                @Override
+                protected void onComplete(final HttpException readFailure) {
+                    if (null != readFailure) {
+                        fail(span, readFailure);
+                    }
+                    span.end();
+                }
+            };
+            streaming = true;
+            return body;
+        } catch (final HttpException httpException) {
+            fail(span, httpException);
+            throw httpException;
+        } finally {
+            Spans.exit(previous);
+            if (!streaming) {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * Starts the span of a request, as a child of the current span.
+     *
+     * @param method the method of the request
+     * @param url the URL of the request
+     *
+     * @return the span
+     */
+    private Span start(final String method, final String url) {
+        final Span span = tracer.startSpan("http " + method, Spans.current());
+        span.setAttribute("http.method", method);
+        span.setAttribute("http.url", url);
+        return span;
+    }
+
+    /**
+     * Marks the span of a request as failed.
+     *
+     * @param span the span
+     * @param httpException why the request failed
+     */
+    private static void fail(
+            final Span span, final HttpException httpException) {
+
+        span.setAttribute("http.status_code", httpException.getCode());
+        span.setError(httpException);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import com.medium.api.dependencies.json.JsonModelConverter;
+
+import java.util.List;
+
+/**
+ * A TracingModelConverter opens a span around each conversion another
+ * converter makes, named {@code serialize} or {@code deserialize}.
+ */
+public class TracingModelConverter implements JsonModelConverter {
+
+    /**
+     * The converter doing the work.
+     */
+    private final JsonModelConverter delegate;
+
+    /**
+     * The tracer which starts the spans.
+     */
+    private final Tracer tracer;
+
+    /**
+     * Constructs a new TracingModelConverter.
+     *
+     * @param delegate the converter to trace
+     * @param tracer the tracer which starts the spans
+     */
+    public TracingModelConverter(
+            final JsonModelConverter delegate, final Tracer tracer) {
+
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public String asJson(final Object object) {
+        final Span span = tracer.startSpan("serialize", Spans.current());
+        span.setAttribute("model.type", object.getClass().getSimpleName());
+        try {
+            final String json = delegate.asJson(object);
+            span.setAttribute("json.length", json.length());
+            return json;
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public <T> T asSingle(final Class<T> asType, final String json) {
+        final Span span = start(asType, json);
+        try {
+            return delegate.asSingle(asType, json);
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public <T> List<T> asListOf(final Class<T> asType, final String json) {
+        final Span span = start(asType, json);
+        try {
+            final List<T> models = delegate.asListOf(asType, json);
+            span.setAttribute("model.count", models.size());
+            return models;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Starts the span of a deserialization, as a child of the current
+     * span.
+     *
+     * @param asType the type of model read
+     * @param json the JSON read
+     *
+     * @return the span
+     */
+    private Span start(final Class<?> asType, final String json) {
+        final Span span = tracer.startSpan("deserialize", Spans.current());
+        span.setAttribute("model.type", asType.getSimpleName());
+        span.setAttribute("json.length", json.length());
+        return span;
+    }
+}
@@ -51,5 +51,36 @@ public final class StringUtils {
 
         return builder.toString();
     }
-}
 
+    /**
+     * Counts the bytes of a string when encoded as UTF-8, without
+     * encoding it.
+     *
+     * @param text the string, or null
+     *
+     * @return the number of bytes, or zero for null
+     */
+    public static long utf8Length(final String text) {
+        if (null == text) {
+            return 0;
+        }
+        long length = 0;
+        int i = 0;
+        while (i < text.length()) {
+            final char c = text.charAt(i++);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)
+                    && i < text.length()
+                    && Character.isLowSurrogate(text.charAt(i))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.medium.api.auth.Credentials;
+
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.json.JacksonModelConverter;
+import com.medium.api.dependencies.json.JsonModelConverter;
+
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.Submission;
+
+import com.medium.api.test.TestUtils;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Fails the build when an API call allocates more than its budget.
+ *
+ * Each operation runs against a canned in-memory transport, so what is
+ * measured is the client's own work: building the request, the JSON
+ * conversion and the bookkeeping around the call. Bytes are counted
+ * with the HotSpot per-thread allocation counter and averaged over many
+ * calls once the JIT has settled.
+ *
+ * Budgets live in {@code allocation-budgets.properties}, along with
+ * the Java version they were recorded on. Allocations differ between
+ * Java versions and with agents such as JaCoCo instrumenting the code,
+ * so the test is skipped on any other version or with an agent
+ * attached; the build runs it in a surefire execution of its own,
+ * without the coverage agent. The figures measured are written to the
+ * file named by the {@code allocation.report} property, which the build
+ * puts with the surefire reports, so that budgets can be re-recorded
+ * from it after an intended change, leaving some headroom.
+ */
+public class AllocationBudgetTest {
+
+    private static final String TEST_ENDPOINT = "http://api.foo.bar/v42";
+    private static final String TEST_TOKEN = "KoolToke44";
+
+    private static final int WARM_UP_ITERATIONS = 5000;
+    private static final int MEASURED_ITERATIONS = 2000;
+
+    private static final String BUDGETS = "allocation-budgets.properties";
+    private static final String RECORDED_ON = "recorded.java.version";
+    private static final String REPORT = "allocation.report";
+
+    private static com.sun.management.ThreadMXBean threads;
+    private static Properties budgets;
+    private static final Properties measurements = new Properties();
+
+    /**
+     * Keeps every result reachable, so that escape analysis cannot
+     * elide the allocations being measured.
+     */
+    private static volatile int sink;
+
+    private Medium medium;
+    private JsonModelConverter converter;
+    private Submission submission;
+
+    @BeforeClass
+    public static void loadBudgets() throws IOException {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (String argument
+                : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            assumeTrue("Budgets do not hold with an agent attached",
+                !argument.startsWith("-javaagent"));
+        }
+
+        budgets = new Properties();
+        final InputStream in = Thread.currentThread()
+            .getContextClassLoader().getResourceAsStream(BUDGETS);
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+
+        assumeTrue("Budgets were recorded on another Java version",
+            System.getProperty("java.specification.version")
+                .equals(budgets.getProperty(RECORDED_ON)));
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        final String report = System.getProperty(REPORT);
+        if (null == report || measurements.isEmpty()) {
+            return;
+        }
+
+        final OutputStream out = new FileOutputStream(report);
+        try {
+            measurements.store(out, "Bytes allocated per call, on Java "
+                + System.getProperty("java.version"));
+        } finally {
+            out.close();
+        }
+    }
+
+    @Before
+    public void setup() {
+        final Map<String, String> responses =
+            new LinkedHashMap<String, String>();
+        responses.put("/me", "user.json");
+        responses.put("/publications", "publication-list.json");
+        responses.put("/contributors", "contributor-list.json");
+        responses.put("/posts", "post.json");
+        responses.put("/tokens", "access-token.json");
+
+        medium = new MediumClient.Builder()
+            .withCredentials(new Credentials("KoolClient22", "SecretSauces"))
+            .withAccessToken(TEST_TOKEN)
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(new CannedHttpClient(responses))
+            .build();
+
+        converter = new JacksonModelConverter();
+
+        submission = new Submission.Builder()
+            .withTitle("Liverpool FC")
+            .withContent("<h1>Liverpool FC</h1><p>You'll never walk alone.</p>")
+            .withTags(Arrays.asList("football", "sport", "Liverpool"))
+            .build();
+    }
+
+    @Test
+    public void testGetUser() {
+        assertWithinBudget("getUser", new Callable<Object>() {
+            public Object call() {
+                return medium.getUser();
+            }
+        });
+    }
+
+    @Test
+    public void testListPublications() {
+        assertWithinBudget("listPublications", new Callable<Object>() {
+            public Object call() {
+                return medium.listPublications("KoolUser22");
+            }
+        });
+    }
+
+    @Test
+    public void testListContributors() {
+        assertWithinBudget("listContributors", new Callable<Object>() {
+            public Object call() {
+                return medium.listContributors("KoolPub66");
+            }
+        });
+    }
+
+    @Test
+    public void testCreatePost() {
+        assertWithinBudget("createPost", new Callable<Object>() {
+            public Object call() {
+                return medium.createPost(submission, "KoolUser98");
+            }
+        });
+    }
+
+    @Test
+    public void testExchangeRefreshToken() {
+        assertWithinBudget("exchangeRefreshToken", new Callable<Object>() {
+            public Object call() {
+                return medium.exchangeRefreshToken("KoolRefresh11");
+            }
+        });
+    }
+
+    @Test
+    public void testConverterAsSingle() {
+        final String json = TestUtils.getResourceContents("post.json");
+
+        assertWithinBudget("converter.asSingle", new Callable<Object>() {
+            public Object call() {
+                return converter.asSingle(Post.class, json);
+            }
+        });
+    }
+
+    @Test
+    public void testConverterAsListOf() {
+        final String json =
+            TestUtils.getResourceContents("contributor-list.json");
+
+        assertWithinBudget("converter.asListOf", new Callable<Object>() {
+            public Object call() {
+                return converter.asListOf(Contributor.class, json);
+            }
+        });
+    }
+
+    @Test
+    public void testConverterAsJson() {
+        assertWithinBudget("converter.asJson", new Callable<Object>() {
+            public Object call() {
+                return converter.asJson(submission);
+            }
+        });
+    }
+
+    private static void assertWithinBudget(
+            final String operation, final Callable<Object> call) {
+
+        final String budget = budgets.getProperty(operation);
+        assertTrue("No allocation budget for " + operation, budget != null);
+
+        final long measured = bytesPerCall(call);
+        final long allowed = Long.parseLong(budget.trim());
+        measurements.setProperty(operation, Long.toString(measured));
+
+        assertTrue(
+            operation + " allocated " + measured
+                + " bytes per call, over its budget of " + allowed,
+            measured <= allowed
+        );
+    }
+
+    private static long bytesPerCall(final Callable<Object> call) {
+        final long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            sink += invoke(call).hashCode();
+        }
+
+        final long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += invoke(call).hashCode();
+        }
+        final long after = threads.getThreadAllocatedBytes(thread);
+
+        return (after - before) / MEASURED_ITERATIONS;
+    }
+
+    private static Object invoke(final Callable<Object> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Answers every request with a test resource chosen by URL suffix,
+     * without allocating anything of its own per call.
+     */
+    private static final class CannedHttpClient implements HttpClient {
+
+        private final Map<String, String> bodies =
+            new LinkedHashMap<String, String>();
+
+        CannedHttpClient(final Map<String, String> resources) {
+            for (Map.Entry<String, String> entry : resources.entrySet()) {
+                bodies.put(
+                    entry.getKey(),
+                    TestUtils.getResourceContents(entry.getValue())
+                );
+            }
+        }
+
+        @Override
+        public String post(final String url, final String body) {
+            return get(url);
+        }
+
+        @Override
+        public String get(final String url) {
+            for (Map.Entry<String, String> entry : bodies.entrySet()) {
+                if (url.endsWith(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+            throw new HttpException(404, "No canned response for " + url);
+        }
+
+        @Override
+        public void setBearerToken(final String bearerToken) {
+        }
+    }
+}
@@ -17,10 +17,16 @@
 package com.medium.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import com.medium.api.auth.AccessToken;
@@ -30,9 +36,22 @@ import com.medium.api.auth.Credentials;
 import com.medium.api.auth.RefreshTokenRequest;
 import com.medium.api.auth.Scope;
 
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.CallRejectedException;
+import com.medium.api.dependencies.http.CancelledException;
+import com.medium.api.dependencies.http.ConcurrencyLimiter;
+import com.medium.api.dependencies.http.Exchange;
 import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.Interceptor;
+import com.medium.api.dependencies.http.Priority;
+import com.medium.api.dependencies.http.StreamingHttpClient;
+import com.medium.api.dependencies.json.ConverterException;
 import com.medium.api.dependencies.json.JsonModelConverter;
 
+import com.medium.api.metrics.MetricsRegistry;
+import com.medium.api.metrics.OperationSnapshot;
+
 import com.medium.api.model.Contributor;
 import com.medium.api.model.Image;
 import com.medium.api.model.Post;
@@ -43,14 +62,27 @@ import com.medium.api.model.User;
 import com.medium.api.util.StringUtils;
 import com.medium.api.test.TestUtils;
 
+import com.medium.api.tracing.InMemoryTracer;
+import com.medium.api.tracing.RecordedSpan;
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * These are broader component-level integration tests on the Medium
@@ -80,7 +112,7 @@ public class MediumClientTest {
     @Mock
     private HttpClient http;
 
-    private Medium medium;
+    private StreamingMedium medium;
 
     @Before
     public void setup() {
@@ -204,6 +236,165 @@ public class MediumClientTest {
         assertEquals("b45573563f5a", contributors.get(3).getPublicationId());
     }
 
+    @Test
+    public void testIterateContributors_BuffersWithoutStreaming() {
+
+        // Arrange
+        final String contributorsUrl =
+            TEST_ENDPOINT + "/publications/KoolPub66/contributors";
+        final String mockJson =
+            TestUtils.getResourceContents("contributor-list.json");
+        when(http.get(eq(contributorsUrl))).thenReturn(mockJson);
+
+        // Act
+        final List<Contributor> contributors = new ArrayList<Contributor>();
+        final ModelIterator<Contributor> iterator =
+            medium.iterateContributors("KoolPub66");
+        while (iterator.hasNext()) {
+            contributors.add(iterator.next());
+        }
+        iterator.close();
+
+        // Assert
+        assertEquals(medium.listContributors("KoolPub66").size(),
+            contributors.size());
+        assertEquals("b45573563f5a", contributors.get(3).getPublicationId());
+    }
+
+    @Test
+    public void testIteratePublications_Streams() throws HttpException {
+
+        // Arrange
+        final String publicationUrl =
+            TEST_ENDPOINT + "/users/KoolUser22/publications";
+        final byte[] mockJson = TestUtils
+            .getResourceContents("publication-list.json")
+            .getBytes(Charset.forName("UTF-8"));
+        final HttpClient streaming = mock(HttpClient.class,
+            withSettings().extraInterfaces(StreamingHttpClient.class));
+        when(((StreamingHttpClient) streaming).getStream(eq(publicationUrl)))
+            .thenReturn(new ByteArrayInputStream(mockJson));
+        final StreamingMedium streamingMedium = new MediumClient.Builder()
+            .withAccessToken(TEST_TOKEN)
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(streaming)
+            .build();
+
+        // Act
+        final ModelIterator<Publication> iterator =
+            streamingMedium.iteratePublications("KoolUser22");
+        iterator.next();
+        final Publication second = iterator.next();
+        iterator.close();
+
+        // Assert
+        assertEquals("Developers", second.getName());
+        verify(streaming, never()).get(anyString());
+    }
+
+    @Test
+    public void testIteratePublications_StreamsThroughDecorators()
+            throws HttpException {
+
+        // Arrange
+        final String publicationUrl =
+            TEST_ENDPOINT + "/users/KoolUser22/publications";
+        final byte[] mockJson = TestUtils
+            .getResourceContents("publication-list.json")
+            .getBytes(Charset.forName("UTF-8"));
+        final HttpClient streaming = mock(HttpClient.class,
+            withSettings().extraInterfaces(StreamingHttpClient.class));
+        when(((StreamingHttpClient) streaming).getStream(eq(publicationUrl)))
+            .thenReturn(new ByteArrayInputStream(mockJson));
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final List<String> events = new ArrayList<String>();
+        final StreamingMedium streamingMedium = new MediumClient.Builder()
+            .withAccessToken(TEST_TOKEN)
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(streaming)
+            .withConcurrencyLimiter(limiter)
+            .withInterceptor(new Interceptor() {
+                @Override
+                public void onRequest(final Exchange exchange) {
+                    events.add("request " + exchange.getOperation());
+                }
+
+                @Override
+                public void onResponse(final Exchange exchange) {
+                    events.add("response " + exchange.getOperation());
+                }
+
+                @Override
+                public void onException(final Exchange exchange,
+                        final HttpException exception) {
+                    events.add("exception " + exception.getCode());
+                }
+            })
+            .build();
+
+        // Act
+        final ModelIterator<Publication> iterator =
+            streamingMedium.iteratePublications("KoolUser22");
+        iterator.next();
+        final Publication second = iterator.next();
+        final int inFlightWhileReading = limiter.getInFlight();
+        final List<String> eventsWhileReading =
+            new ArrayList<String>(events);
+        iterator.close();
+
+        // Assert
+        assertEquals("Developers", second.getName());
+        verify(streaming, never()).get(anyString());
+        assertEquals(1, inFlightWhileReading);
+        assertEquals(Arrays.asList("request listPublications"),
+            eventsWhileReading);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(Arrays.asList(
+            "request listPublications", "response listPublications"
+        ), events);
+    }
+
+    @Test
+    public void testIterateContributors_CancelledWhileStreaming()
+            throws HttpException {
+
+        // Arrange
+        final String contributorsUrl =
+            TEST_ENDPOINT + "/publications/KoolPub66/contributors";
+        final byte[] mockJson = TestUtils
+            .getResourceContents("contributor-list.json")
+            .getBytes(Charset.forName("UTF-8"));
+        final HttpClient streaming = mock(HttpClient.class,
+            withSettings().extraInterfaces(StreamingHttpClient.class));
+        when(((StreamingHttpClient) streaming).getStream(eq(contributorsUrl)))
+            .thenReturn(new ByteArrayInputStream(mockJson));
+        final CallContext parent = CallContext.cancellable();
+        final MediumClient streamingMedium = new MediumClient.Builder()
+            .withAccessToken(TEST_TOKEN)
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(streaming)
+            .withTimeout(1, TimeUnit.MINUTES)
+            .build()
+            .withContext(parent);
+
+        final ModelIterator<Contributor> iterator =
+            streamingMedium.iterateContributors("KoolPub66");
+        iterator.next();
+
+        // Act
+        parent.cancel();
+
+        // Assert
+        try {
+            iterator.next();
+            fail("Expected a CancelledException");
+        } catch (final CancelledException cancelledException) {
+            // Expected
+        }
+    }
+
     @Test
     public void testCreatePost() {
 
@@ -242,6 +433,315 @@ public class MediumClientTest {
             post.getCanonicalUrl()
         );
     }
-}
 
+    @Test
+    public void testWarmUp_NotPreconnectable() {
+
+        // Arrange
+        final MediumClient client = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .build();
+
+        // Act, Assert -- the mock can't open connections, but the
+        // converter is still warmed up without complaint.
+        assertEquals(0, client.warmUp());
+    }
+
+    @Test
+    public void testWithTimeout_CallsHaveDeadline() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        final String mockJson = TestUtils.getResourceContents("user.json");
+        when(http.get(eq(getUserUrl))).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                final CallContext context = CallContext.current();
+                assertTrue(context.hasDeadline());
+                assertTrue(context.remaining(TimeUnit.SECONDS) <= 5);
+                return mockJson;
+            }
+        });
+
+        // Act
+        User user = ((MediumClient) medium)
+            .withTimeout(5, TimeUnit.SECONDS)
+            .getUser();
+
+        // Assert
+        assertEquals("majelbstoat", user.getUsername());
+        assertEquals(null, CallContext.current());
+    }
+
+    @Test
+    public void testWithPriorityAndTenant_CallsHaveThem() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        final String mockJson = TestUtils.getResourceContents("user.json");
+        when(http.get(eq(getUserUrl))).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                final CallContext context = CallContext.current();
+                assertEquals(Priority.BATCH, context.getPriority());
+                assertEquals("acme", context.getTenant());
+                assertTrue(context.hasDeadline());
+                return mockJson;
+            }
+        });
+
+        // Act
+        User user = ((MediumClient) medium)
+            .withPriority(Priority.BATCH)
+            .withTenant("acme")
+            .withTimeout(5, TimeUnit.SECONDS)
+            .getUser();
+
+        // Assert
+        assertEquals("majelbstoat", user.getUsername());
+        assertEquals(null, CallContext.current());
+    }
+
+    @Test
+    public void testWithBulkhead_SaturatedAuthDoesNotBlockReads()
+            throws Exception {
+
+        // Arrange
+        final String exchangeUrl = TEST_ENDPOINT + "/tokens";
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        final String tokenJson =
+            TestUtils.getResourceContents("access-token.json");
+        final CountDownLatch exchanging = new CountDownLatch(1);
+        final CountDownLatch slowTokens = new CountDownLatch(1);
+        when(http.post(eq(exchangeUrl), anyString()))
+            .thenAnswer(new Answer<String>() {
+                @Override
+                public String answer(final InvocationOnMock invocation)
+                        throws InterruptedException {
+                    exchanging.countDown();
+                    slowTokens.await(5, TimeUnit.SECONDS);
+                    return tokenJson;
+                }
+            });
+        when(http.get(eq(getUserUrl)))
+            .thenReturn(TestUtils.getResourceContents("user.json"));
+
+        final ConcurrencyLimiter authLimiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withMaxQueueSize(0)
+            .build();
+        final Medium bulkheaded = new MediumClient.Builder()
+            .withCredentials(TEST_CREDENTIALS)
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withBulkhead(Bulkhead.AUTH, authLimiter)
+            .build();
+
+        final Thread refresher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bulkheaded.exchangeRefreshToken("");
+            }
+        });
+        refresher.start();
+        assertTrue(exchanging.await(5, TimeUnit.SECONDS));
+
+        // Act
+        final User user = bulkheaded.getUser();
+        try {
+            bulkheaded.exchangeRefreshToken("");
+            fail("Expected the saturated bulkhead to reject the call");
+        } catch (final CallRejectedException callRejectedException) {
+            // Expected
+        }
+        slowTokens.countDown();
+        refresher.join(5000);
+
+        // Assert
+        assertEquals("majelbstoat", user.getUsername());
+        assertEquals(1, authLimiter.getRejectedCount());
+        assertEquals(0, authLimiter.getInFlight());
+    }
+
+    @Test
+    public void testWithInterceptor_SeesOperation() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        when(http.get(eq(getUserUrl))).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                CallContext.recordStatus(200);
+                return TestUtils.getResourceContents("user.json");
+            }
+        });
+        final Interceptor interceptor = mock(Interceptor.class);
+        final Medium intercepted = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withInterceptor(interceptor)
+            .build();
+
+        // Act
+        intercepted.getUser();
+
+        // Assert
+        final ArgumentCaptor<Exchange> exchange =
+            ArgumentCaptor.forClass(Exchange.class);
+        verify(interceptor).onRequest(exchange.capture());
+        verify(interceptor).onResponse(exchange.getValue());
+        assertEquals("getUser", exchange.getValue().getOperation());
+        assertEquals(getUserUrl, exchange.getValue().getUrl());
+        assertEquals(200, exchange.getValue().getStatus());
+        assertEquals(null, CallContext.currentOperation());
+    }
+
+    @Test
+    public void testWithMetrics_RecordsOperation() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        final String user = TestUtils.getResourceContents("user.json");
+        when(http.get(eq(getUserUrl))).thenReturn(user);
+        final MetricsRegistry registry = new MetricsRegistry();
+        final Medium instrumented = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withMetrics(registry)
+            .build();
+
+        // Act
+        instrumented.getUser();
+        instrumented.getUser();
+
+        // Assert
+        final OperationSnapshot getUser = registry.snapshot().get("getUser");
+        assertEquals(2, getUser.getCallCount());
+        assertEquals(0, getUser.getErrorCount());
+        assertEquals(0, getUser.getBytesSent());
+        assertEquals(2 * user.length(), getUser.getBytesReceived());
+        assertEquals(2, getUser.getLatency().getCount());
+    }
 
+    @Test
+    public void testWithTracer_SpansPerOperation() {
+
+        // Arrange
+        final String postUrl = TEST_ENDPOINT + "/users/KoolUser98/posts";
+        when(http.post(eq(postUrl), anyString()))
+            .thenReturn(TestUtils.getResourceContents("post.json"));
+        final InMemoryTracer tracer = new InMemoryTracer();
+        final Medium traced = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withTracer(tracer)
+            .build();
+        final SpanContext remote = SpanContext.fromTraceparent(
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01");
+
+        // Act
+        final SpanContext previous = Spans.enter(remote);
+        try {
+            traced.createPost(new Submission.Builder().build(), "KoolUser98");
+        } finally {
+            Spans.exit(previous);
+        }
+
+        // Assert
+        final RecordedSpan operation =
+            tracer.getFinishedSpans("createPost").get(0);
+        assertEquals(remote, operation.getParent());
+        assertEquals(remote.getTraceId(),
+            operation.getContext().getTraceId());
+        assertEquals("publish",
+            operation.getAttributes().get("medium.bulkhead"));
+        for (final String child
+                : Arrays.asList("serialize", "http POST", "deserialize")) {
+            final List<RecordedSpan> spans = tracer.getFinishedSpans(child);
+            assertEquals(child, 1, spans.size());
+            assertEquals(child, operation.getContext(), spans.get(0).getParent());
+        }
+        assertEquals(postUrl, tracer.getFinishedSpans("http POST").get(0)
+            .getAttributes().get("http.url"));
+        assertEquals(4, tracer.getFinishedSpans().size());
+        assertEquals(SpanContext.INVALID, Spans.current());
+    }
+
+    @Test
+    public void testWithTracer_Error() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        when(http.get(eq(getUserUrl)))
+            .thenThrow(new HttpException(503, "Service Unavailable"));
+        final InMemoryTracer tracer = new InMemoryTracer();
+        final Medium traced = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withTracer(tracer)
+            .build();
+
+        // Act
+        try {
+            traced.getUser();
+            fail("Expected the call to fail");
+        } catch (final HttpException httpException) {
+            assertEquals(503, httpException.getCode());
+        }
+
+        // Assert
+        final RecordedSpan operation = tracer.getFinishedSpans("getUser").get(0);
+        final RecordedSpan request = tracer.getFinishedSpans("http GET").get(0);
+        assertEquals(503L, operation.getAttributes().get("http.status_code"));
+        assertTrue(operation.getError() instanceof HttpException);
+        assertEquals(503L, request.getAttributes().get("http.status_code"));
+        assertEquals(SpanContext.INVALID, operation.getParent());
+        assertTrue(tracer.getFinishedSpans("deserialize").isEmpty());
+    }
+
+    @Test
+    public void testWithTracer_ConversionError() {
+
+        // Arrange
+        final String getUserUrl = TEST_ENDPOINT + "/me";
+        when(http.get(eq(getUserUrl))).thenReturn("{\"data\":");
+        final InMemoryTracer tracer = new InMemoryTracer();
+        final Medium traced = new MediumClient.Builder()
+            .withEndpoint(TEST_ENDPOINT)
+            .withHttpClient(http)
+            .withTracer(tracer)
+            .build();
+
+        // Act
+        try {
+            traced.getUser();
+            fail("Expected the conversion to fail");
+        } catch (final ConverterException converterException) {
+            // Expected
+        }
+
+        // Assert
+        final RecordedSpan operation = tracer.getFinishedSpans("getUser").get(0);
+        assertTrue(operation.getError() instanceof ConverterException);
+        assertEquals("read", operation.getAttributes().get("medium.bulkhead"));
+    }
+
+    @Test(expected = CancelledException.class)
+    public void testWithContext_Cancelled() {
+
+        // Arrange
+        final CallContext context = CallContext.cancellable();
+        context.cancel();
+
+        // Act
+        try {
+            ((MediumClient) medium).withContext(context).createPost(
+                new Submission.Builder().build(), "KoolUser98"
+            );
+        } finally {
+            // Assert -- never even tried
+            verify(http, never()).post(anyString(), anyString());
+        }
+    }
+}
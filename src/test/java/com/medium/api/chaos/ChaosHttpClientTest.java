@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.chaos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.DeadlineExceededException;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the ChaosHttpClient.
+ */
+public class ChaosHttpClientTest {
+
+    private static final String ME_URL = "http://api.foo.bar/v42/me";
+    private static final String POSTS_URL =
+        "http://api.foo.bar/v42/users/1/posts";
+    private static final String BODY = "{\"data\":{\"id\":\"0123456789\"}}";
+
+    private HttpClient delegate;
+
+    @Before
+    public void setup() {
+        delegate = mock(HttpClient.class);
+        when(delegate.get(anyString())).thenReturn(BODY);
+        when(delegate.post(anyString(), anyString())).thenReturn(BODY);
+    }
+
+    @Test
+    public void testStatus_OnlyMatchingCalls() {
+
+        // Arrange
+        final ChaosRule rule = new ChaosRule.Builder()
+            .withMethod("POST")
+            .withUrlMatching("/posts$")
+            .withFault(Fault.status(503))
+            .build();
+        final HttpClient chaos = new ChaosHttpClient(delegate, rule);
+
+        // Act
+        final String response = chaos.get(ME_URL);
+        final int code = codeOf(chaos, POSTS_URL);
+
+        // Assert
+        assertEquals(BODY, response);
+        assertEquals(503, code);
+        assertEquals(1, rule.getInjectedCount());
+        verify(delegate, never()).post(anyString(), anyString());
+    }
+
+    @Test
+    public void testLimit_FailsFirstCallsOnly() {
+
+        // Arrange
+        final HttpClient chaos = new ChaosHttpClient(delegate,
+            new ChaosRule.Builder()
+                .withFault(Fault.connectionReset())
+                .withLimit(2)
+                .build());
+
+        // Act
+        final int first = codeOf(chaos, POSTS_URL);
+        final int second = codeOf(chaos, POSTS_URL);
+        final String third = chaos.post(POSTS_URL, "{}");
+
+        // Assert
+        assertEquals(-1, first);
+        assertEquals(-1, second);
+        assertEquals(BODY, third);
+        verify(delegate, times(1)).post(POSTS_URL, "{}");
+    }
+
+    @Test
+    public void testTruncatedBody_SendsRequest() {
+
+        // Arrange
+        final HttpClient chaos = new ChaosHttpClient(delegate,
+            new ChaosRule.Builder()
+                .withFault(Fault.truncatedBody(0.5))
+                .build());
+
+        // Act
+        final String response = chaos.post(POSTS_URL, "{}");
+
+        // Assert
+        assertEquals(BODY.substring(0, BODY.length() / 2), response);
+        verify(delegate).post(POSTS_URL, "{}");
+    }
+
+    @Test
+    public void testLatency_HonorsDeadline() {
+
+        // Arrange
+        final HttpClient chaos = new ChaosHttpClient(delegate,
+            new ChaosRule.Builder()
+                .withFault(Fault.latency(
+                    LatencyDistribution.fixed(10, TimeUnit.SECONDS)))
+                .build());
+        final long start = System.nanoTime();
+        final CallContext context =
+            CallContext.withTimeout(50, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        // Act
+        try {
+            chaos.get(ME_URL);
+            fail("Expected the deadline to pass");
+        } catch (final DeadlineExceededException expected) {
+            // Expected
+        } finally {
+            context.detach(previous);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        // Assert
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(5));
+        verify(delegate, never()).get(anyString());
+    }
+
+    @Test
+    public void testSlowDrip_TakesBodyLengthOverRate() {
+
+        // Arrange
+        final HttpClient chaos = new ChaosHttpClient(delegate,
+            new ChaosRule.Builder()
+                .withFault(Fault.slowDrip(BODY.length() * 10))
+                .build());
+
+        // Act
+        final long start = System.nanoTime();
+        final String response = chaos.get(ME_URL);
+        final long elapsed = System.nanoTime() - start;
+
+        // Assert
+        assertEquals(BODY, response);
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testSeed_SameFaults() {
+
+        // Act
+        final List<Integer> first = outcomes(new ChaosHttpClient(delegate,
+            42, new ChaosRule.Builder()
+                .withProbability(0.5)
+                .withFault(Fault.status(500))
+                .build()));
+        final List<Integer> second = outcomes(new ChaosHttpClient(delegate,
+            42, new ChaosRule.Builder()
+                .withProbability(0.5)
+                .withFault(Fault.status(500))
+                .build()));
+
+        // Assert
+        assertEquals(first, second);
+        assertTrue(first.contains(200));
+        assertTrue(first.contains(500));
+    }
+
+    private static List<Integer> outcomes(final HttpClient chaos) {
+        final List<Integer> outcomes = new ArrayList<Integer>();
+        for (int i = 0; i < 32; i++) {
+            try {
+                chaos.get(ME_URL);
+                outcomes.add(200);
+            } catch (final HttpException exception) {
+                outcomes.add(exception.getCode());
+            }
+        }
+        return outcomes;
+    }
+
+    private static int codeOf(final HttpClient chaos, final String url) {
+        try {
+            chaos.post(url, "{}");
+            fail("Expected an HttpException");
+            return 0;
+        } catch (final HttpException exception) {
+            return exception.getCode();
+        }
+    }
+}
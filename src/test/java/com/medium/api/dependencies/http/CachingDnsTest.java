@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import okhttp3.Dns;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the CachingDns, with a fake resolver, a fake clock, and
+ * background refreshes that run right away on the calling thread.
+ */
+public class CachingDnsTest {
+
+    private static final String HOST = "api.medium.com";
+
+    private FakeDns resolver;
+    private long time;
+    private CachingDns dns;
+
+    @Before
+    public void setup() throws UnknownHostException {
+        resolver = new FakeDns(Arrays.asList(
+            InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 1}),
+            InetAddress.getByAddress(HOST, new byte[] {10, 0, 0, 2})
+        ));
+
+        dns = new CachingDns(new CachingDns.Builder()
+            .withDelegate(resolver)
+            .withTtl(100, TimeUnit.MILLISECONDS)
+            .withMaxStale(1, TimeUnit.SECONDS)
+            .withRefresher(new Executor() {
+                @Override
+                public void execute(final Runnable runnable) {
+                    runnable.run();
+                }
+            })) {
+
+            @Override
+            long now() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testLookup_IsCached() throws UnknownHostException {
+        dns.lookup(HOST);
+        time = 50;
+        dns.lookup(HOST);
+
+        assertEquals(1, resolver.lookups);
+        assertEquals(1, dns.getMissCount());
+        assertEquals(1, dns.getHitCount());
+    }
+
+    @Test
+    public void testLookup_RefreshesAheadOfExpiry()
+            throws UnknownHostException {
+
+        dns.lookup(HOST);
+        time = 80;
+        dns.lookup(HOST);
+
+        // The refresh was in the background; the lookup still hit
+        assertEquals(2, resolver.lookups);
+        assertEquals(1, dns.getHitCount());
+
+        // And the refreshed entry lives on past the original expiry
+        time = 150;
+        dns.lookup(HOST);
+        assertEquals(2, resolver.lookups);
+    }
+
+    @Test
+    public void testLookup_ServesStaleOnFailure() throws UnknownHostException {
+        final List<InetAddress> first = dns.lookup(HOST);
+
+        resolver.failing = true;
+        time = 500;
+
+        assertEquals(2, dns.lookup(HOST).size());
+        assertEquals(1, dns.getStaleHitCount());
+        assertEquals(first.size(), dns.lookup(HOST).size());
+    }
+
+    @Test(expected = UnknownHostException.class)
+    public void testLookup_TooStaleOnFailure() throws UnknownHostException {
+        dns.lookup(HOST);
+
+        resolver.failing = true;
+        time = 5000;
+
+        dns.lookup(HOST);
+    }
+
+    @Test
+    public void testLookup_RefreshesAgainAfterBrokenRefresh()
+            throws UnknownHostException {
+
+        dns.lookup(HOST);
+        resolver.broken = true;
+        time = 80;
+        try {
+            dns.lookup(HOST);
+            fail("Expected the refresh to break");
+        } catch (final IllegalStateException illegalStateException) {
+            // Thrown by the refresh, which runs on this thread here
+        }
+
+        resolver.broken = false;
+        time = 90;
+        dns.lookup(HOST);
+
+        // The failed refresh did not stop the entry being refreshed
+        assertEquals(3, resolver.lookups);
+        time = 150;
+        dns.lookup(HOST);
+        assertEquals(3, resolver.lookups);
+    }
+
+    @Test
+    public void testLookup_RoundRobin() throws UnknownHostException {
+        final InetAddress first = dns.lookup(HOST).get(0);
+        final InetAddress second = dns.lookup(HOST).get(0);
+        final InetAddress third = dns.lookup(HOST).get(0);
+
+        assertEquals(resolver.addresses.get(0), first);
+        assertEquals(resolver.addresses.get(1), second);
+        assertEquals(resolver.addresses.get(0), third);
+    }
+
+    /**
+     * A resolver which counts its lookups, and can be made to fail.
+     */
+    private static final class FakeDns implements Dns {
+
+        private final List<InetAddress> addresses;
+        private int lookups;
+        private boolean failing;
+        private boolean broken;
+
+        FakeDns(final List<InetAddress> addresses) {
+            this.addresses = addresses;
+        }
+
+        @Override
+        public List<InetAddress> lookup(final String hostname)
+                throws UnknownHostException {
+            lookups++;
+
+            if (failing) {
+                throw new UnknownHostException(hostname);
+            }
+
+            if (broken) {
+                throw new IllegalStateException(hostname);
+            }
+
+            return addresses;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the deadline and cancellation semantics of CallContext.
+ */
+public class CallContextTest {
+
+    @Test
+    public void testAttachDetach() {
+        final CallContext outer = CallContext.cancellable();
+        final CallContext inner = CallContext.cancellable();
+
+        final CallContext none = outer.attach();
+        final CallContext previous = inner.attach();
+        assertSame(inner, CallContext.current());
+
+        inner.detach(previous);
+        assertSame(outer, CallContext.current());
+
+        outer.detach(none);
+        assertNull(CallContext.current());
+    }
+
+    @Test
+    public void testCancel_NotifiesListenersAndChildren() {
+        final CallContext parent = CallContext.cancellable();
+        final CallContext child = parent.newChild();
+        final AtomicInteger notifications = new AtomicInteger();
+
+        child.addListener(new CallContext.CancellationListener() {
+            @Override
+            public void onCancelled(final CallContext context) {
+                notifications.incrementAndGet();
+            }
+        });
+
+        parent.cancel();
+        parent.cancel();
+
+        assertTrue(child.isCancelled());
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    public void testClose_DetachesChildFromParent() {
+        final CallContext parent = CallContext.cancellable();
+        final CallContext child = parent.newChild();
+
+        child.close();
+        parent.cancel();
+
+        assertFalse(child.isCancelled());
+    }
+
+    @Test
+    public void testNewChild_KeepsEarlierDeadline() {
+        final CallContext parent =
+            CallContext.withTimeout(1, TimeUnit.SECONDS);
+        final CallContext child = parent.newChild(1, TimeUnit.HOURS);
+
+        assertTrue(child.hasDeadline());
+        assertTrue(child.remaining(TimeUnit.SECONDS) <= 1);
+    }
+
+    @Test
+    public void testBuilder_InheritsPriorityAndDeadline() {
+        final CallContext parent = new CallContext.Builder()
+            .withTimeout(1, TimeUnit.SECONDS)
+            .withPriority(Priority.BATCH)
+            .withTenant("acme")
+            .build();
+        final CallContext child = new CallContext.Builder()
+            .withParent(parent)
+            .withTimeout(1, TimeUnit.HOURS)
+            .build();
+        final CallContext interactive = new CallContext.Builder()
+            .withParent(child)
+            .withPriority(Priority.INTERACTIVE)
+            .build();
+
+        assertEquals(Priority.NORMAL, CallContext.cancellable().getPriority());
+        assertEquals(Priority.BATCH, child.getPriority());
+        assertEquals(Priority.INTERACTIVE, interactive.getPriority());
+        assertEquals("acme", interactive.getTenant());
+        assertNull(CallContext.cancellable().getTenant());
+        assertTrue(interactive.remaining(TimeUnit.SECONDS) <= 1);
+
+        parent.cancel();
+        assertTrue(interactive.isCancelled());
+        interactive.close();
+        child.close();
+    }
+
+    @Test
+    public void testRemaining_NoDeadline() {
+        final CallContext context = CallContext.cancellable();
+
+        assertFalse(context.hasDeadline());
+        assertFalse(context.isExpired());
+        assertEquals(Long.MAX_VALUE, context.remaining(TimeUnit.SECONDS));
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void testCheckActive_Expired() {
+        CallContext.withTimeout(0, TimeUnit.SECONDS).checkActive();
+    }
+
+    @Test(expected = CancelledException.class)
+    public void testCheckActive_Cancelled() {
+        final CallContext context = CallContext.cancellable();
+        context.cancel();
+        context.checkActive();
+    }
+}
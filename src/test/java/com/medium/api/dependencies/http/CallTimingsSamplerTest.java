@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the CallTimingsSampler.
+ */
+public class CallTimingsSamplerTest {
+
+    @Test
+    public void testGetSamples_Empty() {
+
+        // Act
+        final List<CallTimings> samples = new CallTimingsSampler(4).getSamples();
+
+        // Assert
+        assertTrue(samples.isEmpty());
+    }
+
+    @Test
+    public void testGetSamples_KeepsNewest() {
+
+        // Arrange
+        final CallTimingsSampler sampler = new CallTimingsSampler(3);
+        final CallTimings[] calls = new CallTimings[5];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = timings(i);
+        }
+
+        // Act
+        for (final CallTimings call : calls) {
+            sampler.onCallTimings(call);
+        }
+
+        // Assert
+        final List<CallTimings> samples = sampler.getSamples();
+        assertEquals(3, samples.size());
+        assertSame(calls[2], samples.get(0));
+        assertSame(calls[3], samples.get(1));
+        assertSame(calls[4], samples.get(2));
+        assertEquals(5, sampler.getSampleCount());
+    }
+
+    @Test
+    public void testOnCallTimings_Interval() {
+
+        // Arrange
+        final CallTimingsSampler sampler = new CallTimingsSampler(10, 3);
+        final CallTimings[] calls = new CallTimings[7];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = timings(i);
+        }
+
+        // Act
+        for (final CallTimings call : calls) {
+            sampler.onCallTimings(call);
+        }
+
+        // Assert
+        final List<CallTimings> samples = sampler.getSamples();
+        assertEquals(3, samples.size());
+        assertSame(calls[0], samples.get(0));
+        assertSame(calls[3], samples.get(1));
+        assertSame(calls[6], samples.get(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_NoCapacity() {
+        new CallTimingsSampler(0);
+    }
+
+    @Test
+    public void testToString() {
+
+        // Act
+        final String text = timings(7).toString();
+
+        // Assert
+        assertTrue(text, text.startsWith("getUser http://api.foo.bar/v42/me"));
+        assertTrue(text, text.contains(" server=7000us"));
+        assertTrue(text, text.endsWith(" reused=false"));
+    }
+
+    private static CallTimings timings(final int serverMillis) {
+        final long[] phases = new long[CallPhase.values().length];
+        phases[CallPhase.SERVER.ordinal()] =
+            TimeUnit.MILLISECONDS.toNanos(serverMillis);
+        return new CallTimings("getUser", "GET", "http://api.foo.bar/v42/me",
+            200, System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(50), phases, 1);
+    }
+}
@@ -0,0 +1,822 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the ConcurrencyLimiter, and the ConcurrencyLimitingHttpClient
+ * which reports to it.
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final String TEST_URL = "http://api.foo.bar/v42/me";
+
+    @Test
+    public void testAcquire_WaitsThenRejects() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withMaxQueueSize(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                limiter.acquire();
+                acquired.countDown();
+            }
+        });
+        waiter.start();
+        awaitQueueSize(limiter, 1);
+
+        // Act
+        try {
+            limiter.acquire();
+            fail("Expected the call to be rejected");
+        } catch (final CallRejectedException callRejectedException) {
+            // Expected
+        }
+        limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+
+        // Assert
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void testAcquire_DeadlinePassesWhileWaiting() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        final CallContext context =
+            CallContext.withTimeout(50, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        // Act
+        try {
+            limiter.acquire();
+            fail("Expected the deadline to pass");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            // Expected
+        } finally {
+            context.detach(previous);
+        }
+
+        // Assert
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+        assertEquals(1, limiter.getAbandonedCount());
+    }
+
+    @Test
+    public void testAcquire_ExpiredCallNeverQueues() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        final CallContext context =
+            CallContext.withTimeout(0, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        // Act
+        try {
+            limiter.acquire();
+            fail("Expected the expired call to be turned away");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            // Expected
+        } finally {
+            context.detach(previous);
+        }
+
+        // Assert
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    public void testAcquire_ShedsLowerPriorityWhenFull() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withMaxQueueSize(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        final AtomicReference<HttpException> batchFailure =
+            new AtomicReference<HttpException>();
+        final CountDownLatch interactiveAcquired = new CountDownLatch(1);
+        startWaiter(limiter, Priority.BATCH, new CountDownLatch(1),
+            batchFailure);
+        awaitQueueSize(limiter, 1);
+        startWaiter(limiter, Priority.INTERACTIVE, interactiveAcquired,
+            new AtomicReference<HttpException>());
+        awaitQueueSize(limiter, Priority.INTERACTIVE, 1);
+
+        // Act
+        limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+
+        // Assert
+        assertTrue(interactiveAcquired.await(1, TimeUnit.SECONDS));
+        for (int i = 0; i < 100 && null == batchFailure.get(); i++) {
+            Thread.sleep(5);
+        }
+        assertTrue(batchFailure.get() instanceof CallRejectedException);
+        assertEquals(1, limiter.getShedCount());
+        assertEquals(0, limiter.getRejectedCount());
+        assertEquals(0, limiter.getQueueSize(Priority.BATCH));
+    }
+
+    @Test
+    public void testAcquire_RejectsWhenFullOfHigherPriority() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withMaxQueueSize(0)
+            .build();
+        limiter.acquire();
+        final CallContext batch = new CallContext.Builder()
+            .withPriority(Priority.BATCH)
+            .build();
+        final CallContext previous = batch.attach();
+
+        // Act
+        try {
+            limiter.acquire();
+            fail("Expected the call to be rejected");
+        } catch (final CallRejectedException callRejectedException) {
+            // Expected
+        } finally {
+            batch.detach(previous);
+        }
+
+        // Assert
+        assertEquals(1, limiter.getRejectedCount());
+        assertEquals(0, limiter.getShedCount());
+    }
+
+    @Test
+    public void testAcquire_ShedsAfterMaxQueueWait() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withMaxQueueWait(Priority.NORMAL, 30, TimeUnit.MILLISECONDS)
+            .build();
+        limiter.acquire();
+        final long start = System.nanoTime();
+
+        // Act
+        try {
+            limiter.acquire();
+            fail("Expected the call to be shed");
+        } catch (final CallRejectedException callRejectedException) {
+            // Expected
+        }
+
+        // Assert
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(1, limiter.getShedCount());
+        assertEquals(0, limiter.getQueueSize());
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testAcquire_CancelledWhileWaiting() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        final CallContext context = CallContext.cancellable();
+        final AtomicReference<Exception> failure =
+            new AtomicReference<Exception>();
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final CallContext previous = context.attach();
+                try {
+                    limiter.acquire();
+                } catch (final CancelledException cancelledException) {
+                    failure.set(cancelledException);
+                } finally {
+                    context.detach(previous);
+                }
+            }
+        });
+        waiter.start();
+        awaitQueueSize(limiter, 1);
+
+        // Act
+        context.cancel();
+        waiter.join(1000);
+
+        // Assert
+        assertFalse(waiter.isAlive());
+        assertTrue(failure.get() instanceof CancelledException);
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+    }
+
+    @Test
+    public void testAcquire_InteractiveGoesFirst() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        final CountDownLatch batchAcquired = new CountDownLatch(1);
+        final CountDownLatch interactiveAcquired = new CountDownLatch(1);
+        startWaiter(limiter, Priority.BATCH, batchAcquired,
+            new AtomicReference<HttpException>());
+        awaitQueueSize(limiter, 1);
+        startWaiter(limiter, Priority.INTERACTIVE, interactiveAcquired,
+            new AtomicReference<HttpException>());
+        awaitQueueSize(limiter, 2);
+
+        // Act
+        limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+
+        // Assert
+        assertTrue(interactiveAcquired.await(1, TimeUnit.SECONDS));
+        assertEquals(1, batchAcquired.getCount());
+        assertEquals(1, limiter.getInFlight(Priority.INTERACTIVE));
+        assertEquals(1, limiter.getQueueSize(Priority.BATCH));
+    }
+
+    @Test
+    public void testAcquire_BatchKeepsToItsShare() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(4)
+            .build();
+        final CallContext batch = new CallContext.Builder()
+            .withPriority(Priority.BATCH)
+            .withTimeout(50, TimeUnit.MILLISECONDS)
+            .build();
+
+        // Act
+        final CallContext previous = batch.attach();
+        try {
+            assertEquals(Priority.BATCH, limiter.acquire().getPriority());
+            limiter.acquire();
+            limiter.acquire();
+            fail("Expected batch calls to be held to half the limit");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            // Expected
+        } finally {
+            batch.detach(previous);
+        }
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        // Assert
+        assertEquals(Priority.NORMAL, permit.getPriority());
+        assertEquals(2, limiter.getInFlight(Priority.BATCH));
+        assertEquals(3, limiter.getInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_InvalidShare() {
+        new ConcurrencyLimiter.Builder().withShare(Priority.BATCH, 0);
+    }
+
+    @Test
+    public void testAcquire_TenantsTakeTurns() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        final List<String> order = new CopyOnWriteArrayList<String>();
+
+        final List<Thread> waiters = new ArrayList<Thread>();
+        for (String tenant : Arrays.asList("A", "A", "A", "B")) {
+            waiters.add(startTenantWaiter(limiter, tenant, order));
+            awaitQueueSize(limiter, waiters.size());
+        }
+
+        // Act
+        limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+        for (Thread waiter : waiters) {
+            waiter.join(1000);
+        }
+
+        // Assert
+        assertEquals(Arrays.asList("A", "B", "A", "A"), order);
+
+        final ConcurrencyLimiter.TenantMetrics metrics =
+            limiter.getTenantMetrics().get("A");
+        assertEquals(3, metrics.getAcquiredCount());
+        assertEquals(0, metrics.getQueueSize());
+        assertEquals(0, metrics.getInFlight());
+        assertTrue(metrics.getMaxWait(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(metrics.getMeanWait(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void testAcquire_TenantsTakeWeightedTurns() throws Exception {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .withTenantWeight("A", 2)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        final List<String> order = new CopyOnWriteArrayList<String>();
+
+        final List<Thread> waiters = new ArrayList<Thread>();
+        for (String tenant : Arrays.asList("A", "A", "A", "B", "B")) {
+            waiters.add(startTenantWaiter(limiter, tenant, order));
+            awaitQueueSize(limiter, waiters.size());
+        }
+
+        // Act
+        limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+        for (Thread waiter : waiters) {
+            waiter.join(1000);
+        }
+
+        // Assert
+        assertEquals(Arrays.asList("A", "A", "B", "A", "B"), order);
+        assertEquals(2, limiter.getTenantMetrics().get("A").getWeight());
+        assertEquals(1, limiter.getTenantMetrics()
+            .get(ConcurrencyLimiter.DEFAULT_TENANT).getAcquiredCount());
+    }
+
+    @Test
+    public void testAcquire_TenantKeepsToItsCap() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(4)
+            .withMaxInFlightPerTenant(1)
+            .build();
+        final CallContext noisy = new CallContext.Builder()
+            .withTenant("noisy")
+            .withTimeout(50, TimeUnit.MILLISECONDS)
+            .build();
+
+        // Act
+        final CallContext previous = noisy.attach();
+        try {
+            assertEquals("noisy", limiter.acquire().getTenant());
+            limiter.acquire();
+            fail("Expected the tenant to be held to its cap");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            // Expected
+        } finally {
+            noisy.detach(previous);
+        }
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        // Assert
+        assertEquals(ConcurrencyLimiter.DEFAULT_TENANT, permit.getTenant());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueSize());
+        assertEquals(1, limiter.getTenantMetrics().get("noisy").getInFlight());
+    }
+
+    @Test
+    public void testOnSuccess_ForgetsIdleTenants() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(10)
+            .withMaxIdleTenants(3)
+            .build();
+        final CallContext busy =
+            new CallContext.Builder().withTenant("busy").build();
+        final CallContext previous = busy.attach();
+        final ConcurrencyLimiter.Permit busyPermit;
+        try {
+            busyPermit = limiter.acquire();
+        } finally {
+            busy.detach(previous);
+        }
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            final CallContext context =
+                new CallContext.Builder().withTenant("tenant-" + i).build();
+            final CallContext outer = context.attach();
+            try {
+                limiter.onSuccess(limiter.acquire(), 1000);
+            } finally {
+                context.detach(outer);
+            }
+        }
+
+        // Assert
+        final Map<String, ConcurrencyLimiter.TenantMetrics> metrics =
+            limiter.getTenantMetrics();
+        assertEquals(4, metrics.size());
+        assertEquals(1, metrics.get("busy").getInFlight());
+        assertEquals(1, metrics.get("tenant-999").getAcquiredCount());
+        assertFalse(metrics.containsKey("tenant-996"));
+
+        limiter.onSuccess(busyPermit, 1000);
+        assertEquals(3, limiter.getTenantMetrics().size());
+        assertTrue(limiter.getTenantMetrics().containsKey("busy"));
+    }
+
+    @Test
+    public void testOnSuccess_LimitGrowsWhenUsed() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+
+        // Act
+        for (int round = 0; round < 20; round++) {
+            final int limit = limiter.getLimit();
+            final ConcurrencyLimiter.Permit[] permits =
+                new ConcurrencyLimiter.Permit[limit];
+            for (int i = 0; i < limit; i++) {
+                permits[i] = limiter.acquire();
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.onSuccess(
+                    permits[i], TimeUnit.MILLISECONDS.toNanos(10)
+                );
+            }
+        }
+
+        // Assert
+        assertTrue(limiter.getLimit() > 10);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testOnSuccess_LimitHoldsWhenIdle() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            final ConcurrencyLimiter.Permit permit = limiter.acquire();
+            limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        // Assert
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void testOnDropped_BacksOffOncePerLatency() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        limiter.acquire();
+        limiter.acquire();
+
+        // Act
+        limiter.onDropped(permit);
+        final int afterFirstDrop = limiter.getLimit();
+        limiter.onSuccess(permit, TimeUnit.SECONDS.toNanos(1));
+        limiter.onDropped(permit);
+
+        // Assert
+        assertEquals(9, afterFirstDrop);
+        assertEquals(9, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testOnSuccess_SlowCallBacksOff() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        limiter.onSuccess(permit, 1);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire();
+            limiter.onSuccess(permit, TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // Assert
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    public void testOnDropped_StopsAtMinLimit() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(2)
+            .withLimitBounds(2, 10)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        // Act
+        limiter.onDropped(permit);
+
+        // Assert
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testOnIgnored_KeepsLimit() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(5)
+            .build();
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        // Act
+        limiter.onIgnored(permit);
+
+        // Assert
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_InvalidBounds() {
+        new ConcurrencyLimiter.Builder().withLimitBounds(5, 2);
+    }
+
+    @Test
+    public void testClient_ReleasesOnFailure() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL))
+            .thenThrow(new HttpException(503, "Service Unavailable"));
+        when(delegate.post(TEST_URL, "{}")).thenReturn("{}");
+        final ConcurrencyLimitingHttpClient client =
+            new ConcurrencyLimitingHttpClient(delegate, limiter);
+
+        // Act
+        try {
+            client.get(TEST_URL);
+            fail("Expected the call to fail");
+        } catch (final HttpException httpException) {
+            assertEquals(503, httpException.getCode());
+        }
+        final String response = client.post(TEST_URL, "{}");
+
+        // Assert
+        assertEquals("{}", response);
+        assertEquals(9, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testOnTimeout_OnlyDropsSlowCalls() throws InterruptedException {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+        limiter.onSuccess(limiter.acquire(), TimeUnit.MILLISECONDS.toNanos(1));
+        Thread.sleep(5);
+
+        // Act
+        limiter.onTimeout(limiter.acquire(), TimeUnit.MICROSECONDS.toNanos(500));
+        final int afterTightDeadline = limiter.getLimit();
+        limiter.onTimeout(limiter.acquire(), TimeUnit.MILLISECONDS.toNanos(50));
+
+        // Assert
+        assertEquals(10, afterTightDeadline);
+        assertEquals(9, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testClient_ReleasesOnError() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withFixedLimit(1)
+            .build();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL)).thenThrow(new StackOverflowError());
+        final ConcurrencyLimitingHttpClient client =
+            new ConcurrencyLimitingHttpClient(delegate, limiter);
+
+        // Act
+        try {
+            client.get(TEST_URL);
+            fail("Expected the call to fail");
+        } catch (final StackOverflowError stackOverflowError) {
+            // Expected
+        }
+
+        // Assert
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testClient_TightDeadlineKeepsLimit() {
+
+        // Arrange
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+            .withInitialLimit(10)
+            .build();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL))
+            .thenThrow(new DeadlineExceededException("Deadline exceeded"));
+        final ConcurrencyLimitingHttpClient client =
+            new ConcurrencyLimitingHttpClient(delegate, limiter);
+
+        // Act
+        try {
+            client.get(TEST_URL);
+            fail("Expected the call to fail");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            // Expected
+        }
+
+        // Assert -- no call has succeeded to say what slow would be
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testClient_IsOverload() {
+        assertTrue(ConcurrencyLimitingHttpClient.isOverload(
+            new HttpException(429, "Too Many Requests")));
+        assertTrue(ConcurrencyLimitingHttpClient.isOverload(
+            new HttpException(502, "Bad Gateway")));
+        assertTrue(ConcurrencyLimitingHttpClient.isOverload(
+            new HttpException(-1, "Connection refused")));
+        assertFalse(ConcurrencyLimitingHttpClient.isOverload(
+            new CancelledException("Cancelled")));
+        assertFalse(ConcurrencyLimitingHttpClient.isOverload(
+            new CallRejectedException("Rejected")));
+        assertFalse(ConcurrencyLimitingHttpClient.isOverload(
+            new HttpException(404, "Not Found")));
+    }
+
+    /**
+     * Starts a thread which acquires a permit from a limiter, with the
+     * given priority.
+     *
+     * @param limiter the limiter from which to acquire a permit
+     * @param priority the priority of the call
+     * @param acquired counted down once the permit is acquired
+     * @param failure set if the call is turned away instead
+     */
+    private static void startWaiter(final ConcurrencyLimiter limiter,
+            final Priority priority, final CountDownLatch acquired,
+            final AtomicReference<HttpException> failure) {
+
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final CallContext context = new CallContext.Builder()
+                    .withPriority(priority)
+                    .withTimeout(2, TimeUnit.SECONDS)
+                    .build();
+                final CallContext previous = context.attach();
+                try {
+                    limiter.acquire();
+                    acquired.countDown();
+                } catch (final HttpException httpException) {
+                    failure.set(httpException);
+                } finally {
+                    context.detach(previous);
+                }
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+    }
+
+    /**
+     * Starts a thread which acquires a permit from a limiter on behalf
+     * of a tenant, notes the tenant down, and releases the permit.
+     *
+     * @param limiter the limiter from which to acquire a permit
+     * @param tenant the tenant of the call
+     * @param order the list in which to note the tenant down
+     *
+     * @return the thread
+     */
+    private static Thread startTenantWaiter(final ConcurrencyLimiter limiter,
+            final String tenant, final List<String> order) {
+
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                final CallContext context = new CallContext.Builder()
+                    .withTenant(tenant)
+                    .build();
+                final CallContext previous = context.attach();
+                try {
+                    final ConcurrencyLimiter.Permit permit = limiter.acquire();
+                    order.add(permit.getTenant());
+                    limiter.onSuccess(permit, TimeUnit.MILLISECONDS.toNanos(1));
+                } finally {
+                    context.detach(previous);
+                }
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        return waiter;
+    }
+
+    /**
+     * Waits until a number of calls of a priority are waiting for their
+     * turn.
+     *
+     * @param limiter the limiter to watch
+     * @param priority the priority of the calls
+     * @param size the number of waiting calls to wait for
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitQueueSize(final ConcurrencyLimiter limiter,
+            final Priority priority, final int size)
+            throws InterruptedException {
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        while (limiter.getQueueSize(priority) < size
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Waits until a number of calls are waiting for their turn.
+     *
+     * @param limiter the limiter to watch
+     * @param size the number of waiting calls to wait for
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitQueueSize(
+            final ConcurrencyLimiter limiter, final int size)
+            throws InterruptedException {
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+        while (limiter.getQueueSize() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the HedgingHttpClient against a fake client whose first
+ * response never comes, unless it is told otherwise.
+ */
+public class HedgingHttpClientTest {
+
+    private static final String TEST_URL = "http://api.foo.bar/v42/me";
+
+    @Test
+    public void testGet_HedgeWins() {
+
+        // Arrange
+        final HedgingPolicy policy = new HedgingPolicy.Builder()
+            .withDelay(10, TimeUnit.MILLISECONDS)
+            .withBudget(1)
+            .build();
+        final StuckFirstClient delegate = new StuckFirstClient();
+        final HedgingHttpClient client =
+            new HedgingHttpClient(delegate, policy);
+
+        // Earn some budget first
+        delegate.stuck = false;
+        client.get(TEST_URL);
+        delegate.stuck = true;
+
+        // Act
+        final String response = client.get(TEST_URL);
+
+        // Assert
+        assertEquals("3", response);
+        assertEquals(203, CallContext.lastStatus());
+        assertEquals(1, delegate.cancelled.get());
+        assertEquals(2, policy.getRequestCount());
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+        assertEquals(0.5, policy.getHedgeRate(), 0.001);
+        assertEquals(1.0, policy.getWinRate(), 0.001);
+    }
+
+    @Test
+    public void testGet_HedgeCarriesSpanAndOperation() {
+
+        // Arrange
+        final HedgingPolicy policy = new HedgingPolicy.Builder()
+            .withDelay(10, TimeUnit.MILLISECONDS)
+            .withBudget(1)
+            .build();
+        final StuckFirstClient delegate = new StuckFirstClient();
+        final HedgingHttpClient client =
+            new HedgingHttpClient(delegate, policy);
+        delegate.stuck = false;
+        client.get(TEST_URL);
+        delegate.stuck = true;
+        delegate.spans.clear();
+        delegate.operations.clear();
+        final SpanContext span = SpanContext.newChild(SpanContext.INVALID);
+
+        // Act
+        final SpanContext previousSpan = Spans.enter(span);
+        final String previousOperation = CallContext.enterOperation("getUser");
+        try {
+            client.get(TEST_URL);
+        } finally {
+            CallContext.exitOperation(previousOperation);
+            Spans.exit(previousSpan);
+        }
+
+        // Assert
+        assertEquals(2, delegate.spans.size());
+        assertEquals(span, delegate.spans.get(0));
+        assertEquals(span, delegate.spans.get(1));
+        assertEquals("getUser", delegate.operations.get(1));
+        assertEquals(SpanContext.INVALID, Spans.current());
+    }
+
+    @Test(expected = CancelledException.class)
+    public void testGet_NoBudget() {
+
+        // Arrange
+        final HedgingPolicy policy = new HedgingPolicy.Builder()
+            .withDelay(1, TimeUnit.MILLISECONDS)
+            .withBudget(0)
+            .build();
+        final StuckFirstClient delegate = new StuckFirstClient();
+        final HedgingHttpClient client =
+            new HedgingHttpClient(delegate, policy);
+
+        final CallContext context =
+            CallContext.withTimeout(200, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        // Act -- no hedge is sent, so this waits out the deadline
+        try {
+            client.get(TEST_URL);
+        } finally {
+            context.detach(previous);
+            assertEquals(0, policy.getHedgeCount());
+        }
+    }
+
+    @Test
+    public void testPost_NotHedged() {
+        final StuckFirstClient delegate = new StuckFirstClient();
+        delegate.stuck = false;
+
+        final HedgingHttpClient client =
+            new HedgingHttpClient(delegate, new HedgingPolicy());
+
+        assertEquals("posted", client.post(TEST_URL, "{}"));
+        assertEquals(0, client.getPolicy().getRequestCount());
+    }
+
+    @Test
+    public void testGetDelay_AdaptsToPercentile() {
+
+        // Arrange
+        final HedgingPolicy policy = new HedgingPolicy.Builder()
+            .withPercentile(95, 1, TimeUnit.SECONDS)
+            .build();
+
+        // Act
+        for (int i = 1; i <= 129; i++) {
+            policy.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        // Assert
+        assertEquals(123, policy.getDelay(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * An HttpClient whose first GET while it is stuck blocks until it
+     * is cancelled, and whose other GETs respond right away.
+     */
+    private static final class StuckFirstClient implements HttpClient {
+
+        private final AtomicInteger gets = new AtomicInteger();
+        private final AtomicInteger cancelled = new AtomicInteger();
+        private final AtomicBoolean stuckOnce = new AtomicBoolean();
+        private final List<SpanContext> spans =
+            new CopyOnWriteArrayList<SpanContext>();
+        private final List<String> operations =
+            new CopyOnWriteArrayList<String>();
+        private volatile boolean stuck = true;
+
+        @Override
+        public String get(final String url) {
+            final int attempt = gets.incrementAndGet();
+            spans.add(Spans.current());
+            operations.add(String.valueOf(CallContext.currentOperation()));
+
+            if (stuck && stuckOnce.compareAndSet(false, true)) {
+                return awaitCancellation();
+            }
+
+            CallContext.recordStatus(200 + attempt);
+            return String.valueOf(attempt);
+        }
+
+        @Override
+        public String post(final String url, final String body) {
+            return "posted";
+        }
+
+        @Override
+        public void setBearerToken(final String bearerToken) {
+        }
+
+        private String awaitCancellation() {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final CallContext context = CallContext.current();
+
+            context.addListener(
+                new CallContext.CancellationListener() {
+                    @Override
+                    public void onCancelled(final CallContext cancelled) {
+                        latch.countDown();
+                    }
+                }
+            );
+
+            // Wait a little past the deadline, if there is one
+            final long patience = context.hasDeadline()
+                ? context.remaining(TimeUnit.MILLISECONDS) + 50
+                : 5000;
+
+            try {
+                if (!latch.await(patience, TimeUnit.MILLISECONDS)) {
+                    context.checkActive();
+                    return "too slow";
+                }
+            } catch (final InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+
+            cancelled.incrementAndGet();
+            throw new CancelledException("Call was cancelled");
+        }
+    }
+}
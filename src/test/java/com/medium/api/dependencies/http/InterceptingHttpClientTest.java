@@ -0,0 +1,287 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the InterceptingHttpClient.
+ */
+public class InterceptingHttpClientTest {
+
+    private static final String TEST_URL = "http://api.foo.bar/v42/me";
+
+    @Test
+    public void testWrap_EmptyChain() {
+
+        // Arrange
+        final HttpClient delegate = mock(HttpClient.class);
+
+        // Act
+        final HttpClient wrapped = InterceptingHttpClient.wrap(
+            delegate, Collections.<Interceptor>emptyList()
+        );
+
+        // Assert
+        assertSame(delegate, wrapped);
+    }
+
+    @Test
+    public void testGet_InterceptorsSeeCallInOrder() {
+
+        // Arrange
+        final List<String> events = new ArrayList<String>();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL)).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                CallContext.recordStatus(200);
+                return "{}";
+            }
+        });
+        final HttpClient client = InterceptingHttpClient.wrap(delegate,
+            Arrays.<Interceptor>asList(
+                new RecordingInterceptor("outer", events),
+                new RecordingInterceptor("inner", events)
+            )
+        );
+
+        // Act
+        final String previous = CallContext.enterOperation("getUser");
+        final String response;
+        try {
+            response = client.get(TEST_URL);
+        } finally {
+            CallContext.exitOperation(previous);
+        }
+
+        // Assert
+        assertEquals("{}", response);
+        assertEquals(Arrays.asList(
+            "outer request getUser GET " + TEST_URL,
+            "inner request getUser GET " + TEST_URL,
+            "inner response 200 {}",
+            "outer response 200 {}"
+        ), events);
+        assertNull(CallContext.currentOperation());
+    }
+
+    @Test
+    public void testPost_InterceptorsSeeFailure() {
+
+        // Arrange
+        final List<String> events = new ArrayList<String>();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.post(TEST_URL, "{\"a\":1}"))
+            .thenThrow(new HttpException(503, "Unavailable"));
+        final HttpClient client = InterceptingHttpClient.wrap(delegate,
+            Arrays.<Interceptor>asList(new RecordingInterceptor("only", events))
+        );
+
+        // Act
+        try {
+            client.post(TEST_URL, "{\"a\":1}");
+            fail("Expected the call to fail");
+        } catch (final HttpException httpException) {
+            assertEquals(503, httpException.getCode());
+        }
+
+        // Assert
+        assertEquals(Arrays.asList(
+            "only request null POST " + TEST_URL,
+            "only exception 503 Unavailable"
+        ), events);
+    }
+
+    @Test
+    public void testGet_InterceptorAnswersCall() {
+
+        // Arrange
+        final List<String> events = new ArrayList<String>();
+        final HttpClient delegate = mock(HttpClient.class);
+        final HttpClient client = InterceptingHttpClient.wrap(delegate,
+            Arrays.<Interceptor>asList(
+                new RecordingInterceptor("outer", events),
+                new RecordingInterceptor("cache", events) {
+                    @Override
+                    public void onRequest(final Exchange exchange) {
+                        super.onRequest(exchange);
+                        exchange.respond(200, "{\"cached\":true}");
+                    }
+                },
+                new RecordingInterceptor("inner", events)
+            )
+        );
+
+        // Act
+        final String response = client.get(TEST_URL);
+
+        // Assert
+        assertEquals("{\"cached\":true}", response);
+        assertEquals(200, CallContext.lastStatus());
+        assertEquals(Arrays.asList(
+            "outer request null GET " + TEST_URL,
+            "cache request null GET " + TEST_URL,
+            "cache response 200 {\"cached\":true}",
+            "outer response 200 {\"cached\":true}"
+        ), events);
+        verifyZeroInteractions(delegate);
+    }
+
+    @Test
+    public void testGet_InterceptorRetriesFailure() {
+
+        // Arrange
+        final List<String> events = new ArrayList<String>();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL))
+            .thenThrow(new HttpException(503, "Unavailable"))
+            .thenReturn("{}");
+        final HttpClient client = InterceptingHttpClient.wrap(delegate,
+            Arrays.<Interceptor>asList(
+                new RecordingInterceptor("retry", events) {
+                    @Override
+                    public void onException(final Exchange exchange,
+                            final HttpException exception) {
+                        super.onException(exchange, exception);
+                        exchange.retry();
+                    }
+                }
+            )
+        );
+
+        // Act
+        final String response = client.get(TEST_URL);
+
+        // Assert
+        assertEquals("{}", response);
+        assertEquals(Arrays.asList(
+            "retry request null GET " + TEST_URL,
+            "retry exception 503 Unavailable",
+            "retry request null GET " + TEST_URL,
+            "retry response -1 {}"
+        ), events);
+    }
+
+    @Test
+    public void testGet_InterceptorsSeeOtherFailures() {
+
+        // Arrange
+        final List<String> events = new ArrayList<String>();
+        final IllegalStateException failure =
+            new IllegalStateException("Closed");
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(TEST_URL)).thenThrow(failure);
+        final HttpClient client = InterceptingHttpClient.wrap(delegate,
+            Arrays.<Interceptor>asList(new RecordingInterceptor("only", events))
+        );
+
+        // Act
+        try {
+            client.get(TEST_URL);
+            fail("Expected the call to fail");
+        } catch (final IllegalStateException illegalStateException) {
+            assertSame(failure, illegalStateException);
+        }
+
+        // Assert
+        assertEquals(Arrays.asList(
+            "only request null GET " + TEST_URL,
+            "only exception -1 " + failure
+        ), events);
+    }
+
+    @Test
+    public void testExchange_Timings() throws Exception {
+
+        // Arrange
+        final Exchange exchange =
+            new Exchange("getUser", Exchange.GET, TEST_URL, null);
+        Thread.sleep(5);
+
+        // Act
+        exchange.complete(Exchange.UNKNOWN_STATUS, "{}");
+        final long elapsed = exchange.getElapsed(TimeUnit.NANOSECONDS);
+        Thread.sleep(5);
+
+        // Assert
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(elapsed, exchange.getElapsed(TimeUnit.NANOSECONDS));
+        assertEquals("{}", exchange.getResponseBody());
+    }
+
+    /**
+     * Notes down what it sees.
+     */
+    private static class RecordingInterceptor implements Interceptor {
+
+        private final String name;
+        private final List<String> events;
+
+        /**
+         * Constructs a new RecordingInterceptor.
+         *
+         * @param name the name to note events under
+         * @param events the list in which to note events down
+         */
+        RecordingInterceptor(final String name, final List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void onRequest(final Exchange exchange) {
+            events.add(String.format("%s request %s %s %s", name,
+                exchange.getOperation(), exchange.getMethod(),
+                exchange.getUrl()
+            ));
+        }
+
+        @Override
+        public void onResponse(final Exchange exchange) {
+            events.add(String.format("%s response %d %s", name,
+                exchange.getStatus(), exchange.getResponseBody()
+            ));
+        }
+
+        @Override
+        public void onException(final Exchange exchange,
+                final HttpException exception) {
+            events.add(String.format("%s exception %d %s", name,
+                exchange.getStatus(), exception.getMessage()
+            ));
+        }
+    }
+}
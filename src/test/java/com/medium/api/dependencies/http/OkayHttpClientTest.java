@@ -17,22 +17,33 @@
 package com.medium.api.dependencies.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.medium.api.test.TestUtils;
 
+import com.medium.api.tracing.SpanContext;
+import com.medium.api.tracing.Spans;
+
 import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Test the OkayHttpClient implementation.
@@ -115,6 +126,28 @@ public class OkayHttpClientTest {
         validateRequest(server.takeRequest());
     }
 
+    /**
+     * Test that the status of each response is recorded for the
+     * calling thread, such as 201 for a new post.
+     */
+    @Test
+    public void testPost_RecordsStatus() {
+        server.enqueue(new MockResponse().setResponseCode(201)
+            .setBody(TEST_JSON));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        final String url = server.url(TEST_URL).toString();
+
+        objectUnderTest.post(url, TEST_JSON);
+        assertEquals(201, CallContext.lastStatus());
+
+        try {
+            objectUnderTest.get(url);
+            fail("Expected an HttpException");
+        } catch (final HttpException httpException) {
+            assertEquals(503, CallContext.lastStatus());
+        }
+    }
+
     /**
      * Test that a simulated poorly formed post() request will generate
      * an HttpExcpeiton.
@@ -191,6 +224,294 @@ public class OkayHttpClientTest {
         assertNull(afterSetBearer.getHeader(AUTHORIZATION));
     }
 
+    /**
+     * Tests that preconnect() makes one request per connection, and
+     * that it counts them.
+     *
+     * @throws InterruptedException
+     *         On issues with our test infrastructure
+     */
+    @Test
+    public void testPreconnect_HappyPath() throws InterruptedException {
+        server.enqueue(new MockResponse());
+        server.enqueue(new MockResponse());
+
+        final String url = server.url(TEST_URL).toString();
+
+        assertEquals(2, objectUnderTest.preconnect(url, 2));
+        assertEquals(2, server.getRequestCount());
+        assertEquals("HEAD", server.takeRequest().getMethod());
+    }
+
+    /**
+     * Tests that preconnect() rejects URLs which aren't HTTP URLs.
+     */
+    @Test(expected = HttpException.class)
+    public void testPreconnect_InvalidUrl() {
+        objectUnderTest.preconnect("mailto:editor@medium.com", 1);
+    }
+
+    /**
+     * Tests that preconnect() needs to be asked for a connection.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testPreconnect_NoConnections() {
+        objectUnderTest.preconnect(server.url(TEST_URL).toString(), 0);
+    }
+
+    /**
+     * Tests that a call which outlives the deadline of its context is
+     * aborted, rather than waiting on the server.
+     */
+    @Test(expected = DeadlineExceededException.class)
+    public void testGet_DeadlineExceeded() {
+        server.enqueue(new MockResponse()
+            .setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        final CallContext context =
+            CallContext.withTimeout(100, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        try {
+            objectUnderTest.get(server.url(TEST_URL).toString());
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    /**
+     * Tests that cancelling the context of an in-flight call from
+     * another thread aborts the call.
+     */
+    @Test(expected = CancelledException.class)
+    public void testPost_Cancelled() {
+        server.enqueue(new MockResponse()
+            .setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        final CallContext context = CallContext.cancellable();
+        final CallContext previous = context.attach();
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.takeRequest();
+                } catch (final InterruptedException interruptedException) {
+                    return;
+                }
+                context.cancel();
+            }
+        }).start();
+
+        try {
+            objectUnderTest.post(server.url(TEST_URL).toString(), TEST_JSON);
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    /**
+     * Test that getStream() hands over the body of a successful
+     * response.
+     */
+    @Test
+    public void testGetStream_HappyPath()
+            throws IOException, InterruptedException {
+        server.enqueue(new MockResponse().setBody(TEST_JSON));
+
+        final InputStream body =
+            objectUnderTest.getStream(server.url(TEST_URL).toString());
+        try {
+            assertEquals(TEST_JSON, readFully(body));
+        } finally {
+            body.close();
+        }
+
+        validateRequest(server.takeRequest());
+    }
+
+    /**
+     * Test that an error response is reported by getStream() itself,
+     * rather than handed over as a body.
+     */
+    @Test
+    public void testGetStream_500() {
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("x"));
+
+        try {
+            objectUnderTest.getStream(server.url(TEST_URL).toString());
+            fail("Expected an HttpException");
+        } catch (final HttpException httpException) {
+            assertEquals(503, httpException.getCode());
+        }
+    }
+
+    /**
+     * Test that the deadline of the context still applies while the
+     * body is being read, after getStream() has returned.
+     */
+    @Test(expected = DeadlineExceededException.class)
+    public void testGetStream_DeadlineExceededWhileReading()
+            throws IOException {
+        server.enqueue(new MockResponse().setBody(TEST_JSON)
+            .throttleBody(64, 100, TimeUnit.MILLISECONDS));
+
+        final CallContext context =
+            CallContext.withTimeout(300, TimeUnit.MILLISECONDS);
+        final CallContext previous = context.attach();
+
+        final InputStream body;
+        try {
+            body = objectUnderTest.getStream(server.url(TEST_URL).toString());
+        } finally {
+            context.detach(previous);
+        }
+
+        try {
+            readFully(body);
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Test that the current span is sent to the server in a
+     * traceparent header, and that no header is sent without one.
+     */
+    @Test
+    public void testGet_Traceparent() throws InterruptedException {
+
+        // Arrange
+        server.enqueue(new MockResponse().setBody(TEST_JSON));
+        server.enqueue(new MockResponse().setBody(TEST_JSON));
+        final String url = server.url(TEST_URL).toString();
+        final SpanContext span = SpanContext.newChild(SpanContext.INVALID);
+
+        // Act
+        final SpanContext previous = Spans.enter(span);
+        try {
+            objectUnderTest.get(url);
+        } finally {
+            Spans.exit(previous);
+        }
+        objectUnderTest.get(url);
+
+        // Assert
+        assertEquals(span.toTraceparent(),
+            server.takeRequest().getHeader("traceparent"));
+        assertNull(server.takeRequest().getHeader("traceparent"));
+    }
+
+    /**
+     * Test that a timed client reports the phases of each call, and
+     * that only the first call opens a connection.
+     */
+    @Test
+    public void testTimings_NewThenReusedConnection() {
+
+        // Arrange
+        final CallTimingsSampler sampler = new CallTimingsSampler(10);
+        final OkayHttpClient timed =
+            new OkayHttpClient(null, TEST_TOKEN, sampler);
+        server.enqueue(new MockResponse().setBody(TEST_JSON));
+        server.enqueue(new MockResponse().setBody(TEST_JSON));
+        final String url = server.url(TEST_URL).toString();
+
+        // Act
+        final String previous = CallContext.enterOperation("listContributors");
+        try {
+            timed.get(url);
+            timed.post(url, TEST_JSON);
+        } finally {
+            CallContext.exitOperation(previous);
+        }
+
+        // Assert
+        final List<CallTimings> samples = sampler.getSamples();
+        assertEquals(2, samples.size());
+        final CallTimings first = samples.get(0);
+        final CallTimings second = samples.get(1);
+        assertEquals("listContributors", first.getOperation());
+        assertEquals("GET", first.getMethod());
+        assertEquals(url, first.getUrl());
+        assertEquals(200, first.getStatus());
+        assertFalse(first.isConnectionReused());
+        assertTrue(first.getDuration(CallPhase.CONNECT, TimeUnit.NANOSECONDS) > 0);
+        assertEquals(0, first.getDuration(CallPhase.TLS, TimeUnit.NANOSECONDS));
+        assertEquals("POST", second.getMethod());
+        assertTrue(second.isConnectionReused());
+        assertEquals(0, second.getDuration(CallPhase.DNS, TimeUnit.NANOSECONDS));
+        assertEquals(0,
+            second.getDuration(CallPhase.CONNECT, TimeUnit.NANOSECONDS));
+        assertTrue(second.getDuration(CallPhase.UPLOAD, TimeUnit.NANOSECONDS) > 0);
+        for (final CallTimings timings : samples) {
+            long phases = 0;
+            for (final CallPhase phase : CallPhase.values()) {
+                phases += timings.getDuration(phase, TimeUnit.NANOSECONDS);
+            }
+            assertTrue(phases <= timings.getTotal(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Test that a slow body shows up as download time.
+     */
+    @Test
+    public void testTimings_SlowBody() {
+
+        // Arrange
+        final CallTimingsSampler sampler = new CallTimingsSampler(10);
+        final OkayHttpClient timed =
+            new OkayHttpClient(null, TEST_TOKEN, sampler);
+        server.enqueue(new MockResponse().setBody(TEST_JSON)
+            .setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+        // Act
+        timed.get(server.url(TEST_URL).toString());
+
+        // Assert
+        final CallTimings timings = sampler.getSamples().get(0);
+        assertTrue(timings.toString(),
+            timings.getDuration(CallPhase.DOWNLOAD, TimeUnit.MILLISECONDS)
+                >= 150);
+        assertTrue(timings.getTotal(TimeUnit.MILLISECONDS) >= 200);
+    }
+
+    /**
+     * Test that failed calls are timed too.
+     */
+    @Test
+    public void testTimings_Failures() throws IOException {
+
+        // Arrange
+        final CallTimingsSampler sampler = new CallTimingsSampler(10);
+        final OkayHttpClient timed =
+            new OkayHttpClient(null, TEST_TOKEN, sampler);
+        server.enqueue(new MockResponse().setResponseCode(503));
+        final String url = server.url(TEST_URL).toString();
+
+        // Act
+        try {
+            timed.get(url);
+            fail("Expected a 503");
+        } catch (final HttpException httpException) {
+            assertEquals(503, httpException.getCode());
+        }
+        server.shutdown();
+        try {
+            timed.get(url);
+            fail("Expected the connection to be refused");
+        } catch (final HttpException httpException) {
+            assertEquals(-1, httpException.getCode());
+        }
+
+        // Assert
+        final List<CallTimings> samples = sampler.getSamples();
+        assertEquals(2, samples.size());
+        assertEquals(503, samples.get(0).getStatus());
+        assertEquals(-1, samples.get(1).getStatus());
+    }
+
     /**
      * Validates that a request was to our test URL, and that it
      * contained the expected authorization header.
@@ -202,5 +523,14 @@ public class OkayHttpClientTest {
             String.format("%s %s", BEARER, TEST_TOKEN)
         );
     }
-}
 
+    private static String readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the RecordingHttpClient and ReplayingHttpClient together.
+ */
+public class ReplayingHttpClientTest {
+
+    private static final String ME_URL = "http://api.foo.bar/v42/me";
+    private static final String TOKENS_URL = "http://api.foo.bar/v42/tokens";
+    private static final String TOKEN_REQUEST =
+        "{\"clientSecret\":\"s3cr3t\",\"refreshToken\":\"r3fr3sh\"}";
+    private static final String TOKEN_RESPONSE =
+        "{\"token_type\":\"Bearer\",\"access_token\":\"acc3ss\","
+        + "\"refresh_token\":\"r3fr3sh\",\"expires_at\":1}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay_ServesRecordedExchanges() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(ME_URL)).thenReturn("{\"n\":1}", "{\"n\":2}");
+        when(delegate.post(TOKENS_URL, TOKEN_REQUEST))
+            .thenThrow(new HttpException(401, "{\"errors\":[]}"));
+        record(cassette, delegate);
+
+        // Act
+        final ReplayingHttpClient replay =
+            new ReplayingHttpClient(cassette, false);
+
+        // Assert
+        assertEquals(3, replay.size());
+        assertEquals("{\"n\":1}", replay.get(ME_URL));
+        assertEquals("{\"n\":2}", replay.get(ME_URL));
+        assertEquals("{\"n\":1}", replay.get(ME_URL));
+        assertCode(401, replay, TOKENS_URL);
+        assertCode(-1, replay, ME_URL + "/other");
+    }
+
+    @Test
+    public void testRecord_RedactsCredentials() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.post(TOKENS_URL, TOKEN_REQUEST))
+            .thenAnswer(new Answer<String>() {
+                @Override
+                public String answer(final InvocationOnMock invocation) {
+                    CallContext.recordStatus(201);
+                    return TOKEN_RESPONSE;
+                }
+            });
+        final RecordingHttpClient recorder =
+            new RecordingHttpClient(delegate, cassette);
+
+        // Act
+        final String response = recorder.post(TOKENS_URL, TOKEN_REQUEST);
+        recorder.close();
+        CallContext.recordStatus(Exchange.UNKNOWN_STATUS);
+        final String recorded =
+            new Scanner(cassette, "ISO-8859-1").useDelimiter("\\A").next();
+        final String replayed = new ReplayingHttpClient(cassette, false)
+            .post(TOKENS_URL, "{\"clientSecret\":\"other\","
+                + "\"refreshToken\":\"other\"}");
+
+        // Assert
+        assertEquals(TOKEN_RESPONSE, response);
+        assertEquals(201, CallContext.lastStatus());
+        assertFalse(recorded.contains("s3cr3t"));
+        assertFalse(recorded.contains("r3fr3sh"));
+        assertFalse(recorded.contains("acc3ss"));
+        assertTrue(recorded.contains("\"expires_at\":1"));
+        assertEquals("{\"token_type\":\"Bearer\","
+            + "\"access_token\":\"REDACTED\","
+            + "\"refresh_token\":\"REDACTED\",\"expires_at\":1}", replayed);
+    }
+
+    @Test
+    public void testReplay_RecordedLatency() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+        final HttpClient delegate = new HttpClient() {
+            @Override
+            public String post(final String url, final String body) {
+                return body;
+            }
+
+            @Override
+            public String get(final String url) {
+                try {
+                    Thread.sleep(50);
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return "{}";
+            }
+
+            @Override
+            public void setBearerToken(final String bearerToken) {
+            }
+        };
+        final RecordingHttpClient recorder =
+            new RecordingHttpClient(delegate, cassette);
+        recorder.get(ME_URL);
+        recorder.close();
+
+        // Act
+        final long start = System.nanoTime();
+        new ReplayingHttpClient(cassette, true).get(ME_URL);
+        final long elapsed = System.nanoTime() - start;
+
+        // Assert
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void testReplay_RecordedLatencyHonorsDeadline() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(ME_URL)).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation)
+                    throws InterruptedException {
+                Thread.sleep(500);
+                return "{}";
+            }
+        });
+        final RecordingHttpClient recorder =
+            new RecordingHttpClient(delegate, cassette);
+        recorder.get(ME_URL);
+        recorder.close();
+        final ReplayingHttpClient replay =
+            new ReplayingHttpClient(cassette, true);
+        final CallContext context =
+            CallContext.withTimeout(20, TimeUnit.MILLISECONDS);
+
+        // Act
+        final CallContext previous = context.attach();
+        try {
+            replay.get(ME_URL);
+        } finally {
+            context.detach(previous);
+        }
+    }
+
+    @Test
+    public void testReplay_TruncatedCassette() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.get(ME_URL)).thenReturn("{\"n\":1}");
+        when(delegate.post(TOKENS_URL, TOKEN_REQUEST))
+            .thenReturn(TOKEN_RESPONSE);
+        record(cassette, delegate);
+
+        final RandomAccessFile file = new RandomAccessFile(cassette, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+
+        // Act
+        final ReplayingHttpClient replay =
+            new ReplayingHttpClient(cassette, false);
+
+        // Assert
+        assertEquals(2, replay.size());
+        assertEquals("{\"n\":1}", replay.get(ME_URL));
+        assertCode(-1, replay, TOKENS_URL);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReplay_NotACassette() throws IOException {
+
+        // Arrange
+        final File cassette = folder.newFile("cassette");
+
+        // Act
+        new ReplayingHttpClient(cassette, false);
+    }
+
+    private static void record(final File cassette, final HttpClient delegate)
+            throws IOException {
+        final RecordingHttpClient recorder =
+            new RecordingHttpClient(delegate, cassette);
+        try {
+            recorder.get(ME_URL);
+            recorder.get(ME_URL);
+            recorder.post(TOKENS_URL, TOKEN_REQUEST);
+        } catch (final HttpException expected) {
+            // Recorded all the same
+        } finally {
+            recorder.close();
+        }
+    }
+
+    private static void assertCode(final int code,
+            final HttpClient client, final String url) {
+        try {
+            if (url.equals(TOKENS_URL)) {
+                client.post(url, TOKEN_REQUEST);
+            } else {
+                client.get(url);
+            }
+            fail("Expected an HttpException");
+        } catch (final HttpException exception) {
+            assertEquals(code, exception.getCode());
+        }
+    }
+}
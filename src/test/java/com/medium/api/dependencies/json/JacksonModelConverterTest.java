@@ -139,5 +139,18 @@ public class JacksonModelConverterTest {
 
         converter.asListOf(Publication.class, "{[]}");
     }
-}
 
+    /**
+     * Makes sure warming up wraps dependency exceptions as well.
+     */
+    @Test(expected = ConverterException.class)
+    public void testWarmUpReadTreeThrowsJsonProcessingException()
+            throws IOException {
+
+        doThrow(mock(JsonProcessingException.class))
+            .when(jackson)
+            .readTree(anyString());
+
+        ((JacksonModelConverter) converter).warmUp(Publication.class);
+    }
+}
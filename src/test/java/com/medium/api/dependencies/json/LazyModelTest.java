@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.model.Role;
+import com.medium.api.test.TestUtils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests reading models lazily with the JacksonModelConverter.
+ */
+public class LazyModelTest {
+
+    private final JacksonModelConverter converter = new JacksonModelConverter();
+
+    @Test
+    public void testAsLazyListOf_ReadsFieldsLikeAsListOf() {
+
+        // Arrange
+        final String json = TestUtils.getResourceContents("contributor-list.json");
+        final List<Contributor> eager =
+            converter.asListOf(Contributor.class, json);
+
+        // Act
+        final List<LazyModel<Contributor>> lazy =
+            converter.asLazyListOf(Contributor.class, json);
+
+        // Assert
+        assertEquals(eager.size(), lazy.size());
+        for (int i = 0; i < eager.size(); i++) {
+            assertEquals(eager.get(i).getUserId(),
+                lazy.get(i).getString("userId"));
+            assertEquals(eager.get(i).getPublicationId(),
+                lazy.get(i).getString("publicationId"));
+            assertEquals(eager.get(i).getRole(),
+                lazy.get(i).get("role", Role.class));
+            assertEquals(eager.get(i).getUserId(),
+                lazy.get(i).get().getUserId());
+        }
+    }
+
+    @Test
+    public void testAsLazy_Post() {
+
+        // Act
+        final LazyModel<Post> post = converter.asLazy(
+            Post.class, TestUtils.getResourceContents("post.json"));
+
+        // Assert
+        assertEquals("e6f36a", post.getString("id"));
+        assertEquals("https://medium.com/@majelbstoat/liverpool-fc-e6f36a",
+            post.getString("url"));
+        assertEquals(new Date(1442286338435L),
+            post.get("publishedAt", Date.class));
+        assertEquals(Arrays.asList("football", "sport", "Liverpool"),
+            post.get("tags", List.class));
+        assertEquals("Liverpool FC", post.get().getTitle());
+        assertSame(post.get(), post.get());
+        assertSame(post.getString("id"), post.getString("id"));
+        assertEquals(Post.class, post.getType());
+    }
+
+    @Test
+    public void testAsLazy_MissingAndNullFields() {
+
+        // Act
+        final LazyModel<Post> post =
+            converter.asLazy(Post.class, "{\"id\": \"a\", \"title\": null}");
+
+        // Assert
+        assertTrue(post.has("title"));
+        assertNull(post.getString("title"));
+        assertFalse(post.has("url"));
+        assertNull(post.getString("url"));
+        assertEquals("a", post.get().getId());
+    }
+
+    @Test
+    public void testAsLazyListOf_NoEnvelope() {
+
+        // Act
+        final List<LazyModel<Post>> posts = converter.asLazyListOf(Post.class,
+            "[{\"id\": \"a\"}, null, {\"id\": \"b\", \"tags\": [\"x\"]}]");
+
+        // Assert
+        assertEquals(3, posts.size());
+        assertEquals("a", posts.get(0).getString("id"));
+        assertNull(posts.get(1));
+        assertEquals("b", posts.get(2).getString("id"));
+        assertEquals(Arrays.asList("x"), posts.get(2).get().getTags());
+    }
+
+    @Test
+    public void testAsLazyListOf_MultibyteCharacters() {
+
+        // Arrange
+        final String json = "{\"data\": [{\"title\": \"Café ☕\","
+            + " \"id\": \"über\"}, {\"id\": \"b\"}]}";
+
+        // Act
+        final List<LazyModel<Post>> posts =
+            converter.asLazyListOf(Post.class, json);
+
+        // Assert
+        assertEquals("über", posts.get(0).getString("id"));
+        assertEquals("Café ☕", posts.get(0).getString("title"));
+        assertEquals("über", posts.get(0).get().getId());
+        assertEquals("b", posts.get(1).get().getId());
+    }
+
+    @Test
+    public void testAsLazy_EscapedStrings() {
+
+        // Act
+        final LazyModel<Post> post = converter.asLazy(Post.class,
+            "{\"id\": \"a\\\"b\\u00e9\", \"url\": \"\\\\\"}");
+
+        // Assert
+        assertEquals("a\"b\u00e9", post.getString("id"));
+        assertEquals("\\", post.getString("url"));
+    }
+
+    @Test
+    public void testAsLazy_PoolsStrings() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder().build();
+        final JacksonModelConverter pooled = new JacksonModelConverter(pool);
+        final String json = TestUtils.getResourceContents("contributor-list.json");
+
+        // Act
+        final List<LazyModel<Contributor>> contributors =
+            pooled.asLazyListOf(Contributor.class, json);
+
+        // Assert
+        assertSame(contributors.get(0).getString("publicationId"),
+            contributors.get(1).getString("publicationId"));
+    }
+
+    @Test(expected = ConverterException.class)
+    public void testAsLazyListOf_NotAList() {
+        converter.asLazyListOf(Post.class, "\"post\"");
+    }
+
+    @Test(expected = ConverterException.class)
+    public void testAsLazyListOf_Truncated() {
+        converter.asLazyListOf(Post.class, "[{\"id\": \"a\"}, {\"id\": ");
+    }
+
+    @Test(expected = ConverterException.class)
+    public void testAsLazy_List() {
+        converter.asLazy(Post.class, "[{\"id\": \"a\"}, {\"id\": \"b\"}]");
+    }
+}
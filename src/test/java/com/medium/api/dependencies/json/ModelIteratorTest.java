@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.medium.api.ModelIterator;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.model.Contributor;
+import com.medium.api.test.TestUtils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Tests streaming lists with the JacksonModelConverter.
+ */
+public class ModelIteratorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String FIRST =
+        "{\"userId\":\"1\",\"publicationId\":\"p\",\"role\":\"editor\"}";
+
+    private final JacksonModelConverter converter = new JacksonModelConverter();
+
+    @Test
+    public void testIterateListOf_ReadsLikeAsListOf() {
+
+        // Arrange
+        final String json = TestUtils.getResourceContents("contributor-list.json");
+        final List<Contributor> eager =
+            converter.asListOf(Contributor.class, json);
+        final TrackingStream stream = new TrackingStream(json.getBytes(UTF_8));
+
+        // Act
+        final List<Contributor> streamed = new ArrayList<Contributor>();
+        final ModelIterator<Contributor> iterator =
+            converter.iterateListOf(Contributor.class, stream);
+        while (iterator.hasNext()) {
+            streamed.add(iterator.next());
+        }
+
+        // Assert
+        assertEquals(eager.size(), streamed.size());
+        for (int i = 0; i < eager.size(); i++) {
+            assertEquals(eager.get(i).getUserId(), streamed.get(i).getUserId());
+            assertEquals(eager.get(i).getRole(), streamed.get(i).getRole());
+        }
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void testIterateListOf_BareArrayAndNullItems() {
+
+        // Act
+        final ModelIterator<Contributor> iterator = converter.iterateListOf(
+            Contributor.class, stream("[" + FIRST + ",null]"));
+
+        // Assert
+        assertEquals("1", iterator.next().getUserId());
+        assertTrue(iterator.hasNext());
+        assertNull(iterator.next());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterateListOf_SkipsOtherEnvelopeFields() {
+
+        // Act
+        final ModelIterator<Contributor> iterator = converter.iterateListOf(
+            Contributor.class,
+            stream("{\"meta\":{\"data\":[1]},\"data\":[" + FIRST + "]}"));
+
+        // Assert
+        assertEquals("1", iterator.next().getUserId());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testIterateListOf_EmptyList() {
+
+        // Act
+        final ModelIterator<Contributor> iterator =
+            converter.iterateListOf(Contributor.class, stream("{\"data\":[]}"));
+
+        // Assert
+        assertFalse(iterator.hasNext());
+        iterator.next();
+    }
+
+    @Test
+    public void testIterateListOf_NotAList() {
+
+        // Arrange
+        final TrackingStream stream = new TrackingStream(
+            "{\"data\":{\"id\":\"1\"}}".getBytes(UTF_8));
+
+        // Act
+        try {
+            converter.iterateListOf(Contributor.class, stream);
+            fail("Expected a ConverterException");
+        } catch (final ConverterException converterException) {
+            // Expected
+        }
+
+        // Assert
+        assertTrue(stream.closed);
+    }
+
+    @Test
+    public void testIterateListOf_ItemsBoundBeforeFailure() {
+
+        // Arrange
+        final TrackingStream stream = new TrackingStream(
+            ("{\"data\":[" + FIRST + ",{\"userId\":").getBytes(UTF_8));
+
+        // Act
+        final ModelIterator<Contributor> iterator =
+            converter.iterateListOf(Contributor.class, stream);
+        final Contributor first = iterator.next();
+
+        // Assert
+        assertEquals("1", first.getUserId());
+        assertFalse(stream.closed);
+        try {
+            iterator.next();
+            fail("Expected a ConverterException");
+        } catch (final ConverterException converterException) {
+            assertTrue(converterException.getCause() instanceof IOException);
+        }
+        assertTrue(stream.closed);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testIterateListOf_ConnectionBrokenWhileReading() {
+
+        // Arrange
+        final IOException reset = new IOException("Connection reset");
+        final InputStream stream = new FilterInputStream(
+                stream("{\"data\":[" + FIRST + ",")) {
+            @Override
+            public int read(final byte[] buffer, final int offset,
+                    final int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                if (read < 0) {
+                    throw reset;
+                }
+                return read;
+            }
+        };
+
+        // Act
+        final ModelIterator<Contributor> iterator =
+            converter.iterateListOf(Contributor.class, stream);
+        final Contributor first = iterator.next();
+
+        // Assert
+        assertEquals("1", first.getUserId());
+        try {
+            iterator.next();
+            fail("Expected an HttpException");
+        } catch (final HttpException httpException) {
+            assertEquals(-1, httpException.getCode());
+            assertSame(reset, httpException.getCause());
+        }
+    }
+
+    @Test
+    public void testClose_ClosesTheStream() {
+
+        // Arrange
+        final TrackingStream stream = new TrackingStream(TestUtils
+            .getResourceContents("contributor-list.json").getBytes(UTF_8));
+        final ModelIterator<Contributor> iterator =
+            converter.iterateListOf(Contributor.class, stream);
+        iterator.next();
+
+        // Act
+        iterator.close();
+
+        // Assert
+        assertTrue(stream.closed);
+        assertFalse(iterator.hasNext());
+    }
+
+    private static InputStream stream(final String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+
+    /**
+     * Remembers whether it has been closed.
+     */
+    private static final class TrackingStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingStream(final byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
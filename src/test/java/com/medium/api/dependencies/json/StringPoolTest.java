@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.dependencies.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.medium.api.model.Contributor;
+import com.medium.api.model.Post;
+import com.medium.api.test.TestUtils;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Tests the StringPool, and the converter reading through it.
+ */
+public class StringPoolTest {
+
+    @Test
+    public void testCanonicalize_ReturnsPooledCopy() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder().build();
+        final String first = new String("majelbstoat");
+        final String second = new String("majelbstoat");
+
+        // Act
+        pool.canonicalize(first);
+        final String canonical = pool.canonicalize(second);
+
+        // Assert
+        assertSame(first, canonical);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(64, pool.getBytesSaved());
+    }
+
+    @Test
+    public void testCanonicalize_Null() {
+        assertNull(new StringPool.Builder().build().canonicalize(null));
+    }
+
+    @Test
+    public void testCanonicalize_SkipsLongStrings() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder()
+            .withMaxLength(4)
+            .build();
+        pool.canonicalize(new String("football"));
+
+        // Act
+        final String second = new String("football");
+
+        // Assert
+        assertSame(second, pool.canonicalize(second));
+        assertEquals(0, pool.getMissCount());
+    }
+
+    @Test
+    public void testCanonicalize_IsBounded() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder()
+            .withCapacity(1)
+            .build();
+        final String first = new String("football");
+        pool.canonicalize(first);
+
+        // Act
+        pool.canonicalize("sport");
+        final String again = new String("football");
+
+        // Assert
+        assertEquals(1, pool.getCapacity());
+        assertSame(again, pool.canonicalize(again));
+        assertEquals(0, pool.getHitCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilder_RejectsZeroCapacity() {
+        new StringPool.Builder().withCapacity(0);
+    }
+
+    @Test
+    public void testConverter_PoolsConfiguredFields() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder().build();
+        final JsonModelConverter converter = new JacksonModelConverter(pool);
+        final String json = TestUtils.getResourceContents("contributor-list.json");
+
+        // Act
+        final List<Contributor> contributors =
+            converter.asListOf(Contributor.class, json);
+
+        // Assert
+        assertSame(
+            contributors.get(0).getPublicationId(),
+            contributors.get(4).getPublicationId()
+        );
+        assertEquals(contributors.size() - 1, pool.getHitCount());
+    }
+
+    @Test
+    public void testConverter_PoolsArraysButNotOtherFields() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder()
+            .withFields("tags")
+            .build();
+        final JsonModelConverter converter = new JacksonModelConverter(pool);
+        final String json = TestUtils.getResourceContents("post.json");
+
+        // Act
+        final Post first = converter.asSingle(Post.class, json);
+        final Post second = converter.asSingle(Post.class, json);
+
+        // Assert
+        final Iterator<String> firstTags = first.getTags().iterator();
+        for (final String tag : second.getTags()) {
+            assertSame(firstTags.next(), tag);
+        }
+        assertEquals(first.getAuthorId(), second.getAuthorId());
+        assertNotSame(first.getAuthorId(), second.getAuthorId());
+    }
+}
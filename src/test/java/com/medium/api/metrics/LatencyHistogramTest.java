@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketOf_BoundsContainValue() {
+
+        // Arrange
+        final long[] values = {
+            0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789L,
+            TimeUnit.HOURS.toNanos(1), Long.MAX_VALUE,
+        };
+
+        for (final long value : values) {
+
+            // Act
+            final int bucket = LatencyHistogram.bucketOf(value);
+
+            // Assert
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKETS);
+            assertTrue(LatencyHistogram.lowestOf(bucket) <= value);
+            assertTrue(LatencyHistogram.highestOf(bucket) >= value);
+        }
+    }
+
+    @Test
+    public void testBucketOf_WithinThreePercent() {
+
+        // Arrange
+        long value = 1;
+
+        while (value > 0 && value < Long.MAX_VALUE / 3) {
+
+            // Act
+            final int bucket = LatencyHistogram.bucketOf(value);
+            final long width = LatencyHistogram.highestOf(bucket)
+                - LatencyHistogram.lowestOf(bucket);
+
+            // Assert
+            assertTrue(width <= value / LatencyHistogram.SUB_BUCKETS);
+            value = value * 3 + 1;
+        }
+    }
+
+    @Test
+    public void testSnapshot_Empty() {
+
+        // Act
+        final HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+
+        // Assert
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean(TimeUnit.NANOSECONDS));
+        assertEquals(0, snapshot.getMax(TimeUnit.NANOSECONDS));
+        assertEquals(0,
+            snapshot.getValueAtPercentile(99, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testSnapshot_Percentiles() {
+
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+
+        // Act
+        final HistogramSnapshot snapshot = histogram.snapshot();
+
+        // Assert
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getMean(TimeUnit.MILLISECONDS));
+        assertEquals(1000, snapshot.getMax(TimeUnit.MILLISECONDS));
+        assertEquals(1000,
+            snapshot.getValueAtPercentile(100, TimeUnit.MILLISECONDS));
+        assertWithin(500,
+            snapshot.getValueAtPercentile(50, TimeUnit.MILLISECONDS));
+        assertWithin(990,
+            snapshot.getValueAtPercentile(99, TimeUnit.MILLISECONDS));
+        assertWithin(100,
+            snapshot.getCountAtOrBelow(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRecord_NegativeIsZero() {
+
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // Act
+        histogram.recordNanos(-5);
+
+        // Assert
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testRecord_Concurrent() throws Exception {
+
+        // Arrange
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.recordNanos(i);
+                    }
+                }
+            });
+        }
+
+        // Act
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        final HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(9999, snapshot.getMax(TimeUnit.NANOSECONDS));
+        assertEquals(4L * 9999 * 10000 / 2,
+            snapshot.getSum(TimeUnit.NANOSECONDS));
+    }
+
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+            Math.abs(expected - actual) <= expected * 3 / 100);
+    }
+}
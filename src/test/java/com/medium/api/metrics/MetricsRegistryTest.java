@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.CallPhase;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.HttpException;
+import com.medium.api.dependencies.http.InterceptingHttpClient;
+import com.medium.api.dependencies.http.Interceptor;
+import com.medium.api.dependencies.http.OkayHttpClient;
+
+import com.medium.api.util.StringUtils;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the MetricsRegistry, and the MetricsInterceptor which records
+ * into it.
+ */
+public class MetricsRegistryTest {
+
+    private static final String TEST_URL = "http://api.foo.bar/v42/posts";
+
+    @Test
+    public void testGetOperation_SameInstance() {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+
+        // Act
+        final OperationMetrics first = registry.getOperation("getUser");
+        final OperationMetrics second = registry.getOperation("getUser");
+
+        // Assert
+        assertSame(first, second);
+        assertSame(registry.getOperation(MetricsRegistry.UNKNOWN_OPERATION),
+            registry.getOperation(null));
+    }
+
+    @Test
+    public void testSnapshot_RecordsSuccessAndFailure() {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+        final OperationMetrics metrics = registry.getOperation("createPost");
+        metrics.recordSuccess(TimeUnit.MILLISECONDS.toNanos(10), 100, 400);
+        metrics.recordFailure(503, TimeUnit.MILLISECONDS.toNanos(30), 100);
+        metrics.recordFailure(503, TimeUnit.MILLISECONDS.toNanos(20), 100);
+        metrics.recordFailure(-1, TimeUnit.MILLISECONDS.toNanos(40), 100);
+
+        // Act
+        final Map<String, OperationSnapshot> snapshot = registry.snapshot();
+
+        // Assert
+        final OperationSnapshot operation = snapshot.get("createPost");
+        assertEquals(1, snapshot.size());
+        assertEquals(4, operation.getCallCount());
+        assertEquals(3, operation.getErrorCount());
+        assertEquals(Long.valueOf(2),
+            operation.getErrorCountsByStatus().get(503));
+        assertEquals(Long.valueOf(1),
+            operation.getErrorCountsByStatus().get(-1));
+        assertEquals(400, operation.getBytesSent());
+        assertEquals(400, operation.getBytesReceived());
+        assertEquals(4, operation.getLatency().getCount());
+        assertEquals(40, operation.getLatency().getMax(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testInterceptor_RecordsByOperation() {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+        final HttpClient delegate = mock(HttpClient.class);
+        when(delegate.post(TEST_URL, "{\"title\":\"café\"}"))
+            .thenReturn("{}")
+            .thenThrow(new HttpException(429, "Too Many Requests"));
+        final HttpClient http = InterceptingHttpClient.wrap(delegate,
+            Collections.<Interceptor>singletonList(
+                new MetricsInterceptor(registry)));
+
+        // Act
+        final String previous = CallContext.enterOperation("createPost");
+        try {
+            http.post(TEST_URL, "{\"title\":\"café\"}");
+            try {
+                http.post(TEST_URL, "{\"title\":\"café\"}");
+                fail("Expected the second call to fail");
+            } catch (HttpException e) {
+                assertEquals(429, e.getCode());
+            }
+        } finally {
+            CallContext.exitOperation(previous);
+        }
+
+        // Assert
+        final OperationSnapshot operation =
+            registry.snapshot().get("createPost");
+        assertEquals(2, operation.getCallCount());
+        assertEquals(1, operation.getErrorCount());
+        assertEquals(Long.valueOf(1),
+            operation.getErrorCountsByStatus().get(429));
+        assertEquals(2 * 17, operation.getBytesSent());
+        assertEquals(2, operation.getBytesReceived());
+        assertEquals(2, operation.getLatency().getCount());
+    }
+
+    @Test
+    public void testOnCallTimings_RecordsPhases() throws Exception {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+        final OkayHttpClient http = new OkayHttpClient(null, null, registry);
+        final MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.start();
+
+        // Act
+        final String previous = CallContext.enterOperation("getUser");
+        try {
+            http.get(server.url("/v1/me").toString());
+            http.get(server.url("/v1/me").toString());
+        } finally {
+            CallContext.exitOperation(previous);
+            server.shutdown();
+        }
+
+        // Assert
+        final OperationSnapshot operation = registry.snapshot().get("getUser");
+        assertEquals(1, operation.getNewConnectionCount());
+        assertEquals(1, operation.getReusedConnectionCount());
+        assertEquals(CallPhase.values().length, operation.getPhases().size());
+        assertEquals(2, operation.getPhases().get(CallPhase.SERVER).getCount());
+        assertTrue(new PrometheusExporter.Builder().withRegistry(registry)
+            .build().render().contains("medium_call_phase_duration_seconds_count"
+                + "{operation=\"getUser\",phase=\"server\"} 2\n"));
+    }
+
+    @Test
+    public void testUtf8Length() {
+
+        // Assert
+        assertEquals(0, StringUtils.utf8Length(null));
+        assertEquals(3, StringUtils.utf8Length("abc"));
+        assertEquals(2, StringUtils.utf8Length("é"));
+        assertEquals(3, StringUtils.utf8Length("€"));
+        assertEquals(4, StringUtils.utf8Length("😀"));
+        assertEquals(3, StringUtils.utf8Length("\ud83d"));
+    }
+
+    @Test
+    public void testStripedCounter_Concurrent() throws Exception {
+
+        // Arrange
+        final StripedCounter counter = new StripedCounter(4);
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        counter.increment();
+                    }
+                }
+            });
+        }
+
+        // Act
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // Assert
+        assertEquals(80000, counter.sum());
+        assertTrue(counter.toString().equals("80000"));
+    }
+}
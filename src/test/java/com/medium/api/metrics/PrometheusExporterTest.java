@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.medium.api.dependencies.http.CachingDns;
+import com.medium.api.dependencies.http.CallContext;
+import com.medium.api.dependencies.http.CancelledException;
+import com.medium.api.dependencies.http.HedgingHttpClient;
+import com.medium.api.dependencies.http.HedgingPolicy;
+import com.medium.api.dependencies.http.HttpClient;
+import com.medium.api.dependencies.http.OkayHttpClient;
+import com.medium.api.dependencies.json.StringPool;
+
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the PrometheusExporter and the MetricsEndpoint which serves it.
+ */
+public class PrometheusExporterTest {
+
+    @Test
+    public void testRender_Operations() {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+        final OperationMetrics createPost = registry.getOperation("createPost");
+        createPost.recordSuccess(TimeUnit.MILLISECONDS.toNanos(20), 100, 300);
+        createPost.recordFailure(503, TimeUnit.MILLISECONDS.toNanos(400), 100);
+        registry.getOperation("exchangeRefreshToken")
+            .recordSuccess(TimeUnit.MILLISECONDS.toNanos(1), 10, 10);
+        final PrometheusExporter exporter = new PrometheusExporter.Builder()
+            .withRegistry(registry)
+            .build();
+
+        // Act
+        final String text = exporter.render();
+
+        // Assert
+        assertContains(text, "# TYPE medium_calls_total counter\n");
+        assertContains(text, "medium_calls_total{operation=\"createPost\"} 2\n");
+        assertContains(text,
+            "medium_call_errors_total{operation=\"createPost\",status=\"503\"} 1\n");
+        assertContains(text,
+            "medium_sent_bytes_total{operation=\"createPost\"} 200\n");
+        assertContains(text,
+            "medium_received_bytes_total{operation=\"createPost\"} 300\n");
+        assertContains(text, "# TYPE medium_call_duration_seconds histogram\n");
+        assertContains(text, "medium_call_duration_seconds_bucket"
+            + "{operation=\"createPost\",le=\"0.01\"} 0\n");
+        assertContains(text, "medium_call_duration_seconds_bucket"
+            + "{operation=\"createPost\",le=\"0.025\"} 1\n");
+        assertContains(text, "medium_call_duration_seconds_bucket"
+            + "{operation=\"createPost\",le=\"0.5\"} 2\n");
+        assertContains(text, "medium_call_duration_seconds_bucket"
+            + "{operation=\"createPost\",le=\"+Inf\"} 2\n");
+        assertContains(text,
+            "medium_call_duration_seconds_sum{operation=\"createPost\"} 0.42\n");
+        assertContains(text,
+            "medium_call_duration_seconds_count{operation=\"createPost\"} 2\n");
+        assertContains(text, "medium_token_refreshes_total 1\n");
+        assertContains(text, "medium_token_refresh_failures_total 0\n");
+    }
+
+    @Test
+    public void testRender_HttpClient() throws Exception {
+
+        // Arrange
+        final List<InetAddress> addresses =
+            Arrays.asList(InetAddress.getByAddress(new byte[] {1, 2, 3, 4}));
+        final CachingDns dns = new CachingDns.Builder()
+            .withDelegate(new Dns() {
+                @Override
+                public List<InetAddress> lookup(final String hostname) {
+                    return addresses;
+                }
+            })
+            .build();
+        dns.lookup("api.medium.com");
+        dns.lookup("api.medium.com");
+        dns.lookup("api.medium.com");
+        dns.lookup("api.medium.com");
+        final OkayHttpClient http = new OkayHttpClient(
+            new OkHttpClient.Builder().dns(dns).build(), null);
+        final PrometheusExporter exporter = new PrometheusExporter.Builder()
+            .withHttpClient(http)
+            .build();
+
+        // Act
+        final String text = exporter.render();
+
+        // Assert
+        assertContains(text, "medium_pool_connections{state=\"active\"} 0\n");
+        assertContains(text, "medium_pool_connections{state=\"idle\"} 0\n");
+        assertContains(text, "medium_dns_lookups_total{result=\"hit\"} 3\n");
+        assertContains(text, "medium_dns_lookups_total{result=\"miss\"} 1\n");
+        assertContains(text, "medium_dns_cache_hit_ratio 0.75\n");
+    }
+
+    @Test
+    public void testRender_StringPool() {
+
+        // Arrange
+        final StringPool pool = new StringPool.Builder().build();
+        pool.canonicalize(new String("b45573563f5a"));
+        pool.canonicalize(new String("b45573563f5a"));
+        final PrometheusExporter exporter = new PrometheusExporter.Builder()
+            .withStringPool(pool)
+            .build();
+
+        // Act
+        final String text = exporter.render();
+
+        // Assert
+        assertContains(text,
+            "medium_string_pool_lookups_total{result=\"hit\"} 1\n");
+        assertContains(text,
+            "medium_string_pool_lookups_total{result=\"miss\"} 1\n");
+        assertContains(text, "medium_string_pool_saved_bytes_total 64\n");
+    }
+
+    @Test
+    public void testRender_Hedging() {
+
+        // Arrange
+        final HedgingPolicy policy = new HedgingPolicy.Builder()
+            .withDelay(10, TimeUnit.MILLISECONDS)
+            .withBudget(1)
+            .build();
+        final AtomicInteger gets = new AtomicInteger();
+        final HedgingHttpClient client = new HedgingHttpClient(
+            new HttpClient() {
+                @Override
+                public String post(final String url, final String body) {
+                    return "{}";
+                }
+
+                @Override
+                public String get(final String url) {
+                    if (2 == gets.incrementAndGet()) {
+                        // The second request is stuck until the hedge wins
+                        final CountDownLatch cancelled = new CountDownLatch(1);
+                        CallContext.current().addListener(
+                            new CallContext.CancellationListener() {
+                                @Override
+                                public void onCancelled(
+                                        final CallContext context) {
+                                    cancelled.countDown();
+                                }
+                            });
+                        try {
+                            cancelled.await(5, TimeUnit.SECONDS);
+                        } catch (final InterruptedException exception) {
+                            Thread.currentThread().interrupt();
+                        }
+                        throw new CancelledException("Call was cancelled");
+                    }
+                    return "{}";
+                }
+
+                @Override
+                public void setBearerToken(final String bearerToken) {
+                }
+            }, policy);
+        client.get("http://api.foo.bar/v42/me");
+        client.get("http://api.foo.bar/v42/me");
+        final PrometheusExporter exporter = new PrometheusExporter.Builder()
+            .withHedgingPolicy(policy)
+            .build();
+
+        // Act
+        final String text = exporter.render();
+
+        // Assert
+        assertContains(text, "medium_hedge_requests_total 2\n");
+        assertContains(text, "medium_hedges_total{result=\"won\"} 1\n");
+        assertContains(text, "medium_hedges_total{result=\"lost\"} 0\n");
+        assertContains(text, "medium_hedge_rate 0.5\n");
+        assertContains(text, "medium_hedge_win_rate 1.0\n");
+    }
+
+    @Test
+    public void testEscape() {
+
+        // Assert
+        assertEquals("getUser", PrometheusExporter.escape("getUser"));
+        assertEquals("a\\\"b\\\\c\\nd",
+            PrometheusExporter.escape("a\"b\\c\nd"));
+    }
+
+    @Test
+    public void testEndpoint_ServesMetrics() throws Exception {
+
+        // Arrange
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.getOperation("getUser").recordSuccess(1000, 0, 10);
+        final MetricsEndpoint endpoint = new MetricsEndpoint(
+            new PrometheusExporter.Builder().withRegistry(registry).build(),
+            new InetSocketAddress("127.0.0.1", 0));
+        endpoint.start();
+
+        try {
+
+            // Act
+            final HttpURLConnection scrape = open(endpoint, "GET");
+            final HttpURLConnection post = open(endpoint, "POST");
+
+            // Assert
+            assertEquals(200, scrape.getResponseCode());
+            assertEquals(PrometheusExporter.CONTENT_TYPE,
+                scrape.getHeaderField("Content-Type"));
+            final InputStream in = scrape.getInputStream();
+            final String text = new Scanner(in, "UTF-8")
+                .useDelimiter("\\A").next();
+            in.close();
+            assertContains(text, "medium_calls_total{operation=\"getUser\"} 1\n");
+            assertEquals(405, post.getResponseCode());
+        } finally {
+            endpoint.stop();
+        }
+        assertEquals(-1, endpoint.getPort());
+    }
+
+    private static HttpURLConnection open(
+            final MetricsEndpoint endpoint, final String method)
+            throws Exception {
+
+        final HttpURLConnection connection = (HttpURLConnection) new URL(
+            "http://127.0.0.1:" + endpoint.getPort() + MetricsEndpoint.PATH)
+            .openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static void assertContains(final String text, final String line) {
+        assertTrue("missing " + line + " in:\n" + text, text.contains(line));
+    }
+}
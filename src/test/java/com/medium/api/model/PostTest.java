@@ -18,6 +18,8 @@ package com.medium.api.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 
 import com.medium.api.dependencies.json.JacksonModelConverter;
 import com.medium.api.dependencies.json.JsonModelConverter;
@@ -29,6 +31,7 @@ import org.junit.Test;
 
 import org.skyscreamer.jsonassert.JSONAssert;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -138,5 +141,43 @@ public class PostTest {
             false
         );
     }
-}
 
+    @Test
+    public void testBuilderNoArgs_LeavesTagsAndDateUnset() {
+        // Act
+        final Post post = new Post.Builder().build();
+
+        // Assert
+        assertNull(post.getTags());
+        assertNull(post.getPublishedAt());
+    }
+
+    @Test
+    public void testGetTags_IsACopy() {
+        // Arrange
+        final Collection<String> tags = new ArrayList<String>(ARRANGED_TAGS);
+        final Post post = new Post.Builder().withTags(tags).build();
+
+        // Act
+        tags.add("Everton");
+
+        // Assert
+        assertEquals(ARRANGED_TAGS, post.getTags());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testGetTags_IsUnmodifiable() {
+        ARRANGED_POST.getTags().add("Everton");
+    }
+
+    @Test
+    public void testGetPublishedAt_IsACopy() {
+        // Act
+        final Date publishedAt = ARRANGED_POST.getPublishedAt();
+        publishedAt.setTime(0L);
+
+        // Assert
+        assertNotSame(publishedAt, ARRANGED_POST.getPublishedAt());
+        assertEquals(ARRANGED_PUBLISHED_AT, ARRANGED_POST.getPublishedAt());
+    }
+}
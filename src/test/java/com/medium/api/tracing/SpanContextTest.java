@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 nosemaj.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You may
+ * obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.medium.api.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the SpanContext, and its traceparent header.
+ */
+public class SpanContextTest {
+
+    private static final String TRACEPARENT =
+        "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+    @Test
+    public void testNewChild_Root() {
+
+        // Act
+        final SpanContext root = SpanContext.newChild(SpanContext.INVALID);
+
+        // Assert
+        assertTrue(root.isValid());
+        assertTrue(root.isSampled());
+        assertEquals(32, root.getTraceId().length());
+        assertEquals(16, root.getSpanId().length());
+        assertEquals(root, SpanContext.fromTraceparent(root.toTraceparent()));
+    }
+
+    @Test
+    public void testNewChild_SharesTrace() {
+
+        // Arrange
+        final SpanContext parent = SpanContext.fromTraceparent(TRACEPARENT);
+
+        // Act
+        final SpanContext child = SpanContext.newChild(parent);
+
+        // Assert
+        assertEquals(parent.getTraceId(), child.getTraceId());
+        assertNotEquals(parent.getSpanId(), child.getSpanId());
+    }
+
+    @Test
+    public void testFromTraceparent_Valid() {
+
+        // Act
+        final SpanContext context = SpanContext.fromTraceparent(TRACEPARENT);
+
+        // Assert
+        assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+        assertEquals("00f067aa0ba902b7", context.getSpanId());
+        assertTrue(context.isSampled());
+        assertEquals(TRACEPARENT, context.toTraceparent());
+        assertFalse(SpanContext.fromTraceparent(
+            TRACEPARENT.replace("-01", "-00")).isSampled());
+    }
+
+    @Test
+    public void testFromTraceparent_Invalid() {
+
+        // Assert
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(null));
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(""));
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(
+            "ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(
+            "00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(
+            "00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+        assertEquals(SpanContext.INVALID, SpanContext.fromTraceparent(
+            "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7"));
+    }
+
+    @Test
+    public void testSpans_EnterAndExit() {
+
+        // Arrange
+        final SpanContext outer = SpanContext.newChild(SpanContext.INVALID);
+        final SpanContext inner = SpanContext.newChild(outer);
+
+        // Act
+        final SpanContext beforeOuter = Spans.enter(outer);
+        final SpanContext beforeInner = Spans.enter(inner);
+        final SpanContext during = Spans.current();
+        Spans.exit(beforeInner);
+        final SpanContext after = Spans.current();
+        Spans.exit(beforeOuter);
+
+        // Assert
+        assertEquals(SpanContext.INVALID, beforeOuter);
+        assertEquals(outer, beforeInner);
+        assertEquals(inner, during);
+        assertEquals(outer, after);
+        assertEquals(SpanContext.INVALID, Spans.current());
+    }
+}